@@ -18,14 +18,14 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * Since upgrading from a read lock to the write lock is not possible,
  * be careful withing {@link #get(Object)} method.
  */
-public abstract class AbstractCacheMap<K,V> implements Cache<K,V> {
+public abstract class AbstractCacheMap<K,V> implements StatsCache<K,V> {
 
 	class CacheObject<K2,V2> {
 		CacheObject(K2 key, V2 object, long ttl) {
 			this.key = key;
 			this.cachedObject = object;
 			this.ttl = ttl;
-			this.lastAccess = System.currentTimeMillis();
+			this.lastAccess = CacheClock.currentTimeMillis();
 		}
 
 		final K2 key;
@@ -33,15 +33,16 @@ public abstract class AbstractCacheMap<K,V> implements Cache<K,V> {
 		long lastAccess;		// time of last access
 		long accessCount;		// number of accesses
 		long ttl;				// objects timeout (time-to-live), 0 = no timeout
+		TimingWheel.Timeout<CacheObject<K2,V2>> timeout;	// expiration, if scheduled
 
 		boolean isExpired() {
 			if (ttl == 0) {
 				return false;
 			}
-			return lastAccess + ttl < System.currentTimeMillis();
+			return lastAccess + ttl < CacheClock.currentTimeMillis();
 		}
 		V2 getObject() {
-			lastAccess = System.currentTimeMillis();
+			lastAccess = CacheClock.currentTimeMillis();
 			accessCount++;
 			return cachedObject;
 		}
@@ -108,14 +109,19 @@ public abstract class AbstractCacheMap<K,V> implements Cache<K,V> {
 		writeLock.lock();
 
 		try {
-			CacheObject<K,V> co = new CacheObject<K,V>(key, object, timeout);
-			if (timeout != 0) {
+			if ((timeout != 0) && (existCustomTimeout == false)) {
+				CacheClock.register(this);
 				existCustomTimeout = true;
 			}
+			CacheObject<K,V> co = new CacheObject<K,V>(key, object, timeout);
 			if (isFull()) {
 				pruneCache();
 			}
-			cacheMap.put(key, co);
+			CacheObject<K,V> previous = cacheMap.put(key, co);
+			if (previous != null) {
+				stats.recordRemoval(RemovalCause.REPLACED);
+			}
+			afterPutObject(co, previous);
 		}
 		finally {
 			writeLock.unlock();
@@ -123,23 +129,51 @@ public abstract class AbstractCacheMap<K,V> implements Cache<K,V> {
 	}
 
 
+	/**
+	 * Callback method invoked after object is put in the cache, while
+	 * holding the write lock. Previous object is replaced one, may be
+	 * <code>null</code>. By default does nothing.
+	 */
+	protected void afterPutObject(CacheObject<K,V> cacheObject, CacheObject<K,V> previous) {
+	}
+
+	/**
+	 * Callback method invoked after object is explicitly removed from
+	 * the cache, while holding the write lock. By default does nothing.
+	 */
+	protected void afterRemoveObject(CacheObject<K,V> cacheObject) {
+	}
+
+	/**
+	 * Callback method invoked after cache is cleared, while
+	 * holding the write lock. By default does nothing.
+	 */
+	protected void afterClear() {
+	}
+
+
 	// ---------------------------------------------------------------- get
 
-	protected int hitCount;
-	protected int missCount;
+	protected final CacheStatsCounter stats = new CacheStatsCounter();
 
 	/**
-	 * Returns hit count.
+	 * Returns hit count, limited to the <code>int</code> range.
+	 * @see #getStats()
 	 */
 	public int getHitCount() {
-		return hitCount;
+		return toInt(stats.getHitCount());
 	}
 
 	/**
-	 * Returns miss count.
+	 * Returns miss count, limited to the <code>int</code> range.
+	 * @see #getStats()
 	 */
 	public int getMissCount() {
-		return missCount;
+		return toInt(stats.getMissCount());
+	}
+
+	private static int toInt(long value) {
+		return value > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) value;
 	}
 
 	/**
@@ -151,18 +185,19 @@ public abstract class AbstractCacheMap<K,V> implements Cache<K,V> {
 		try {
 			CacheObject<K,V> co = cacheMap.get(key);
 			if (co == null) {
-				missCount++;
+				stats.recordMiss();
 				return null;
 			}
 			if (co.isExpired() == true) {
 				// remove(key);		// can't upgrade the lock
 				cacheMap.remove(key);
+				stats.recordRemoval(RemovalCause.EXPIRED);
 
-				missCount++;
+				stats.recordMiss();
 				return null;
 			}
 
-			hitCount++;
+			stats.recordHit();
 			return co.getObject();
 		}
 		finally {
@@ -215,7 +250,11 @@ public abstract class AbstractCacheMap<K,V> implements Cache<K,V> {
 	public void remove(K key) {
 		writeLock.lock();
 		try {
-			cacheMap.remove(key);
+			CacheObject<K,V> co = cacheMap.remove(key);
+			if (co != null) {
+				stats.recordRemoval(RemovalCause.EXPLICIT);
+				afterRemoveObject(co);
+			}
 		}
 		finally {
 			writeLock.unlock();
@@ -229,6 +268,7 @@ public abstract class AbstractCacheMap<K,V> implements Cache<K,V> {
 		writeLock.lock();
 		try {
 			cacheMap.clear();
+			afterClear();
 		}
 		finally {
 			writeLock.unlock();
@@ -249,4 +289,12 @@ public abstract class AbstractCacheMap<K,V> implements Cache<K,V> {
 	public boolean isEmpty() {
 		return size() == 0;
 	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public CacheStats getStats() {
+		int size = size();
+		return stats.snapshot(size, size);
+	}
 }
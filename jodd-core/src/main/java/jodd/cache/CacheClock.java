@@ -0,0 +1,155 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.cache;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Coarse cached clock used by caches. Current time is updated by
+ * a single daemon thread every {@link #RESOLUTION} milliseconds,
+ * so reading the time on cache hot path is just a volatile read
+ * instead of the system call. Time may be behind the system time
+ * for at most the resolution.
+ * <p>
+ * Ticker thread runs while there is at least one {@link #register(Object) registered}
+ * cache that uses timeouts. Caches are referenced weakly, so ticker stops
+ * by itself when all of them are garbage collected and it does not outlive the
+ * application, e.g. when web application is undeployed. Ticker may be also
+ * stopped explicitly with {@link #stop()}. While ticker is not running,
+ * clock returns the system time.
+ */
+public class CacheClock {
+
+	/**
+	 * Clock resolution in milliseconds.
+	 */
+	public static final long RESOLUTION = 10;
+
+	/**
+	 * Time in milliseconds between two checks if registered caches are still alive.
+	 */
+	public static final long CHECK_INTERVAL = 1000;
+
+	private static final List<WeakReference<Object>> owners = new ArrayList<WeakReference<Object>>();
+	private static volatile long now = System.currentTimeMillis();
+	private static volatile Ticker ticker;
+
+	/**
+	 * Returns current time in milliseconds.
+	 */
+	public static long currentTimeMillis() {
+		if (ticker == null) {
+			return System.currentTimeMillis();
+		}
+		return now;
+	}
+
+	/**
+	 * Registers cache that uses the clock and starts the ticker
+	 * thread, if not already running. Ticker runs while any
+	 * registered cache is reachable.
+	 */
+	public static synchronized void register(Object owner) {
+		boolean registered = false;
+		for (WeakReference<Object> ref : owners) {
+			if (ref.get() == owner) {
+				registered = true;
+				break;
+			}
+		}
+		if (registered == false) {
+			owners.add(new WeakReference<Object>(owner));
+		}
+		start();
+	}
+
+	/**
+	 * Starts the ticker thread, if not already running. Ticker
+	 * stops soon if there is no registered cache.
+	 */
+	public static synchronized void start() {
+		if (ticker != null) {
+			return;
+		}
+		now = System.currentTimeMillis();
+
+		Ticker newTicker = new Ticker();
+		Thread thread = new Thread(newTicker, "jodd-cache-clock");
+		thread.setDaemon(true);
+		thread.setContextClassLoader(null);
+		newTicker.thread = thread;
+		ticker = newTicker;
+		thread.start();
+	}
+
+	/**
+	 * Stops the ticker thread and forgets registered caches. Clock
+	 * falls back to the system time until the next registration.
+	 */
+	public static synchronized void stop() {
+		owners.clear();
+		Ticker oldTicker = ticker;
+		ticker = null;
+		if (oldTicker != null) {
+			oldTicker.thread.interrupt();
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if ticker thread is running.
+	 */
+	public static boolean isRunning() {
+		return ticker != null;
+	}
+
+	/**
+	 * Removes collected caches and stops the ticker if it is still
+	 * the current one and there is no registered cache left.
+	 */
+	private static synchronized boolean stopUnused(Ticker unusedTicker) {
+		if (ticker != unusedTicker) {
+			return true;
+		}
+		Iterator<WeakReference<Object>> iterator = owners.iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().get() == null) {
+				iterator.remove();
+			}
+		}
+		if (owners.isEmpty() == false) {
+			return false;
+		}
+		ticker = null;
+		return true;
+	}
+
+	/**
+	 * Updates the time until stopped or unused.
+	 */
+	private static class Ticker implements Runnable {
+		Thread thread;
+
+		public void run() {
+			long ticks = 0;
+			long checkTicks = CHECK_INTERVAL / RESOLUTION;
+
+			while (ticker == this) {
+				now = System.currentTimeMillis();
+				if (++ticks >= checkTicks) {
+					if (stopUnused(this)) {
+						break;
+					}
+					ticks = 0;
+				}
+				try {
+					Thread.sleep(RESOLUTION);
+				} catch (InterruptedException iex) {
+					break;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,59 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.cache;
+
+/**
+ * Cached entry of the {@link SegmentedCache}. Key, value and timeout are
+ * immutable, while last access time is updated without locking.
+ * Access count and links are used by segment eviction policies
+ * and are guarded by the segment lock.
+ */
+class CacheEntry<K, V> {
+
+	CacheEntry(K key, V value, long ttl, int weight) {
+		this.key = key;
+		this.value = value;
+		this.ttl = ttl;
+		this.weight = weight;
+		this.writeTime = CacheClock.currentTimeMillis();
+		this.lastAccess = writeTime;
+	}
+
+	final K key;
+	final V value;
+	final long ttl;				// objects timeout (time-to-live), 0 = no timeout
+	final int weight;			// estimated weight
+	final long writeTime;		// time of creation
+	volatile long lastAccess;	// time of last access
+
+	long accessCount;			// number of accesses, guarded by segment lock
+	int queue;					// policy queue marker, guarded by segment lock
+	CacheEntry<K, V> prev;		// guarded by segment lock
+	CacheEntry<K, V> next;		// guarded by segment lock
+	TimingWheel.Timeout<CacheEntry<K, V>> timeout;	// expiration, guarded by segment lock
+
+	/**
+	 * Returns <code>true</code> if entry is expired at given time.
+	 */
+	boolean isExpired(long now) {
+		if (ttl == 0) {
+			return false;
+		}
+		return lastAccess + ttl < now;
+	}
+
+	/**
+	 * Returns the time when entry expires, if not accessed before.
+	 */
+	long expirationTime() {
+		return lastAccess + ttl;
+	}
+
+	/**
+	 * Returns <code>true</code> if entry is linked in some
+	 * policy list, i.e. if it is still in the cache.
+	 */
+	boolean isLinked() {
+		return prev != null;
+	}
+}
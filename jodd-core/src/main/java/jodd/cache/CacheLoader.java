@@ -0,0 +1,16 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.cache;
+
+/**
+ * Loads values of the {@link LoadingCache}.
+ */
+public interface CacheLoader<K, V> {
+
+	/**
+	 * Loads the value for given key. Returns <code>null</code>
+	 * if value doesn't exist; <code>null</code> values are
+	 * not cached.
+	 */
+	V load(K key) throws Exception;
+}
@@ -0,0 +1,23 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.cache;
+
+import jodd.exception.UncheckedException;
+
+/**
+ * Thrown when {@link CacheLoader} fails to load the value.
+ */
+public class CacheLoaderException extends UncheckedException {
+
+	public CacheLoaderException(Throwable t) {
+		super(t);
+	}
+
+	public CacheLoaderException(String message) {
+		super(message);
+	}
+
+	public CacheLoaderException(String message, Throwable t) {
+		super(message, t);
+	}
+}
@@ -0,0 +1,132 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.cache;
+
+import jodd.exception.UncheckedException;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Exposes {@link StatsCache} statistics over JMX. Monitor is optional and
+ * has to be {@link #register(StatsCache, String) registered} explicitly.
+ * Each attribute read takes a fresh statistics snapshot.
+ */
+public class CacheMonitor implements CacheMonitorMBean {
+
+	/**
+	 * JMX domain of cache monitors.
+	 */
+	public static final String DOMAIN = "jodd.cache";
+
+	protected final StatsCache<?, ?> cache;
+
+	public CacheMonitor(StatsCache<?, ?> cache) {
+		this.cache = cache;
+	}
+
+	// ---------------------------------------------------------------- register
+
+	/**
+	 * Registers monitor for the cache in the platform MBean server
+	 * under the given name. Returns registered object name.
+	 */
+	public static ObjectName register(StatsCache<?, ?> cache, String name) {
+		try {
+			ObjectName objectName = new ObjectName(DOMAIN + ":type=Cache,name=" + ObjectName.quote(name));
+			MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+			if (mBeanServer.isRegistered(objectName)) {
+				mBeanServer.unregisterMBean(objectName);
+			}
+			mBeanServer.registerMBean(new CacheMonitor(cache), objectName);
+			return objectName;
+		} catch (JMException jmex) {
+			throw new UncheckedException("Unable to register cache monitor: " + name, jmex);
+		}
+	}
+
+	/**
+	 * Unregisters cache monitor. Does nothing if monitor is not registered.
+	 */
+	public static void unregister(ObjectName objectName) {
+		MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+		try {
+			if (mBeanServer.isRegistered(objectName)) {
+				mBeanServer.unregisterMBean(objectName);
+			}
+		} catch (JMException ignore) {
+		}
+	}
+
+	// ---------------------------------------------------------------- stats
+
+	public long getHitCount() {
+		return cache.getStats().getHitCount();
+	}
+
+	public long getMissCount() {
+		return cache.getStats().getMissCount();
+	}
+
+	public double getHitRate() {
+		return cache.getStats().getHitRate();
+	}
+
+	public long getExpiredCount() {
+		return cache.getStats().getRemovalCount(RemovalCause.EXPIRED);
+	}
+
+	public long getSizeEvictionCount() {
+		return cache.getStats().getRemovalCount(RemovalCause.SIZE);
+	}
+
+	public long getExplicitRemovalCount() {
+		return cache.getStats().getRemovalCount(RemovalCause.EXPLICIT);
+	}
+
+	public long getReplacedCount() {
+		return cache.getStats().getRemovalCount(RemovalCause.REPLACED);
+	}
+
+	public long getLoadSuccessCount() {
+		return cache.getStats().getLoadSuccessCount();
+	}
+
+	public long getLoadFailureCount() {
+		return cache.getStats().getLoadFailureCount();
+	}
+
+	public double getAverageLoadTime() {
+		return cache.getStats().getAverageLoadTime();
+	}
+
+	public long getLoadTime99Percentile() {
+		return cache.getStats().getLoadTimePercentile(99);
+	}
+
+	public long getMaxLoadTime() {
+		return cache.getStats().getMaxLoadTime();
+	}
+
+	public int getSize() {
+		return cache.size();
+	}
+
+	public int getCacheSize() {
+		return cache.getCacheSize();
+	}
+
+	public long getWeight() {
+		return cache.getStats().getWeight();
+	}
+
+	public int prune() {
+		return cache.prune();
+	}
+
+	public void clear() {
+		cache.clear();
+	}
+}
@@ -0,0 +1,50 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.cache;
+
+/**
+ * JMX management interface of the {@link CacheMonitor}.
+ * Times are in nanoseconds.
+ */
+public interface CacheMonitorMBean {
+
+	long getHitCount();
+
+	long getMissCount();
+
+	double getHitRate();
+
+	long getExpiredCount();
+
+	long getSizeEvictionCount();
+
+	long getExplicitRemovalCount();
+
+	long getReplacedCount();
+
+	long getLoadSuccessCount();
+
+	long getLoadFailureCount();
+
+	double getAverageLoadTime();
+
+	long getLoadTime99Percentile();
+
+	long getMaxLoadTime();
+
+	int getSize();
+
+	int getCacheSize();
+
+	long getWeight();
+
+	/**
+	 * Prunes the cache.
+	 */
+	int prune();
+
+	/**
+	 * Clears the cache.
+	 */
+	void clear();
+}
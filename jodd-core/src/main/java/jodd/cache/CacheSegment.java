@@ -0,0 +1,384 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Single segment of the {@link SegmentedCache}. Entries are stored in
+ * concurrent map, so reads do not lock. Reads are only recorded in
+ * the lossy ring buffer, which is drained into the eviction policy
+ * when buffer fills up or on the next write. All writes and policy
+ * bookkeeping are guarded by the segment lock.
+ * <p>
+ * Entries with timeout are scheduled in the {@link TimingWheel},
+ * created on first such entry, so expired entries are removed
+ * incrementally, without walking the whole segment.
+ * <p>
+ * Subclasses implement the eviction policy.
+ */
+abstract class CacheSegment<K, V> extends ReentrantLock {
+
+	static final int READ_BUFFER_SIZE = 32;
+	static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+
+	protected final SegmentedCache<K, V> cache;
+	protected final int capacity;
+	protected final ConcurrentHashMap<K, CacheEntry<K, V>> map;
+
+	private final AtomicReferenceArray<CacheEntry<K, V>> readBuffer;
+	private final AtomicInteger readCounter;
+	private TimingWheel<CacheEntry<K, V>> expirationWheel;
+	protected volatile long weight;		// total weight, guarded by segment lock
+	protected long maxWeight;			// max total weight, 0 = no limit
+
+	protected CacheSegment(SegmentedCache<K, V> cache, int capacity) {
+		this.cache = cache;
+		this.capacity = capacity;
+		this.map = new ConcurrentHashMap<K, CacheEntry<K, V>>(capacity == 0 ? 16 : capacity + 1);
+		this.readBuffer = new AtomicReferenceArray<CacheEntry<K, V>>(READ_BUFFER_SIZE);
+		this.readCounter = new AtomicInteger();
+	}
+
+	// ---------------------------------------------------------------- policy
+
+	/**
+	 * Invoked when entry is added to the segment.
+	 */
+	protected abstract void onInsert(CacheEntry<K, V> entry);
+
+	/**
+	 * Invoked for recorded entry access.
+	 */
+	protected abstract void onAccess(CacheEntry<K, V> entry);
+
+	/**
+	 * Invoked when entry is removed from the segment.
+	 * Entry has to be unlinked from the policy lists.
+	 */
+	protected abstract void onRemove(CacheEntry<K, V> entry);
+
+	/**
+	 * Evicts one or more entries to make room for a new entry.
+	 * Returns number of evicted entries, <code>0</code>
+	 * if nothing could be evicted.
+	 */
+	protected abstract int evict(long now);
+
+	/**
+	 * Resets the policy state.
+	 */
+	protected abstract void onClear();
+
+	// ---------------------------------------------------------------- access
+
+	/**
+	 * Returns non-expired entry or <code>null</code>.
+	 */
+	CacheEntry<K, V> get(K key) {
+		CacheEntry<K, V> entry = map.get(key);
+		if (entry == null) {
+			return null;
+		}
+		long now = CacheClock.currentTimeMillis();
+		if (entry.isExpired(now)) {
+			lock();
+			try {
+				if (map.remove(key, entry)) {
+					removeEntry(entry, RemovalCause.EXPIRED);
+				}
+			}
+			finally {
+				unlock();
+			}
+			return null;
+		}
+		entry.lastAccess = now;
+		recordRead(entry);
+		return entry;
+	}
+
+	/**
+	 * Records the read in the ring buffer. Buffer is drained when
+	 * full, but only if segment lock is available.
+	 */
+	private void recordRead(CacheEntry<K, V> entry) {
+		int index = readCounter.getAndIncrement() & READ_BUFFER_MASK;
+		readBuffer.set(index, entry);
+		if (index == READ_BUFFER_MASK) {
+			if (tryLock()) {
+				try {
+					drainReadBuffer();
+					expireEntries(CacheClock.currentTimeMillis());
+				}
+				finally {
+					unlock();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Applies recorded reads to the eviction policy.
+	 * Must be invoked while holding the lock.
+	 */
+	protected void drainReadBuffer() {
+		for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+			CacheEntry<K, V> entry = readBuffer.getAndSet(i, null);
+			if ((entry != null) && entry.isLinked()) {
+				onAccess(entry);
+			}
+		}
+	}
+
+	/**
+	 * Puts new entry in the segment, evicting entries when segment is full.
+	 * Entry heavier than the segment max weight is not cached at all,
+	 * but it still replaces the existing entry.
+	 */
+	void put(CacheEntry<K, V> entry) {
+		lock();
+		try {
+			drainReadBuffer();
+
+			long now = CacheClock.currentTimeMillis();
+			expireEntries(now);
+
+			CacheEntry<K, V> old = map.get(entry.key);
+			if (old != null) {
+				map.remove(entry.key);
+				removeEntry(old, RemovalCause.REPLACED);
+			}
+			if ((maxWeight != 0) && (entry.weight > maxWeight)) {
+				cache.stats.recordRemoval(RemovalCause.SIZE);
+				return;
+			}
+			while (isOverflown(1, entry.weight)) {
+				if (evict(now) == 0) {
+					break;
+				}
+			}
+			map.put(entry.key, entry);
+			weight += entry.weight;
+			onInsert(entry);
+
+			if (entry.ttl != 0) {
+				entry.timeout = expirationWheel().schedule(entry, entry.expirationTime());
+			}
+		}
+		finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * Removes an entry from the segment.
+	 */
+	void remove(K key) {
+		lock();
+		try {
+			CacheEntry<K, V> entry = map.remove(key);
+			if (entry != null) {
+				removeEntry(entry, RemovalCause.EXPLICIT);
+			}
+		}
+		finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * Removes expired entries and, if segment is still
+	 * over the capacity, evicts entries.
+	 */
+	int prune() {
+		lock();
+		try {
+			drainReadBuffer();
+
+			long now = CacheClock.currentTimeMillis();
+			int count = expireEntries(now);
+
+			while (isOverflown(0, 0)) {
+				int evicted = evict(now);
+				if (evicted == 0) {
+					break;
+				}
+				count += evicted;
+			}
+			return count;
+		}
+		finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * Clears the segment.
+	 */
+	void clear() {
+		lock();
+		try {
+			for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+				readBuffer.set(i, null);
+			}
+			map.clear();
+			weight = 0;
+			onClear();
+			if (expirationWheel != null) {
+				expirationWheel.clear();
+			}
+		}
+		finally {
+			unlock();
+		}
+	}
+
+	// ---------------------------------------------------------------- util
+
+	/**
+	 * Returns <code>true</code> if segment would exceed its capacity
+	 * or max weight after adding given number of entries and weight.
+	 */
+	protected boolean isOverflown(int newEntries, long newWeight) {
+		if ((capacity != 0) && (map.size() + newEntries > capacity)) {
+			return true;
+		}
+		return (maxWeight != 0) && (weight + newWeight > maxWeight);
+	}
+
+	/**
+	 * Evicts an entry from the segment by the cache policy.
+	 * Must be invoked while holding the lock.
+	 */
+	protected void evictEntry(CacheEntry<K, V> entry) {
+		evictEntry(entry, RemovalCause.SIZE);
+	}
+
+	/**
+	 * Evicts an entry from the segment for given cause.
+	 * Must be invoked while holding the lock.
+	 */
+	protected void evictEntry(CacheEntry<K, V> entry, RemovalCause cause) {
+		if (map.remove(entry.key, entry)) {
+			removeEntry(entry, cause);
+		}
+	}
+
+	/**
+	 * Removes entry from the policy and notifies the cache.
+	 * Entry must be already removed from the map.
+	 */
+	private void removeEntry(CacheEntry<K, V> entry, RemovalCause cause) {
+		if (entry.timeout != null) {
+			expirationWheel.cancel(entry.timeout);
+		}
+		weight -= entry.weight;
+		onRemove(entry);
+		cache.stats.recordRemoval(cause);
+		cache.onRemove(entry.key, entry.value);
+	}
+
+	// ---------------------------------------------------------------- expiration
+
+	private int expiredCount;
+
+	/**
+	 * Advances the expiration wheel and removes expired entries.
+	 * Returns number of removed entries. Must be invoked while holding the lock.
+	 */
+	protected int expireEntries(long now) {
+		if (expirationWheel == null) {
+			return 0;
+		}
+		expiredCount = 0;
+		expirationWheel.advance(now);
+		return expiredCount;
+	}
+
+	/**
+	 * Returns expiration wheel, creates one if needed.
+	 */
+	private TimingWheel<CacheEntry<K, V>> expirationWheel() {
+		if (expirationWheel == null) {
+			CacheClock.register(cache);
+			expirationWheel = new TimingWheel<CacheEntry<K, V>>(CacheClock.RESOLUTION, CacheClock.currentTimeMillis()) {
+				@Override
+				protected void onExpire(Timeout<CacheEntry<K, V>> timeout) {
+					CacheEntry<K, V> entry = timeout.getElement();
+					if (entry.isExpired(CacheClock.currentTimeMillis())) {
+						if (map.remove(entry.key, entry)) {
+							removeEntry(entry, RemovalCause.EXPIRED);
+							expiredCount++;
+						}
+					} else {
+						// entry was accessed in the meantime
+						reschedule(timeout, entry.expirationTime());
+					}
+				}
+			};
+		}
+		return expirationWheel;
+	}
+
+	/**
+	 * Creates new sentinel of a circular double-linked list.
+	 */
+	protected static <K, V> CacheEntry<K, V> newSentinel() {
+		CacheEntry<K, V> sentinel = new CacheEntry<K, V>(null, null, 0, 0);
+		sentinel.prev = sentinel;
+		sentinel.next = sentinel;
+		return sentinel;
+	}
+
+	/**
+	 * Links entry at the end of the list.
+	 */
+	protected static <K, V> void linkLast(CacheEntry<K, V> sentinel, CacheEntry<K, V> entry) {
+		CacheEntry<K, V> last = sentinel.prev;
+		entry.prev = last;
+		entry.next = sentinel;
+		last.next = entry;
+		sentinel.prev = entry;
+	}
+
+	/**
+	 * Unlinks entry from the list.
+	 */
+	protected static <K, V> void unlink(CacheEntry<K, V> entry) {
+		if (entry.prev == null) {
+			return;
+		}
+		entry.prev.next = entry.next;
+		entry.next.prev = entry.prev;
+		entry.prev = null;
+		entry.next = null;
+	}
+
+	/**
+	 * Unlinks all entries from the list, so stale
+	 * recorded reads are ignored.
+	 */
+	protected static <K, V> void clearList(CacheEntry<K, V> sentinel) {
+		CacheEntry<K, V> entry = sentinel.next;
+		while (entry != sentinel) {
+			CacheEntry<K, V> next = entry.next;
+			entry.prev = null;
+			entry.next = null;
+			entry = next;
+		}
+		sentinel.prev = sentinel;
+		sentinel.next = sentinel;
+	}
+
+	/**
+	 * Moves linked entry to the end of the list.
+	 */
+	protected static <K, V> void moveToLast(CacheEntry<K, V> sentinel, CacheEntry<K, V> entry) {
+		unlink(entry);
+		linkLast(sentinel, entry);
+	}
+}
@@ -0,0 +1,182 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.cache;
+
+import jodd.util.LatencyHistogram;
+
+/**
+ * Immutable snapshot of cache statistics.
+ * @see CacheStatsCounter
+ */
+public class CacheStats {
+
+	protected final long hitCount;
+	protected final long missCount;
+	protected final long[] removalCounts;
+	protected final long loadSuccessCount;
+	protected final long loadFailureCount;
+	protected final long totalLoadTime;
+	protected final long maxLoadTime;
+	protected final long[] loadTimeHistogram;
+	protected final int size;
+	protected final long weight;
+
+	public CacheStats(
+			long hitCount, long missCount, long[] removalCounts,
+			long loadSuccessCount, long loadFailureCount,
+			long totalLoadTime, long maxLoadTime, long[] loadTimeHistogram,
+			int size, long weight) {
+
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.removalCounts = removalCounts;
+		this.loadSuccessCount = loadSuccessCount;
+		this.loadFailureCount = loadFailureCount;
+		this.totalLoadTime = totalLoadTime;
+		this.maxLoadTime = maxLoadTime;
+		this.loadTimeHistogram = loadTimeHistogram;
+		this.size = size;
+		this.weight = weight;
+	}
+
+	// ---------------------------------------------------------------- access
+
+	/**
+	 * Returns number of cache hits.
+	 */
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * Returns number of cache misses.
+	 */
+	public long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Returns total number of requests, i.e. hits and misses.
+	 */
+	public long getRequestCount() {
+		return hitCount + missCount;
+	}
+
+	/**
+	 * Returns hit ratio, between <code>0</code> and <code>1</code>.
+	 * Returns <code>1</code> if there were no requests.
+	 */
+	public double getHitRate() {
+		long requestCount = getRequestCount();
+		if (requestCount == 0) {
+			return 1.0;
+		}
+		return (double) hitCount / requestCount;
+	}
+
+	/**
+	 * Returns number of removed objects for given cause.
+	 */
+	public long getRemovalCount(RemovalCause cause) {
+		return removalCounts[cause.ordinal()];
+	}
+
+	/**
+	 * Returns number of objects evicted by the cache policy
+	 * or because of expiration.
+	 */
+	public long getEvictionCount() {
+		return getRemovalCount(RemovalCause.SIZE) + getRemovalCount(RemovalCause.EXPIRED);
+	}
+
+	/**
+	 * Returns number of successful loads.
+	 */
+	public long getLoadSuccessCount() {
+		return loadSuccessCount;
+	}
+
+	/**
+	 * Returns number of failed loads.
+	 */
+	public long getLoadFailureCount() {
+		return loadFailureCount;
+	}
+
+	/**
+	 * Returns total time spent in loading, in nanoseconds.
+	 */
+	public long getTotalLoadTime() {
+		return totalLoadTime;
+	}
+
+	/**
+	 * Returns the longest load time, in nanoseconds.
+	 */
+	public long getMaxLoadTime() {
+		return maxLoadTime;
+	}
+
+	/**
+	 * Returns average load time in nanoseconds.
+	 */
+	public double getAverageLoadTime() {
+		long loadCount = loadSuccessCount + loadFailureCount;
+		if (loadCount == 0) {
+			return 0;
+		}
+		return (double) totalLoadTime / loadCount;
+	}
+
+	/**
+	 * Returns estimated load time percentile in nanoseconds.
+	 * @see LatencyHistogram#percentile(long[], double)
+	 */
+	public long getLoadTimePercentile(double percent) {
+		return LatencyHistogram.percentile(loadTimeHistogram, percent);
+	}
+
+	/**
+	 * Returns load time histogram.
+	 * @see LatencyHistogram
+	 */
+	public long[] getLoadTimeHistogram() {
+		return loadTimeHistogram.clone();
+	}
+
+	/**
+	 * Returns cache size at the moment of snapshot.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Returns estimated weight of cached objects at the moment
+	 * of snapshot. If cache doesn't weight its objects, weight
+	 * equals the cache size.
+	 */
+	public long getWeight() {
+		return weight;
+	}
+
+	// ---------------------------------------------------------------- toString
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("CacheStats{hits=").append(hitCount);
+		sb.append(", misses=").append(missCount);
+		sb.append(", hitRate=").append(getHitRate());
+		for (RemovalCause cause : RemovalCause.values()) {
+			sb.append(", ").append(cause.name().toLowerCase()).append('=').append(getRemovalCount(cause));
+		}
+		sb.append(", loads=").append(loadSuccessCount);
+		sb.append(", loadFailures=").append(loadFailureCount);
+		sb.append(", averageLoadTime=").append((long) getAverageLoadTime());
+		sb.append(", size=").append(size);
+		sb.append(", weight=").append(weight);
+		sb.append('}');
+		return sb.toString();
+	}
+}
@@ -0,0 +1,113 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.cache;
+
+import jodd.util.LatencyHistogram;
+import jodd.util.StripedCounter;
+
+/**
+ * Accumulates cache statistics. Counters are striped, so recording
+ * from many threads on the cache hot path does not contend and
+ * counters do not overflow. Use {@link #snapshot(int, long)}
+ * to get current values.
+ */
+public class CacheStatsCounter {
+
+	private static final RemovalCause[] CAUSES = RemovalCause.values();
+
+	protected final StripedCounter hitCount = new StripedCounter();
+	protected final StripedCounter missCount = new StripedCounter();
+	protected final StripedCounter[] removalCounts;
+	protected final StripedCounter loadSuccessCount = new StripedCounter();
+	protected final StripedCounter loadFailureCount = new StripedCounter();
+	protected final LatencyHistogram loadTime = new LatencyHistogram();
+
+	public CacheStatsCounter() {
+		removalCounts = new StripedCounter[CAUSES.length];
+		for (int i = 0; i < CAUSES.length; i++) {
+			removalCounts[i] = new StripedCounter();
+		}
+	}
+
+	/**
+	 * Records a cache hit.
+	 */
+	public void recordHit() {
+		hitCount.increment();
+	}
+
+	/**
+	 * Records a cache miss.
+	 */
+	public void recordMiss() {
+		missCount.increment();
+	}
+
+	/**
+	 * Records removal of cached object.
+	 */
+	public void recordRemoval(RemovalCause cause) {
+		removalCounts[cause.ordinal()].increment();
+	}
+
+	/**
+	 * Records successful load of a new value.
+	 */
+	public void recordLoadSuccess(long loadTimeNanos) {
+		loadSuccessCount.increment();
+		loadTime.record(loadTimeNanos);
+	}
+
+	/**
+	 * Records failed load.
+	 */
+	public void recordLoadFailure(long loadTimeNanos) {
+		loadFailureCount.increment();
+		loadTime.record(loadTimeNanos);
+	}
+
+	/**
+	 * Returns the number of hits.
+	 */
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	/**
+	 * Returns the number of misses.
+	 */
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	/**
+	 * Creates statistics snapshot.
+	 * @param size current cache size
+	 * @param weight current cache estimated weight
+	 */
+	public CacheStats snapshot(int size, long weight) {
+		long[] removals = new long[CAUSES.length];
+		for (int i = 0; i < CAUSES.length; i++) {
+			removals[i] = removalCounts[i].sum();
+		}
+		return new CacheStats(
+				hitCount.sum(), missCount.sum(), removals,
+				loadSuccessCount.sum(), loadFailureCount.sum(),
+				loadTime.getTotalTime(), loadTime.getMaxTime(), loadTime.getBucketCounts(),
+				size, weight);
+	}
+
+	/**
+	 * Resets all counters.
+	 */
+	public void reset() {
+		hitCount.reset();
+		missCount.reset();
+		for (StripedCounter removalCount : removalCounts) {
+			removalCount.reset();
+		}
+		loadSuccessCount.reset();
+		loadFailureCount.reset();
+		loadTime.reset();
+	}
+}
@@ -47,6 +47,7 @@ public class FIFOCache<K, V> extends AbstractCacheMap<K, V> {
 			CacheObject<K,V> co = values.next();
 			if (co.isExpired() == true) {
 				values.remove();
+				stats.recordRemoval(RemovalCause.EXPIRED);
 				count++;
 			}
 			if (first == null) {
@@ -56,6 +57,7 @@ public class FIFOCache<K, V> extends AbstractCacheMap<K, V> {
 		if (isFull()) {
 			if (first != null) {
 				cacheMap.remove(first.key);
+				stats.recordRemoval(RemovalCause.SIZE);
 				count++;
 			}
 		}
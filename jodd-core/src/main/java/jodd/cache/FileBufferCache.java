@@ -0,0 +1,253 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.cache;
+
+import jodd.io.StreamUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Files cache that, unlike {@link FileLFUCache}, keeps files content off the
+ * heap, in memory-mapped or direct byte buffers. Cache is bounded by the total
+ * size of cached files, and cached content is invalidated when file is
+ * modified. Content is returned as read-only buffer views, that can be written
+ * to the output channel without copying the content to the heap.
+ * <p>
+ * Files are read by the {@link SegmentedLoadingCache}, so concurrent requests
+ * for the same missing file read it only once.
+ * <p>
+ * Mapped buffers are released by the garbage collector, after they are evicted
+ * and all returned views are not used anymore.
+ */
+public class FileBufferCache {
+
+	protected final SegmentedLFUCache<File, CachedFile> cache;
+	protected final SegmentedLoadingCache<File, CachedFile> loadingCache;
+	protected final long maxSize;
+	protected final int maxFileSize;
+	protected final boolean mapped;
+
+	/**
+	 * Creates memory-mapped files cache with specified size. Sets
+	 * {@link #getMaxFileSize() max available file size} to half of this value.
+	 */
+	public FileBufferCache(int maxSize) {
+		this(maxSize, maxSize / 2, 0, true);
+	}
+
+	public FileBufferCache(long maxSize, int maxFileSize) {
+		this(maxSize, maxFileSize, 0, true);
+	}
+
+	/**
+	 * Creates new files buffer cache.
+	 * @param maxSize total cache size in bytes
+	 * @param maxFileSize max available file size in bytes, may be 0
+	 * @param timeout timeout, may be 0
+	 * @param mapped if <code>true</code> files are memory-mapped, otherwise read in direct buffers
+	 */
+	public FileBufferCache(long maxSize, int maxFileSize, long timeout, boolean mapped) {
+		this.cache = new SegmentedLFUCache<File, CachedFile>(0, maxSize, timeout, 1) {
+			@Override
+			protected int weigh(File key, CachedFile cachedFile) {
+				return cachedFile.buffer.capacity();
+			}
+		};
+		this.loadingCache = new SegmentedLoadingCache<File, CachedFile>(cache, new CacheLoader<File, CachedFile>() {
+			public CachedFile load(File file) throws IOException {
+				long lastModified = file.lastModified();
+				ByteBuffer buffer = readFile(file);
+				return new CachedFile(buffer, lastModified, buffer.capacity());
+			}
+		});
+		this.maxSize = maxSize;
+		this.maxFileSize = maxFileSize;
+		this.mapped = mapped;
+	}
+
+	/**
+	 * Cached file content with the file state at the time of reading.
+	 */
+	protected static class CachedFile {
+
+		protected final ByteBuffer buffer;
+		protected final long lastModified;
+		protected final long length;
+
+		protected CachedFile(ByteBuffer buffer, long lastModified, long length) {
+			this.buffer = buffer;
+			this.lastModified = lastModified;
+			this.length = length;
+		}
+
+		/**
+		 * Returns <code>true</code> if file has been modified after it was read.
+		 */
+		protected boolean isModified(File file) {
+			return (file.lastModified() != lastModified) || (file.length() != length);
+		}
+	}
+
+	// ---------------------------------------------------------------- properties
+
+	/**
+	 * Returns max cache size in bytes.
+	 */
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Returns actually used size in bytes.
+	 */
+	public long getUsedSize() {
+		return cache.getWeight();
+	}
+
+	/**
+	 * Returns maximum allowed file size that can be added to the cache.
+	 * Files larger than this value will be not added, even if there is
+	 * enough room.
+	 */
+	public int getMaxFileSize() {
+		return maxFileSize;
+	}
+
+	/**
+	 * Returns <code>true</code> if files are memory-mapped.
+	 */
+	public boolean isMapped() {
+		return mapped;
+	}
+
+	/**
+	 * Returns number of cached files.
+	 */
+	public int getCachedFilesCount() {
+		return cache.size();
+	}
+
+	/**
+	 * Returns timeout.
+	 */
+	public long getCacheTimeout() {
+		return cache.getCacheTimeout();
+	}
+
+	/**
+	 * Returns cache statistics.
+	 */
+	public CacheStats getStats() {
+		return cache.getStats();
+	}
+
+	/**
+	 * Removes file from the cache.
+	 */
+	public void remove(File file) {
+		cache.remove(file);
+	}
+
+	/**
+	 * Clears the cache.
+	 */
+	public void clear() {
+		cache.clear();
+	}
+
+	// ---------------------------------------------------------------- get
+
+	public ByteBuffer getFileBuffer(String fileName) throws IOException {
+		return getFileBuffer(new File(fileName));
+	}
+
+	/**
+	 * Returns read-only view of the cached file content. Each call returns
+	 * a new view, so its position and limit may be freely changed.
+	 */
+	public ByteBuffer getFileBuffer(File file) throws IOException {
+		if ((maxFileSize != 0) && (file.length() > maxFileSize)) {
+			// don't cache files that size exceed max allowed file size
+			return readFile(file).asReadOnlyBuffer();
+		}
+
+		// if used size > total, least frequently used files are evicted
+		CachedFile cachedFile = loadFile(file);
+		if (cachedFile.isModified(file)) {
+			cache.remove(file);
+			cachedFile = loadFile(file);
+		}
+		return cachedFile.buffer.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Returns cached file or loads it.
+	 */
+	protected CachedFile loadFile(File file) throws IOException {
+		try {
+			return loadingCache.get(file);
+		} catch (CacheLoaderException clex) {
+			Throwable cause = clex.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			throw clex;
+		}
+	}
+
+	/**
+	 * Writes cached file content to the channel.
+	 */
+	public void writeTo(File file, WritableByteChannel channel) throws IOException {
+		ByteBuffer buffer = getFileBuffer(file);
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * Writes cached file content to the output stream, e.g. servlet output.
+	 */
+	public void writeTo(File file, OutputStream out) throws IOException {
+		writeTo(file, Channels.newChannel(out));
+	}
+
+	/**
+	 * Reads file content into memory-mapped or direct buffer.
+	 */
+	protected ByteBuffer readFile(File file) throws IOException {
+		if (file.exists() == false) {
+			throw new FileNotFoundException("Not found: " + file);
+		}
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel channel = in.getChannel();
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("File too big: " + file);
+			}
+			if (mapped) {
+				return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			}
+			ByteBuffer buffer = ByteBuffer.allocateDirect((int) size);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) == -1) {
+					break;
+				}
+			}
+			buffer.flip();
+			return buffer;
+		} finally {
+			StreamUtil.close(in);
+		}
+	}
+
+}
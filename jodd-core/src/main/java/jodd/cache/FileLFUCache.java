@@ -9,16 +9,17 @@ import java.io.IOException;
 
 /**
  * Files LFU cache stores files content in memory to dramatically
- * speed up performances for frequently read files.
+ * speed up performances for frequently read files. Files are loaded
+ * by the {@link SegmentedLoadingCache}, so concurrent requests for
+ * the same missing file read it only once.
  */
 public class FileLFUCache {
 
-	protected final LFUCache<File, byte[]> cache;
+	protected final SegmentedLFUCache<File, byte[]> cache;
+	protected final SegmentedLoadingCache<File, byte[]> loadingCache;
 	protected final int maxSize;
 	protected final int maxFileSize;
 
-	protected int usedSize;
-
 	/**
 	 * Creates file LFU cache with specified size. Sets
 	 * {@link #maxFileSize max available file size} to half of this value.
@@ -38,18 +39,22 @@ public class FileLFUCache {
 	 * @param timeout timeout, may be 0
 	 */
 	public FileLFUCache(int maxSize, int maxFileSize, long timeout) {
-		this.cache = new LFUCache<File, byte[]>(0, timeout) {
-			@Override
-			public boolean isFull() {
-				return usedSize > FileLFUCache.this.maxSize;
-			}
-
+		// single segment, so any file up to the max size fits in
+		this.cache = new SegmentedLFUCache<File, byte[]>(0, maxSize, timeout, 1) {
 			@Override
-			protected void onRemove(File key, byte[] cachedObject) {
-				usedSize -= cachedObject.length;
+			protected int weigh(File key, byte[] bytes) {
+				if ((FileLFUCache.this.maxFileSize != 0) && (bytes.length > FileLFUCache.this.maxFileSize)) {
+					// heavier than the cache, so file is not cached
+					return Integer.MAX_VALUE;
+				}
+				return bytes.length;
 			}
-
 		};
+		this.loadingCache = new SegmentedLoadingCache<File, byte[]>(cache, new CacheLoader<File, byte[]>() {
+			public byte[] load(File file) throws IOException {
+				return loadFile(file);
+			}
+		});
 		this.maxSize = maxSize;
 		this.maxFileSize = maxFileSize;
 	}
@@ -67,7 +72,7 @@ public class FileLFUCache {
 	 * Returns actually used size in bytes.
 	 */
 	public int getUsedSize() {
-		return usedSize;
+		return (int) cache.getWeight();
 	}
 
 	/**
@@ -98,7 +103,6 @@ public class FileLFUCache {
 	 */
 	public void clear() {
 		cache.clear();
-		usedSize = 0;
 	}
 
 	// ---------------------------------------------------------------- get
@@ -111,26 +115,23 @@ public class FileLFUCache {
 	 * Returns cached file bytes.
 	 */
 	public byte[] getFileBytes(File file) throws IOException {
-		byte[] bytes = cache.get(file);
-		if (bytes != null) {
-			return bytes;
-		}
-
-		// add file
-		bytes = FileUtil.readBytes(file);
-
-		if ((maxFileSize != 0) && (file.length() > maxFileSize)) {
-			// don't cache files that size exceed max allowed file size
-			return bytes;
+		try {
+			return loadingCache.get(file);
+		} catch (CacheLoaderException clex) {
+			Throwable cause = clex.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			throw clex;
 		}
+	}
 
-		usedSize += bytes.length;
-
-		// put file into cache
-		// if used size > total, purge() will be invoked
-		cache.put(file, bytes);
-
-		return bytes;
+	/**
+	 * Reads file bytes, when file is not in the cache. Files that
+	 * exceed max allowed file size are returned, but not cached.
+	 */
+	protected byte[] loadFile(File file) throws IOException {
+		return FileUtil.readBytes(file);
 	}
 
 }
@@ -0,0 +1,125 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.cache;
+
+/**
+ * Count-min sketch that estimates popularity of keys within a time window,
+ * using constant memory. Each key is counted with four 4-bit counters
+ * that are packed in the same <code>long</code>. Estimated frequency is
+ * the minimum of key counters, so it is never underestimated, but may be
+ * overestimated because of hash collisions.
+ * <p>
+ * Counters are aged periodically: after the number of increments reaches
+ * the sample size, all counters are halved. Therefore the sketch keeps
+ * track of recent popularity and counters can't overflow.
+ * <p>
+ * Not thread safe, should be used while holding some lock.
+ */
+class FrequencySketch {
+
+	private static final long[] SEEDS = new long[] {
+			0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+	private static final long RESET_MASK = 0x7777777777777777L;
+	private static final long ONE_MASK = 0x1111111111111111L;
+
+	private final long[] table;
+	private final int tableMask;
+	private final int sampleSize;
+	private int size;
+
+	/**
+	 * Creates sketch for given maximum number of keys.
+	 */
+	FrequencySketch(int maximumSize) {
+		if (maximumSize < 8) {
+			maximumSize = 8;
+		}
+		int tableSize = 1;
+		while (tableSize < maximumSize) {
+			tableSize <<= 1;
+		}
+		this.table = new long[tableSize];
+		this.tableMask = tableSize - 1;
+		this.sampleSize = 10 * maximumSize;
+	}
+
+	/**
+	 * Returns estimated number of occurrences of the key, up to 15.
+	 */
+	int frequency(Object key) {
+		int hash = spread(key.hashCode());
+		int start = (hash & 3) << 2;
+		int frequency = Integer.MAX_VALUE;
+		for (int i = 0; i < 4; i++) {
+			int index = indexOf(hash, i);
+			int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+			if (count < frequency) {
+				frequency = count;
+			}
+		}
+		return frequency;
+	}
+
+	/**
+	 * Increments the popularity of the key. When sample size
+	 * is reached, all counters are aged.
+	 */
+	void increment(Object key) {
+		int hash = spread(key.hashCode());
+		int start = (hash & 3) << 2;
+
+		boolean added = false;
+		for (int i = 0; i < 4; i++) {
+			int index = indexOf(hash, i);
+			added |= incrementAt(index, start + i);
+		}
+
+		if (added && (++size == sampleSize)) {
+			reset();
+		}
+	}
+
+	/**
+	 * Increments j-th counter at given table index, unless it is saturated.
+	 */
+	private boolean incrementAt(int index, int j) {
+		int offset = j << 2;
+		long mask = 0xfL << offset;
+		if ((table[index] & mask) != mask) {
+			table[index] += 1L << offset;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Halves all counters and adjusts the size.
+	 */
+	private void reset() {
+		int odd = 0;
+		for (int i = 0; i < table.length; i++) {
+			odd += Long.bitCount(table[i] & ONE_MASK);
+			table[i] = (table[i] >>> 1) & RESET_MASK;
+		}
+		size = (size >>> 1) - (odd >>> 2);
+	}
+
+	/**
+	 * Returns table index for i-th counter of the hash.
+	 */
+	private int indexOf(int hash, int i) {
+		long h = (hash + SEEDS[i]) * SEEDS[i];
+		h += h >>> 32;
+		return ((int) h) & tableMask;
+	}
+
+	/**
+	 * Applies supplemental hash function, to defend against poor hashes.
+	 */
+	private static int spread(int h) {
+		h = ((h >>> 16) ^ h) * 0x45d9f3b;
+		h = ((h >>> 16) ^ h) * 0x45d9f3b;
+		return (h >>> 16) ^ h;
+	}
+}
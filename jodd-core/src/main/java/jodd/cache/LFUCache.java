@@ -49,6 +49,7 @@ public class LFUCache<K,V> extends AbstractCacheMap<K,V> {
 			CacheObject<K,V> co = values.next();
 			if (co.isExpired() == true) {
 				values.remove();
+				stats.recordRemoval(RemovalCause.EXPIRED);
 				onRemove(co.key, co.cachedObject);
 				count++;
 				continue;
@@ -77,6 +78,7 @@ public class LFUCache<K,V> extends AbstractCacheMap<K,V> {
 				co.accessCount -= minAccessCount;
 				if (co.accessCount <= 0) {
 					values.remove();
+					stats.recordRemoval(RemovalCause.SIZE);
 					onRemove(co.key, co.cachedObject);
 					count++;					
 				}
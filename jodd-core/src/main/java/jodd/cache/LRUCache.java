@@ -52,7 +52,11 @@ public class LRUCache<K, V> extends AbstractCacheMap<K, V> {
 		if (cacheSize == 0) {
 			return false;
 		}
-		return currentSize > cacheSize;
+		if (currentSize > cacheSize) {
+			stats.recordRemoval(RemovalCause.SIZE);
+			return true;
+		}
+		return false;
 	}
 
 	// ---------------------------------------------------------------- prune
@@ -71,6 +75,7 @@ public class LRUCache<K, V> extends AbstractCacheMap<K, V> {
 			CacheObject<K,V> co = values.next();
 			if (co.isExpired() == true) {
 				values.remove();
+				stats.recordRemoval(RemovalCause.EXPIRED);
 				count++;
 			}
 		}
@@ -0,0 +1,39 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.cache;
+
+import java.util.Map;
+
+/**
+ * Cache that loads missing values using the {@link CacheLoader}.
+ * Concurrent requests for the same missing key are served
+ * by a single load.
+ */
+public interface LoadingCache<K, V> extends StatsCache<K, V> {
+
+	/**
+	 * Returns cached value or loads it if missing or expired.
+	 * Returns <code>null</code> only if loader returns <code>null</code>.
+	 * @throws CacheLoaderException if loading of the missing value fails
+	 */
+	V get(K key);
+
+	/**
+	 * Returns cached value or <code>null</code>, without loading.
+	 */
+	V getIfPresent(K key);
+
+	/**
+	 * Returns values of all given keys, loading the missing ones.
+	 * Keys with <code>null</code> value are not in the returned map.
+	 * @throws CacheLoaderException if loading of some missing value fails
+	 */
+	Map<K, V> getAll(Iterable<? extends K> keys);
+
+	/**
+	 * Reloads the value asynchronously, while old value is
+	 * still returned. If reloading fails, old value is kept and
+	 * the failure is not thrown to the callers.
+	 */
+	void refresh(K key);
+}
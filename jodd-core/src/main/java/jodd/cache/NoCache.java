@@ -8,7 +8,7 @@ import java.util.Iterator;
  * Simple no-cache implementations of {@link Cache} for situation when cache
  * needs to be quickly turned-off.
  */
-public class NoCache<K, V> implements Cache<K, V> {
+public class NoCache<K, V> implements StatsCache<K, V> {
 
 
 	public int getCacheSize() {
@@ -58,4 +58,8 @@ public class NoCache<K, V> implements Cache<K, V> {
 	public boolean isEmpty() {
 		return true;
 	}
+
+	public CacheStats getStats() {
+		return new CacheStatsCounter().snapshot(0, 0);
+	}
 }
@@ -0,0 +1,29 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.cache;
+
+/**
+ * The reason why cached object was removed from the cache.
+ */
+public enum RemovalCause {
+
+	/**
+	 * Object was removed explicitly.
+	 */
+	EXPLICIT,
+
+	/**
+	 * Object was replaced by a new value for the same key.
+	 */
+	REPLACED,
+
+	/**
+	 * Object timeout has expired.
+	 */
+	EXPIRED,
+
+	/**
+	 * Object was evicted by the cache policy, to make room for new objects.
+	 */
+	SIZE
+}
@@ -0,0 +1,384 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.cache;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Concurrent cache that is split in several independent segments (stripes).
+ * Keys are hashed to the segments, and every segment has its own lock,
+ * own capacity and own eviction bookkeeping. Therefore, writes on
+ * different segments do not contend.
+ * <p>
+ * Reads are lock-free. Accesses are recorded in per-segment buffers
+ * and applied to the eviction policy in batches, when the buffer
+ * fills up or on the next write. Eviction is done per segment, so
+ * its cost is amortized over the segment size and not the whole cache.
+ * <p>
+ * Since eviction is done per segment, cache policy is only
+ * approximated on the cache level. Small caches use just one
+ * segment and behave as their non-concurrent counterparts.
+ * <p>
+ * Implementations should provide segment with own eviction policy.
+ */
+public abstract class SegmentedCache<K, V> implements StatsCache<K, V> {
+
+	/**
+	 * Default number of concurrently updating threads.
+	 */
+	public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+	/**
+	 * Minimal segment capacity (and max weight) of size (or weight) limited cache.
+	 */
+	protected static final int MIN_SEGMENT_CAPACITY = 16;
+
+	protected final int cacheSize;		// max cache size, 0 = no limit
+	protected final long maxWeight;		// max total weight, 0 = no limit
+	protected final long timeout;		// default timeout, 0 = no timeout
+
+	protected final CacheSegment<K, V>[] segments;
+	protected final int segmentShift;
+	protected final int segmentMask;
+	protected final CacheStatsCounter stats = new CacheStatsCounter();
+
+	/**
+	 * Creates new segmented cache.
+	 * @param cacheSize max cache size, 0 for no limit
+	 * @param timeout default timeout, 0 for no timeout
+	 * @param concurrencyLevel estimated number of concurrently updating threads
+	 */
+	protected SegmentedCache(int cacheSize, long timeout, int concurrencyLevel) {
+		this(cacheSize, 0, timeout, concurrencyLevel);
+	}
+
+	/**
+	 * Creates new segmented cache bounded by the total weight of cached objects.
+	 * Max weight is split equally between segments, so the sum of their
+	 * limits equals the max weight and the cache weight never exceeds it.
+	 * @param cacheSize max cache size, 0 for no limit
+	 * @param maxWeight max total weight, 0 for no limit
+	 * @param timeout default timeout, 0 for no timeout
+	 * @param concurrencyLevel estimated number of concurrently updating threads
+	 * @see #weigh(Object, Object)
+	 */
+	@SuppressWarnings("unchecked")
+	protected SegmentedCache(int cacheSize, long maxWeight, long timeout, int concurrencyLevel) {
+		if (cacheSize != 0) {
+			int maxSegments = cacheSize / MIN_SEGMENT_CAPACITY;
+			if (concurrencyLevel > maxSegments) {
+				concurrencyLevel = maxSegments;
+			}
+		}
+		if (maxWeight != 0) {
+			long maxSegments = maxWeight / MIN_SEGMENT_CAPACITY;
+			if (concurrencyLevel > maxSegments) {
+				concurrencyLevel = (int) maxSegments;
+			}
+		}
+
+		int shift = 0;
+		int segmentsCount = 1;
+		while ((segmentsCount << 1) <= concurrencyLevel) {
+			segmentsCount <<= 1;
+			shift++;
+		}
+
+		this.cacheSize = cacheSize;
+		this.maxWeight = maxWeight;
+		this.timeout = timeout;
+		this.segmentShift = 32 - shift;
+		this.segmentMask = segmentsCount - 1;
+		this.segments = new CacheSegment[segmentsCount];
+		if (timeout != 0) {
+			CacheClock.register(this);
+		}
+
+		int segmentCapacity = 0;
+		if (cacheSize != 0) {
+			segmentCapacity = cacheSize / segmentsCount;
+		}
+		for (int i = 0; i < segmentsCount; i++) {
+			int capacity = segmentCapacity;
+			if ((cacheSize != 0) && (i < cacheSize % segmentsCount)) {
+				capacity++;
+			}
+			long segmentMaxWeight = maxWeight / segmentsCount;
+			if ((maxWeight != 0) && (i < maxWeight % segmentsCount)) {
+				segmentMaxWeight++;
+			}
+			segments[i] = createSegment(capacity);
+			segments[i].maxWeight = segmentMaxWeight;
+		}
+	}
+
+	/**
+	 * Creates segment with given capacity and own eviction policy.
+	 */
+	abstract CacheSegment<K, V> createSegment(int capacity);
+
+	/**
+	 * Returns segment for given key.
+	 */
+	protected CacheSegment<K, V> segmentFor(Object key) {
+		if (segmentMask == 0) {
+			return segments[0];
+		}
+		int hash = hash(key.hashCode());
+		return segments[(hash >>> segmentShift) & segmentMask];
+	}
+
+	/**
+	 * Spreads the hash bits, as hashes of keys
+	 * may differ only in lower bits.
+	 */
+	private static int hash(int h) {
+		h += (h << 15) ^ 0xffffcd7d;
+		h ^= (h >>> 10);
+		h += (h << 3);
+		h ^= (h >>> 6);
+		h += (h << 2) + (h << 14);
+		return h ^ (h >>> 16);
+	}
+
+	// ---------------------------------------------------------------- properties
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getCacheSize() {
+		return cacheSize;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getCacheTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * Returns number of segments.
+	 */
+	public int getSegmentsCount() {
+		return segments.length;
+	}
+
+	// ---------------------------------------------------------------- cache
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void put(K key, V object) {
+		put(key, object, timeout);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void put(K key, V object, long timeout) {
+		segmentFor(key).put(new CacheEntry<K, V>(key, object, timeout, weigh(key, object)));
+	}
+
+	/**
+	 * Returns estimated weight of cached object. Cache weight
+	 * is the sum of all weights. By default, every object
+	 * weights <code>1</code>, so weight equals the cache size.
+	 */
+	protected int weigh(K key, V object) {
+		return 1;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public V get(K key) {
+		CacheEntry<K, V> entry = getEntry(key);
+		if (entry == null) {
+			return null;
+		}
+		return entry.value;
+	}
+
+	/**
+	 * Returns non-expired entry or <code>null</code>
+	 * and records the hit or miss.
+	 */
+	CacheEntry<K, V> getEntry(K key) {
+		CacheEntry<K, V> entry = segmentFor(key).get(key);
+		if (entry == null) {
+			stats.recordMiss();
+		} else {
+			stats.recordHit();
+		}
+		return entry;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Iterator<V> iterator() {
+		return new SegmentedValuesIterator();
+	}
+
+	/**
+	 * Removes expired objects from all segments and,
+	 * if some segment is still full, evicts objects
+	 * using segment policy.
+	 */
+	public int prune() {
+		int count = 0;
+		for (CacheSegment<K, V> segment : segments) {
+			count += segment.prune();
+		}
+		return count;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean isFull() {
+		if ((maxWeight != 0) && (getWeight() >= maxWeight)) {
+			return true;
+		}
+		if (cacheSize == 0) {
+			return false;
+		}
+		return size() >= cacheSize;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void remove(K key) {
+		segmentFor(key).remove(key);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void clear() {
+		for (CacheSegment<K, V> segment : segments) {
+			segment.clear();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int size() {
+		int size = 0;
+		for (CacheSegment<K, V> segment : segments) {
+			size += segment.map.size();
+		}
+		return size;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean isEmpty() {
+		for (CacheSegment<K, V> segment : segments) {
+			if (segment.map.isEmpty() == false) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns max total weight or <code>0</code> if there is no weight limit.
+	 */
+	public long getMaxWeight() {
+		return maxWeight;
+	}
+
+	/**
+	 * Returns estimated weight of all cached objects.
+	 * @see #weigh(Object, Object)
+	 */
+	public long getWeight() {
+		long weight = 0;
+		for (CacheSegment<K, V> segment : segments) {
+			weight += segment.weight;
+		}
+		return weight;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public CacheStats getStats() {
+		return stats.snapshot(size(), getWeight());
+	}
+
+	/**
+	 * Callback method invoked when cached object is removed from the cache,
+	 * except on {@link #clear()}. Invoked while holding the segment lock.
+	 * By default does nothing.
+	 */
+	protected void onRemove(K key, V cachedObject) {
+	}
+
+	// ---------------------------------------------------------------- iterator
+
+	/**
+	 * Weakly consistent iterator over non-expired values of all segments.
+	 */
+	class SegmentedValuesIterator implements Iterator<V> {
+
+		private int segmentIndex;
+		private Iterator<CacheEntry<K, V>> iterator;
+		private CacheEntry<K, V> nextEntry;
+		private CacheEntry<K, V> lastEntry;
+
+		SegmentedValuesIterator() {
+			nextEntry();
+		}
+
+		/**
+		 * Resolves next entry. If next entry doesn't exist, it will be <code>null</code>.
+		 */
+		private void nextEntry() {
+			long now = CacheClock.currentTimeMillis();
+			while (true) {
+				if (iterator == null) {
+					if (segmentIndex == segments.length) {
+						nextEntry = null;
+						return;
+					}
+					iterator = segments[segmentIndex++].map.values().iterator();
+				}
+				while (iterator.hasNext()) {
+					nextEntry = iterator.next();
+					if (nextEntry.isExpired(now) == false) {
+						return;
+					}
+				}
+				iterator = null;
+			}
+		}
+
+		public boolean hasNext() {
+			return nextEntry != null;
+		}
+
+		public V next() {
+			if (nextEntry == null) {
+				throw new NoSuchElementException();
+			}
+			lastEntry = nextEntry;
+			nextEntry();
+			return lastEntry.value;
+		}
+
+		public void remove() {
+			if (lastEntry == null) {
+				throw new IllegalStateException();
+			}
+			SegmentedCache.this.remove(lastEntry.key);
+			lastEntry = null;
+		}
+	}
+}
@@ -0,0 +1,121 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.cache;
+
+/**
+ * Concurrent LFU (least frequently used) cache, split in segments.
+ * Frequency is calculated as access count per segment. When segment
+ * is full, expired entries and the least frequently used entries are
+ * removed and the access count of all remaining entries in the segment
+ * is decreased by the access count of the removed entry, as in {@link LFUCache}.
+ * Since search for the least frequently used entry is done only in
+ * one segment, eviction cost depends on segment size and not
+ * on the cache size. Reads are lock-free.
+ * <p>
+ * This is a concurrent alternative to {@link LFUCache}.
+ * @see SegmentedCache
+ */
+public class SegmentedLFUCache<K, V> extends SegmentedCache<K, V> {
+
+	public SegmentedLFUCache(int cacheSize) {
+		this(cacheSize, 0);
+	}
+
+	public SegmentedLFUCache(int cacheSize, long timeout) {
+		this(cacheSize, timeout, DEFAULT_CONCURRENCY_LEVEL);
+	}
+
+	/**
+	 * Creates a new segmented LFU cache.
+	 */
+	public SegmentedLFUCache(int cacheSize, long timeout, int concurrencyLevel) {
+		super(cacheSize, timeout, concurrencyLevel);
+	}
+
+	/**
+	 * Creates a new LFU cache bounded by the total weight of cached objects.
+	 * @see SegmentedCache#weigh(Object, Object)
+	 */
+	public SegmentedLFUCache(int cacheSize, long maxWeight, long timeout, int concurrencyLevel) {
+		super(cacheSize, maxWeight, timeout, concurrencyLevel);
+	}
+
+	@Override
+	CacheSegment<K, V> createSegment(int capacity) {
+		return new LFUSegment<K, V>(this, capacity);
+	}
+
+	/**
+	 * LFU segment. Entries are kept in insertion order,
+	 * frequency is tracked as access count.
+	 */
+	static class LFUSegment<K, V> extends CacheSegment<K, V> {
+
+		private final CacheEntry<K, V> head = newSentinel();
+
+		LFUSegment(SegmentedCache<K, V> cache, int capacity) {
+			super(cache, capacity);
+		}
+
+		@Override
+		protected void onInsert(CacheEntry<K, V> entry) {
+			linkLast(head, entry);
+		}
+
+		@Override
+		protected void onAccess(CacheEntry<K, V> entry) {
+			entry.accessCount++;
+		}
+
+		@Override
+		protected void onRemove(CacheEntry<K, V> entry) {
+			unlink(entry);
+		}
+
+		/**
+		 * Removes expired entries and, if there is none,
+		 * entries with the minimal access count. Access count of
+		 * remaining entries is normalized.
+		 */
+		@Override
+		protected int evict(long now) {
+			int count = 0;
+			CacheEntry<K, V> min = null;
+
+			CacheEntry<K, V> entry = head.next;
+			while (entry != head) {
+				CacheEntry<K, V> next = entry.next;
+				if (entry.isExpired(now)) {
+					evictEntry(entry, RemovalCause.EXPIRED);
+					count++;
+				} else if ((min == null) || (entry.accessCount < min.accessCount)) {
+					min = entry;
+				}
+				entry = next;
+			}
+
+			if ((count != 0) || (min == null)) {
+				return count;
+			}
+
+			long minAccessCount = min.accessCount;
+
+			entry = head.next;
+			while (entry != head) {
+				CacheEntry<K, V> next = entry.next;
+				entry.accessCount -= minAccessCount;
+				if (entry.accessCount <= 0) {
+					evictEntry(entry);
+					count++;
+				}
+				entry = next;
+			}
+			return count;
+		}
+
+		@Override
+		protected void onClear() {
+			clearList(head);
+		}
+	}
+}
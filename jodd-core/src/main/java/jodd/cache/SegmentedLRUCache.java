@@ -0,0 +1,88 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.cache;
+
+/**
+ * Concurrent LRU (least recently used) cache, split in segments.
+ * Each segment keeps its entries in access order and, when full,
+ * ejects its least recently used entry. Reads are lock-free.
+ * <p>
+ * This is a concurrent alternative to {@link LRUCache}.
+ * @see SegmentedCache
+ */
+public class SegmentedLRUCache<K, V> extends SegmentedCache<K, V> {
+
+	public SegmentedLRUCache(int cacheSize) {
+		this(cacheSize, 0);
+	}
+
+	public SegmentedLRUCache(int cacheSize, long timeout) {
+		this(cacheSize, timeout, DEFAULT_CONCURRENCY_LEVEL);
+	}
+
+	/**
+	 * Creates a new segmented LRU cache.
+	 */
+	public SegmentedLRUCache(int cacheSize, long timeout, int concurrencyLevel) {
+		super(cacheSize, timeout, concurrencyLevel);
+	}
+
+	/**
+	 * Creates a new LRU cache bounded by the total weight of cached objects.
+	 * @see SegmentedCache#weigh(Object, Object)
+	 */
+	public SegmentedLRUCache(int cacheSize, long maxWeight, long timeout, int concurrencyLevel) {
+		super(cacheSize, maxWeight, timeout, concurrencyLevel);
+	}
+
+	@Override
+	CacheSegment<K, V> createSegment(int capacity) {
+		return new LRUSegment<K, V>(this, capacity);
+	}
+
+	/**
+	 * LRU segment. Entries are ordered by access, the least
+	 * recently used entry is the first one.
+	 */
+	static class LRUSegment<K, V> extends CacheSegment<K, V> {
+
+		private final CacheEntry<K, V> head = newSentinel();
+
+		LRUSegment(SegmentedCache<K, V> cache, int capacity) {
+			super(cache, capacity);
+		}
+
+		@Override
+		protected void onInsert(CacheEntry<K, V> entry) {
+			linkLast(head, entry);
+		}
+
+		@Override
+		protected void onAccess(CacheEntry<K, V> entry) {
+			moveToLast(head, entry);
+		}
+
+		@Override
+		protected void onRemove(CacheEntry<K, V> entry) {
+			unlink(entry);
+		}
+
+		/**
+		 * Evicts the least recently used entry.
+		 */
+		@Override
+		protected int evict(long now) {
+			CacheEntry<K, V> eldest = head.next;
+			if (eldest == head) {
+				return 0;
+			}
+			evictEntry(eldest);
+			return 1;
+		}
+
+		@Override
+		protected void onClear() {
+			clearList(head);
+		}
+	}
+}
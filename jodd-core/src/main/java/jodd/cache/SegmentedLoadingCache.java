@@ -0,0 +1,296 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+/**
+ * {@link LoadingCache} on top of the {@link SegmentedCache}.
+ * <p>
+ * Loads are single-flight: the first thread that misses the key loads
+ * the value, while all other threads that miss the same key wait for
+ * that load instead of loading the value again. Therefore a miss storm
+ * costs only one load.
+ * <p>
+ * Optionally, values are refreshed ahead: when value older than the
+ * refresh time is accessed, it is reloaded asynchronously, while the
+ * old value is still returned. Refresh time should be shorter than
+ * the cache timeout, so hot values never expire. Without the executor,
+ * value is refreshed by the thread that accessed it, while all other
+ * threads still get the old value. When refresh fails, old value is kept
+ * and still returned; failure is counted in the load failures and reported
+ * to {@link #onRefreshFailure(Object, Exception)}.
+ */
+public class SegmentedLoadingCache<K, V> implements LoadingCache<K, V> {
+
+	protected final SegmentedCache<K, V> cache;
+	protected final CacheLoader<K, V> loader;
+	protected final long refreshAfter;
+	protected final Executor executor;
+	protected final ConcurrentHashMap<K, LoadTask> loads;
+
+	public SegmentedLoadingCache(SegmentedCache<K, V> cache, CacheLoader<K, V> loader) {
+		this(cache, loader, 0, null);
+	}
+
+	/**
+	 * Creates new loading cache.
+	 * @param cache target cache
+	 * @param loader values loader
+	 * @param refreshAfter time after which accessed value is refreshed, 0 to disable refreshing
+	 * @param executor executor for refreshes, if <code>null</code> refresh runs in the accessing thread
+	 */
+	public SegmentedLoadingCache(SegmentedCache<K, V> cache, CacheLoader<K, V> loader, long refreshAfter, Executor executor) {
+		this.cache = cache;
+		this.loader = loader;
+		this.refreshAfter = refreshAfter;
+		this.executor = executor;
+		this.loads = new ConcurrentHashMap<K, LoadTask>();
+		if (refreshAfter != 0) {
+			CacheClock.register(this);
+		}
+	}
+
+	// ---------------------------------------------------------------- load
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public V get(K key) {
+		CacheEntry<K, V> entry = cache.getEntry(key);
+		if (entry != null) {
+			if ((refreshAfter != 0) && (CacheClock.currentTimeMillis() - entry.writeTime > refreshAfter)) {
+				refresh(key);
+			}
+			return entry.value;
+		}
+		return startLoad(key).getValue();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public V getIfPresent(K key) {
+		return cache.get(key);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Map<K, V> getAll(Iterable<? extends K> keys) {
+		Map<K, V> present = new HashMap<K, V>();
+		Map<K, LoadTask> pending = new HashMap<K, LoadTask>();
+
+		for (K key : keys) {
+			if (present.containsKey(key) || pending.containsKey(key)) {
+				continue;
+			}
+			CacheEntry<K, V> entry = cache.getEntry(key);
+			if (entry != null) {
+				present.put(key, entry.value);
+				continue;
+			}
+			pending.put(key, startLoad(key));
+		}
+
+		Map<K, V> result = new LinkedHashMap<K, V>();
+		for (K key : keys) {
+			V value = present.get(key);
+			if (value == null) {
+				LoadTask task = pending.get(key);
+				if (task != null) {
+					value = task.getValue();
+				}
+			}
+			if (value != null) {
+				result.put(key, value);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * If executor rejects the refresh, it is skipped.
+	 */
+	public void refresh(K key) {
+		if (loads.containsKey(key)) {
+			return;
+		}
+		LoadTask task = new LoadTask(key, true);
+		if (loads.putIfAbsent(key, task) != null) {
+			return;
+		}
+		if (executor == null) {
+			task.run();
+			return;
+		}
+		try {
+			executor.execute(task);
+		} catch (RuntimeException rex) {
+			task.fail(rex);
+		}
+	}
+
+	/**
+	 * Returns load in progress for the key or starts a new one
+	 * in the current thread.
+	 */
+	protected LoadTask startLoad(K key) {
+		LoadTask task = loads.get(key);
+		if (task != null) {
+			return task;
+		}
+		LoadTask newTask = new LoadTask(key, false);
+		task = loads.putIfAbsent(key, newTask);
+		if (task != null) {
+			return task;
+		}
+		newTask.run();
+		return newTask;
+	}
+
+	/**
+	 * Loads the value and puts it in the cache.
+	 */
+	protected V loadValue(K key, boolean refresh) throws Exception {
+		if (refresh == false) {
+			// value may be loaded just before the task has been registered
+			CacheEntry<K, V> entry = cache.segmentFor(key).get(key);
+			if (entry != null) {
+				return entry.value;
+			}
+		}
+
+		long start = System.nanoTime();
+		V value;
+		try {
+			value = loader.load(key);
+		} catch (Exception ex) {
+			cache.stats.recordLoadFailure(System.nanoTime() - start);
+			if (refresh) {
+				onRefreshFailure(key, ex);
+			}
+			throw ex;
+		}
+		cache.stats.recordLoadSuccess(System.nanoTime() - start);
+
+		if (value != null) {
+			cache.put(key, value);
+		} else if (refresh) {
+			cache.remove(key);
+		}
+		return value;
+	}
+
+	/**
+	 * Invoked when refresh of the cached value fails. Old value is kept
+	 * in the cache and the failure is not thrown to the callers, so this
+	 * is the place to report it. Does nothing by default.
+	 */
+	protected void onRefreshFailure(K key, Exception exception) {
+	}
+
+	/**
+	 * Single load of a key. Removes itself from the loads when done,
+	 * after the loaded value is already in the cache.
+	 */
+	protected class LoadTask extends FutureTask<V> {
+
+		protected final K key;
+
+		protected LoadTask(final K key, final boolean refresh) {
+			super(new Callable<V>() {
+				public V call() throws Exception {
+					return loadValue(key, refresh);
+				}
+			});
+			this.key = key;
+		}
+
+		@Override
+		protected void done() {
+			loads.remove(key, this);
+		}
+
+		/**
+		 * Fails the load that has not been started,
+		 * so it is removed from the loads.
+		 */
+		protected void fail(Throwable throwable) {
+			setException(throwable);
+		}
+
+		/**
+		 * Waits for the load and returns loaded value.
+		 */
+		protected V getValue() {
+			try {
+				return get();
+			} catch (InterruptedException iex) {
+				Thread.currentThread().interrupt();
+				throw new CacheLoaderException("Interrupted while loading: " + key, iex);
+			} catch (ExecutionException eex) {
+				throw new CacheLoaderException("Failed to load: " + key, eex.getCause());
+			}
+		}
+	}
+
+	// ---------------------------------------------------------------- delegates
+
+	public int getCacheSize() {
+		return cache.getCacheSize();
+	}
+
+	public long getCacheTimeout() {
+		return cache.getCacheTimeout();
+	}
+
+	public void put(K key, V object) {
+		cache.put(key, object);
+	}
+
+	public void put(K key, V object, long timeout) {
+		cache.put(key, object, timeout);
+	}
+
+	public Iterator<V> iterator() {
+		return cache.iterator();
+	}
+
+	public int prune() {
+		return cache.prune();
+	}
+
+	public boolean isFull() {
+		return cache.isFull();
+	}
+
+	public void remove(K key) {
+		cache.remove(key);
+	}
+
+	public void clear() {
+		cache.clear();
+	}
+
+	public int size() {
+		return cache.size();
+	}
+
+	public boolean isEmpty() {
+		return cache.isEmpty();
+	}
+
+	public CacheStats getStats() {
+		return cache.getStats();
+	}
+}
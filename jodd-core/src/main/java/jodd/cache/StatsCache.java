@@ -0,0 +1,14 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.cache;
+
+/**
+ * {@link Cache} that records its statistics.
+ */
+public interface StatsCache<K, V> extends Cache<K, V> {
+
+	/**
+	 * Returns snapshot of cache statistics.
+	 */
+	CacheStats getStats();
+}
@@ -3,7 +3,6 @@
 package jodd.cache;
 
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Timer;
 import java.util.TimerTask;
 
@@ -11,13 +10,69 @@ import java.util.TimerTask;
  * Timed cache. Not limited by size, objects are removed only when they are expired.
  * Prune is not invoked explicitly by standard {@link Cache} methods, however,
  * it is possible to schedule prunes on fined-rate delays.
+ * <p>
+ * Objects are scheduled for expiration in the {@link TimingWheel}, so
+ * prune removes only expired objects, without walking the whole cache.
  */
 public class TimedCache<K, V> extends AbstractCacheMap<K, V> {
 
+	protected final TimingWheel<CacheObject<K,V>> expirationWheel;
+	private int prunedCount;
+
 	public TimedCache(long timeout) {
 		this.cacheSize = 0;
 		this.timeout = timeout;
 		cacheMap = new HashMap<K, CacheObject<K,V>>();
+		CacheClock.register(this);
+		expirationWheel = new TimingWheel<CacheObject<K,V>>(CacheClock.RESOLUTION, CacheClock.currentTimeMillis()) {
+			@Override
+			protected void onExpire(Timeout<CacheObject<K,V>> expiration) {
+				CacheObject<K,V> co = expiration.getElement();
+				if (cacheMap.get(co.key) != co) {
+					// already removed
+					return;
+				}
+				if (co.isExpired() == true) {
+					cacheMap.remove(co.key);
+					stats.recordRemoval(RemovalCause.EXPIRED);
+					prunedCount++;
+				} else {
+					// object was accessed in the meantime
+					reschedule(expiration, co.lastAccess + co.ttl);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Schedules expiration of the object with timeout.
+	 */
+	@Override
+	protected void afterPutObject(CacheObject<K,V> cacheObject, CacheObject<K,V> previous) {
+		if ((previous != null) && (previous.timeout != null)) {
+			expirationWheel.cancel(previous.timeout);
+		}
+		if (cacheObject.ttl != 0) {
+			cacheObject.timeout = expirationWheel.schedule(cacheObject, cacheObject.lastAccess + cacheObject.ttl);
+		}
+	}
+
+	/**
+	 * Cancels expiration of the removed object.
+	 */
+	@Override
+	protected void afterRemoveObject(CacheObject<K,V> cacheObject) {
+		if (cacheObject.timeout != null) {
+			expirationWheel.cancel(cacheObject.timeout);
+		}
+	}
+
+	/**
+	 * Cancels all expirations.
+	 */
+	@Override
+	protected void afterClear() {
+		expirationWheel.clear();
 	}
 
 	// ---------------------------------------------------------------- prune
@@ -27,16 +82,13 @@ public class TimedCache<K, V> extends AbstractCacheMap<K, V> {
 	 */
 	@Override
 	protected int pruneCache() {
-        int count = 0;
-		Iterator<CacheObject<K,V>> values = cacheMap.values().iterator();
-		while (values.hasNext()) {
-			CacheObject co = values.next();
-			if (co.isExpired() == true) {
-				values.remove();
-				count++;
-			}
+		if (cacheMap.isEmpty()) {
+			expirationWheel.clear();
+			return 0;
 		}
-		return count;
+		prunedCount = 0;
+		expirationWheel.advance(CacheClock.currentTimeMillis());
+		return prunedCount;
 	}
 
 
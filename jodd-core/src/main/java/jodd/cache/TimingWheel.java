@@ -0,0 +1,285 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.cache;
+
+/**
+ * Hierarchical timing wheel, used for incremental expiration of elements.
+ * <p>
+ * Wheel consists of several levels, each having 64 buckets. Buckets of
+ * the first level span one tick, buckets of each next level span 64 times
+ * more. Element is scheduled in the bucket of its deadline, on the lowest
+ * level that can hold it. As the time advances, buckets of the first level
+ * are expired one by one, while buckets of higher levels are cascaded down
+ * to the lower levels. Therefore scheduling, canceling and expiring
+ * is done in constant time, without walking all the scheduled elements.
+ * <p>
+ * Elements are expired with the tick resolution, never before their deadline.
+ * Wheel is not thread safe, it should be used while holding some lock.
+ */
+public abstract class TimingWheel<E> {
+
+	private static final int WHEEL_BITS = 6;
+	private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+	private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+	private static final int LEVELS = 5;
+	private static final long MAX_TICKS = 1L << (WHEEL_BITS * LEVELS);
+
+	/**
+	 * Scheduled element handle.
+	 */
+	public static final class Timeout<E> {
+
+		Timeout(E element) {
+			this.element = element;
+		}
+
+		final E element;
+		long deadline;
+		int level;
+		Timeout<E> prev;
+		Timeout<E> next;
+
+		/**
+		 * Returns scheduled element.
+		 */
+		public E getElement() {
+			return element;
+		}
+
+		/**
+		 * Returns deadline of this timeout.
+		 */
+		public long getDeadline() {
+			return deadline;
+		}
+
+		/**
+		 * Returns <code>true</code> if timeout is scheduled.
+		 */
+		public boolean isScheduled() {
+			return prev != null;
+		}
+	}
+
+	protected final long tickDuration;
+	private final Timeout<E>[][] wheels;
+	private final Timeout<E> pending;
+	private final int[] levelSizes;
+	private long currentTick;
+	private int size;
+
+	/**
+	 * Creates new timing wheel.
+	 * @param tickDuration duration of a single tick
+	 * @param now current time
+	 */
+	@SuppressWarnings("unchecked")
+	protected TimingWheel(long tickDuration, long now) {
+		if (tickDuration <= 0) {
+			tickDuration = 1;
+		}
+		this.tickDuration = tickDuration;
+		this.currentTick = now / tickDuration;
+		this.wheels = new Timeout[LEVELS][WHEEL_SIZE];
+		for (int level = 0; level < LEVELS; level++) {
+			for (int i = 0; i < WHEEL_SIZE; i++) {
+				wheels[level][i] = newSentinel();
+			}
+		}
+		this.pending = newSentinel();
+		this.levelSizes = new int[LEVELS];
+	}
+
+	/**
+	 * Invoked when the timeout is expired. Callback may
+	 * {@link #reschedule(Timeout, long) reschedule} the timeout.
+	 */
+	protected abstract void onExpire(Timeout<E> timeout);
+
+	// ---------------------------------------------------------------- schedule
+
+	/**
+	 * Schedules element for the expiration at given deadline.
+	 */
+	public Timeout<E> schedule(E element, long deadline) {
+		Timeout<E> timeout = new Timeout<E>(element);
+		reschedule(timeout, deadline);
+		return timeout;
+	}
+
+	/**
+	 * Reschedules existing timeout to a new deadline.
+	 */
+	public void reschedule(Timeout<E> timeout, long deadline) {
+		cancel(timeout);
+		timeout.deadline = deadline;
+		link(timeout);
+	}
+
+	/**
+	 * Cancels the timeout. Does nothing if timeout is not scheduled.
+	 */
+	public void cancel(Timeout<E> timeout) {
+		if (timeout.prev == null) {
+			return;
+		}
+		unlink(timeout);
+	}
+
+	/**
+	 * Returns number of scheduled timeouts.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Cancels all timeouts.
+	 */
+	public void clear() {
+		for (int level = 0; level < LEVELS; level++) {
+			for (int i = 0; i < WHEEL_SIZE; i++) {
+				Timeout<E> sentinel = wheels[level][i];
+				while (sentinel.next != sentinel) {
+					unlink(sentinel.next);
+				}
+			}
+		}
+	}
+
+	// ---------------------------------------------------------------- advance
+
+	/**
+	 * Advances the wheel to the current time and expires all
+	 * timeouts with deadline before it. Returns number of
+	 * expired timeouts.
+	 */
+	public int advance(long now) {
+		long nowTick = now / tickDuration;
+		if (size == 0) {
+			if (nowTick > currentTick) {
+				currentTick = nowTick;
+			}
+			return 0;
+		}
+
+		int count = 0;
+		while (currentTick < nowTick) {
+
+			// skip ticks until the boundary of the lowest non-empty level
+			int lowest = 0;
+			while (levelSizes[lowest] == 0) {
+				lowest++;
+			}
+			if (lowest > 0) {
+				long step = 1L << (WHEEL_BITS * lowest);
+				long skipTo = ((currentTick / step) + 1) * step - 1;
+				if (skipTo >= nowTick) {
+					currentTick = nowTick;
+					break;
+				}
+				currentTick = skipTo;
+			}
+
+			currentTick++;
+
+			int level = 0;
+			while ((level < LEVELS - 1) && ((currentTick & ((1L << (WHEEL_BITS * (level + 1))) - 1)) == 0)) {
+				level++;
+			}
+			for (int l = level; l >= 0; l--) {
+				int index = (int) ((currentTick >>> (WHEEL_BITS * l)) & WHEEL_MASK);
+				count += expireBucket(wheels[l][index], now);
+			}
+
+			if (size == 0) {
+				currentTick = nowTick;
+				break;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Expires timeouts of a bucket. Timeouts that are not yet
+	 * expired are cascaded to the lower levels.
+	 */
+	private int expireBucket(Timeout<E> sentinel, long now) {
+		if (sentinel.next == sentinel) {
+			return 0;
+		}
+
+		// move bucket content to pending list
+		pending.next = sentinel.next;
+		pending.prev = sentinel.prev;
+		pending.next.prev = pending;
+		pending.prev.next = pending;
+		sentinel.next = sentinel;
+		sentinel.prev = sentinel;
+
+		int count = 0;
+		while (pending.next != pending) {
+			Timeout<E> timeout = pending.next;
+			unlink(timeout);
+			if (timeout.deadline <= now) {
+				count++;
+				onExpire(timeout);
+			} else {
+				link(timeout);
+			}
+		}
+		return count;
+	}
+
+	// ---------------------------------------------------------------- util
+
+	/**
+	 * Links timeout in the bucket of its deadline.
+	 */
+	private void link(Timeout<E> timeout) {
+		long tick = (timeout.deadline + tickDuration - 1) / tickDuration;
+		if (tick <= currentTick) {
+			tick = currentTick + 1;
+		}
+		long delta = tick - currentTick;
+		if (delta >= MAX_TICKS) {
+			delta = MAX_TICKS - 1;
+			tick = currentTick + delta;
+		}
+
+		int level = 0;
+		while ((level < LEVELS - 1) && (delta >= (1L << (WHEEL_BITS * (level + 1))))) {
+			level++;
+		}
+		int index = (int) ((tick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+
+		Timeout<E> sentinel = wheels[level][index];
+		timeout.level = level;
+		levelSizes[level]++;
+		Timeout<E> last = sentinel.prev;
+		timeout.prev = last;
+		timeout.next = sentinel;
+		last.next = timeout;
+		sentinel.prev = timeout;
+		size++;
+	}
+
+	/**
+	 * Unlinks timeout from its bucket.
+	 */
+	private void unlink(Timeout<E> timeout) {
+		timeout.prev.next = timeout.next;
+		timeout.next.prev = timeout.prev;
+		timeout.prev = null;
+		timeout.next = null;
+		levelSizes[timeout.level]--;
+		size--;
+	}
+
+	private Timeout<E> newSentinel() {
+		Timeout<E> sentinel = new Timeout<E>(null);
+		sentinel.prev = sentinel;
+		sentinel.next = sentinel;
+		return sentinel;
+	}
+}
@@ -0,0 +1,219 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.cache;
+
+/**
+ * Concurrent cache with Window-TinyLFU admission policy, split in segments.
+ * <p>
+ * New entries are added to the small LRU <i>window</i> (1% of the capacity),
+ * so bursts of new entries are not immediately rejected. Entries evicted
+ * from the window become candidates for the <i>main</i> area, which is
+ * a segmented LRU: new entries are put on <i>probation</i> and are promoted
+ * to the <i>protected</i> part (80% of the main area) when accessed again.
+ * <p>
+ * When the cache is full, the window candidate is admitted to the main area
+ * only if its estimated frequency is higher than the frequency of the main
+ * area victim; otherwise the candidate is evicted. Frequencies are estimated
+ * by a compact, periodically aged count-min sketch, so popularity of keys
+ * that are no longer in the cache is remembered, too. Therefore
+ * one-hit wonders and scans do not pollute the cache.
+ * <p>
+ * Eviction is done in constant time, unlike {@link LFUCache}.
+ * <p>
+ * Summary for TinyLFU: fast, captures frequency and recency of use, scan resistant.
+ * @see SegmentedCache
+ */
+public class TinyLFUCache<K, V> extends SegmentedCache<K, V> {
+
+	public TinyLFUCache(int cacheSize) {
+		this(cacheSize, 0);
+	}
+
+	public TinyLFUCache(int cacheSize, long timeout) {
+		this(cacheSize, timeout, DEFAULT_CONCURRENCY_LEVEL);
+	}
+
+	/**
+	 * Creates a new Window-TinyLFU cache.
+	 */
+	public TinyLFUCache(int cacheSize, long timeout, int concurrencyLevel) {
+		super(cacheSize, timeout, concurrencyLevel);
+	}
+
+	/**
+	 * Creates a new Window-TinyLFU cache bounded by the total weight of cached objects.
+	 * @see SegmentedCache#weigh(Object, Object)
+	 */
+	public TinyLFUCache(int cacheSize, long maxWeight, long timeout, int concurrencyLevel) {
+		super(cacheSize, maxWeight, timeout, concurrencyLevel);
+	}
+
+	@Override
+	CacheSegment<K, V> createSegment(int capacity) {
+		return new TinyLFUSegment<K, V>(this, capacity);
+	}
+
+	/**
+	 * Window-TinyLFU segment.
+	 */
+	static class TinyLFUSegment<K, V> extends CacheSegment<K, V> {
+
+		private static final int WINDOW = 0;
+		private static final int PROBATION = 1;
+		private static final int PROTECTED = 2;
+
+		private final CacheEntry<K, V> window = newSentinel();
+		private final CacheEntry<K, V> probation = newSentinel();
+		private final CacheEntry<K, V> protectedArea = newSentinel();
+
+		private final FrequencySketch sketch;
+		private final int maxWindowSize;
+		private final int maxProtectedSize;
+		private int windowSize;
+		private int protectedSize;
+
+		TinyLFUSegment(SegmentedCache<K, V> cache, int capacity) {
+			super(cache, capacity);
+			this.sketch = new FrequencySketch(capacity);
+
+			int maxWindow = capacity / 100;
+			if (maxWindow == 0) {
+				maxWindow = 1;
+			}
+			this.maxWindowSize = maxWindow;
+			this.maxProtectedSize = (capacity - maxWindow) * 80 / 100;
+		}
+
+		@Override
+		protected void onInsert(CacheEntry<K, V> entry) {
+			sketch.increment(entry.key);
+			entry.queue = WINDOW;
+			linkLast(window, entry);
+			windowSize++;
+		}
+
+		@Override
+		protected void onAccess(CacheEntry<K, V> entry) {
+			sketch.increment(entry.key);
+
+			switch (entry.queue) {
+				case WINDOW:
+					moveToLast(window, entry);
+					break;
+				case PROBATION:
+					unlink(entry);
+					entry.queue = PROTECTED;
+					linkLast(protectedArea, entry);
+					protectedSize++;
+					if (protectedSize > maxProtectedSize) {
+						CacheEntry<K, V> demoted = protectedArea.next;
+						unlink(demoted);
+						demoted.queue = PROBATION;
+						linkLast(probation, demoted);
+						protectedSize--;
+					}
+					break;
+				case PROTECTED:
+					moveToLast(protectedArea, entry);
+					break;
+			}
+		}
+
+		@Override
+		protected void onRemove(CacheEntry<K, V> entry) {
+			if (entry.isLinked() == false) {
+				return;
+			}
+			unlink(entry);
+			if (entry.queue == WINDOW) {
+				windowSize--;
+			} else if (entry.queue == PROTECTED) {
+				protectedSize--;
+			}
+		}
+
+		/**
+		 * Makes room for one new entry. Window entries over the window size
+		 * are moved to the main area first, as it is not full then. When window
+		 * is full, its eldest entry becomes a candidate and competes with the
+		 * main area victim; the one with lower estimated frequency is evicted.
+		 */
+		@Override
+		protected int evict(long now) {
+			if (windowSize < maxWindowSize) {
+				CacheEntry<K, V> victim = mainVictim();
+				if (victim == null) {
+					victim = window.next;
+				}
+				if (victim == window) {
+					return 0;
+				}
+				evictEntry(victim);
+				return 1;
+			}
+
+			while (windowSize > maxWindowSize) {
+				moveToProbation(window.next);
+			}
+
+			// victim is chosen before the candidate is moved to the probation
+			CacheEntry<K, V> candidate = window.next;
+			CacheEntry<K, V> victim = mainVictim();
+			moveToProbation(candidate);
+
+			if (candidate.isExpired(now)) {
+				evictEntry(candidate, RemovalCause.EXPIRED);
+				return 1;
+			}
+			if (victim == null) {
+				// main area is empty, there is nothing to compete with
+				evictEntry(candidate);
+				return 1;
+			}
+			if (victim.isExpired(now)) {
+				evictEntry(victim, RemovalCause.EXPIRED);
+				return 1;
+			}
+
+			if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+				evictEntry(victim);
+			} else {
+				evictEntry(candidate);
+			}
+			return 1;
+		}
+
+		/**
+		 * Moves window entry to the probation.
+		 */
+		private void moveToProbation(CacheEntry<K, V> entry) {
+			unlink(entry);
+			windowSize--;
+			entry.queue = PROBATION;
+			linkLast(probation, entry);
+		}
+
+		/**
+		 * Returns the main area victim: the eldest entry on probation or,
+		 * if there is none, the eldest protected entry.
+		 */
+		private CacheEntry<K, V> mainVictim() {
+			if (probation.next != probation) {
+				return probation.next;
+			}
+			if (protectedArea.next != protectedArea) {
+				return protectedArea.next;
+			}
+			return null;
+		}
+
+		@Override
+		protected void onClear() {
+			clearList(window);
+			clearList(probation);
+			clearList(protectedArea);
+			windowSize = 0;
+			protectedSize = 0;
+		}
+	}
+}
@@ -1,6 +1,6 @@
 // Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
 
 /**
- * Some useful caches: LRU, LFU, FIFO.
+ * Some useful caches: LRU, LFU, FIFO and their concurrent, segmented variants.
  */
 package jodd.cache;
\ No newline at end of file
@@ -11,6 +11,14 @@ import jodd.io.StreamUtil;
 import jodd.io.ZipUtil;
 
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipEntry;
 import java.util.Enumeration;
@@ -28,6 +36,10 @@ import java.io.FileNotFoundException;
  * All paths are matched using {@link Wildcard#matchPath(String, String) path-style}
  * wildcard matcher. All entries are matched using {@link Wildcard#match(String, String) common-style}
  * wildcard matcher.
+ * <p>
+ * Jars may be examined concurrently, see {@link #setScanThreads(int)}, and their scan
+ * results may be persisted in the {@link ClassScanIndex scan index}, so unchanged jars
+ * are not examined again on the next scan.
  * @see ClassScanner
  */
 public abstract class ClassFinder {
@@ -145,6 +157,54 @@ public abstract class ClassFinder {
 		this.ignoreException = ignoreException;
 	}
 
+	// ---------------------------------------------------------------- index & threads
+
+	/**
+	 * Scan index, <code>null</code> when jars are not indexed.
+	 */
+	protected ClassScanIndex scanIndex;
+	/**
+	 * Number of threads that examine jars.
+	 */
+	protected int scanThreads = 1;
+
+	public ClassScanIndex getScanIndex() {
+		return scanIndex;
+	}
+
+	/**
+	 * Sets {@link ClassScanIndex scan index} for the jars.
+	 * Entries of indexed and unchanged jars are not matched again,
+	 * only the {@link #onEntry(EntryData) callback} is invoked on
+	 * previously matched entries.
+	 */
+	public void setScanIndex(ClassScanIndex scanIndex) {
+		this.scanIndex = scanIndex;
+	}
+
+	public int getScanThreads() {
+		return scanThreads;
+	}
+
+	/**
+	 * Sets number of threads that examine jars when several paths are scanned.
+	 * Jar entries are then {@link #matchEntry(EntryData) matched} concurrently,
+	 * while {@link #onEntry(EntryData) callback} is still invoked from
+	 * the calling thread, in the class path order.
+	 */
+	public void setScanThreads(int scanThreads) {
+		this.scanThreads = scanThreads;
+	}
+
+	/**
+	 * Returns key of this class finder in the {@link ClassScanIndex scan index}.
+	 * Key includes all settings that affect which entries are matched.
+	 */
+	protected String getScanIndexKey() {
+		return getClass().getName() + ' ' + includeResources + ' ' +
+				Arrays.toString(includedEntries) + ' ' + Arrays.toString(excludedEntries);
+	}
+
 	// ---------------------------------------------------------------- scan
 
 	/**
@@ -155,6 +215,7 @@ public abstract class ClassFinder {
 		for (URL path : urls) {
 			scanUrl(path);
 		}
+		saveScanIndex();
 	}
 	
 	/**
@@ -173,16 +234,27 @@ public abstract class ClassFinder {
 	}
 
 
+	/**
+	 * Scans several paths. When {@link #setScanThreads(int) threads} are
+	 * specified, jars are examined concurrently.
+	 */
 	protected void scanPaths(File... paths) {
-		for (File path : paths) {
-			scanPath(path);
+		if ((scanThreads > 1) && (paths.length > 1)) {
+			scanPathsConcurrently(paths);
+		} else {
+			for (File path : paths) {
+				scanPath(path);
+			}
 		}
+		saveScanIndex();
 	}
 
 	protected void scanPaths(String... paths) {
-		for (String path : paths) {
-			scanPath(path);
+		File[] files = new File[paths.length];
+		for (int i = 0; i < paths.length; i++) {
+			files[i] = new File(paths[i]);
 		}
+		scanPaths(files);
 	}
 	
 	protected void scanPath(String path) {
@@ -240,13 +312,119 @@ public abstract class ClassFinder {
 		}
 	}
 
+	/**
+	 * Scans paths concurrently. Jars are matched by the pool of threads,
+	 * while callbacks are invoked from the calling thread, in the paths order.
+	 */
+	protected void scanPathsConcurrently(File[] paths) {
+		ExecutorService executorService = Executors.newFixedThreadPool(scanThreads);
+		try {
+			List<Future<String[]>> futures = new ArrayList<Future<String[]>>(paths.length);
+
+			for (final File path : paths) {
+				Future<String[]> future = null;
+				if (isJarFile(path) && acceptJar(path)) {
+					future = executorService.submit(new Callable<String[]>() {
+						public String[] call() {
+							return matchJarFile(path);
+						}
+					});
+				}
+				futures.add(future);
+			}
+
+			for (int i = 0; i < paths.length; i++) {
+				Future<String[]> future = futures.get(i);
+				if (future == null) {
+					if (isJarFile(paths[i]) == false) {
+						scanPath(paths[i]);
+					}
+					continue;
+				}
+				String[] zipEntryNames;
+				try {
+					zipEntryNames = future.get();
+				} catch (InterruptedException iex) {
+					Thread.currentThread().interrupt();
+					throw new FindFileException("Scanning interrupted.", iex);
+				} catch (ExecutionException eex) {
+					Throwable cause = eex.getCause();
+					if (cause instanceof RuntimeException) {
+						throw (RuntimeException) cause;
+					}
+					throw new FindFileException("Unable to scan jar: " + paths[i].getName(), cause);
+				}
+				if (zipEntryNames != null) {
+					scanJarEntries(paths[i], zipEntryNames);
+				}
+			}
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
+	/**
+	 * Saves {@link ClassScanIndex scan index}, if used.
+	 */
+	protected void saveScanIndex() {
+		if (scanIndex != null) {
+			scanIndex.save();
+		}
+	}
+
 	// ---------------------------------------------------------------- internal
 
+	/**
+	 * Returns <code>true</code> if file is a JAR archive.
+	 */
+	protected boolean isJarFile(File file) {
+		return StringUtil.endsWithIgnoreCase(file.getName(), JAR_FILE_EXT);
+	}
+
 	/**
 	 * Scans classes inside single JAR archive. Archive is scanned as a zip file.
+	 * When jar is indexed and unchanged, only previously matched entries are scanned.
 	 * @see #onEntry(EntryData)
 	 */
 	protected void scanJarFile(File file) {
+		if (scanIndex != null) {
+			String[] zipEntryNames = scanIndex.lookup(getScanIndexKey(), file);
+			if (zipEntryNames != null) {
+				scanJarEntries(file, zipEntryNames);
+				return;
+			}
+		}
+		String[] zipEntryNames = examineJarFile(file, true);
+		if ((scanIndex != null) && (zipEntryNames != null)) {
+			scanIndex.store(getScanIndexKey(), file, zipEntryNames);
+		}
+	}
+
+	/**
+	 * Matches entries inside single JAR archive, without invoking the callback.
+	 * Returns names of matched zip entries or <code>null</code> if jar
+	 * can not be opened. May be invoked concurrently.
+	 */
+	protected String[] matchJarFile(File file) {
+		if (scanIndex != null) {
+			String[] zipEntryNames = scanIndex.lookup(getScanIndexKey(), file);
+			if (zipEntryNames != null) {
+				return zipEntryNames;
+			}
+		}
+		String[] zipEntryNames = examineJarFile(file, false);
+		if ((scanIndex != null) && (zipEntryNames != null)) {
+			scanIndex.store(getScanIndexKey(), file, zipEntryNames);
+		}
+		return zipEntryNames;
+	}
+
+	/**
+	 * Examines all entries of the JAR archive and returns names of matched
+	 * zip entries. Callback is invoked on matched entries if so specified.
+	 * Returns <code>null</code> if jar can not be opened.
+	 */
+	protected String[] examineJarFile(File file, boolean invokeCallback) {
 		ZipFile zipFile;
 		try {
 			zipFile = new ZipFile(file);
@@ -254,26 +432,29 @@ public abstract class ClassFinder {
 			if (ignoreException == false) {
 				throw new FindFileException("Unable to open zip: " + file.getName(), ioex);
 			}
-			return;
+			return null;
 		}
+		List<String> matchedNames = new ArrayList<String>();
 		Enumeration entries = zipFile.entries();
 		while (entries.hasMoreElements()) {
 			ZipEntry zipEntry = (ZipEntry) entries.nextElement();
 			String zipEntryName = zipEntry.getName();
 			try {
-				if (StringUtil.endsWithIgnoreCase(zipEntryName, CLASS_FILE_EXT)) {
-					String entryName = prepareEntryName(zipEntryName, true);
-					EntryData entryData = new EntryData(entryName, zipFile, zipEntry);
-					try {
-						scanEntry(entryData);
-					} finally {
-						entryData.closeInputStreamIfOpen();
+				boolean isClass = StringUtil.endsWithIgnoreCase(zipEntryName, CLASS_FILE_EXT);
+				if (isClass || includeResources == true) {
+					String entryName = prepareEntryName(zipEntryName, isClass);
+					if (acceptEntry(entryName) == false) {
+						continue;
 					}
-				} else if (includeResources == true) {
-					String entryName = prepareEntryName(zipEntryName, false);
 					EntryData entryData = new EntryData(entryName, zipFile, zipEntry);
 					try {
-						scanEntry(entryData);
+						if (invokeMatchEntry(entryData) == false) {
+							continue;
+						}
+						matchedNames.add(zipEntryName);
+						if (invokeCallback) {
+							invokeOnEntry(entryData);
+						}
 					} finally {
 						entryData.closeInputStreamIfOpen();
 					}
@@ -286,6 +467,45 @@ public abstract class ClassFinder {
 			}
 		}
 		ZipUtil.close(zipFile);
+		return matchedNames.toArray(new String[matchedNames.size()]);
+	}
+
+	/**
+	 * Invokes the callback on already matched entries of the JAR archive.
+	 * Archive is not opened when there are no entries.
+	 */
+	protected void scanJarEntries(File file, String[] zipEntryNames) {
+		if (zipEntryNames.length == 0) {
+			return;
+		}
+		ZipFile zipFile;
+		try {
+			zipFile = new ZipFile(file);
+		} catch (IOException ioex) {
+			if (ignoreException == false) {
+				throw new FindFileException("Unable to open zip: " + file.getName(), ioex);
+			}
+			return;
+		}
+		for (String zipEntryName : zipEntryNames) {
+			ZipEntry zipEntry = zipFile.getEntry(zipEntryName);
+			if (zipEntry == null) {
+				continue;
+			}
+			boolean isClass = StringUtil.endsWithIgnoreCase(zipEntryName, CLASS_FILE_EXT);
+			EntryData entryData = new EntryData(prepareEntryName(zipEntryName, isClass), zipFile, zipEntry);
+			try {
+				invokeOnEntry(entryData);
+			} catch (RuntimeException rex) {
+				if (ignoreException == false) {
+					ZipUtil.close(zipFile);
+					throw rex;
+				}
+			} finally {
+				entryData.closeInputStreamIfOpen();
+			}
+		}
+		ZipUtil.close(zipFile);
 	}
 
 	/**
@@ -365,12 +585,34 @@ public abstract class ClassFinder {
 
 
 	/**
-	 * If entry name is {@link #acceptEntry(String) accepted} invokes {@link #onEntry(EntryData)} a callback}.
+	 * If entry name is {@link #acceptEntry(String) accepted} and entry is
+	 * {@link #matchEntry(EntryData) matched} invokes {@link #onEntry(EntryData)} a callback}.
 	 */
 	protected void scanEntry(EntryData entryData) {
 		if (acceptEntry(entryData.getName()) == false) {
 			return;
 		}
+		if (invokeMatchEntry(entryData) == false) {
+			return;
+		}
+		invokeOnEntry(entryData);
+	}
+
+	/**
+	 * Invokes {@link #matchEntry(EntryData)} and wraps the exception.
+	 */
+	protected boolean invokeMatchEntry(EntryData entryData) {
+		try {
+			return matchEntry(entryData);
+		} catch (Exception ex) {
+			throw new FindFileException("Unable to match entry: " + entryData, ex);
+		}
+	}
+
+	/**
+	 * Invokes {@link #onEntry(EntryData)} and wraps the exception.
+	 */
+	protected void invokeOnEntry(EntryData entryData) {
 		try {
 			onEntry(entryData);
 		} catch (Exception ex) {
@@ -381,6 +623,16 @@ public abstract class ClassFinder {
 
 	// ---------------------------------------------------------------- callback
 
+	/**
+	 * Quick check, invoked before the callback, if entry is of any interest.
+	 * Only matched entries are stored in the {@link ClassScanIndex scan index}.
+	 * Since it may be invoked concurrently, it must not change the state.
+	 * By default, all entries are matched.
+	 */
+	protected boolean matchEntry(EntryData entryData) throws Exception {
+		return true;
+	}
+
 	/**
 	 * Called during classpath scanning when class or resource is found.
 	 * <ul>
@@ -478,6 +730,7 @@ public abstract class ClassFinder {
 		 * Opens zip entry or plain file and returns its input stream.
 		 */
 		public InputStream openInputStream() {
+			closeInputStreamIfOpen();
 			if (zipFile != null) {
 				try {
 					inputStream = zipFile.getInputStream(zipEntry);
@@ -0,0 +1,344 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.io.findfile;
+
+import jodd.io.FileUtil;
+import jodd.util.StringPool;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent index of jar scan results used by the {@link ClassFinder}.
+ * For each scanned jar, index stores the names of entries that were
+ * {@link ClassFinder#matchEntry(ClassFinder.EntryData) matched}. Jars are
+ * identified by their name, length and the content fingerprint, which is
+ * a checksum of the zip central directory: it contains names, sizes
+ * and CRCs of all entries, so it changes whenever the content changes,
+ * while only the end of the jar file is read. When jar is found in the
+ * index, class finder replays the stored entries instead of examining
+ * jar content. Since most of the jars on the class path have no matching
+ * entry, they are not opened at all.
+ * <p>
+ * Jar identity does not depend on the jar location nor on its modification
+ * time, so index may be generated during the build and shipped with
+ * the application.
+ * <p>
+ * Single index file may be shared between several class finders,
+ * as results are stored in separate sections, one per
+ * {@link ClassFinder#getScanIndexKey() class finder key}. Class folders
+ * are never indexed.
+ * <p>
+ * Index is thread-safe.
+ */
+public class ClassScanIndex {
+
+	protected final File file;
+	protected Map<String, Map<String, JarRecord>> sections;
+	protected final Set<String> usedSections = new HashSet<String>();
+	protected final Map<String, JarStamp> stamps = new HashMap<String, JarStamp>();
+	protected boolean modified;
+
+	public ClassScanIndex(File file) {
+		this.file = file;
+	}
+
+	public ClassScanIndex(String fileName) {
+		this(new File(fileName));
+	}
+
+	/**
+	 * Returns index file.
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	// ---------------------------------------------------------------- lookup
+
+	/**
+	 * Returns names of matched entries stored for the jar in the given section.
+	 * Returns <code>null</code> if jar is not indexed or if it has been changed.
+	 */
+	public String[] lookup(String key, File jarFile) {
+		String jarKey = resolveJarKey(jarFile);
+		if (jarKey == null) {
+			return null;
+		}
+		synchronized (this) {
+			JarRecord jarRecord = section(key).get(jarKey);
+			if (jarRecord == null) {
+				return null;
+			}
+			jarRecord.used = true;
+			return jarRecord.entries;
+		}
+	}
+
+	/**
+	 * Stores names of matched entries for the jar in the given section.
+	 */
+	public void store(String key, File jarFile, String[] entries) {
+		String jarKey = resolveJarKey(jarFile);
+		if (jarKey == null) {
+			return;
+		}
+		JarRecord jarRecord = new JarRecord(entries);
+		jarRecord.used = true;
+
+		synchronized (this) {
+			section(key).put(jarKey, jarRecord);
+			modified = true;
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if index has been changed since it was loaded.
+	 */
+	public synchronized boolean isModified() {
+		return modified;
+	}
+
+	/**
+	 * Returns section of the index, loading the index file on first access.
+	 */
+	protected Map<String, JarRecord> section(String key) {
+		if (sections == null) {
+			load();
+		}
+		usedSections.add(key);
+		Map<String, JarRecord> section = sections.get(key);
+		if (section == null) {
+			section = new TreeMap<String, JarRecord>();
+			sections.put(key, section);
+		}
+		return section;
+	}
+
+	// ---------------------------------------------------------------- jar key
+
+	/**
+	 * Returns the jar key: its length, content fingerprint and name.
+	 * Fingerprint is calculated once, while the jar file is not modified,
+	 * and outside of the index lock, so jars may be examined concurrently.
+	 * Returns <code>null</code> if jar can not be read.
+	 */
+	protected String resolveJarKey(File jarFile) {
+		String path = jarFile.getAbsolutePath();
+		long length = jarFile.length();
+		long lastModified = jarFile.lastModified();
+
+		JarStamp jarStamp;
+		synchronized (stamps) {
+			jarStamp = stamps.get(path);
+		}
+		if ((jarStamp != null) && (jarStamp.length == length) && (jarStamp.lastModified == lastModified)) {
+			return jarStamp.jarKey;
+		}
+
+		long fingerprint;
+		try {
+			fingerprint = fingerprint(jarFile);
+		} catch (IOException ignore) {
+			return null;
+		}
+		String jarKey = String.valueOf(length) + ' ' + Long.toHexString(fingerprint) + ' ' + jarFile.getName();
+		synchronized (stamps) {
+			stamps.put(path, new JarStamp(length, lastModified, jarKey));
+		}
+		return jarKey;
+	}
+
+	/**
+	 * Calculates jar content fingerprint as CRC32 checksum of the
+	 * zip central directory. When central directory can not be
+	 * located, checksum of the jar tail is returned.
+	 */
+	protected long fingerprint(File jarFile) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(jarFile, "r");
+		try {
+			long fileLength = raf.length();
+			int tailLength = (int) Math.min(fileLength, 22 + 0xFFFF);	// end record with max comment
+			byte[] tail = new byte[tailLength];
+			raf.seek(fileLength - tailLength);
+			raf.readFully(tail);
+
+			CRC32 crc = new CRC32();
+
+			for (int i = tailLength - 22; i >= 0; i--) {
+				if ((tail[i] != 0x50) || (tail[i + 1] != 0x4b) || (tail[i + 2] != 0x05) || (tail[i + 3] != 0x06)) {
+					continue;
+				}
+				long cenSize = readInt(tail, i + 12);
+				long cenOffset = readInt(tail, i + 16);
+				if (cenOffset + cenSize > fileLength - tailLength + i) {
+					break;		// zip64 or invalid
+				}
+				byte[] buffer = new byte[(int) Math.min(cenSize, 8192)];
+				raf.seek(cenOffset);
+				while (cenSize > 0) {
+					int len = (int) Math.min(cenSize, buffer.length);
+					raf.readFully(buffer, 0, len);
+					crc.update(buffer, 0, len);
+					cenSize -= len;
+				}
+				return crc.getValue();
+			}
+
+			crc.update(tail);
+			return crc.getValue();
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Reads unsigned little-endian int.
+	 */
+	private static long readInt(byte[] bytes, int offset) {
+		return (bytes[offset] & 0xFFL) | ((bytes[offset + 1] & 0xFFL) << 8) |
+				((bytes[offset + 2] & 0xFFL) << 16) | ((bytes[offset + 3] & 0xFFL) << 24);
+	}
+
+	// ---------------------------------------------------------------- load & save
+
+	/**
+	 * Loads index from the file, discarding all current content.
+	 * Missing or invalid index file results with an empty index.
+	 */
+	public synchronized void load() {
+		sections = new TreeMap<String, Map<String, JarRecord>>();
+		usedSections.clear();
+		modified = false;
+
+		if (file.isFile() == false) {
+			return;
+		}
+		String[] lines;
+		try {
+			lines = FileUtil.readLines(file, StringPool.UTF_8);
+		} catch (IOException ignore) {
+			return;
+		}
+
+		try {
+			Map<String, JarRecord> section = null;
+			String jarKey = null;
+			List<String> entries = new ArrayList<String>();
+
+			for (String line : lines) {
+				if (line.length() == 0) {
+					continue;
+				}
+				char c = line.charAt(0);
+
+				if (c == '\t') {
+					entries.add(line.substring(1));
+					continue;
+				}
+
+				if (jarKey != null) {
+					section.put(jarKey, new JarRecord(entries.toArray(new String[entries.size()])));
+					jarKey = null;
+					entries.clear();
+				}
+
+				if (c == '[') {
+					section = new TreeMap<String, JarRecord>();
+					sections.put(line.substring(1, line.length() - 1), section);
+					continue;
+				}
+
+				jarKey = line;
+			}
+			if (jarKey != null) {
+				section.put(jarKey, new JarRecord(entries.toArray(new String[entries.size()])));
+			}
+		} catch (RuntimeException ignore) {
+			sections.clear();
+		}
+	}
+
+	/**
+	 * Saves index to the file, if it has been modified.
+	 * In sections used since the index was loaded or saved, records
+	 * of jars that were not scanned are removed, e.g. records
+	 * of previous jar versions.
+	 */
+	public synchronized void save() {
+		if (modified == false) {
+			return;
+		}
+
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<String, Map<String, JarRecord>> sectionEntry : sections.entrySet()) {
+			boolean usedSection = usedSections.contains(sectionEntry.getKey());
+
+			sb.append('[').append(sectionEntry.getKey()).append(']').append('\n');
+
+			Iterator<Map.Entry<String, JarRecord>> iterator = sectionEntry.getValue().entrySet().iterator();
+			while (iterator.hasNext()) {
+				Map.Entry<String, JarRecord> jarEntry = iterator.next();
+				JarRecord jarRecord = jarEntry.getValue();
+				if (usedSection && (jarRecord.used == false)) {
+					iterator.remove();
+					continue;
+				}
+				jarRecord.used = false;
+
+				sb.append(jarEntry.getKey()).append('\n');
+				for (String entry : jarRecord.entries) {
+					sb.append('\t').append(entry).append('\n');
+				}
+			}
+		}
+
+		try {
+			FileUtil.writeString(file, sb.toString(), StringPool.UTF_8);
+		} catch (IOException ioex) {
+			throw new FindFileException("Unable to save scan index: " + file, ioex);
+		}
+		usedSections.clear();
+		modified = false;
+	}
+
+	// ---------------------------------------------------------------- record
+
+	/**
+	 * Scan results of a single jar.
+	 */
+	protected static class JarRecord {
+		protected final String[] entries;
+		protected boolean used;			// looked up or stored since loaded
+
+		protected JarRecord(String[] entries) {
+			this.entries = entries;
+		}
+	}
+
+	/**
+	 * Calculated jar key of the jar file on the local file system.
+	 */
+	protected static class JarStamp {
+		protected final long length;
+		protected final long lastModified;
+		protected final String jarKey;
+
+		protected JarStamp(long length, long lastModified, String jarKey) {
+			this.length = length;
+			this.lastModified = lastModified;
+			this.jarKey = jarKey;
+		}
+	}
+
+}
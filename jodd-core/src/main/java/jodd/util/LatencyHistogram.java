@@ -0,0 +1,135 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent histogram of durations, in nanoseconds. Durations are counted
+ * in power-of-two buckets, so recording is constant time and memory,
+ * while percentiles are estimated with the precision of a factor of two.
+ * Bucket <code>i</code> holds durations in range <code>[2<sup>i-1</sup>, 2<sup>i</sup>)</code>.
+ */
+public class LatencyHistogram {
+
+	/**
+	 * Number of buckets.
+	 */
+	public static final int BUCKETS = 64;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final StripedCounter totalTime = new StripedCounter();
+	private final AtomicLong maxTime = new AtomicLong();
+
+	/**
+	 * Records the duration in nanoseconds.
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		buckets.getAndIncrement(bucketIndex(nanos));
+		totalTime.add(nanos);
+
+		long max = maxTime.get();
+		while (nanos > max) {
+			if (maxTime.compareAndSet(max, nanos)) {
+				break;
+			}
+			max = maxTime.get();
+		}
+	}
+
+	/**
+	 * Returns bucket index for given duration.
+	 */
+	public static int bucketIndex(long nanos) {
+		int index = 64 - Long.numberOfLeadingZeros(nanos);
+		if (index >= BUCKETS) {
+			index = BUCKETS - 1;
+		}
+		return index;
+	}
+
+	/**
+	 * Returns number of recorded durations.
+	 */
+	public long getCount() {
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			count += buckets.get(i);
+		}
+		return count;
+	}
+
+	/**
+	 * Returns sum of all recorded durations.
+	 */
+	public long getTotalTime() {
+		return totalTime.sum();
+	}
+
+	/**
+	 * Returns the longest recorded duration.
+	 */
+	public long getMaxTime() {
+		return maxTime.get();
+	}
+
+	/**
+	 * Returns a copy of bucket counts.
+	 */
+	public long[] getBucketCounts() {
+		long[] counts = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets.get(i);
+		}
+		return counts;
+	}
+
+	/**
+	 * Returns estimated duration below which given percentage
+	 * of recorded durations fall, e.g. <code>99</code>.
+	 */
+	public long getPercentile(double percent) {
+		return percentile(getBucketCounts(), percent);
+	}
+
+	/**
+	 * Estimates percentile from bucket counts. Returns the
+	 * upper bound of the bucket that holds the percentile.
+	 */
+	public static long percentile(long[] counts, double percent) {
+		long total = 0;
+		for (long count : counts) {
+			total += count;
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long threshold = (long) Math.ceil(total * percent / 100);
+		if (threshold < 1) {
+			threshold = 1;
+		}
+		long cumulative = 0;
+		for (int i = 0; i < counts.length; i++) {
+			cumulative += counts[i];
+			if (cumulative >= threshold) {
+				return i == 0 ? 0 : (1L << i) - 1;
+			}
+		}
+		return Long.MAX_VALUE;
+	}
+
+	/**
+	 * Resets the histogram.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets.set(i, 0);
+		}
+		totalTime.reset();
+		maxTime.set(0);
+	}
+}
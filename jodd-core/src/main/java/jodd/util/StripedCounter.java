@@ -0,0 +1,82 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent counter for frequently updated statistics. Instead of a single
+ * atomic value, counter is split in several cells, padded to be on separate
+ * cache lines. Each thread updates the cell selected by its id, so threads
+ * rarely contend on the same value. Reading the counter sums all the cells,
+ * so the sum is not an atomic snapshot while counter is being updated.
+ */
+public class StripedCounter {
+
+	private static final int PADDING = 8;		// longs per cell, cache line size
+
+	private final AtomicLongArray cells;
+	private final int mask;
+
+	public StripedCounter() {
+		int processors = Runtime.getRuntime().availableProcessors();
+		int count = 1;
+		while (count < processors) {
+			count <<= 1;
+		}
+		this.cells = new AtomicLongArray(count * PADDING);
+		this.mask = count - 1;
+	}
+
+	/**
+	 * Adds the value.
+	 */
+	public void add(long value) {
+		cells.getAndAdd(cellIndex(), value);
+	}
+
+	/**
+	 * Increments the counter.
+	 */
+	public void increment() {
+		cells.getAndIncrement(cellIndex());
+	}
+
+	/**
+	 * Returns the sum of all cells.
+	 */
+	public long sum() {
+		long sum = 0;
+		for (int i = 0; i < cells.length(); i += PADDING) {
+			sum += cells.get(i);
+		}
+		return sum;
+	}
+
+	/**
+	 * Resets the counter to zero. Concurrent updates
+	 * may be lost.
+	 */
+	public void reset() {
+		for (int i = 0; i < cells.length(); i += PADDING) {
+			cells.set(i, 0);
+		}
+	}
+
+	/**
+	 * Returns index of the current thread cell.
+	 */
+	private int cellIndex() {
+		long id = Thread.currentThread().getId();
+		int h = (int) (id ^ (id >>> 32));
+		h ^= (h >>> 16);
+		h *= 0x85ebca6b;
+		h ^= (h >>> 13);
+		return (h & mask) * PADDING;
+	}
+
+	@Override
+	public String toString() {
+		return String.valueOf(sum());
+	}
+}
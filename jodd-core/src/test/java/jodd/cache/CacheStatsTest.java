@@ -0,0 +1,108 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.cache;
+
+import jodd.util.LatencyHistogram;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+public class CacheStatsTest {
+
+	@Test
+	public void testCacheMapStats() {
+		LRUCache<String, String> cache = new LRUCache<String, String>(2);
+		cache.put("1", "1");
+		cache.put("1", "one");
+		cache.put("2", "2");
+		cache.put("3", "3");
+		assertNull(cache.get("1"));
+		assertNotNull(cache.get("2"));
+		assertNotNull(cache.get("3"));
+		cache.remove("3");
+
+		CacheStats stats = cache.getStats();
+		assertEquals(2, stats.getHitCount());
+		assertEquals(1, stats.getMissCount());
+		assertEquals(2, cache.getHitCount());
+		assertEquals(1, stats.getRemovalCount(RemovalCause.REPLACED));
+		assertEquals(1, stats.getRemovalCount(RemovalCause.SIZE));
+		assertEquals(1, stats.getRemovalCount(RemovalCause.EXPLICIT));
+		assertEquals(1, stats.getSize());
+		assertEquals(2.0 / 3, stats.getHitRate(), 0.0001);
+	}
+
+	@Test
+	public void testSegmentedCacheStats() {
+		SegmentedCache<String, String> cache = new SegmentedLRUCache<String, String>(2) {
+			@Override
+			protected int weigh(String key, String object) {
+				return object.length();
+			}
+		};
+		cache.put("1", "one");
+		cache.put("2", "two");
+		cache.put("2", "2");
+		cache.put("3", "three");
+		assertNull(cache.get("1"));
+		assertNotNull(cache.get("3"));
+
+		CacheStats stats = cache.getStats();
+		assertEquals(1, stats.getHitCount());
+		assertEquals(1, stats.getMissCount());
+		assertEquals(1, stats.getRemovalCount(RemovalCause.REPLACED));
+		assertEquals(1, stats.getRemovalCount(RemovalCause.SIZE));
+		assertEquals(1, stats.getEvictionCount());
+		assertEquals(2, stats.getSize());
+		assertEquals(6, stats.getWeight());
+		assertEquals(6, cache.getWeight());
+
+		cache.clear();
+		assertEquals(0, cache.getWeight());
+	}
+
+	@Test
+	public void testLoadTimes() {
+		CacheStatsCounter counter = new CacheStatsCounter();
+		for (int i = 1; i <= 100; i++) {
+			counter.recordLoadSuccess(i * 1000);
+		}
+		counter.recordLoadFailure(1000000);
+
+		CacheStats stats = counter.snapshot(0, 0);
+		assertEquals(100, stats.getLoadSuccessCount());
+		assertEquals(1, stats.getLoadFailureCount());
+		assertEquals(1000000, stats.getMaxLoadTime());
+		assertEquals(6050000, stats.getTotalLoadTime());
+
+		long p50 = stats.getLoadTimePercentile(50);
+		assertTrue(p50 >= 50000 && p50 < 100000);
+		assertEquals(LatencyHistogram.BUCKETS, stats.getLoadTimeHistogram().length);
+
+		counter.reset();
+		assertEquals(0, counter.snapshot(0, 0).getLoadSuccessCount());
+	}
+
+	@Test
+	public void testMonitor() throws Exception {
+		StatsCache<String, String> cache = new SegmentedLFUCache<String, String>(10);
+		cache.put("1", "1");
+		cache.get("1");
+		cache.get("2");
+
+		ObjectName objectName = CacheMonitor.register(cache, "test");
+		MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+		try {
+			assertEquals(Long.valueOf(1), mBeanServer.getAttribute(objectName, "HitCount"));
+			assertEquals(Long.valueOf(1), mBeanServer.getAttribute(objectName, "MissCount"));
+			assertEquals(Integer.valueOf(1), mBeanServer.getAttribute(objectName, "Size"));
+		} finally {
+			CacheMonitor.unregister(objectName);
+		}
+		assertFalse(mBeanServer.isRegistered(objectName));
+	}
+}
@@ -0,0 +1,109 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.cache;
+
+import jodd.io.FileUtil;
+import jodd.util.SystemUtil;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FileBufferCacheTest {
+
+	private File tempFolder = new File(SystemUtil.getTempDir());
+
+	private File file(String fileName, int size) throws IOException {
+		byte[] bytes = new byte[size];
+		for (int i = 0; i < size; i++) {
+			bytes[i] = (byte) i;
+		}
+
+		File file = new File(tempFolder, fileName);
+		file.deleteOnExit();
+
+		FileUtil.writeBytes(file, bytes);
+
+		return file;
+	}
+
+	@Test
+	public void testCache() throws IOException {
+		FileBufferCache cache = new FileBufferCache(25);
+
+		assertEquals(25, cache.getMaxSize());
+		assertEquals(12, cache.getMaxFileSize());
+
+		File a = file("fbc-a", 10);
+		File b = file("fbc-b", 9);
+		File c = file("fbc-c", 7);
+
+		cache.getFileBuffer(a);
+		cache.getFileBuffer(a);
+		cache.getFileBuffer(a);
+		cache.getFileBuffer(b);
+
+		assertEquals(2, cache.getCachedFilesCount());
+		assertEquals(19, cache.getUsedSize());
+
+		cache.getFileBuffer(c);        // b is out, a(2), c(0)
+
+		assertEquals(2, cache.getCachedFilesCount());
+		assertEquals(17, cache.getUsedSize());
+
+		cache.getFileBuffer(c);
+		cache.getFileBuffer(c);
+		cache.getFileBuffer(c);
+
+		cache.getFileBuffer(b);        // a is out
+
+		assertEquals(2, cache.getCachedFilesCount());
+		assertEquals(16, cache.getUsedSize());
+
+		File d = file("fbc-d", 20);     // too big to be cached
+		assertEquals(20, cache.getFileBuffer(d).remaining());
+		assertEquals(2, cache.getCachedFilesCount());
+	}
+
+	@Test
+	public void testReadOnlyViews() throws IOException {
+		for (int i = 0; i < 2; i++) {
+			FileBufferCache cache = new FileBufferCache(1000, 500, 0, i == 0);
+			File a = file("fbc-view", 100);
+
+			ByteBuffer buffer = cache.getFileBuffer(a);
+			assertTrue(buffer.isReadOnly());
+			assertEquals(100, buffer.remaining());
+			buffer.position(50);
+
+			buffer = cache.getFileBuffer(a);
+			assertEquals(0, buffer.position());
+			assertEquals(99, buffer.get(99));
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			cache.writeTo(a, out);
+			assertArrayEquals(FileUtil.readBytes(a), out.toByteArray());
+		}
+	}
+
+	@Test
+	public void testModified() throws IOException {
+		FileBufferCache cache = new FileBufferCache(1000, 500, 0, false);
+		File a = file("fbc-mod", 10);
+
+		assertEquals(10, cache.getFileBuffer(a).remaining());
+
+		file("fbc-mod", 20);
+		a.setLastModified(a.lastModified() + 2000);
+
+		assertEquals(20, cache.getFileBuffer(a).remaining());
+		assertEquals(1, cache.getCachedFilesCount());
+		assertEquals(20, cache.getUsedSize());
+	}
+}
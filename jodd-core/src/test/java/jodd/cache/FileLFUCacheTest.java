@@ -4,10 +4,13 @@ package jodd.cache;
 
 import jodd.io.FileUtil;
 import jodd.util.SystemUtil;
+import jodd.util.ThreadUtil;
 import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
 
@@ -62,4 +65,46 @@ public class FileLFUCacheTest {
 		assertEquals(2, cache.getCachedFilesCount());
 		assertEquals(16, cache.getUsedSize());
 	}
+
+	@Test
+	public void testLargeFile() throws IOException {
+		FileLFUCache cache = new FileLFUCache(25);
+
+		File d = file("d", 13);
+		assertEquals(13, cache.getFileBytes(d).length);
+		assertEquals(0, cache.getCachedFilesCount());
+		assertEquals(0, cache.getUsedSize());
+	}
+
+	@Test
+	public void testSingleRead() throws Exception {
+		final AtomicInteger reads = new AtomicInteger();
+		final FileLFUCache cache = new FileLFUCache(100) {
+			@Override
+			protected byte[] loadFile(File file) throws IOException {
+				reads.incrementAndGet();
+				ThreadUtil.sleep(100);
+				return super.loadFile(file);
+			}
+		};
+		final File a = file("a", 10);
+
+		final CountDownLatch latch = new CountDownLatch(10);
+		for (int i = 0; i < 10; i++) {
+			new Thread() {
+				@Override
+				public void run() {
+					try {
+						cache.getFileBytes(a);
+					} catch (IOException ignore) {
+					}
+					latch.countDown();
+				}
+			}.start();
+		}
+		latch.await();
+
+		assertEquals(1, reads.get());
+		assertEquals(10, cache.getUsedSize());
+	}
 }
@@ -0,0 +1,213 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.cache;
+
+import jodd.util.ThreadUtil;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SegmentedCacheTest {
+
+	@Test
+	public void testOverweight() {
+		SegmentedCache<String, String> cache = new SegmentedLRUCache<String, String>(0, 10, 0, 1) {
+			@Override
+			protected int weigh(String key, String value) {
+				return value.length();
+			}
+		};
+		cache.put("1", "aaa");
+		cache.put("2", "bbb");
+		cache.put("3", "ccccccccccc");		// heavier than the cache
+
+		assertEquals(2, cache.size());
+		assertEquals(6, cache.getWeight());
+		assertNull(cache.get("3"));
+
+		cache.put("1", "aaaaaaaaaaaa");		// replaced, but not cached
+		assertNull(cache.get("1"));
+		assertEquals("bbb", cache.get("2"));
+		assertEquals(3, cache.getWeight());
+	}
+
+	@Test
+	public void testSegmentsWeight() {
+		SegmentedCache<String, String> cache = new SegmentedLRUCache<String, String>(0, 3, 0, 16);
+		assertEquals(1, cache.getSegmentsCount());
+		for (int i = 0; i < 10; i++) {
+			cache.put(String.valueOf(i), "v");
+		}
+		assertEquals(3, cache.getWeight());
+
+		cache = new SegmentedLRUCache<String, String>(0, 50, 0, 16);
+		assertEquals(2, cache.getSegmentsCount());
+		assertEquals(25, cache.segments[0].maxWeight);
+		assertEquals(25, cache.segments[1].maxWeight);
+
+		cache = new SegmentedLRUCache<String, String>(0, 67, 0, 16);
+		assertEquals(4, cache.getSegmentsCount());
+		long total = 0;
+		for (CacheSegment<String, String> segment : cache.segments) {
+			assertTrue(segment.maxWeight >= 16);
+			total += segment.maxWeight;
+		}
+		assertEquals(67, total);
+
+		for (int i = 0; i < 1000; i++) {
+			cache.put(String.valueOf(i), "v");
+			assertTrue(cache.getWeight() <= 67);
+		}
+	}
+
+	@Test
+	public void testSegments() {
+		assertEquals(1, new SegmentedLRUCache<String, String>(3).getSegmentsCount());
+		assertEquals(1, new SegmentedLRUCache<String, String>(31).getSegmentsCount());
+		assertEquals(2, new SegmentedLRUCache<String, String>(32).getSegmentsCount());
+		assertEquals(4, new SegmentedLRUCache<String, String>(100).getSegmentsCount());
+		assertEquals(16, new SegmentedLRUCache<String, String>(10000).getSegmentsCount());
+		assertEquals(8, new SegmentedLRUCache<String, String>(10000, 0, 12).getSegmentsCount());
+		assertEquals(16, new SegmentedLRUCache<String, String>(0).getSegmentsCount());
+	}
+
+	@Test
+	public void testLRUCache() {
+		Cache<String, String> cache = new SegmentedLRUCache<String, String>(3);
+		cache.put("1", "1");
+		cache.put("2", "2");
+		assertFalse(cache.isFull());
+		cache.put("3", "3");
+		assertTrue(cache.isFull());
+
+		assertNotNull(cache.get("3"));
+		assertNotNull(cache.get("1"));
+		assertNotNull(cache.get("2"));
+		cache.put("4", "4");
+		assertNull(cache.get("3"));
+		assertNotNull(cache.get("1"));
+		assertNotNull(cache.get("2"));
+		assertNotNull(cache.get("4"));
+		cache.put("3", "3");
+		assertNull(cache.get("1"));
+		assertEquals(3, cache.size());
+	}
+
+	@Test
+	public void testLFUCache() {
+		Cache<String, String> cache = new SegmentedLFUCache<String, String>(3);
+		cache.put("1", "1");
+		cache.put("2", "2");
+		cache.put("3", "3");
+		assertTrue(cache.isFull());
+
+		assertNotNull(cache.get("3"));
+		assertNotNull(cache.get("3"));
+		assertNotNull(cache.get("3"));
+		assertNotNull(cache.get("1"));
+		assertNotNull(cache.get("2"));
+		cache.put("4", "4");            // 1 AND 2 will be removed, but not 3
+		assertNotNull(cache.get("3"));
+		assertNotNull(cache.get("4"));
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void testCacheTime() {
+		Cache<String, String> cache = new SegmentedLRUCache<String, String>(3);
+		cache.put("3", "3");
+		cache.put("2", "2");
+		cache.put("1", "1", 50);
+		assertNotNull(cache.get("1"));
+		assertTrue(cache.isFull());
+
+		ThreadUtil.sleep(100);
+		assertNull(cache.get("1"));     // expired
+		assertFalse(cache.isFull());
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void testPruneAndIterator() {
+		Cache<String, String> cache = new SegmentedLRUCache<String, String>(0);
+		for (int i = 0; i < 100; i++) {
+			cache.put(String.valueOf(i), String.valueOf(i), i % 2 == 0 ? 50 : 0);
+		}
+		assertEquals(100, cache.size());
+		assertFalse(cache.isFull());
+
+		ThreadUtil.sleep(100);
+		int count = 0;
+		Iterator<String> iterator = cache.iterator();
+		while (iterator.hasNext()) {
+			String value = iterator.next();
+			assertEquals(1, Integer.parseInt(value) % 2);
+			count++;
+		}
+		assertEquals(50, count);
+
+		assertEquals(50, cache.prune());
+		assertEquals(50, cache.size());
+
+		cache.clear();
+		assertTrue(cache.isEmpty());
+	}
+
+	@Test
+	public void testOnRemove() {
+		final AtomicInteger removed = new AtomicInteger();
+		Cache<String, String> cache = new SegmentedLRUCache<String, String>(2) {
+			@Override
+			protected void onRemove(String key, String cachedObject) {
+				removed.incrementAndGet();
+			}
+		};
+		cache.put("1", "1");
+		cache.put("2", "2");
+		cache.put("3", "3");
+		assertEquals(1, removed.get());
+		cache.remove("2");
+		assertEquals(2, removed.get());
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testConcurrency() throws InterruptedException {
+		final Cache<Integer, Integer> cache = new SegmentedLRUCache<Integer, Integer>(1000);
+		final int threadsCount = 16;
+		final CountDownLatch latch = new CountDownLatch(threadsCount);
+		final AtomicInteger errors = new AtomicInteger();
+
+		for (int t = 0; t < threadsCount; t++) {
+			final int seed = t;
+			new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int i = 0; i < 20000; i++) {
+							Integer key = Integer.valueOf((i * 31 + seed) % 3000);
+							Integer value = cache.get(key);
+							if (value == null) {
+								cache.put(key, key);
+							} else if (value.equals(key) == false) {
+								errors.incrementAndGet();
+							}
+						}
+					} catch (RuntimeException rex) {
+						errors.incrementAndGet();
+					} finally {
+						latch.countDown();
+					}
+				}
+			}.start();
+		}
+		latch.await();
+
+		assertEquals(0, errors.get());
+		assertTrue(cache.size() <= 1000);
+	}
+}
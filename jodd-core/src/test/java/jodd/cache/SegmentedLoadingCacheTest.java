@@ -0,0 +1,198 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.cache;
+
+import jodd.util.ThreadUtil;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SegmentedLoadingCacheTest {
+
+	static class CountingLoader implements CacheLoader<String, String> {
+		final AtomicInteger count = new AtomicInteger();
+		final long delay;
+
+		CountingLoader(long delay) {
+			this.delay = delay;
+		}
+
+		public String load(String key) throws Exception {
+			int loadCount = count.incrementAndGet();
+			if (delay != 0) {
+				ThreadUtil.sleep(delay);
+			}
+			if (key.equals("fail")) {
+				throw new IllegalStateException(key);
+			}
+			if (key.equals("null")) {
+				return null;
+			}
+			return key + loadCount;
+		}
+	}
+
+	@Test
+	public void testLoad() {
+		CountingLoader loader = new CountingLoader(0);
+		LoadingCache<String, String> cache = new SegmentedLoadingCache<String, String>(
+				new SegmentedLRUCache<String, String>(10), loader);
+
+		assertNull(cache.getIfPresent("a"));
+		assertEquals("a1", cache.get("a"));
+		assertEquals("a1", cache.get("a"));
+		assertEquals("a1", cache.getIfPresent("a"));
+		assertEquals(1, loader.count.get());
+
+		assertNull(cache.get("null"));
+		assertEquals(1, cache.size());
+
+		try {
+			cache.get("fail");
+			fail();
+		} catch (CacheLoaderException clex) {
+			assertTrue(clex.getCause() instanceof IllegalStateException);
+		}
+
+		CacheStats stats = cache.getStats();
+		assertEquals(2, stats.getLoadSuccessCount());
+		assertEquals(1, stats.getLoadFailureCount());
+	}
+
+	@Test
+	public void testSingleFlight() throws InterruptedException {
+		CountingLoader loader = new CountingLoader(100);
+		final LoadingCache<String, String> cache = new SegmentedLoadingCache<String, String>(
+				new TinyLFUCache<String, String>(10), loader);
+
+		final int threadsCount = 10;
+		final CountDownLatch latch = new CountDownLatch(threadsCount);
+		final AtomicInteger errors = new AtomicInteger();
+
+		for (int i = 0; i < threadsCount; i++) {
+			new Thread() {
+				@Override
+				public void run() {
+					if ("key1".equals(cache.get("key")) == false) {
+						errors.incrementAndGet();
+					}
+					latch.countDown();
+				}
+			}.start();
+		}
+		latch.await();
+
+		assertEquals(0, errors.get());
+		assertEquals(1, loader.count.get());
+	}
+
+	@Test
+	public void testGetAll() {
+		CountingLoader loader = new CountingLoader(0);
+		LoadingCache<String, String> cache = new SegmentedLoadingCache<String, String>(
+				new SegmentedLRUCache<String, String>(10), loader);
+
+		cache.put("b", "b0");
+		Map<String, String> values = cache.getAll(Arrays.asList("a", "b", "null", "c", "a"));
+		assertEquals(3, values.size());
+		assertEquals("[a, b, c]", values.keySet().toString());
+		assertEquals("b0", values.get("b"));
+		assertEquals(3, loader.count.get());
+	}
+
+	@Test
+	public void testRefreshAhead() {
+		CountingLoader loader = new CountingLoader(0);
+		Executor sameThread = new Executor() {
+			public void execute(Runnable command) {
+				command.run();
+			}
+		};
+		LoadingCache<String, String> cache = new SegmentedLoadingCache<String, String>(
+				new SegmentedLRUCache<String, String>(10), loader, 50, sameThread);
+
+		assertEquals("a1", cache.get("a"));
+		assertEquals("a1", cache.get("a"));
+
+		ThreadUtil.sleep(100);
+		assertEquals("a1", cache.get("a"));		// old value, refresh triggered
+		assertEquals("a2", cache.get("a"));
+		assertEquals(2, loader.count.get());
+	}
+
+	@Test
+	public void testRefreshRejected() {
+		CountingLoader loader = new CountingLoader(0);
+		Executor rejecting = new Executor() {
+			public void execute(Runnable command) {
+				throw new RejectedExecutionException();
+			}
+		};
+		SegmentedLoadingCache<String, String> cache = new SegmentedLoadingCache<String, String>(
+				new SegmentedLRUCache<String, String>(10), loader, 50, rejecting);
+
+		assertEquals("a1", cache.get("a"));
+
+		ThreadUtil.sleep(100);
+		assertEquals("a1", cache.get("a"));		// refresh rejected
+		assertTrue(cache.loads.isEmpty());
+
+		cache.remove("a");
+		assertEquals("a2", cache.get("a"));
+	}
+
+	@Test
+	public void testRefreshFailure() {
+		final AtomicInteger count = new AtomicInteger();
+		CacheLoader<String, String> loader = new CacheLoader<String, String>() {
+			public String load(String key) throws Exception {
+				if (count.incrementAndGet() > 1) {
+					throw new IllegalStateException("down");
+				}
+				return key;
+			}
+		};
+		final AtomicInteger failures = new AtomicInteger();
+		LoadingCache<String, String> cache = new SegmentedLoadingCache<String, String>(
+				new SegmentedLRUCache<String, String>(10), loader, 50, null) {
+			@Override
+			protected void onRefreshFailure(String key, Exception exception) {
+				assertEquals("a", key);
+				assertEquals("down", exception.getMessage());
+				failures.incrementAndGet();
+			}
+		};
+
+		assertEquals("a", cache.get("a"));
+
+		ThreadUtil.sleep(100);
+		assertEquals("a", cache.get("a"));		// refresh failed, old value is kept
+		assertEquals("a", cache.get("a"));		// failure is not thrown, refresh is retried
+		assertEquals("a", cache.getAll(Arrays.asList("a")).get("a"));
+		assertEquals("a", cache.getIfPresent("a"));
+		assertEquals(3, count.get());
+		assertEquals(2, failures.get());
+		assertEquals(2, cache.getStats().getLoadFailureCount());
+	}
+
+	@Test
+	public void testRefreshInAccessingThread() {
+		CountingLoader loader = new CountingLoader(0);
+		LoadingCache<String, String> cache = new SegmentedLoadingCache<String, String>(
+				new SegmentedLRUCache<String, String>(10), loader, 50, null);
+
+		assertEquals("a1", cache.get("a"));
+
+		ThreadUtil.sleep(100);
+		assertEquals("a1", cache.get("a"));		// old value, refreshed
+		assertEquals("a2", cache.get("a"));
+		assertEquals(2, loader.count.get());
+	}
+}
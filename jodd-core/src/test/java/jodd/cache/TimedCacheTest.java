@@ -0,0 +1,82 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.cache;
+
+import jodd.util.ThreadUtil;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TimedCacheTest {
+
+	@Test
+	public void testPrune() {
+		TimedCache<String, String> cache = new TimedCache<String, String>(50);
+		cache.put("1", "1");
+		cache.put("2", "2");
+		cache.put("3", "3", 0);
+		cache.put("4", "4", 500);
+		assertFalse(cache.isFull());
+		assertEquals(3, cache.expirationWheel.size());
+
+		assertEquals(0, cache.prune());
+
+		ThreadUtil.sleep(100);
+		assertEquals(2, cache.prune());
+		assertEquals(2, cache.size());
+		assertNotNull(cache.get("3"));
+		assertNotNull(cache.get("4"));
+		assertEquals(1, cache.expirationWheel.size());
+	}
+
+	@Test
+	public void testReplaceAndAccess() {
+		TimedCache<String, String> cache = new TimedCache<String, String>(100);
+		cache.put("1", "1");
+		cache.put("1", "one");
+		assertEquals(1, cache.expirationWheel.size());
+
+		ThreadUtil.sleep(60);
+		assertEquals("one", cache.get("1"));	// sliding expiration
+		ThreadUtil.sleep(60);
+		assertEquals(0, cache.prune());
+		assertEquals(1, cache.size());
+
+		ThreadUtil.sleep(150);
+		assertEquals(1, cache.prune());
+		assertTrue(cache.isEmpty());
+	}
+
+	@Test
+	public void testRemoveAndClear() {
+		TimedCache<String, String> cache = new TimedCache<String, String>(1000);
+		cache.put("1", "1");
+		cache.put("2", "2");
+		cache.put("3", "3");
+		assertEquals(3, cache.expirationWheel.size());
+
+		cache.remove("1");
+		assertEquals(2, cache.expirationWheel.size());
+
+		cache.clear();
+		assertEquals(0, cache.expirationWheel.size());
+	}
+
+	@Test
+	public void testClockRestart() {
+		TimedCache<String, String> cache = new TimedCache<String, String>(1000);
+		assertTrue(CacheClock.isRunning());
+
+		CacheClock.stop();
+		assertFalse(CacheClock.isRunning());
+
+		// clock is not started by reading the time
+		long now = System.currentTimeMillis();
+		assertTrue(CacheClock.currentTimeMillis() >= now);
+		assertFalse(CacheClock.isRunning());
+
+		CacheClock.register(cache);
+		assertTrue(CacheClock.isRunning());
+		CacheClock.stop();
+	}
+}
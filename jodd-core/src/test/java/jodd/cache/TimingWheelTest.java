@@ -0,0 +1,102 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TimingWheelTest {
+
+	static class TestWheel extends TimingWheel<String> {
+		final List<String> expired = new ArrayList<String>();
+		long now;
+
+		TestWheel(long tickDuration, long now) {
+			super(tickDuration, now);
+		}
+
+		@Override
+		protected void onExpire(Timeout<String> timeout) {
+			assertTrue(timeout.getDeadline() <= now);
+			expired.add(timeout.getElement());
+		}
+
+		int advanceTo(long time) {
+			now = time;
+			return advance(time);
+		}
+	}
+
+	@Test
+	public void testExpire() {
+		TestWheel wheel = new TestWheel(10, 1000);
+		wheel.schedule("a", 1015);
+		wheel.schedule("b", 1050);
+		TimingWheel.Timeout<String> c = wheel.schedule("c", 1050);
+		wheel.schedule("d", 1000);
+		assertEquals(4, wheel.size());
+
+		assertEquals(0, wheel.advanceTo(1009));
+		assertEquals(1, wheel.advanceTo(1010));
+		assertEquals("d", wheel.expired.get(0));
+
+		assertEquals(0, wheel.advanceTo(1019));
+		assertEquals(1, wheel.advanceTo(1020));
+		assertEquals("a", wheel.expired.get(1));
+
+		wheel.cancel(c);
+		assertFalse(c.isScheduled());
+		assertEquals(1, wheel.size());
+
+		assertEquals(1, wheel.advanceTo(1100));
+		assertEquals("b", wheel.expired.get(2));
+		assertEquals(0, wheel.size());
+	}
+
+	@Test
+	public void testCascade() {
+		TestWheel wheel = new TestWheel(1, 0);
+		long[] deadlines = new long[] {63, 64, 65, 4095, 4096, 4097, 300000, 20000000, 5000000000L};
+		for (long deadline : deadlines) {
+			wheel.schedule(String.valueOf(deadline), deadline);
+		}
+
+		for (long deadline : deadlines) {
+			int size = wheel.size();
+			assertEquals(0, wheel.advanceTo(deadline - 1));
+			assertEquals(size, wheel.size());
+			assertEquals(1, wheel.advanceTo(deadline));
+			assertEquals(String.valueOf(deadline), wheel.expired.get(wheel.expired.size() - 1));
+		}
+		assertEquals(0, wheel.size());
+	}
+
+	@Test
+	public void testReschedule() {
+		TestWheel wheel = new TestWheel(10, 0) {
+			@Override
+			protected void onExpire(Timeout<String> timeout) {
+				super.onExpire(timeout);
+				if (expired.size() < 3) {
+					reschedule(timeout, now + 100);
+				}
+			}
+		};
+		wheel.schedule("a", 100);
+		wheel.advanceTo(100);
+		wheel.advanceTo(150);
+		assertEquals(1, wheel.expired.size());
+		wheel.advanceTo(200);
+		wheel.advanceTo(300);
+		assertEquals(3, wheel.expired.size());
+		assertEquals(0, wheel.size());
+
+		wheel.schedule("b", 1000);
+		wheel.clear();
+		assertEquals(0, wheel.advanceTo(2000));
+	}
+}
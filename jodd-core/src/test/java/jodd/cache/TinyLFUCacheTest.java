@@ -0,0 +1,111 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.cache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TinyLFUCacheTest {
+
+	@Test
+	public void testCache() {
+		Cache<String, String> cache = new TinyLFUCache<String, String>(3);
+		cache.put("1", "1");
+		cache.put("2", "2");
+		assertFalse(cache.isFull());
+		cache.put("3", "3");
+		assertTrue(cache.isFull());
+
+		for (int i = 0; i < 5; i++) {
+			assertNotNull(cache.get("1"));
+			assertNotNull(cache.get("2"));
+		}
+
+		cache.put("4", "4");			// new one-hit element is not admitted
+		assertEquals(3, cache.size());
+		assertNotNull(cache.get("1"));
+		assertNotNull(cache.get("2"));
+
+		cache.remove("1");
+		assertNull(cache.get("1"));
+		assertEquals(2, cache.size());
+
+		cache.clear();
+		assertTrue(cache.isEmpty());
+	}
+
+	@Test
+	public void testAdmission() {
+		Cache<String, String> cache = new TinyLFUCache<String, String>(16, 0, 1);
+		for (int i = 0; i < 16; i++) {
+			cache.put("k" + i, "v");
+		}
+		cache.put("hot", "v");			// window entries are moved to the main area
+		assertEquals(16, cache.size());
+		assertNotNull(cache.get("k0"));
+		assertNull(cache.get("k15"));
+
+		for (int i = 0; i < 5; i++) {
+			assertNotNull(cache.get("hot"));
+		}
+		cache.put("new", "v");			// frequent candidate replaces main area victim
+		assertEquals(16, cache.size());
+		assertNotNull(cache.get("hot"));
+		assertNotNull(cache.get("new"));
+		assertNull(cache.get("k1"));
+		assertNotNull(cache.get("k2"));
+	}
+
+	@Test
+	public void testScanResistance() {
+		Cache<Integer, Integer> cache = new TinyLFUCache<Integer, Integer>(100, 0, 1);
+
+		for (int round = 0; round < 10; round++) {
+			for (int i = 0; i < 50; i++) {
+				Integer key = Integer.valueOf(i);
+				if (cache.get(key) == null) {
+					cache.put(key, key);
+				}
+			}
+		}
+
+		// scan of one-hit wonders, while hot keys are still in use
+		for (int i = 1000; i < 5000; i++) {
+			Integer key = Integer.valueOf(i);
+			if (cache.get(key) == null) {
+				cache.put(key, key);
+			}
+			key = Integer.valueOf(i % 50);
+			if (cache.get(key) == null) {
+				cache.put(key, key);
+			}
+		}
+		assertEquals(100, cache.size());
+
+		int hits = 0;
+		for (int i = 0; i < 50; i++) {
+			if (cache.get(Integer.valueOf(i)) != null) {
+				hits++;
+			}
+		}
+		assertTrue(hits >= 45);
+	}
+
+	@Test
+	public void testFrequencySketch() {
+		FrequencySketch sketch = new FrequencySketch(64);
+		assertEquals(0, sketch.frequency("a"));
+		for (int i = 0; i < 5; i++) {
+			sketch.increment("a");
+		}
+		sketch.increment("b");
+		assertTrue(sketch.frequency("a") >= 5);
+		assertTrue(sketch.frequency("b") >= 1);
+
+		for (int i = 0; i < 100; i++) {
+			sketch.increment("c");
+		}
+		assertEquals(15, sketch.frequency("c"));
+	}
+}
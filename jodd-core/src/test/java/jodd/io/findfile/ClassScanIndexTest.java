@@ -0,0 +1,175 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.io.findfile;
+
+import jodd.io.FileUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ClassScanIndexTest {
+
+	protected File root;
+	protected File jar1;
+	protected File jar2;
+	protected File indexFile;
+
+	@Before
+	public void setUp() throws IOException {
+		root = FileUtil.createTempDirectory("jodd", "scan");
+		jar1 = new File(root, "one.jar");
+		jar2 = new File(root, "two.jar");
+		indexFile = new File(root, "scan.idx");
+
+		createJar(jar1, "foo/OneAction.class", "foo/One.class", "foo/res.txt");
+		createJar(jar2, "bar/Two.class", "bar/TwoAction.class", "bar/ThreeAction.class");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		FileUtil.deleteDir(root);
+	}
+
+	protected void createJar(File jarFile, String... names) throws IOException {
+		ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(jarFile));
+		try {
+			for (String name : names) {
+				zos.putNextEntry(new ZipEntry(name));
+				zos.write(name.getBytes());
+				zos.closeEntry();
+			}
+		} finally {
+			zos.close();
+		}
+	}
+
+	static class ActionScanner extends ClassScanner {
+		final List<String> matched = new ArrayList<String>();
+		final List<String> found = new ArrayList<String>();
+
+		@Override
+		protected boolean matchEntry(EntryData entryData) {
+			synchronized (matched) {
+				matched.add(entryData.getName());
+			}
+			return entryData.getName().endsWith("Action");
+		}
+
+		@Override
+		protected void onEntry(EntryData entryData) {
+			found.add(entryData.getName());
+		}
+	}
+
+	@Test
+	public void testIndex() {
+		ActionScanner scanner = new ActionScanner();
+		scanner.setScanIndex(new ClassScanIndex(indexFile));
+		scanner.scan(jar1, jar2);
+
+		assertEquals(5, scanner.matched.size());
+		assertEquals(Arrays.asList("foo.OneAction", "bar.TwoAction", "bar.ThreeAction"), scanner.found);
+		assertTrue(indexFile.exists());
+
+		// second scan uses the index
+
+		scanner = new ActionScanner();
+		scanner.setScanIndex(new ClassScanIndex(indexFile));
+		scanner.scan(jar1, jar2);
+
+		assertEquals(0, scanner.matched.size());
+		assertEquals(Arrays.asList("foo.OneAction", "bar.TwoAction", "bar.ThreeAction"), scanner.found);
+
+		// different settings use different index section
+
+		scanner = new ActionScanner();
+		scanner.setScanIndex(new ClassScanIndex(indexFile));
+		scanner.setExcludedEntries("bar.Three*");
+		scanner.scan(jar1, jar2);
+
+		assertEquals(4, scanner.matched.size());
+		assertEquals(Arrays.asList("foo.OneAction", "bar.TwoAction"), scanner.found);
+	}
+
+	@Test
+	public void testChangedJar() throws IOException {
+		ClassScanIndex scanIndex = new ClassScanIndex(indexFile);
+
+		ActionScanner scanner = new ActionScanner();
+		scanner.setScanIndex(scanIndex);
+		scanner.scan(jar1, jar2);
+
+		createJar(jar1, "foo/OneAction.class", "foo/FourAction.class");
+		jar1.setLastModified(jar1.lastModified() - 10000);
+
+		scanner = new ActionScanner();
+		scanner.setScanIndex(scanIndex);
+		scanner.scan(jar1, jar2);
+
+		assertEquals(Arrays.asList("foo.OneAction", "foo.FourAction"), scanner.matched);
+		assertEquals(Arrays.asList("foo.OneAction", "foo.FourAction", "bar.TwoAction", "bar.ThreeAction"), scanner.found);
+
+		// record of the previous jar version is removed
+		String index = FileUtil.readString(indexFile);
+		assertEquals(index.indexOf(" one.jar"), index.lastIndexOf(" one.jar"));
+	}
+
+	@Test
+	public void testRelocatedJar() throws IOException {
+		ActionScanner scanner = new ActionScanner();
+		scanner.setScanIndex(new ClassScanIndex(indexFile));
+		scanner.scan(jar1, jar2);
+
+		// index is shipped and jars are deployed to a different location
+		File deploy = new File(root, "deploy");
+		FileUtil.mkdir(deploy);
+		File deployed1 = new File(deploy, jar1.getName());
+		File deployed2 = new File(deploy, jar2.getName());
+		FileUtil.copy(jar1, deployed1);
+		FileUtil.copy(jar2, deployed2);
+		deployed1.setLastModified(jar1.lastModified() + 100000);
+		deployed2.setLastModified(jar2.lastModified() + 100000);
+
+		scanner = new ActionScanner();
+		scanner.setScanIndex(new ClassScanIndex(indexFile));
+		scanner.scan(deployed1, deployed2);
+
+		assertEquals(0, scanner.matched.size());
+		assertEquals(Arrays.asList("foo.OneAction", "bar.TwoAction", "bar.ThreeAction"), scanner.found);
+	}
+
+	@Test
+	public void testConcurrentScan() {
+		ActionScanner scanner = new ActionScanner();
+		scanner.setScanThreads(4);
+		scanner.scan(jar1, root, jar2);
+
+		assertEquals(5, scanner.matched.size());
+		assertEquals(Arrays.asList("foo.OneAction", "bar.TwoAction", "bar.ThreeAction"), scanner.found);
+
+		scanner = new ActionScanner();
+		scanner.setScanThreads(4);
+		scanner.setScanIndex(new ClassScanIndex(indexFile));
+		scanner.scan(jar2, jar1);
+		assertEquals(Arrays.asList("bar.TwoAction", "bar.ThreeAction", "foo.OneAction"), scanner.found);
+
+		scanner = new ActionScanner();
+		scanner.setScanThreads(4);
+		scanner.setScanIndex(new ClassScanIndex(indexFile));
+		scanner.scan(jar2, jar1);
+		assertEquals(0, scanner.matched.size());
+		assertEquals(Arrays.asList("bar.TwoAction", "bar.ThreeAction", "foo.OneAction"), scanner.found);
+	}
+}
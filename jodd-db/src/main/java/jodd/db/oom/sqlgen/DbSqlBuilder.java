@@ -19,7 +19,7 @@ import jodd.db.oom.sqlgen.chunks.MatchChunk;
 import jodd.db.DbSession;
 import jodd.util.StringPool;
 import jodd.cache.Cache;
-import jodd.cache.LRUCache;
+import jodd.cache.SegmentedLRUCache;
 
 import java.util.Map;
 
@@ -97,7 +97,7 @@ public class DbSqlBuilder extends TemplateData implements DbSqlGenerator {
 
 	// ---------------------------------------------------------------- cache & clone
 
-	protected static Cache<String, SqlChunk> cache = new LRUCache<String, SqlChunk>(100);
+	protected static Cache<String, SqlChunk> cache = new SegmentedLRUCache<String, SqlChunk>(100);
 
 	protected static int cacheThreshold = 3;
 
@@ -118,7 +118,7 @@ public class DbSqlBuilder extends TemplateData implements DbSqlGenerator {
 		if (size <= 0) {
 			cache = null;
 		} else {
-			cache = new LRUCache<String, SqlChunk>(size);
+			cache = new SegmentedLRUCache<String, SqlChunk>(size);
 		}
 	}
 
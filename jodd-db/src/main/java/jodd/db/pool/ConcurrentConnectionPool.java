@@ -0,0 +1,688 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.db.pool;
+
+import jodd.db.DbSqlException;
+import jodd.db.connection.ConnectionProvider;
+import jodd.util.LatencyHistogram;
+import jodd.util.StripedCounter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * High-throughput connection pool, without a global lock on the
+ * borrow/return path, unlike {@link CoreConnectionPool}.
+ * <p>
+ * Connections are kept in a concurrent bag with thread affinity: thread
+ * first tries connections it has used before, then all the others.
+ * Threads that find no available connection wait in a fair order for at
+ * most the {@link #setConnectionTimeout(long) connection timeout}, while
+ * new connections are opened in the background, up to the max number of
+ * connections.
+ * <p>
+ * Pool maintenance is done off the request path, by a background thread
+ * that periodically closes idle and retired connections, validates idle
+ * connections, reports leaked connections and keeps the minimum number of
+ * connections open. Pool statistics are available as {@link #getStats() snapshots}.
+ */
+public class ConcurrentConnectionPool implements ConnectionProvider {
+
+	private static final Logger log = LoggerFactory.getLogger(ConcurrentConnectionPool.class);
+
+	// ---------------------------------------------------------------- properties
+
+	private static final String DEFAULT_VALIDATION_QUERY = "select 1";
+
+	private String driver;
+	private String url;
+	private String user;
+	private String password;
+	private int maxConnections = 10;
+	private int minConnections = 5;
+	private long connectionTimeout = 30000;			// 30 seconds
+	private boolean validateConnection = true;
+	private long validationTimeout = 18000000L;		// 5 hours
+	private String validationQuery;
+	private long idleTimeout = 600000;				// 10 minutes
+	private long maxLifetime = 1800000;				// 30 minutes
+	private long keepaliveTime;
+	private long leakDetectionThreshold;
+	private long housekeepingPeriod = 30000;		// 30 seconds
+
+
+	public String getDriver() {
+		return driver;
+	}
+
+	/**
+	 * Specifies driver class name.
+	 */
+	public void setDriver(String driver) {
+		this.driver = driver;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	/**
+	 * Specifies JDBC url.
+	 */
+	public void setUrl(String url) {
+		this.url = url;
+	}
+
+	public String getUser() {
+		return user;
+	}
+
+	/**
+	 * Specifies db username.
+	 */
+	public void setUser(String user) {
+		this.user = user;
+	}
+
+	public String getPassword() {
+		return password;
+	}
+
+	/**
+	 * Specifies db password.
+	 */
+	public void setPassword(String password) {
+		this.password = password;
+	}
+
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+
+	/**
+	 * Sets max number of connections.
+	 */
+	public void setMaxConnections(int maxConnections) {
+		this.maxConnections = maxConnections;
+	}
+
+	public int getMinConnections() {
+		return minConnections;
+	}
+
+	/**
+	 * Sets minimum number of open connections.
+	 */
+	public void setMinConnections(int minConnections) {
+		this.minConnections = minConnections;
+	}
+
+	public long getConnectionTimeout() {
+		return connectionTimeout;
+	}
+
+	/**
+	 * Specifies max number of milliseconds to wait for a connection
+	 * when none is available. Exception is thrown on timeout.
+	 */
+	public void setConnectionTimeout(long connectionTimeout) {
+		this.connectionTimeout = connectionTimeout;
+	}
+
+	public long getValidationTimeout() {
+		return validationTimeout;
+	}
+
+	/**
+	 * Specifies number of milliseconds from connection last usage
+	 * when connection is considered as opened and valid.
+	 */
+	public void setValidationTimeout(long validationTimeout) {
+		this.validationTimeout = validationTimeout;
+	}
+
+	public String getValidationQuery() {
+		return validationQuery;
+	}
+
+	/**
+	 * Specifies query to be used for validating connections.
+	 * If set to <code>null</code> validation will be performed
+	 * by invoking <code>Connection#isClosed</code> method.
+	 */
+	public void setValidationQuery(String validationQuery) {
+		this.validationQuery = validationQuery;
+	}
+
+	/**
+	 * Sets default validation query (select 1);
+	 */
+	public void setDefaultValidationQuery() {
+		this.validationQuery = DEFAULT_VALIDATION_QUERY;
+	}
+
+	public boolean isValidateConnection() {
+		return validateConnection;
+	}
+
+	/**
+	 * Specifies if connections should be validated before returned.
+	 */
+	public void setValidateConnection(boolean validateConnection) {
+		this.validateConnection = validateConnection;
+	}
+
+	public long getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	/**
+	 * Specifies number of milliseconds after which unused connection
+	 * is closed, while there are more than minimum connections.
+	 * Set to <code>0</code> to keep idle connections open.
+	 */
+	public void setIdleTimeout(long idleTimeout) {
+		this.idleTimeout = idleTimeout;
+	}
+
+	public long getMaxLifetime() {
+		return maxLifetime;
+	}
+
+	/**
+	 * Specifies max number of milliseconds from connection creation
+	 * after which connection is closed and replaced with a new one.
+	 * Busy connections are retired when returned to the pool.
+	 * Set to <code>0</code> for unlimited lifetime.
+	 */
+	public void setMaxLifetime(long maxLifetime) {
+		this.maxLifetime = maxLifetime;
+	}
+
+	public long getKeepaliveTime() {
+		return keepaliveTime;
+	}
+
+	/**
+	 * Specifies number of milliseconds after which unused connection is
+	 * validated in the background, so it is not closed by the database
+	 * or the network. Set to <code>0</code> to disable keepalive.
+	 */
+	public void setKeepaliveTime(long keepaliveTime) {
+		this.keepaliveTime = keepaliveTime;
+	}
+
+	public long getLeakDetectionThreshold() {
+		return leakDetectionThreshold;
+	}
+
+	/**
+	 * Specifies number of milliseconds after which borrowed connection
+	 * that is not returned is reported as possible leak, together with
+	 * the stack trace of the borrow. Set to <code>0</code> to disable
+	 * leak detection.
+	 */
+	public void setLeakDetectionThreshold(long leakDetectionThreshold) {
+		this.leakDetectionThreshold = leakDetectionThreshold;
+	}
+
+	public long getHousekeepingPeriod() {
+		return housekeepingPeriod;
+	}
+
+	/**
+	 * Specifies number of milliseconds between two runs of the pool
+	 * maintenance. Should be set before the pool is initialized.
+	 */
+	public void setHousekeepingPeriod(long housekeepingPeriod) {
+		this.housekeepingPeriod = housekeepingPeriod;
+	}
+
+	// ---------------------------------------------------------------- init
+
+	private volatile ConnectionBag bag;
+	private volatile ConcurrentHashMap<Connection, PooledConnection> connections;
+	private volatile int generation;
+	private ScheduledThreadPoolExecutor housekeeper;
+	private final AtomicInteger totalConnections = new AtomicInteger();
+	private final AtomicInteger pendingConnections = new AtomicInteger();
+	private volatile boolean closed;
+
+	private final LatencyHistogram waitTime = new LatencyHistogram();
+	private final LatencyHistogram createTime = new LatencyHistogram();
+	private final StripedCounter timeoutCount = new StripedCounter();
+	private final AtomicLong leakCount = new AtomicLong();
+	private final AtomicLong closedCount = new AtomicLong();
+
+	/**
+	 * {@inheritDoc}
+	 * Does nothing if pool is already initialized and not closed.
+	 */
+	public synchronized void init() {
+		if ((bag != null) && (closed == false)) {
+			return;
+		}
+		log.info("concurrent connection pool initialization");
+		try {
+			Class.forName(driver);
+		} catch (ClassNotFoundException cnfex) {
+			throw new DbSqlException("Database driver not found: " + driver, cnfex);
+		}
+		if (minConnections > maxConnections) {
+			minConnections = maxConnections;
+		}
+
+		closed = false;
+		generation++;		// before the new bag, so connections returned to the old one are detected
+		if (connections == null) {
+			// kept on re-initialization, so busy connections of closed pool can be returned
+			connections = new ConcurrentHashMap<Connection, PooledConnection>(maxConnections);
+		}
+		housekeeper = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "jodd-db-pool-housekeeper");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		bag = new ConnectionBag() {
+			@Override
+			protected void onWait(int waiting) {
+				addConnections(waiting - pendingConnections.get());
+			}
+		};
+
+		for (int i = 0; i < minConnections; i++) {
+			try {
+				totalConnections.incrementAndGet();
+				bag.add(createConnection());
+			} catch (SQLException sex) {
+				totalConnections.decrementAndGet();
+				throw new DbSqlException("Unable to get database connection.", sex);
+			}
+		}
+
+		if (housekeepingPeriod > 0) {
+			housekeeper.scheduleWithFixedDelay(new Runnable() {
+				public void run() {
+					housekeeping();
+				}
+			}, housekeepingPeriod, housekeepingPeriod, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	// ---------------------------------------------------------------- get/close
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Connection getConnection() {
+		ConnectionBag bag = this.bag;
+		if ((bag == null) || closed) {
+			throw new DbSqlException("Connection pool is not initialized.");
+		}
+
+		long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(connectionTimeout);
+		long start = System.nanoTime();
+		long deadline = start + timeoutNanos;
+
+		while (true) {
+			PooledConnection pooledConnection;
+			try {
+				pooledConnection = bag.borrow(timeoutNanos);
+			} catch (InterruptedException iex) {
+				Thread.currentThread().interrupt();
+				throw new DbSqlException("Interrupted while waiting for connection.", iex);
+			}
+			if (pooledConnection == null) {
+				timeoutCount.increment();
+				throw new DbSqlException("Connection not available, timeout of " + connectionTimeout + "ms reached.");
+			}
+
+			long now = System.currentTimeMillis();
+			if ((pooledConnection.isRetired(now, maxLifetime) == false) && isConnectionValid(pooledConnection, now)) {
+				waitTime.record(System.nanoTime() - start);
+				pooledConnection.lastUsed = now;
+				pooledConnection.borrowTime = now;
+				pooledConnection.leakReported = false;
+				if (leakDetectionThreshold != 0) {
+					pooledConnection.borrowTrace = new Exception("Connection borrowed by: " + Thread.currentThread().getName());
+				}
+				return pooledConnection.connection;
+			}
+
+			if (log.isDebugEnabled()) {
+				log.debug("pooled connection is not valid, resetting");
+			}
+			destroyConnection(pooledConnection);
+
+			timeoutNanos = deadline - System.nanoTime();
+			if (timeoutNanos < 0) {
+				timeoutNanos = 0;
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void closeConnection(Connection connection) {
+		PooledConnection pooledConnection = connections != null ? connections.get(connection) : null;
+		if (pooledConnection == null) {
+			throw new DbSqlException("Connection does not belong to the pool.");
+		}
+		long now = System.currentTimeMillis();
+		if (pooledConnection.leakReported) {
+			log.info("Previously reported leaked connection returned after " + (now - pooledConnection.borrowTime) + "ms.");
+		}
+		pooledConnection.borrowTrace = null;
+
+		ConnectionBag bag = this.bag;
+		if (isStale(pooledConnection)) {
+			destroyConnection(pooledConnection);
+			return;
+		}
+		if (pooledConnection.isRetired(now, maxLifetime)) {
+			destroyConnection(pooledConnection);
+			addConnections(bag.getWaitingCount() - pendingConnections.get());
+			return;
+		}
+		pooledConnection.lastUsed = now;
+		bag.requite(pooledConnection);
+
+		// pool may be closed meanwhile; if connection is
+		// not handed off, it is destroyed here or by close()
+		if (isStale(pooledConnection) && pooledConnection.acquire()) {
+			destroyConnection(pooledConnection);
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if pool is closed or if connection
+	 * was borrowed before the pool was closed and initialized again.
+	 */
+	private boolean isStale(PooledConnection pooledConnection) {
+		return closed || (pooledConnection.generation != generation);
+	}
+
+	/**
+	 * Checks if existing connection is valid and available. It may happens
+	 * that if connection is not used for a while it becomes inactive,
+	 * although not technically closed.
+	 */
+	private boolean isConnectionValid(PooledConnection pooledConnection, long now) {
+		if (validateConnection == false) {
+			return true;
+		}
+
+		if (now < pooledConnection.lastUsed + validationTimeout) {
+			return true;
+		}
+		if (now < pooledConnection.lastValidated + validationTimeout) {
+			return true;
+		}
+
+		return validate(pooledConnection);
+	}
+
+	/**
+	 * Validates connection using the validation query.
+	 */
+	private boolean validate(PooledConnection pooledConnection) {
+		Connection conn = pooledConnection.connection;
+
+		if (validationQuery == null) {
+			try {
+				return !conn.isClosed();
+			} catch (SQLException sex) {
+				return false;
+			}
+		}
+
+		boolean valid = true;
+		Statement st = null;
+		try {
+			st = conn.createStatement();
+			st.execute(validationQuery);
+		} catch (SQLException sex) {
+			valid = false;
+		} finally {
+			if (st != null) {
+				try {
+					st.close();
+				} catch (SQLException ignore) {
+				}
+			}
+		}
+		if (valid) {
+			pooledConnection.lastValidated = System.currentTimeMillis();
+		}
+		return valid;
+	}
+
+	// ---------------------------------------------------------------- connections
+
+	/**
+	 * Opens given number of new connections in the background,
+	 * while max number of connections is not reached and the
+	 * pool is not closed. Connection opened while pool is
+	 * being closed is closed immediately.
+	 */
+	private void addConnections(int count) {
+		while (count > 0) {
+			if (closed) {
+				return;
+			}
+			int total = totalConnections.get();
+			if (total >= maxConnections) {
+				return;
+			}
+			if (totalConnections.compareAndSet(total, total + 1) == false) {
+				continue;
+			}
+			count--;
+			pendingConnections.incrementAndGet();
+			Runnable task = new Runnable() {
+				public void run() {
+					PooledConnection pooledConnection;
+					try {
+						if (closed) {
+							totalConnections.decrementAndGet();
+							return;
+						}
+						pooledConnection = createConnection();
+					} catch (SQLException sex) {
+						totalConnections.decrementAndGet();
+						log.warn("Unable to get database connection.", sex);
+						return;
+					} finally {
+						// connection is not pending once it is handed off
+						pendingConnections.decrementAndGet();
+					}
+					bag.add(pooledConnection);
+
+					// pool may be closed after the connection is created; if it
+					// is not handed off, it is destroyed here or by close()
+					if (closed && pooledConnection.acquire()) {
+						destroyConnection(pooledConnection);
+					}
+				}
+			};
+			try {
+				housekeeper.execute(task);
+			} catch (RejectedExecutionException ignore) {
+				// pool is closed
+				totalConnections.decrementAndGet();
+				pendingConnections.decrementAndGet();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Opens new pooled connection.
+	 */
+	private PooledConnection createConnection() throws SQLException {
+		long start = System.nanoTime();
+		Connection connection = DriverManager.getConnection(url, user, password);
+		createTime.record(System.nanoTime() - start);
+		PooledConnection pooledConnection = new PooledConnection(connection, generation);
+		connections.put(connection, pooledConnection);
+		return pooledConnection;
+	}
+
+	/**
+	 * Removes connection from the pool and closes it.
+	 */
+	private void destroyConnection(PooledConnection pooledConnection) {
+		bag.remove(pooledConnection);
+		if (connections.remove(pooledConnection.connection) != null) {
+			totalConnections.decrementAndGet();
+			closedCount.incrementAndGet();
+		}
+		try {
+			pooledConnection.connection.close();
+		} catch (SQLException ignore) {
+		}
+	}
+
+	// ---------------------------------------------------------------- housekeeping
+
+	/**
+	 * Maintains the pool: reports leaked connections, closes retired and
+	 * idle connections, validates unused connections and opens connections
+	 * up to the minimum. Available connections are reserved while checked,
+	 * so they can't be borrowed in the meantime.
+	 */
+	protected void housekeeping() {
+		if (closed) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		int removableIdle = totalConnections.get() - minConnections;
+
+		for (PooledConnection pooledConnection : bag.values()) {
+			if (pooledConnection.isBusy()) {
+				if ((leakDetectionThreshold != 0) && (pooledConnection.leakReported == false)
+						&& (now - pooledConnection.borrowTime > leakDetectionThreshold)) {
+					Throwable borrowTrace = pooledConnection.borrowTrace;
+					if (borrowTrace != null) {
+						pooledConnection.leakReported = true;
+						leakCount.incrementAndGet();
+						log.warn("Connection leak detected, connection not returned for " +
+								(now - pooledConnection.borrowTime) + "ms.", borrowTrace);
+					}
+				}
+				continue;
+			}
+			if (pooledConnection.acquire() == false) {
+				continue;
+			}
+
+			if (pooledConnection.isRetired(now, maxLifetime)) {
+				if (log.isDebugEnabled()) {
+					log.debug("closing retired connection");
+				}
+				destroyConnection(pooledConnection);
+				continue;
+			}
+			if ((idleTimeout != 0) && (removableIdle > 0) && (now - pooledConnection.lastUsed > idleTimeout)) {
+				if (log.isDebugEnabled()) {
+					log.debug("closing idle connection");
+				}
+				destroyConnection(pooledConnection);
+				removableIdle--;
+				continue;
+			}
+			if ((keepaliveTime != 0)
+					&& (now - pooledConnection.lastUsed > keepaliveTime)
+					&& (now - pooledConnection.lastValidated > keepaliveTime)) {
+				if (validate(pooledConnection) == false) {
+					if (log.isDebugEnabled()) {
+						log.debug("closing invalid connection");
+					}
+					destroyConnection(pooledConnection);
+					continue;
+				}
+			}
+			bag.unreserve(pooledConnection);
+		}
+
+		int missing = minConnections - totalConnections.get();
+		if (missing > 0) {
+			addConnections(missing);
+		}
+	}
+
+	// ---------------------------------------------------------------- close
+
+	/**
+	 * Closes all available connections. Busy connections
+	 * are closed when they are returned to the pool.
+	 */
+	public synchronized void close() {
+		log.info("concurrent connection pool shutdown");
+		if ((bag == null) || closed) {
+			return;
+		}
+		closed = true;
+		housekeeper.shutdownNow();
+		for (PooledConnection pooledConnection : bag.values()) {
+			if (pooledConnection.acquire()) {
+				destroyConnection(pooledConnection);
+			}
+		}
+	}
+
+	// ---------------------------------------------------------------- stats
+
+	/**
+	 * Returns connection stats.
+	 */
+	public CoreConnectionPool.SizeSnapshot getConnectionsCount() {
+		int available = 0;
+		int busy = 0;
+		if (bag != null) {
+			for (PooledConnection pooledConnection : bag.values()) {
+				if (pooledConnection.isAvailable()) {
+					available++;
+				} else if (pooledConnection.isBusy()) {
+					busy++;
+				}
+			}
+		}
+		return new CoreConnectionPool.SizeSnapshot(available, busy);
+	}
+
+	/**
+	 * Returns number of threads waiting for a connection.
+	 */
+	public int getWaitingCount() {
+		return bag != null ? bag.getWaitingCount() : 0;
+	}
+
+	/**
+	 * Returns snapshot of pool statistics.
+	 */
+	public ConnectionPoolStats getStats() {
+		CoreConnectionPool.SizeSnapshot size = getConnectionsCount();
+		return new ConnectionPoolStats(
+				size.getAvailableCount(), size.getBusyCount(), getWaitingCount(),
+				waitTime.getCount(), timeoutCount.sum(), leakCount.get(),
+				createTime.getCount(), closedCount.get(),
+				waitTime.getTotalTime(), waitTime.getMaxTime(), waitTime.getBucketCounts(),
+				createTime.getTotalTime(), createTime.getMaxTime(), createTime.getBucketCounts());
+	}
+
+}
@@ -0,0 +1,178 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.db.pool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Concurrent bag of pooled connections, without a global lock.
+ * <p>
+ * Each thread remembers connections it has returned, and tries them first
+ * on the next borrow, so a thread usually gets back its own connection
+ * without touching shared state. Then the shared list of all connections
+ * is scanned. Connections are taken by atomic state transitions only.
+ * <p>
+ * When there is no available connection, the thread waits on a fair
+ * hand-off queue. Returned and newly added connections are handed off
+ * directly to the waiting threads, in order of their arrival.
+ */
+abstract class ConnectionBag {
+
+	private static final int MAX_THREAD_CONNECTIONS = 16;
+
+	private final CopyOnWriteArrayList<PooledConnection> sharedList = new CopyOnWriteArrayList<PooledConnection>();
+	private final SynchronousQueue<PooledConnection> handoffQueue = new SynchronousQueue<PooledConnection>(true);
+	private final AtomicInteger waiters = new AtomicInteger();
+	private final ThreadLocal<ArrayList<PooledConnection>> threadList = new ThreadLocal<ArrayList<PooledConnection>>() {
+		@Override
+		protected ArrayList<PooledConnection> initialValue() {
+			return new ArrayList<PooledConnection>(MAX_THREAD_CONNECTIONS);
+		}
+	};
+
+	/**
+	 * Invoked when borrowing thread did not find an available connection.
+	 * Implementations may add new connections to the bag.
+	 * @param waiting number of threads waiting for a connection
+	 */
+	protected abstract void onWait(int waiting);
+
+	// ---------------------------------------------------------------- borrow
+
+	/**
+	 * Borrows a connection. Waits for given time when there is no
+	 * available connection. Returns <code>null</code> on timeout.
+	 */
+	PooledConnection borrow(long timeoutNanos) throws InterruptedException {
+		ArrayList<PooledConnection> list = threadList.get();
+		for (int i = list.size() - 1; i >= 0; i--) {
+			PooledConnection pooledConnection = list.remove(i);
+			if (pooledConnection.acquire()) {
+				return pooledConnection;
+			}
+		}
+
+		int waiting = waiters.incrementAndGet();
+		try {
+			for (PooledConnection pooledConnection : sharedList) {
+				if (pooledConnection.acquire()) {
+					if (waiting > 1) {
+						// connection may be taken from another waiting thread
+						onWait(waiting - 1);
+					}
+					return pooledConnection;
+				}
+			}
+
+			onWait(waiting);
+
+			long deadline = System.nanoTime() + timeoutNanos;
+			long remaining = timeoutNanos;
+			while (remaining > 0) {
+				PooledConnection pooledConnection = handoffQueue.poll(remaining, TimeUnit.NANOSECONDS);
+				if (pooledConnection == null) {
+					break;
+				}
+				if (pooledConnection.acquire()) {
+					return pooledConnection;
+				}
+				remaining = deadline - System.nanoTime();
+			}
+			return null;
+		} finally {
+			waiters.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Returns borrowed connection to the bag. Connection is handed
+	 * off to the waiting thread, if there is one.
+	 */
+	void requite(PooledConnection pooledConnection) {
+		pooledConnection.release();
+
+		for (int i = 0; waiters.get() > 0; i++) {
+			if ((pooledConnection.isAvailable() == false) || handoffQueue.offer(pooledConnection)) {
+				return;
+			}
+			if ((i & 0xFF) == 0xFF) {
+				LockSupport.parkNanos(10000);
+			} else {
+				Thread.yield();
+			}
+		}
+
+		ArrayList<PooledConnection> list = threadList.get();
+		if (list.size() < MAX_THREAD_CONNECTIONS) {
+			list.add(pooledConnection);
+		}
+	}
+
+	/**
+	 * Releases connection reserved by a maintenance thread. Unlike
+	 * {@link #requite(PooledConnection)}, connection is not remembered
+	 * by the current thread.
+	 */
+	void unreserve(PooledConnection pooledConnection) {
+		pooledConnection.release();
+		handoff(pooledConnection);
+	}
+
+	// ---------------------------------------------------------------- add/remove
+
+	/**
+	 * Adds new available connection to the bag.
+	 */
+	void add(PooledConnection pooledConnection) {
+		sharedList.add(pooledConnection);
+		handoff(pooledConnection);
+	}
+
+	/**
+	 * Hands off available connection to the waiting thread, if there is one.
+	 */
+	private void handoff(PooledConnection pooledConnection) {
+		while ((waiters.get() > 0) && pooledConnection.isAvailable()) {
+			if (handoffQueue.offer(pooledConnection)) {
+				return;
+			}
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * Removes connection from the bag. Connection has to be
+	 * borrowed or otherwise reserved by the caller.
+	 */
+	void remove(PooledConnection pooledConnection) {
+		pooledConnection.state.set(PooledConnection.STATE_REMOVED);
+		sharedList.remove(pooledConnection);
+	}
+
+	/**
+	 * Returns all connections in the bag.
+	 */
+	List<PooledConnection> values() {
+		return new ArrayList<PooledConnection>(sharedList);
+	}
+
+	/**
+	 * Returns number of threads waiting for a connection.
+	 */
+	int getWaitingCount() {
+		return waiters.get();
+	}
+
+	/**
+	 * Returns total number of connections in the bag.
+	 */
+	int size() {
+		return sharedList.size();
+	}
+}
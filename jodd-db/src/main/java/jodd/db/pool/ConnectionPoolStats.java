@@ -0,0 +1,210 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.db.pool;
+
+import jodd.util.LatencyHistogram;
+
+/**
+ * Immutable snapshot of connection pool statistics.
+ * Times are in nanoseconds.
+ * @see ConcurrentConnectionPool#getStats()
+ */
+public class ConnectionPoolStats {
+
+	protected final int availableCount;
+	protected final int busyCount;
+	protected final int waitingCount;
+	protected final long borrowCount;
+	protected final long timeoutCount;
+	protected final long leakCount;
+	protected final long createdCount;
+	protected final long closedCount;
+	protected final long totalWaitTime;
+	protected final long maxWaitTime;
+	protected final long[] waitTimeHistogram;
+	protected final long totalCreateTime;
+	protected final long maxCreateTime;
+	protected final long[] createTimeHistogram;
+
+	public ConnectionPoolStats(
+			int availableCount, int busyCount, int waitingCount,
+			long borrowCount, long timeoutCount, long leakCount,
+			long createdCount, long closedCount,
+			long totalWaitTime, long maxWaitTime, long[] waitTimeHistogram,
+			long totalCreateTime, long maxCreateTime, long[] createTimeHistogram) {
+
+		this.availableCount = availableCount;
+		this.busyCount = busyCount;
+		this.waitingCount = waitingCount;
+		this.borrowCount = borrowCount;
+		this.timeoutCount = timeoutCount;
+		this.leakCount = leakCount;
+		this.createdCount = createdCount;
+		this.closedCount = closedCount;
+		this.totalWaitTime = totalWaitTime;
+		this.maxWaitTime = maxWaitTime;
+		this.waitTimeHistogram = waitTimeHistogram;
+		this.totalCreateTime = totalCreateTime;
+		this.maxCreateTime = maxCreateTime;
+		this.createTimeHistogram = createTimeHistogram;
+	}
+
+	// ---------------------------------------------------------------- counts
+
+	/**
+	 * Returns total number of open connections at the moment of snapshot.
+	 */
+	public int getTotalCount() {
+		return availableCount + busyCount;
+	}
+
+	/**
+	 * Returns number of available connections at the moment of snapshot.
+	 */
+	public int getAvailableCount() {
+		return availableCount;
+	}
+
+	/**
+	 * Returns number of busy connections at the moment of snapshot.
+	 */
+	public int getBusyCount() {
+		return busyCount;
+	}
+
+	/**
+	 * Returns number of threads waiting for a connection
+	 * at the moment of snapshot.
+	 */
+	public int getWaitingCount() {
+		return waitingCount;
+	}
+
+	/**
+	 * Returns number of successfully borrowed connections.
+	 */
+	public long getBorrowCount() {
+		return borrowCount;
+	}
+
+	/**
+	 * Returns number of borrows that timed out.
+	 */
+	public long getTimeoutCount() {
+		return timeoutCount;
+	}
+
+	/**
+	 * Returns number of detected connection leaks.
+	 */
+	public long getLeakCount() {
+		return leakCount;
+	}
+
+	/**
+	 * Returns number of opened connections.
+	 */
+	public long getCreatedCount() {
+		return createdCount;
+	}
+
+	/**
+	 * Returns number of closed connections, i.e. invalid,
+	 * idle and retired connections.
+	 */
+	public long getClosedCount() {
+		return closedCount;
+	}
+
+	// ---------------------------------------------------------------- times
+
+	/**
+	 * Returns total time spent waiting for connections.
+	 */
+	public long getTotalWaitTime() {
+		return totalWaitTime;
+	}
+
+	/**
+	 * Returns the longest wait for a connection.
+	 */
+	public long getMaxWaitTime() {
+		return maxWaitTime;
+	}
+
+	/**
+	 * Returns average wait time for a connection.
+	 */
+	public double getAverageWaitTime() {
+		if (borrowCount == 0) {
+			return 0;
+		}
+		return (double) totalWaitTime / borrowCount;
+	}
+
+	/**
+	 * Returns estimated wait time percentile.
+	 * @see LatencyHistogram#percentile(long[], double)
+	 */
+	public long getWaitTimePercentile(double percent) {
+		return LatencyHistogram.percentile(waitTimeHistogram, percent);
+	}
+
+	/**
+	 * Returns wait time histogram.
+	 * @see LatencyHistogram
+	 */
+	public long[] getWaitTimeHistogram() {
+		return waitTimeHistogram.clone();
+	}
+
+	/**
+	 * Returns the longest time needed to open a connection.
+	 */
+	public long getMaxCreateTime() {
+		return maxCreateTime;
+	}
+
+	/**
+	 * Returns average time needed to open a connection.
+	 */
+	public double getAverageCreateTime() {
+		if (createdCount == 0) {
+			return 0;
+		}
+		return (double) totalCreateTime / createdCount;
+	}
+
+	/**
+	 * Returns estimated connection creation time percentile.
+	 * @see LatencyHistogram#percentile(long[], double)
+	 */
+	public long getCreateTimePercentile(double percent) {
+		return LatencyHistogram.percentile(createTimeHistogram, percent);
+	}
+
+	/**
+	 * Returns connection creation time histogram.
+	 * @see LatencyHistogram
+	 */
+	public long[] getCreateTimeHistogram() {
+		return createTimeHistogram.clone();
+	}
+
+	// ---------------------------------------------------------------- toString
+
+	@Override
+	public String toString() {
+		return "ConnectionPoolStats{total=" + getTotalCount() +
+				", available=" + availableCount +
+				", busy=" + busyCount +
+				", waiting=" + waitingCount +
+				", borrows=" + borrowCount +
+				", timeouts=" + timeoutCount +
+				", leaks=" + leakCount +
+				", created=" + createdCount +
+				", closed=" + closedCount +
+				", averageWaitTime=" + (long) getAverageWaitTime() +
+				", averageCreateTime=" + (long) getAverageCreateTime() + '}';
+	}
+}
@@ -0,0 +1,71 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.db.pool;
+
+import java.sql.Connection;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Connection of the {@link ConcurrentConnectionPool} with its state
+ * and timestamps. State is changed only by atomic transitions, so
+ * connection is owned by at most one thread at a time.
+ */
+class PooledConnection {
+
+	static final int STATE_AVAILABLE = 0;
+	static final int STATE_BUSY = 1;
+	static final int STATE_REMOVED = -1;
+
+	PooledConnection(Connection connection, int generation) {
+		this.connection = connection;
+		this.generation = generation;
+		this.createTime = System.currentTimeMillis();
+		this.lastUsed = createTime;
+	}
+
+	final Connection connection;
+	final int generation;			// pool generation, i.e. initialization the connection belongs to
+	final AtomicInteger state = new AtomicInteger(STATE_AVAILABLE);
+	final long createTime;			// time of creation
+	volatile long lastUsed;			// time of last borrow or return
+	volatile long lastValidated;	// time of last validation, by query or keepalive
+	volatile long borrowTime;		// time of last borrow
+	volatile Throwable borrowTrace;	// stack trace of last borrow, when leak detection is on
+	volatile boolean leakReported;	// true if last borrow is reported as leak
+
+	/**
+	 * Acquires available connection. Returns <code>false</code>
+	 * if connection is already taken or removed.
+	 */
+	boolean acquire() {
+		return state.compareAndSet(STATE_AVAILABLE, STATE_BUSY);
+	}
+
+	/**
+	 * Marks connection as available.
+	 */
+	void release() {
+		state.set(STATE_AVAILABLE);
+	}
+
+	/**
+	 * Returns <code>true</code> if connection is older than given lifetime.
+	 */
+	boolean isRetired(long now, long maxLifetime) {
+		return (maxLifetime != 0) && (now - createTime > maxLifetime);
+	}
+
+	/**
+	 * Returns <code>true</code> if connection is available.
+	 */
+	boolean isAvailable() {
+		return state.get() == STATE_AVAILABLE;
+	}
+
+	/**
+	 * Returns <code>true</code> if connection is borrowed.
+	 */
+	boolean isBusy() {
+		return state.get() == STATE_BUSY;
+	}
+}
@@ -0,0 +1,239 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.db.pool;
+
+import jodd.db.DbSqlException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ConcurrentConnectionPoolTest {
+
+	private ConcurrentConnectionPool cp;
+
+	@Before
+	public void setUp() {
+		cp = new ConcurrentConnectionPool();
+		cp.setDriver("org.hsqldb.jdbcDriver");
+		cp.setUrl("jdbc:hsqldb:mem:pool");
+		cp.setUser("sa");
+		cp.setPassword("");
+		cp.setMinConnections(1);
+		cp.setMaxConnections(4);
+	}
+
+	@After
+	public void tearDown() {
+		cp.close();
+	}
+
+	@Test
+	public void testBorrowAndReturn() {
+		cp.init();
+		assertEquals(1, cp.getConnectionsCount().getTotalCount());
+
+		Connection c1 = cp.getConnection();
+		assertEquals(1, cp.getConnectionsCount().getBusyCount());
+
+		Connection c2 = cp.getConnection();
+		assertNotSame(c1, c2);
+		assertEquals(2, cp.getConnectionsCount().getBusyCount());
+
+		cp.closeConnection(c2);
+		cp.closeConnection(c1);
+		assertEquals(2, cp.getConnectionsCount().getAvailableCount());
+
+		// thread gets back last returned connection
+		assertSame(c1, cp.getConnection());
+		cp.closeConnection(c1);
+	}
+
+	@Test
+	public void testInitAndClose() throws Exception {
+		cp.init();
+		cp.init();
+		assertEquals(1, cp.getConnectionsCount().getTotalCount());
+
+		Connection connection = cp.getConnection();
+		cp.close();
+
+		// busy connection is closed when returned
+		cp.closeConnection(connection);
+		assertTrue(connection.isClosed());
+		assertEquals(0, cp.getConnectionsCount().getTotalCount());
+
+		try {
+			cp.getConnection();
+			fail();
+		} catch (DbSqlException ignore) {
+		}
+
+		cp.init();
+		connection = cp.getConnection();
+		assertFalse(connection.isClosed());
+		cp.closeConnection(connection);
+	}
+
+	@Test
+	public void testReturnAfterReinit() throws Exception {
+		cp.init();
+		Connection stale = cp.getConnection();
+
+		cp.close();
+		cp.init();
+		assertEquals(1, cp.getConnectionsCount().getTotalCount());
+
+		// connection of the closed pool is not accepted by the new one
+		cp.closeConnection(stale);
+		assertTrue(stale.isClosed());
+		assertEquals(1, cp.getConnectionsCount().getTotalCount());
+
+		Connection connection = cp.getConnection();
+		assertNotSame(stale, connection);
+		assertFalse(connection.isClosed());
+		cp.closeConnection(connection);
+	}
+
+	@Test
+	public void testTimeout() {
+		cp.setConnectionTimeout(100);
+		cp.init();
+
+		List<Connection> connections = new ArrayList<Connection>();
+		for (int i = 0; i < 4; i++) {
+			connections.add(cp.getConnection());
+		}
+
+		long start = System.currentTimeMillis();
+		try {
+			cp.getConnection();
+			fail();
+		} catch (DbSqlException ignore) {
+		}
+		assertTrue(System.currentTimeMillis() - start >= 90);
+		assertEquals(1, cp.getStats().getTimeoutCount());
+
+		for (Connection connection : connections) {
+			cp.closeConnection(connection);
+		}
+		assertEquals(4, cp.getConnectionsCount().getAvailableCount());
+	}
+
+	@Test
+	public void testConcurrentBorrow() throws Exception {
+		cp.init();
+		final AtomicInteger failures = new AtomicInteger();
+		final AtomicInteger busy = new AtomicInteger();
+		final AtomicInteger maxBusy = new AtomicInteger();
+
+		Thread[] threads = new Thread[20];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					for (int j = 0; j < 50; j++) {
+						try {
+							Connection connection = cp.getConnection();
+							int current = busy.incrementAndGet();
+							while (true) {
+								int max = maxBusy.get();
+								if ((current <= max) || maxBusy.compareAndSet(max, current)) {
+									break;
+								}
+							}
+							Statement st = connection.createStatement();
+							st.execute("select 1 from INFORMATION_SCHEMA.SYSTEM_USERS");
+							st.close();
+							busy.decrementAndGet();
+							cp.closeConnection(connection);
+						} catch (Exception ex) {
+							failures.incrementAndGet();
+						}
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(0, failures.get());
+		assertTrue(maxBusy.get() <= 4);
+		assertTrue(cp.getConnectionsCount().getTotalCount() <= 4);
+		assertEquals(0, cp.getConnectionsCount().getBusyCount());
+		assertEquals(0, cp.getWaitingCount());
+
+		ConnectionPoolStats stats = cp.getStats();
+		assertEquals(1000, stats.getBorrowCount());
+		assertEquals(0, stats.getTimeoutCount());
+		assertTrue(stats.getCreatedCount() <= 4);
+		assertTrue(stats.getMaxWaitTime() >= stats.getWaitTimePercentile(50));
+	}
+
+	@Test
+	public void testLeakDetection() throws Exception {
+		cp.setLeakDetectionThreshold(50);
+		cp.setHousekeepingPeriod(20);
+		cp.init();
+
+		Connection connection = cp.getConnection();
+		Thread.sleep(150);
+		assertEquals(1, cp.getStats().getLeakCount());
+
+		cp.closeConnection(connection);
+		Thread.sleep(100);
+		assertEquals(1, cp.getStats().getLeakCount());
+	}
+
+	@Test
+	public void testIdleTimeout() throws Exception {
+		cp.setIdleTimeout(50);
+		cp.setHousekeepingPeriod(20);
+		cp.init();
+
+		List<Connection> connections = new ArrayList<Connection>();
+		for (int i = 0; i < 3; i++) {
+			connections.add(cp.getConnection());
+		}
+		for (Connection connection : connections) {
+			cp.closeConnection(connection);
+		}
+		assertEquals(3, cp.getConnectionsCount().getTotalCount());
+
+		Thread.sleep(200);
+		assertEquals(1, cp.getConnectionsCount().getTotalCount());
+		assertEquals(2, cp.getStats().getClosedCount());
+	}
+
+	@Test
+	public void testMaxLifetime() throws Exception {
+		cp.setMaxLifetime(50);
+		cp.setHousekeepingPeriod(20);
+		cp.init();
+
+		Connection busy = cp.getConnection();
+		Thread.sleep(200);
+
+		// busy connection is retired when returned
+		cp.closeConnection(busy);
+		assertTrue(cp.getStats().getClosedCount() >= 1);
+
+		Connection connection = cp.getConnection();
+		assertNotSame(busy, connection);
+		cp.closeConnection(connection);
+	}
+}
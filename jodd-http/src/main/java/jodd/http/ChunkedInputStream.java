@@ -0,0 +1,171 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.http;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream of the HTTP body sent with the chunked transfer encoding.
+ * Chunks are decoded incrementally, as the body is read. Reads no more than
+ * the last chunk and the trailer from the underlying stream, so the stream
+ * may be used for the next message. Closing this stream does not close
+ * the underlying stream.
+ */
+public class ChunkedInputStream extends InputStream {
+
+	protected final InputStream in;
+	protected int chunkRemaining;		// remaining bytes of current chunk
+	protected boolean firstChunk = true;
+	protected boolean complete;
+
+	public ChunkedInputStream(InputStream in) {
+		this.in = in;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (nextChunk() == false) {
+			return -1;
+		}
+		int c = in.read();
+		if (c == -1) {
+			throw new EOFException("Premature end of chunk");
+		}
+		chunkRemaining--;
+		return c;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (nextChunk() == false) {
+			return -1;
+		}
+		if (len > chunkRemaining) {
+			len = chunkRemaining;
+		}
+		int n = in.read(b, off, len);
+		if (n == -1) {
+			throw new EOFException("Premature end of chunk");
+		}
+		chunkRemaining -= n;
+		return n;
+	}
+
+	@Override
+	public int available() throws IOException {
+		if (complete) {
+			return 0;
+		}
+		int available = in.available();
+		return available > chunkRemaining ? chunkRemaining : available;
+	}
+
+	/**
+	 * Returns <code>true</code> if the last chunk has been read.
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * Does not close the underlying stream.
+	 */
+	@Override
+	public void close() {
+	}
+
+	// ---------------------------------------------------------------- chunks
+
+	/**
+	 * Moves to the next chunk when the current one is consumed.
+	 * Returns <code>false</code> when there are no more chunks.
+	 */
+	protected boolean nextChunk() throws IOException {
+		if (complete) {
+			return false;
+		}
+		if (chunkRemaining > 0) {
+			return true;
+		}
+
+		if (firstChunk) {
+			firstChunk = false;
+		} else {
+			// CRLF after the chunk data
+			skipLine();
+		}
+
+		chunkRemaining = readChunkSize();
+
+		if (chunkRemaining == 0) {
+			// trailer, ends with an empty line
+			while (skipLine() != 0) {
+			}
+			complete = true;
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Reads chunk size line. Chunk extensions are ignored.
+	 */
+	protected int readChunkSize() throws IOException {
+		int size = 0;
+		int digits = 0;
+		boolean extension = false;
+
+		while (true) {
+			int c = in.read();
+			if (c == -1) {
+				throw new EOFException("Premature end of chunk size");
+			}
+			if (c == '\n') {
+				break;
+			}
+			if (extension || (c == '\r') || (c == ' ') || (c == '\t')) {
+				continue;
+			}
+			if (c == ';') {
+				extension = true;
+				continue;
+			}
+
+			int digit = Character.digit(c, 16);
+			if (digit == -1) {
+				throw new HttpException("Invalid chunk size character: " + (char) c);
+			}
+			if (++digits > 7) {
+				throw new HttpException("Chunk size too big");
+			}
+			size = (size << 4) + digit;
+		}
+
+		if (digits == 0) {
+			throw new HttpException("Missing chunk size");
+		}
+		return size;
+	}
+
+	/**
+	 * Skips a line. Returns number of skipped characters,
+	 * not including the CRLF.
+	 */
+	protected int skipLine() throws IOException {
+		int count = 0;
+		while (true) {
+			int c = in.read();
+			if ((c == -1) || (c == '\n')) {
+				return count;
+			}
+			if (c != '\r') {
+				count++;
+			}
+		}
+	}
+}
@@ -0,0 +1,99 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream that writes the HTTP body using the chunked transfer
+ * encoding. Written bytes are buffered and sent as chunks of the buffer
+ * size. {@link #finish() Finishing} the stream writes the last chunk.
+ * Closing this stream does not close the underlying stream.
+ */
+public class ChunkedOutputStream extends OutputStream {
+
+	private static final byte[] CRLF = new byte[] {'\r', '\n'};
+	private static final byte[] LAST_CHUNK = new byte[] {'0', '\r', '\n', '\r', '\n'};
+
+	protected final OutputStream out;
+	protected final byte[] buffer;
+	protected int count;
+	protected boolean finished;
+
+	public ChunkedOutputStream(OutputStream out) {
+		this(out, 8192);
+	}
+
+	public ChunkedOutputStream(OutputStream out, int chunkSize) {
+		this.out = out;
+		this.buffer = new byte[chunkSize];
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (count == buffer.length) {
+			writeChunk();
+		}
+		buffer[count++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			if (count == buffer.length) {
+				writeChunk();
+			}
+			int n = Math.min(len, buffer.length - count);
+			System.arraycopy(b, off, buffer, count, n);
+			count += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Writes buffered bytes as a chunk.
+	 */
+	protected void writeChunk() throws IOException {
+		if (count == 0) {
+			return;
+		}
+		out.write(Integer.toHexString(count).getBytes("ISO-8859-1"));
+		out.write(CRLF);
+		out.write(buffer, 0, count);
+		out.write(CRLF);
+		count = 0;
+	}
+
+	/**
+	 * Writes buffered bytes as a chunk and flushes the underlying stream.
+	 */
+	@Override
+	public void flush() throws IOException {
+		writeChunk();
+		out.flush();
+	}
+
+	/**
+	 * Writes remaining bytes and the last chunk, without
+	 * closing the underlying stream.
+	 */
+	public void finish() throws IOException {
+		if (finished) {
+			return;
+		}
+		writeChunk();
+		out.write(LAST_CHUNK);
+		finished = true;
+	}
+
+	/**
+	 * Finishes the stream. Does not close the underlying stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		finish();
+		out.flush();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,92 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.http;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream of the HTTP body delimited by the <code>Content-Length</code>.
+ * Reads no more than the content length from the underlying stream, so the
+ * stream may be used for the next message. Premature end of the underlying
+ * stream ends the content, as servers often send wrong length; use
+ * {@link #isComplete()} to check if all content has been received.
+ * Closing this stream does not close the underlying stream.
+ */
+public class ContentLengthInputStream extends FilterInputStream {
+
+	protected long remaining;
+	protected boolean truncated;
+
+	public ContentLengthInputStream(InputStream in, long contentLength) {
+		super(in);
+		this.remaining = contentLength;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if ((remaining <= 0) || truncated) {
+			return -1;
+		}
+		int c = in.read();
+		if (c == -1) {
+			truncated = true;
+			return -1;
+		}
+		remaining--;
+		return c;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if ((remaining <= 0) || truncated) {
+			return -1;
+		}
+		if (len > remaining) {
+			len = (int) remaining;
+		}
+		int n = in.read(b, off, len);
+		if (n == -1) {
+			truncated = true;
+			return -1;
+		}
+		remaining -= n;
+		return n;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		if (n > remaining) {
+			n = remaining;
+		}
+		long skipped = in.skip(n);
+		remaining -= skipped;
+		return skipped;
+	}
+
+	@Override
+	public int available() throws IOException {
+		int available = in.available();
+		return available > remaining ? (int) remaining : available;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	/**
+	 * Returns <code>true</code> if the whole content has been read.
+	 */
+	public boolean isComplete() {
+		return remaining <= 0;
+	}
+
+	/**
+	 * Does not close the underlying stream.
+	 */
+	@Override
+	public void close() {
+	}
+}
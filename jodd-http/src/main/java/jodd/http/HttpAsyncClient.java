@@ -0,0 +1,912 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.http;
+
+import jodd.io.FastByteArrayOutputStream;
+import jodd.io.StreamUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking HTTP client. All connections are driven by a single
+ * selector thread, so large number of concurrent requests does not
+ * require the same number of threads. Requests are sent with
+ * {@link HttpRequest#sendAsync(HttpAsyncClient)} and responses are
+ * returned as {@link HttpFuture futures}, optionally notifying the
+ * {@link HttpCallback callback}.
+ * <p>
+ * Connections are kept alive and reused. Number of connections per host
+ * is limited; when all connections are busy, requests are queued. Idempotent
+ * requests may be pipelined, i.e. sent over a busy connection without waiting
+ * for the previous responses. Idempotent requests are repeated once when
+ * reused connection is closed by the server before the response.
+ * <p>
+ * Callbacks are invoked from the selector thread, unless the callback
+ * executor is set, so they should be short. HTTPS and streamed
+ * responses are not supported; responses are always read into the memory.
+ * Requests are prepared in the memory before they are sent, so request
+ * bodies set from the input stream are not supported. Host names are
+ * resolved by the sending thread, never by the selector thread.
+ * <p>
+ * Usage:
+ * <pre>
+ * HttpAsyncClient client = new HttpAsyncClient();
+ * HttpFuture future = HttpRequest.get("http://jodd.org").sendAsync(client);
+ * HttpResponse response = future.get();
+ * client.close();
+ * </pre>
+ * Client is thread safe.
+ */
+public class HttpAsyncClient {
+
+	protected static final int SELECT_TIMEOUT = 100;
+	protected static final int TIMEOUT_CHECK_INTERVAL = 1000;
+	protected static final int READ_BUFFER_SIZE = 16 * 1024;
+
+	protected int maxConnectionsPerHost = 6;
+	protected int maxPipelinedRequests = 1;
+	protected long timeout = 60000;
+	protected long idleTimeout = 60000;
+	protected Executor callbackExecutor;
+
+	protected final Selector selector;
+	protected final Thread selectorThread;
+	protected final ConcurrentLinkedQueue<Exchange> submitted = new ConcurrentLinkedQueue<Exchange>();
+	protected final Map<String, Route> routes = new HashMap<String, Route>();	// used by selector thread only
+	protected final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+	protected final AtomicInteger connectionsCount = new AtomicInteger();
+	private volatile boolean closed;
+
+	/**
+	 * Creates new client and starts its selector thread.
+	 */
+	public HttpAsyncClient() {
+		try {
+			selector = Selector.open();
+		} catch (IOException ioex) {
+			throw new HttpException(ioex);
+		}
+
+		selectorThread = new Thread("jodd-http-async") {
+			@Override
+			public void run() {
+				loop();
+			}
+		};
+		selectorThread.setDaemon(true);
+		selectorThread.start();
+	}
+
+	// ---------------------------------------------------------------- properties
+
+	/**
+	 * Returns max number of connections per host.
+	 */
+	public int maxConnectionsPerHost() {
+		return maxConnectionsPerHost;
+	}
+
+	/**
+	 * Sets max number of connections per host.
+	 */
+	public HttpAsyncClient maxConnectionsPerHost(int maxConnectionsPerHost) {
+		this.maxConnectionsPerHost = maxConnectionsPerHost;
+		return this;
+	}
+
+	/**
+	 * Returns max number of requests sent over a connection
+	 * without waiting for responses.
+	 */
+	public int maxPipelinedRequests() {
+		return maxPipelinedRequests;
+	}
+
+	/**
+	 * Sets max number of idempotent requests sent over a connection
+	 * without waiting for responses. Default value is 1, i.e. pipelining
+	 * is turned off.
+	 */
+	public HttpAsyncClient maxPipelinedRequests(int maxPipelinedRequests) {
+		this.maxPipelinedRequests = maxPipelinedRequests;
+		return this;
+	}
+
+	/**
+	 * Returns request timeout in milliseconds.
+	 */
+	public long timeout() {
+		return timeout;
+	}
+
+	/**
+	 * Sets max number of milliseconds from sending the request, including
+	 * waiting for a connection, until the response is received.
+	 * Timeouts are checked once per second. Use 0 for no timeout.
+	 */
+	public HttpAsyncClient timeout(long timeout) {
+		this.timeout = timeout;
+		return this;
+	}
+
+	/**
+	 * Returns idle timeout in milliseconds.
+	 */
+	public long idleTimeout() {
+		return idleTimeout;
+	}
+
+	/**
+	 * Sets number of milliseconds after which idle connection is closed.
+	 */
+	public HttpAsyncClient idleTimeout(long idleTimeout) {
+		this.idleTimeout = idleTimeout;
+		return this;
+	}
+
+	/**
+	 * Sets executor for callbacks. By default, callbacks
+	 * are invoked from the selector thread.
+	 */
+	public HttpAsyncClient callbackExecutor(Executor callbackExecutor) {
+		this.callbackExecutor = callbackExecutor;
+		return this;
+	}
+
+	// ---------------------------------------------------------------- send
+
+	/**
+	 * Sends request asynchronously. Request is prepared and its host
+	 * is resolved in the calling thread; request should not be
+	 * modified afterwards.
+	 */
+	public HttpFuture send(HttpRequest httpRequest, HttpCallback callback) {
+		HttpFuture future = new HttpFuture(callback, callbackExecutor);
+
+		if (closed) {
+			future.fail(new HttpException("Client is closed"));
+			return future;
+		}
+		if (httpRequest.protocol().equals("http") == false) {
+			future.fail(new HttpException("Unsupported protocol: " + httpRequest.protocol()));
+			return future;
+		}
+		if (httpRequest.bodyInput != null) {
+			future.fail(new HttpException("Request body from the input stream is not supported"));
+			return future;
+		}
+
+		InetSocketAddress address = new InetSocketAddress(httpRequest.host(), httpRequest.port());
+		if (address.isUnresolved()) {
+			future.fail(new HttpException("Unknown host: " + httpRequest.host()));
+			return future;
+		}
+
+		Exchange exchange;
+		try {
+			exchange = new Exchange(httpRequest, address, future);
+		} catch (HttpException hex) {
+			future.fail(hex);
+			return future;
+		}
+		if (timeout > 0) {
+			exchange.deadline = System.currentTimeMillis() + timeout;
+		}
+
+		submitted.add(exchange);
+		if (closed && submitted.remove(exchange)) {
+			// client closed after the check, pending requests may be already failed
+			future.fail(new HttpException("Client is closed"));
+			return future;
+		}
+		selector.wakeup();
+		return future;
+	}
+
+	/**
+	 * Closes the client. Pending requests fail.
+	 */
+	public void close() {
+		closed = true;
+		selector.wakeup();
+		if (Thread.currentThread() != selectorThread) {
+			try {
+				selectorThread.join();
+			} catch (InterruptedException iex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	// ---------------------------------------------------------------- model
+
+	/**
+	 * Request with its pending response.
+	 */
+	protected static class Exchange {
+
+		protected final HttpRequest request;
+		protected final InetSocketAddress address;
+		protected final HttpFuture future;
+		protected final byte[] requestBytes;
+		protected final boolean idempotent;
+		protected long deadline;
+		protected int retries;
+
+		protected Exchange(HttpRequest request, InetSocketAddress address, HttpFuture future) {
+			this.request = request;
+			this.address = address;
+			this.future = future;
+			FastByteArrayOutputStream out = new FastByteArrayOutputStream();
+			try {
+				request.sendTo(out);
+			} catch (IOException ioex) {
+				throw new HttpException(ioex);
+			}
+			this.requestBytes = out.toByteArray();
+
+			this.idempotent = HttpUtil.isIdempotent(request.method());
+		}
+
+		protected boolean isExpired(long now) {
+			return (deadline != 0) && (now >= deadline);
+		}
+	}
+
+	/**
+	 * Connections and queued requests of a single host.
+	 */
+	protected static class Route {
+
+		protected final String key;
+		protected final String host;
+		protected final int port;
+		protected final LinkedList<Exchange> queue = new LinkedList<Exchange>();
+		protected final List<Connection> connections = new ArrayList<Connection>();
+
+		protected Route(String host, int port) {
+			this.key = host + ':' + port;
+			this.host = host;
+			this.port = port;
+		}
+	}
+
+	protected static final int BODY_NONE = 0;
+	protected static final int BODY_LENGTH = 1;
+	protected static final int BODY_CHUNKED = 2;
+	protected static final int BODY_UNTIL_CLOSE = 3;
+
+	/**
+	 * Non-blocking connection with requests that wait for the response
+	 * and the state of the response parsing.
+	 */
+	protected static class Connection {
+
+		protected final Route route;
+		protected final SocketChannel channel;
+		protected SelectionKey key;
+		protected boolean connected;
+		protected boolean closing;		// no more requests are accepted
+		protected int responseCount;	// number of received responses
+		protected long idleSince;
+
+		protected final LinkedList<Exchange> inFlight = new LinkedList<Exchange>();
+		protected final LinkedList<ByteBuffer> output = new LinkedList<ByteBuffer>();
+
+		// response parsing
+		protected byte[] buffer = new byte[READ_BUFFER_SIZE];
+		protected int length;
+		protected HttpResponse head;
+		protected int headLength;
+		protected int bodyMode;
+		protected long contentLength;
+		protected int chunkPosition;
+		protected boolean trailer;
+
+		protected Connection(Route route, SocketChannel channel) {
+			this.route = route;
+			this.channel = channel;
+			this.idleSince = System.currentTimeMillis();
+		}
+
+		/**
+		 * Returns <code>true</code> if request may be sent over this connection.
+		 */
+		protected boolean canAccept(Exchange exchange, int maxPipelinedRequests) {
+			if (closing) {
+				return false;
+			}
+			if (inFlight.isEmpty()) {
+				return true;
+			}
+			return (inFlight.size() < maxPipelinedRequests) && exchange.idempotent && inFlight.getLast().idempotent;
+		}
+
+		/**
+		 * Appends received bytes.
+		 */
+		protected void append(ByteBuffer byteBuffer) {
+			int count = byteBuffer.remaining();
+			if (length + count > buffer.length) {
+				byte[] newBuffer = new byte[Math.max(buffer.length << 1, length + count)];
+				System.arraycopy(buffer, 0, newBuffer, 0, length);
+				buffer = newBuffer;
+			}
+			byteBuffer.get(buffer, length, count);
+			length += count;
+		}
+
+		/**
+		 * Removes parsed response bytes and resets the parsing state.
+		 */
+		protected void consume(int count) {
+			length -= count;
+			System.arraycopy(buffer, count, buffer, 0, length);
+			head = null;
+			trailer = false;
+		}
+
+		/**
+		 * Returns the length of the first received response, or -1
+		 * if response is not yet completely received.
+		 */
+		protected int responseLength() throws IOException {
+			if (head == null) {
+				int headEnd = findHeadEnd();
+				if (headEnd == -1) {
+					return -1;
+				}
+				head = HttpResponse.readHeadersFrom(new ByteArrayInputStream(buffer, 0, headEnd));
+				head.decompress = inFlight.getFirst().request.acceptCompression();
+				headLength = headEnd;
+				chunkPosition = headEnd;
+
+				String transferEncoding = head.header("Transfer-Encoding");
+				if (head.hasBody(inFlight.getFirst().request.method()) == false) {
+					bodyMode = BODY_NONE;
+				} else if ((transferEncoding != null) && transferEncoding.equalsIgnoreCase("chunked")) {
+					bodyMode = BODY_CHUNKED;
+				} else if (head.contentLength() != null) {
+					bodyMode = BODY_LENGTH;
+					contentLength = Long.parseLong(head.contentLength().trim());
+				} else {
+					bodyMode = BODY_UNTIL_CLOSE;
+				}
+			}
+
+			switch (bodyMode) {
+				case BODY_NONE:
+					return headLength;
+				case BODY_LENGTH:
+					return (length - headLength >= contentLength) ? (int) (headLength + contentLength) : -1;
+				case BODY_CHUNKED:
+					return scanChunks();
+				default:
+					return -1;
+			}
+		}
+
+		/**
+		 * Finds the end of response head, i.e. position after the empty line.
+		 */
+		protected int findHeadEnd() {
+			for (int i = 0; i < length; i++) {
+				if (buffer[i] != '\n') {
+					continue;
+				}
+				int next = i + 1;
+				if ((next < length) && (buffer[next] == '\r')) {
+					next++;
+				}
+				if ((next < length) && (buffer[next] == '\n')) {
+					return next + 1;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Scans received chunks from the last scanned position. Returns
+		 * the end of the last chunk with trailer, or -1 if not yet received.
+		 */
+		protected int scanChunks() throws IOException {
+			while (true) {
+				int lineEnd = indexOf('\n', chunkPosition);
+				if (lineEnd == -1) {
+					return -1;
+				}
+
+				if (trailer) {
+					boolean blank = (lineEnd == chunkPosition) || ((lineEnd == chunkPosition + 1) && (buffer[chunkPosition] == '\r'));
+					chunkPosition = lineEnd + 1;
+					if (blank) {
+						return chunkPosition;
+					}
+					continue;
+				}
+
+				long chunkSize = 0;
+				int digits = 0;
+				for (int i = chunkPosition; i < lineEnd; i++) {
+					int digit = Character.digit(buffer[i], 16);
+					if (digit == -1) {
+						break;
+					}
+					if (++digits > 7) {
+						throw new IOException("Invalid chunk size");
+					}
+					chunkSize = (chunkSize << 4) + digit;
+				}
+				if (digits == 0) {
+					throw new IOException("Invalid chunk size");
+				}
+
+				if (chunkSize == 0) {
+					trailer = true;
+					chunkPosition = lineEnd + 1;
+					continue;
+				}
+
+				int dataEnd = (int) (lineEnd + 1 + chunkSize);
+				int chunkEnd = indexOf('\n', dataEnd);
+				if (chunkEnd == -1) {
+					return -1;
+				}
+				chunkPosition = chunkEnd + 1;
+			}
+		}
+
+		protected int indexOf(char c, int from) {
+			for (int i = from; i < length; i++) {
+				if (buffer[i] == c) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Creates response from the received bytes.
+		 */
+		protected HttpResponse createResponse(int responseLength) {
+			HttpResponse response = head;
+			InputStream body = new ByteArrayInputStream(buffer, headLength, responseLength - headLength);
+
+			switch (bodyMode) {
+				case BODY_NONE:
+					break;
+				case BODY_UNTIL_CLOSE:
+					if (response.decompress) {
+						try {
+							body = response.decompressBodyStream(body);
+						} catch (IOException ioex) {
+							throw new HttpException(ioex);
+						}
+					}
+					try {
+						response.readBodyBytes(body);
+					} finally {
+						StreamUtil.close(body);
+					}
+					break;
+				default:
+					response.readBody(body);
+			}
+			return response;
+		}
+	}
+
+	// ---------------------------------------------------------------- loop
+
+	/**
+	 * Selector loop.
+	 */
+	protected void loop() {
+		long nextCheck = 0;
+
+		while (closed == false) {
+			try {
+				selector.select(SELECT_TIMEOUT);
+			} catch (IOException ioex) {
+				break;
+			}
+
+			processSubmitted();
+
+			Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+			while (iterator.hasNext()) {
+				SelectionKey key = iterator.next();
+				iterator.remove();
+
+				Connection connection = (Connection) key.attachment();
+				try {
+					if (key.isValid() && key.isConnectable()) {
+						onConnect(connection);
+					}
+					if (key.isValid() && key.isWritable()) {
+						onWrite(connection);
+					}
+					if (key.isValid() && key.isReadable()) {
+						onRead(connection);
+					}
+				} catch (IOException ioex) {
+					closeConnection(connection, ioex);
+				} catch (RuntimeException rex) {
+					closeConnection(connection, rex);
+				}
+			}
+
+			long now = System.currentTimeMillis();
+			if (now >= nextCheck) {
+				checkTimeouts(now);
+				nextCheck = now + TIMEOUT_CHECK_INTERVAL;
+			}
+		}
+
+		shutdown();
+	}
+
+	/**
+	 * Queues submitted requests to their routes.
+	 */
+	protected void processSubmitted() {
+		Exchange exchange;
+		while ((exchange = submitted.poll()) != null) {
+			HttpRequest request = exchange.request;
+			String key = request.host() + ':' + request.port();
+
+			Route route = routes.get(key);
+			if (route == null) {
+				route = new Route(request.host(), request.port());
+				routes.put(key, route);
+			}
+
+			route.queue.add(exchange);
+			dispatch(route);
+		}
+	}
+
+	/**
+	 * Sends queued requests over available connections.
+	 * Opens new connections while below the limit.
+	 */
+	protected void dispatch(Route route) {
+		while (route.queue.isEmpty() == false) {
+			Exchange exchange = route.queue.getFirst();
+			if (exchange.future.isDone()) {
+				route.queue.removeFirst();
+				continue;
+			}
+
+			Connection connection = null;
+			for (Connection c : route.connections) {
+				if (c.canAccept(exchange, maxPipelinedRequests)) {
+					if ((connection == null) || (c.inFlight.size() < connection.inFlight.size())) {
+						connection = c;
+					}
+				}
+			}
+
+			if (connection == null) {
+				if (route.connections.size() >= maxConnectionsPerHost) {
+					return;
+				}
+				try {
+					connection = connect(route, exchange.address);
+				} catch (IOException ioex) {
+					route.queue.removeFirst();
+					exchange.future.fail(ioex);
+					continue;
+				}
+			}
+
+			route.queue.removeFirst();
+			write(connection, exchange);
+		}
+	}
+
+	/**
+	 * Opens new non-blocking connection to the resolved address of the route.
+	 */
+	protected Connection connect(Route route, InetSocketAddress address) throws IOException {
+		SocketChannel channel = SocketChannel.open();
+		try {
+			channel.configureBlocking(false);
+			boolean connected = channel.connect(address);
+
+			Connection connection = new Connection(route, channel);
+			connection.connected = connected;
+			connection.key = channel.register(selector, connected ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT, connection);
+
+			route.connections.add(connection);
+			connectionsCount.incrementAndGet();
+			return connection;
+		} catch (IOException ioex) {
+			channel.close();
+			throw ioex;
+		}
+	}
+
+	/**
+	 * Queues request bytes for writing.
+	 */
+	protected void write(Connection connection, Exchange exchange) {
+		connection.inFlight.add(exchange);
+		connection.output.add(ByteBuffer.wrap(exchange.requestBytes));
+		if (connection.connected) {
+			connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+		}
+	}
+
+	// ---------------------------------------------------------------- events
+
+	protected void onConnect(Connection connection) throws IOException {
+		connection.channel.finishConnect();
+		connection.connected = true;
+
+		int ops = SelectionKey.OP_READ;
+		if (connection.output.isEmpty() == false) {
+			ops |= SelectionKey.OP_WRITE;
+		}
+		connection.key.interestOps(ops);
+	}
+
+	protected void onWrite(Connection connection) throws IOException {
+		while (connection.output.isEmpty() == false) {
+			ByteBuffer byteBuffer = connection.output.getFirst();
+			try {
+				connection.channel.write(byteBuffer);
+			} catch (IOException ioex) {
+				// server may have closed the connection after sending
+				// some responses, so they are read before closing
+				connection.closing = true;
+				connection.output.clear();
+				connection.key.interestOps(SelectionKey.OP_READ);
+				return;
+			}
+			if (byteBuffer.hasRemaining()) {
+				return;
+			}
+			connection.output.removeFirst();
+		}
+		connection.key.interestOps(SelectionKey.OP_READ);
+	}
+
+	protected void onRead(Connection connection) throws IOException {
+		while (true) {
+			readBuffer.clear();
+			int count = connection.channel.read(readBuffer);
+			if (count == -1) {
+				// responses received with the end of stream must
+				// not dispatch new requests to this connection
+				connection.closing = true;
+				parseResponses(connection);
+				if (connection.channel.isOpen()) {
+					onEndOfStream(connection);
+				}
+				return;
+			}
+			if (count == 0) {
+				break;
+			}
+			readBuffer.flip();
+			connection.append(readBuffer);
+		}
+
+		parseResponses(connection);
+	}
+
+	/**
+	 * Parses all completely received responses.
+	 */
+	protected void parseResponses(Connection connection) throws IOException {
+		while (connection.inFlight.isEmpty() == false) {
+			int responseLength = connection.responseLength();
+			if (responseLength == -1) {
+				return;
+			}
+
+			HttpResponse response = connection.createResponse(responseLength);
+			connection.consume(responseLength);
+
+			int statusCode = response.statusCode();
+			if ((statusCode / 100 == 1) && (statusCode != 101)) {
+				// interim response
+				continue;
+			}
+
+			Exchange exchange = connection.inFlight.removeFirst();
+			connection.responseCount++;
+			connection.idleSince = System.currentTimeMillis();
+
+			exchange.future.complete(response);
+
+			if (isKeepAlive(exchange.request, response) == false) {
+				closeConnection(connection, null);
+				return;
+			}
+		}
+
+		if (connection.length > 0) {
+			// data without the request
+			closeConnection(connection, null);
+			return;
+		}
+
+		dispatch(connection.route);
+	}
+
+	/**
+	 * Invoked when server closes the connection.
+	 */
+	protected void onEndOfStream(Connection connection) throws IOException {
+		if ((connection.head != null) && (connection.bodyMode == BODY_UNTIL_CLOSE)) {
+			Exchange exchange = connection.inFlight.removeFirst();
+			HttpResponse response = connection.createResponse(connection.length);
+			connection.consume(connection.length);
+			connection.responseCount++;
+
+			exchange.future.complete(response);
+			closeConnection(connection, null);
+			return;
+		}
+
+		closeConnection(connection, new IOException("Connection closed by the server"));
+	}
+
+	/**
+	 * Returns <code>true</code> if connection may be reused after the response.
+	 */
+	protected boolean isKeepAlive(HttpRequest request, HttpResponse response) {
+		String connection = request.header("Connection");
+		if ((connection != null) && connection.equalsIgnoreCase("close")) {
+			return false;
+		}
+		connection = response.header("Connection");
+		if ((connection != null) && connection.equalsIgnoreCase("close")) {
+			return false;
+		}
+		if (response.httpVersion().equals("HTTP/1.0")) {
+			return (connection != null) && connection.equalsIgnoreCase("keep-alive");
+		}
+		return true;
+	}
+
+	// ---------------------------------------------------------------- close
+
+	/**
+	 * Closes the connection. Requests without the response are
+	 * repeated, if possible, otherwise they fail.
+	 * @param cause failure cause, <code>null</code> if connection is closed regularly
+	 */
+	protected void closeConnection(Connection connection, Throwable cause) {
+		Route route = connection.route;
+
+		connection.key.cancel();
+		try {
+			connection.channel.close();
+		} catch (IOException ignore) {
+		}
+		if (route.connections.remove(connection)) {
+			connectionsCount.decrementAndGet();
+		}
+
+		// unanswered pipelined requests are repeated in the same order;
+		// requests that failed on the stale connection are repeated once
+		ListIterator<Exchange> iterator = connection.inFlight.listIterator(connection.inFlight.size());
+		while (iterator.hasPrevious()) {
+			Exchange exchange = iterator.previous();
+
+			boolean retry = exchange.idempotent && (closed == false)
+					&& ((cause == null) || ((cause instanceof IOException) && (connection.responseCount > 0) && (exchange.retries == 0)));
+
+			if (retry) {
+				if (cause != null) {
+					exchange.retries++;
+				}
+				route.queue.addFirst(exchange);
+			} else {
+				exchange.future.fail(cause != null ? cause : new HttpException("Connection closed"));
+			}
+		}
+		connection.inFlight.clear();
+
+		if (closed == false) {
+			dispatch(route);
+		}
+	}
+
+	/**
+	 * Fails expired requests, closes idle connections and
+	 * removes routes without connections and queued requests.
+	 * Invoked once per {@link #TIMEOUT_CHECK_INTERVAL}.
+	 */
+	protected void checkTimeouts(long now) {
+		Iterator<Route> routeIterator = routes.values().iterator();
+		while (routeIterator.hasNext()) {
+			Route route = routeIterator.next();
+
+			Iterator<Exchange> iterator = route.queue.iterator();
+			while (iterator.hasNext()) {
+				Exchange exchange = iterator.next();
+				if (exchange.isExpired(now)) {
+					iterator.remove();
+					exchange.future.fail(new HttpException("Request timeout: " + route.key));
+				}
+			}
+
+			for (Connection connection : new ArrayList<Connection>(route.connections)) {
+				if (connection.inFlight.isEmpty()) {
+					if (now - connection.idleSince > idleTimeout) {
+						closeConnection(connection, null);
+					}
+					continue;
+				}
+				boolean expired = false;
+				for (Exchange exchange : connection.inFlight) {
+					if (exchange.isExpired(now)) {
+						exchange.future.fail(new HttpException("Request timeout: " + route.key));
+						expired = true;
+					}
+				}
+				if (expired) {
+					closeConnection(connection, null);
+				}
+			}
+
+			if (route.connections.isEmpty() && route.queue.isEmpty()) {
+				routeIterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Closes all connections and fails pending requests.
+	 */
+	protected void shutdown() {
+		for (Route route : routes.values()) {
+			for (Connection connection : new ArrayList<Connection>(route.connections)) {
+				closeConnection(connection, new HttpException("Client is closed"));
+			}
+			for (Exchange exchange : route.queue) {
+				exchange.future.fail(new HttpException("Client is closed"));
+			}
+			route.queue.clear();
+		}
+		Exchange exchange;
+		while ((exchange = submitted.poll()) != null) {
+			exchange.future.fail(new HttpException("Client is closed"));
+		}
+		try {
+			selector.close();
+		} catch (IOException ignore) {
+		}
+	}
+
+	// ---------------------------------------------------------------- stats
+
+	/**
+	 * Returns number of open connections. Should be used for monitoring only.
+	 */
+	public int getConnectionsCount() {
+		return connectionsCount.get();
+	}
+
+}
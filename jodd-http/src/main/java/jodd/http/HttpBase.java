@@ -4,7 +4,7 @@ package jodd.http;
 
 import jodd.JoddHttp;
 import jodd.datetime.TimeUtil;
-import jodd.io.FastCharArrayWriter;
+import jodd.io.FastByteArrayOutputStream;
 import jodd.io.FileNameUtil;
 import jodd.io.FileUtil;
 import jodd.io.StreamUtil;
@@ -15,14 +15,22 @@ import jodd.util.RandomStringUtil;
 import jodd.util.StringPool;
 import jodd.util.StringUtil;
 
-import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 import static jodd.util.StringPool.CRLF;
 
@@ -38,12 +46,16 @@ public abstract class HttpBase<T> {
 	public static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
 	public static final String HEADER_HOST = "Host";
 	public static final String HEADER_ETAG = "ETag";
+	public static final String HEADER_TRANSFER_ENCODING = "Transfer-Encoding";
 
 	protected String httpVersion = "HTTP/1.1";
 	protected Map<String, String> headers = new LinkedHashMap<String, String>();
 
 	protected HttpParamsMap form;	// holds form data (when used)
-	protected String body;			// holds raw body string (always)
+	protected String body;			// holds raw body string (when set or used)
+	protected byte[] bodyBytes;		// holds raw body bytes (when received)
+	protected File bodyFile;			// holds file to send as body (when used)
+	protected InputStream bodyInput;	// holds stream to send as body (when used)
 
 	// ---------------------------------------------------------------- properties
 
@@ -112,6 +124,19 @@ public abstract class HttpBase<T> {
 		headers.put(key, value);
 	}
 
+	/**
+	 * Internal setting of the parsed header, which name
+	 * is already in lower-case and value is trimmed.
+	 * @see #header(String, String)
+	 */
+	protected void putHeader(String key, String value) {
+		if (key.equals("content-type")) {
+			mediaType = HttpUtil.extractMediaType(value);
+			charset = HttpUtil.extractContentTypeCharset(value);
+		}
+		headers.put(key, value);
+	}
+
 	/**
 	 * Sets <code>int</code> value as header parameter,
 	 * @see #header(String, String)
@@ -241,6 +266,14 @@ public abstract class HttpBase<T> {
 		return (T) this;
 	}
 
+	/**
+	 * Sets the full "Content-Length" header of large content.
+	 */
+	public T contentLength(long value) {
+		_header(HEADER_CONTENT_LENGTH, String.valueOf(value));
+		return (T) this;
+	}
+
 	/**
 	 * Returns "Content-Encoding" header.
 	 */
@@ -328,6 +361,29 @@ public abstract class HttpBase<T> {
 		return (T) this;
 	}
 
+	// ---------------------------------------------------------------- compression
+
+	protected boolean compressBody;
+
+	/**
+	 * Returns <code>true</code> if body is compressed when sent.
+	 */
+	public boolean compressBody() {
+		return compressBody;
+	}
+
+	/**
+	 * Defines if body should be compressed using gzip when sent.
+	 * Body of known length is compressed in the memory, so the
+	 * "Content-Length" may be sent. Streamed body and multipart
+	 * forms with files are compressed while sending, using the
+	 * chunked transfer encoding.
+	 */
+	public T compressBody(boolean compressBody) {
+		this.compressBody = compressBody;
+		return (T) this;
+	}
+
 	// ---------------------------------------------------------------- body
 
 	/**
@@ -335,13 +391,23 @@ public abstract class HttpBase<T> {
 	 * If body content is a text, use {@link #bodyText()} to get it converted.
 	 */
 	public String body() {
+		if ((body == null) && (bodyBytes != null)) {
+			try {
+				body = new String(bodyBytes, StringPool.ISO_8859_1);
+			} catch (UnsupportedEncodingException ignore) {
+			}
+		}
 		return body;
 	}
 
 	/**
-	 * Returns <b>raw</b> body bytes.
+	 * Returns <b>raw</b> body bytes. Received body bytes are
+	 * returned as they are, without conversion to string.
 	 */
 	public byte[] bodyBytes() {
+		if (bodyBytes != null) {
+			return bodyBytes;
+		}
 		if (body == null) {
 			return null;
 		}
@@ -359,6 +425,13 @@ public abstract class HttpBase<T> {
 	 */
 	public String bodyText() {
 		if (charset != null) {
+			if (bodyBytes != null) {
+				try {
+					return new String(bodyBytes, charset);
+				} catch (UnsupportedEncodingException ueex) {
+					throw new HttpException(ueex);
+				}
+			}
 			return StringUtil.convertCharset(body, StringPool.ISO_8859_1, charset);
 		}
 		return body();
@@ -371,8 +444,8 @@ public abstract class HttpBase<T> {
 	 * and it is expected from user to set this one.
 	 */
 	public T body(String body) {
+		resetBody();
 		this.body = body;
-		this.form = null;
 		contentLength(body.length());
 		return (T) this;
 	}
@@ -411,13 +484,56 @@ public abstract class HttpBase<T> {
 	 * @see #body(String)
 	 */
 	public T body(byte[] content, String contentType) {
-		String body = null;
-		try {
-			body = new String(content, StringPool.ISO_8859_1);
-		} catch (UnsupportedEncodingException ignore) {
+		resetBody();
+		this.bodyBytes = content;
+		contentLength(content.length);
+		contentType(contentType);
+		return (T) this;
+	}
+
+	/**
+	 * Sets body content that is sent from the file, without loading
+	 * the file into the memory. Discards form parameters.
+	 * Also sets "Content-Length" and "Content-Type" parameter.
+	 */
+	public T body(File file, String contentType) {
+		resetBody();
+		this.bodyFile = file;
+		contentLength(file.length());
+		contentType(contentType);
+		return (T) this;
+	}
+
+	/**
+	 * Sets body content that is sent from the input stream, without
+	 * loading it into the memory. Discards form parameters. If content
+	 * length is not known (i.e. it is negative), content is sent in
+	 * chunks, using chunked transfer encoding. Stream is closed
+	 * after the content is sent.
+	 */
+	public T body(InputStream inputStream, long contentLength, String contentType) {
+		resetBody();
+		this.bodyInput = inputStream;
+		if (contentLength < 0) {
+			removeHeader(HEADER_CONTENT_LENGTH);
+			_header(HEADER_TRANSFER_ENCODING, "chunked");
+		} else {
+			contentLength(contentLength);
 		}
 		contentType(contentType);
-		return body(body);
+		return (T) this;
+	}
+
+	/**
+	 * Discards body content and form parameters.
+	 */
+	protected void resetBody() {
+		this.body = null;
+		this.bodyBytes = null;
+		this.bodyFile = null;
+		this.bodyInput = null;
+		this.form = null;
+		removeHeader(HEADER_TRANSFER_ENCODING);
 	}
 
 	// ---------------------------------------------------------------- body form
@@ -464,8 +580,35 @@ public abstract class HttpBase<T> {
 			return formQueryString;
 		}
 
+		List<Object> parts = formMultipart();
+
+		StringBuilder sb = new StringBuilder();
+		for (Object part : parts) {
+			if (part instanceof File) {
+				try {
+					char[] chars = FileUtil.readChars((File) part, StringPool.ISO_8859_1);
+					sb.append(chars);
+				} catch (IOException ioex) {
+					throw new HttpException(ioex);
+				}
+			} else {
+				sb.append(part);
+			}
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * Creates parts of the multipart form: raw strings and
+	 * files, which content is not read. Sets few headers.
+	 */
+	protected List<Object> formMultipart() {
 		String boundary = StringUtil.repeat('-', 10) + RandomStringUtil.randomAlphaNumeric(10);
 
+		List<Object> parts = new ArrayList<Object>();
+		long length = 0;
+
 		StringBuilder sb = new StringBuilder();
 
 		for (Map.Entry<String, Object> entry : form.entrySet()) {
@@ -501,12 +644,12 @@ public abstract class HttpBase<T> {
 				sb.append("Content-Transfer-Encoding: binary").append(CRLF);
 				sb.append(CRLF);
 
-				try {
-					char[] chars = FileUtil.readChars(file, StringPool.ISO_8859_1);
-					sb.append(chars);
-				} catch (IOException ioex) {
-					throw new HttpException(ioex);
-				}
+				parts.add(sb.toString());
+				length += sb.length();
+				sb.setLength(0);
+
+				parts.add(file);
+				length += file.length();
 			} else {
 				throw new HttpException("Unsupported parameter type: " + type.getName());
 			}
@@ -515,11 +658,14 @@ public abstract class HttpBase<T> {
 
 		sb.append("--").append(boundary).append("--");
 
+		parts.add(sb.toString());
+		length += sb.length();
+
 		// the end
 		contentType("multipart/form-data; boundary=" + boundary);
-		contentLength(sb.length());
+		contentLength(length);
 
-		return sb.toString();
+		return parts;
 	}
 
 	// ---------------------------------------------------------------- send
@@ -535,117 +681,257 @@ public abstract class HttpBase<T> {
 		}
 	}
 
+	/**
+	 * Returns string representation of the request or response.
+	 * When <code>fullMessage</code> is not set, body is omitted,
+	 * as it is sent separately.
+	 */
+	protected abstract String toString(boolean fullMessage);
+
 	/**
 	 * Sends request or response to output stream.
 	 */
 	public void sendTo(OutputStream out) throws IOException {
-		byte[] bytes = toByteArray();
-
-		out.write(bytes);
-
-		out.flush();
+		sendTo(out, null);
 	}
 
-	// ---------------------------------------------------------------- parsing
-
 	/**
-	 * Parses headers.
+	 * Sends request or response to output stream. Body that is set from the
+	 * stream or file, and files of the multipart form, are not loaded into
+	 * the memory. Files are transferred directly to the given channel of the
+	 * output stream, if one is available, avoiding the copying.
+	 * Body is compressed if {@link #compressBody(boolean) required}.
 	 */
-	protected void readHeaders(BufferedReader reader) {
-		while (true) {
-			String line;
-			try {
-				line = reader.readLine();
-			} catch (IOException ioex) {
-				throw new HttpException(ioex);
-			}
+	public void sendTo(OutputStream out, WritableByteChannel channel) throws IOException {
+		List<Object> parts = null;
 
-			if (StringUtil.isBlank(line)) {
-				break;
+		if (form != null) {
+			if (form.isEmpty() == false && isFormMultipart()) {
+				parts = formMultipart();
 			}
+		} else if (bodyFile != null) {
+			parts = new ArrayList<Object>(1);
+			parts.add(bodyFile);
+		} else if (bodyInput != null) {
+			parts = new ArrayList<Object>(1);
+			parts.add(bodyInput);
+		}
+
+		boolean compressStream = false;
+
+		// compression headers apply only to the sent message
+		String[] sentHeaders = null;
+
+		if (compressBody) {
+			sentHeaders = new String[] {
+					header(HEADER_CONTENT_ENCODING), header(HEADER_CONTENT_LENGTH), header(HEADER_TRANSFER_ENCODING)};
+			if (parts == null) {
+				byte[] content = (form != null) ? formString().getBytes(StringPool.ISO_8859_1) : bodyBytes();
+				if (content != null && content.length > 0) {
+					byte[] compressed = compress(content);
+					_header(HEADER_CONTENT_ENCODING, "gzip");
+					contentLength(compressed.length);
 
-			int ndx = line.indexOf(':');
-			if (ndx != -1) {
-				header(line.substring(0, ndx), line.substring(ndx + 1));
+					parts = new ArrayList<Object>(1);
+					parts.add(compressed);
+				}
 			} else {
-				throw new HttpException("Invalid header: " + line);
+				// compressed length is not known in advance
+				removeHeader(HEADER_CONTENT_LENGTH);
+				_header(HEADER_TRANSFER_ENCODING, "chunked");
+				_header(HEADER_CONTENT_ENCODING, "gzip");
+				compressStream = true;
+			}
+		}
+
+		try {
+			if (parts == null) {
+				out.write(toByteArray());
+				out.flush();
+				return;
+			}
+
+			OutputStream bout = new BufferedOutputStream(out);
+
+			bout.write(toString(false).getBytes(StringPool.ISO_8859_1));
+
+			OutputStream bodyOut = bout;
+			ChunkedOutputStream chunkedOut = null;
+			GZIPOutputStream gzipOut = null;
+
+			String transferEncoding = header(HEADER_TRANSFER_ENCODING);
+			if ((transferEncoding != null) && transferEncoding.equalsIgnoreCase("chunked")) {
+				chunkedOut = new ChunkedOutputStream(bout);
+				bodyOut = chunkedOut;
+			}
+			if (compressStream) {
+				gzipOut = new GZIPOutputStream(bodyOut);
+				bodyOut = gzipOut;
+			}
+
+			for (Object part : parts) {
+				if (part instanceof File) {
+					if (bodyOut == bout) {
+						bout.flush();
+						writeFile((File) part, out, channel);
+					} else {
+						FileInputStream input = new FileInputStream((File) part);
+						try {
+							StreamUtil.copy(input, bodyOut);
+						} finally {
+							StreamUtil.close(input);
+						}
+					}
+				} else if (part instanceof InputStream) {
+					InputStream input = (InputStream) part;
+					try {
+						StreamUtil.copy(input, bodyOut);
+					} finally {
+						StreamUtil.close(input);
+					}
+				} else if (part instanceof byte[]) {
+					bodyOut.write((byte[]) part);
+				} else {
+					bodyOut.write(part.toString().getBytes(StringPool.ISO_8859_1));
+				}
+			}
+
+			if (gzipOut != null) {
+				gzipOut.finish();
+			}
+			if (chunkedOut != null) {
+				chunkedOut.finish();
+			}
+			bout.flush();
+		} finally {
+			if (sentHeaders != null) {
+				restoreHeader(HEADER_CONTENT_ENCODING, sentHeaders[0]);
+				restoreHeader(HEADER_CONTENT_LENGTH, sentHeaders[1]);
+				restoreHeader(HEADER_TRANSFER_ENCODING, sentHeaders[2]);
 			}
 		}
 	}
 
 	/**
-	 * Parses body.
+	 * Restores header to the previous value, removes it if there was no value.
 	 */
-	protected void readBody(BufferedReader reader) {
-		String bodyString = null;
+	protected void restoreHeader(String name, String value) {
+		if (value == null) {
+			removeHeader(name);
+		} else {
+			_header(name, value);
+		}
+	}
 
-		// content length
-		String contentLen = contentLength();
-		if (contentLen != null) {
-			int len = Integer.parseInt(contentLen);
+	/**
+	 * Writes the file content. When channel is available, content
+	 * is transferred directly from the file to the channel.
+	 */
+	protected void writeFile(File file, OutputStream out, WritableByteChannel channel) throws IOException {
+		if (channel == null) {
+			channel = Channels.newChannel(out);
+		}
 
-			FastCharArrayWriter fastCharArrayWriter = new FastCharArrayWriter(len);
+		FileInputStream input = new FileInputStream(file);
+		try {
+			FileChannel fileChannel = input.getChannel();
+			long size = fileChannel.size();
+			long position = 0;
 
-			try {
-				StreamUtil.copy(reader, fastCharArrayWriter, len);
-			} catch (IOException ioex) {
-				throw new HttpException(ioex);
+			while (position < size) {
+				position += fileChannel.transferTo(position, size - position, channel);
 			}
+		} finally {
+			StreamUtil.close(input);
+		}
+	}
 
-			bodyString = fastCharArrayWriter.toString();
+	/**
+	 * Compresses content using gzip.
+	 */
+	protected byte[] compress(byte[] content) throws IOException {
+		FastByteArrayOutputStream out = new FastByteArrayOutputStream(content.length / 2 + 32);
+		GZIPOutputStream gzipOut = new GZIPOutputStream(out);
+		gzipOut.write(content);
+		gzipOut.finish();
+		return out.toByteArray();
+	}
+
+	// ---------------------------------------------------------------- parsing
+
+	/**
+	 * Parses headers.
+	 * @see HttpHeaderParser
+	 */
+	protected void readHeaders(InputStream in) {
+		try {
+			HttpHeaderParser.get().readHeaders(in, this);
+		} catch (IOException ioex) {
+			throw new HttpException(ioex);
 		}
+	}
 
+	/**
+	 * Creates the stream of body content from the input stream positioned
+	 * after the headers. Stream handles the body framing, defined by
+	 * the "Content-Length" or "Transfer-Encoding" header, so no more than
+	 * the body is read from the input. Returns <code>null</code> if
+	 * there is no body.
+	 */
+	protected InputStream createBodyStream(InputStream in) {
 		// chunked encoding
 		String transferEncoding = header("Transfer-Encoding");
 		if (transferEncoding != null && transferEncoding.equalsIgnoreCase("chunked")) {
+			return new ChunkedInputStream(in);
+		}
 
-			FastCharArrayWriter fastCharArrayWriter = new FastCharArrayWriter();
-			try {
-				while (true) {
-					String line = reader.readLine();
+		// content length
+		String contentLen = contentLength();
+		if (contentLen != null) {
+			return new ContentLengthInputStream(in, Long.parseLong(contentLen.trim()));
+		}
 
-					if (StringUtil.isBlank(line)) {
-						break;
-					}
+		if (httpVersion().equals("HTTP/1.0")) {
+			// in HTTP 1.0 body ends when stream closes
+			return in;
+		}
 
-					int len = Integer.parseInt(line, 16);
+		// no body
+		return null;
+	}
 
-					if (len != 0) {
-						StreamUtil.copy(reader, fastCharArrayWriter, len);
-						reader.readLine();
-					}
-				}
-			} catch (IOException ioex) {
-				throw new HttpException(ioex);
-			}
+	/**
+	 * Parses body.
+	 */
+	protected void readBody(InputStream in) {
+		readBodyBytes(createBodyStream(in));
+	}
 
-			bodyString = fastCharArrayWriter.toString();
-		}
+	/**
+	 * Reads all bytes from the body stream and parses the body.
+	 */
+	protected void readBodyBytes(InputStream bodyStream) {
+		body = null;
+		bodyBytes = null;
 
 		// no body
-		if (bodyString == null) {
+		if (bodyStream == null) {
+			return;
+		}
 
-			if (httpVersion().equals("HTTP/1.0")) {
-				// in HTTP 1.0 body ends when stream closes
-				FastCharArrayWriter fastCharArrayWriter = new FastCharArrayWriter();
-				try {
-					StreamUtil.copy(reader, fastCharArrayWriter);
-				} catch (IOException ioex) {
-					throw new HttpException(ioex);
-				}
-				bodyString = fastCharArrayWriter.toString();
-			} else {
-				body = null;
-				return;
-			}
+		FastByteArrayOutputStream out = new FastByteArrayOutputStream();
+		try {
+			StreamUtil.copy(bodyStream, out);
+		} catch (IOException ioex) {
+			throw new HttpException(ioex);
 		}
+		bodyBytes = out.toByteArray();
 
 		// BODY READY - PARSE BODY
 		String charset = this.charset;
 		if (charset == null) {
 			charset = StringPool.ISO_8859_1;
 		}
-		body = bodyString;
 
 		String mediaType = mediaType();
 
@@ -656,7 +942,7 @@ public abstract class HttpBase<T> {
 		}
 
 		if (mediaType.equals("application/x-www-form-urlencoded")) {
-			form = HttpUtil.parseQuery(bodyString, true);
+			form = HttpUtil.parseQuery(body(), true);
 			return;
 		}
 
@@ -666,7 +952,6 @@ public abstract class HttpBase<T> {
 			MultipartStreamParser multipartParser = new MultipartStreamParser();
 
 			try {
-				byte[] bodyBytes = bodyString.getBytes(StringPool.ISO_8859_1);
 				ByteArrayInputStream bin = new ByteArrayInputStream(bodyBytes);
 				multipartParser.parseRequestStream(bin, charset);
 			} catch (IOException ioex) {
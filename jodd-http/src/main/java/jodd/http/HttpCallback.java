@@ -0,0 +1,21 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.http;
+
+/**
+ * Callback of the asynchronously sent request.
+ * @see HttpAsyncClient
+ */
+public interface HttpCallback {
+
+	/**
+	 * Invoked when response is received.
+	 */
+	void onResponse(HttpResponse response);
+
+	/**
+	 * Invoked when request fails.
+	 */
+	void onFailure(Throwable throwable);
+
+}
\ No newline at end of file
@@ -0,0 +1,366 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.http;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of persistent HTTP connections. Connections are pooled per
+ * route (protocol, host and port) and reused by the
+ * {@link PooledHttpTransport pooled transports}, so requests to the
+ * same host don't pay the TCP and TLS setup each time.
+ * <p>
+ * Number of connections per route is limited; when limit is reached,
+ * request waits for a connection to be released. Idle connections are
+ * closed after the idle timeout or the timeout sent by the server in
+ * the <code>Keep-Alive</code> header, whichever comes first. Routes
+ * without idle connections and without users are removed.
+ * <p>
+ * Usage:
+ * <pre>
+ * HttpConnectionPool pool = new HttpConnectionPool();
+ * HttpRequest request = HttpRequest.get("http://jodd.org");
+ * request.open(pool.createTransport());
+ * HttpResponse response = request.send();
+ * </pre>
+ * Pool is thread safe.
+ */
+public class HttpConnectionPool {
+
+	protected int maxConnectionsPerRoute = 10;
+	protected long idleTimeout = 60000;
+	protected long acquireTimeout = 30000;
+
+	protected final ConcurrentHashMap<String, Route> routes = new ConcurrentHashMap<String, Route>();
+	private volatile long nextEviction;
+	private volatile boolean closed;
+
+	// ---------------------------------------------------------------- properties
+
+	/**
+	 * Returns max number of connections per route.
+	 */
+	public int maxConnectionsPerRoute() {
+		return maxConnectionsPerRoute;
+	}
+
+	/**
+	 * Sets max number of connections per route. Should be set before
+	 * the pool is used.
+	 */
+	public HttpConnectionPool maxConnectionsPerRoute(int maxConnectionsPerRoute) {
+		this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+		return this;
+	}
+
+	/**
+	 * Returns idle timeout in milliseconds.
+	 */
+	public long idleTimeout() {
+		return idleTimeout;
+	}
+
+	/**
+	 * Sets number of milliseconds after which idle connection is closed.
+	 */
+	public HttpConnectionPool idleTimeout(long idleTimeout) {
+		this.idleTimeout = idleTimeout;
+		return this;
+	}
+
+	/**
+	 * Returns acquire timeout in milliseconds.
+	 */
+	public long acquireTimeout() {
+		return acquireTimeout;
+	}
+
+	/**
+	 * Sets max number of milliseconds to wait for a connection
+	 * when route limit is reached.
+	 */
+	public HttpConnectionPool acquireTimeout(long acquireTimeout) {
+		this.acquireTimeout = acquireTimeout;
+		return this;
+	}
+
+	// ---------------------------------------------------------------- transport
+
+	/**
+	 * Creates new transport that uses this pool.
+	 */
+	public HttpTransport createTransport() {
+		return new PooledHttpTransport(this);
+	}
+
+	// ---------------------------------------------------------------- route
+
+	/**
+	 * Connections to a single destination.
+	 */
+	protected static class Route {
+
+		protected final String key;
+		protected final Semaphore permits;
+		protected final LinkedList<PooledSocket> idle = new LinkedList<PooledSocket>();
+		protected int users;			// number of transports using the route, guarded by route
+		protected boolean removed;		// removed from the pool, guarded by route
+
+		protected Route(String key, int maxConnections) {
+			this.key = key;
+			this.permits = new Semaphore(maxConnections, true);
+		}
+	}
+
+	/**
+	 * Pooled socket with its keep-alive state.
+	 */
+	protected static class PooledSocket {
+
+		protected final Route route;
+		protected final Socket socket;
+		protected long expires;				// idle expiration time
+		protected int remainingRequests;	// remaining requests allowed by the server, -1 if not limited
+		protected int requestCount;			// number of sent requests
+
+		protected PooledSocket(Route route, Socket socket) {
+			this.route = route;
+			this.socket = socket;
+			this.remainingRequests = -1;
+		}
+
+		/**
+		 * Returns <code>true</code> if socket was already used.
+		 */
+		public boolean isReused() {
+			return requestCount > 1;
+		}
+
+		/**
+		 * Returns pooled socket.
+		 */
+		public Socket getSocket() {
+			return socket;
+		}
+	}
+
+	/**
+	 * Returns route key for the request.
+	 */
+	protected String routeKey(HttpRequest httpRequest) {
+		return httpRequest.protocol() + "://" + httpRequest.host() + ':' + httpRequest.port();
+	}
+
+	/**
+	 * Returns route for the request and registers its user. Route is used
+	 * until the connection is {@link #release(PooledSocket, long) released}.
+	 */
+	protected Route route(HttpRequest httpRequest) {
+		String key = routeKey(httpRequest);
+		while (true) {
+			Route route = routes.get(key);
+			if (route == null) {
+				route = new Route(key, maxConnectionsPerRoute);
+				Route existing = routes.putIfAbsent(key, route);
+				if (existing != null) {
+					route = existing;
+				}
+			}
+			synchronized (route) {
+				if (route.removed == false) {
+					route.users++;
+					return route;
+				}
+			}
+			// route has been just removed, get the new one
+		}
+	}
+
+	/**
+	 * Unregisters route user and removes the route if not used any more.
+	 */
+	protected void unuse(Route route) {
+		synchronized (route) {
+			route.users--;
+		}
+		prune(route);
+	}
+
+	/**
+	 * Removes the route if it has no users nor idle connections.
+	 */
+	protected void prune(Route route) {
+		synchronized (route) {
+			if ((route.users != 0) || (route.idle.isEmpty() == false)) {
+				return;
+			}
+			route.removed = true;
+			routes.remove(route.key, route);
+		}
+	}
+
+	// ---------------------------------------------------------------- acquire/release
+
+	/**
+	 * Acquires connection permit for the route. Waits if
+	 * route limit is reached. Returns idle socket if there is one,
+	 * or <code>null</code> when new socket has to be opened.
+	 */
+	protected PooledSocket acquire(Route route) {
+		try {
+			if (route.permits.tryAcquire(acquireTimeout, TimeUnit.MILLISECONDS) == false) {
+				unuse(route);
+				throw new HttpException("Connection limit of " + maxConnectionsPerRoute + " reached for: " + route.key);
+			}
+		} catch (InterruptedException iex) {
+			unuse(route);
+			Thread.currentThread().interrupt();
+			throw new HttpException("Interrupted while waiting for connection: " + route.key, iex);
+		}
+
+		long now = System.currentTimeMillis();
+		while (true) {
+			PooledSocket pooledSocket;
+			synchronized (route) {
+				pooledSocket = route.idle.poll();		// most recently used first
+			}
+			if (pooledSocket == null) {
+				return null;
+			}
+			if ((pooledSocket.expires > now) && isOpen(pooledSocket.socket)) {
+				return pooledSocket;
+			}
+			closeSocket(pooledSocket.socket);
+		}
+	}
+
+	/**
+	 * Releases the connection permit. Open socket is returned to the
+	 * pool if it may be reused, otherwise it is closed.
+	 * @param keepAlive number of milliseconds socket may stay idle, 0 to close the socket
+	 */
+	protected void release(PooledSocket pooledSocket, long keepAlive) {
+		Route route = pooledSocket.route;
+		long now = System.currentTimeMillis();
+		try {
+			if (closed || (keepAlive <= 0) || (pooledSocket.remainingRequests == 0) || (isOpen(pooledSocket.socket) == false)) {
+				closeSocket(pooledSocket.socket);
+				return;
+			}
+			pooledSocket.expires = now + Math.min(keepAlive, idleTimeout);
+			synchronized (route) {
+				route.idle.addFirst(pooledSocket);
+			}
+		} finally {
+			route.permits.release();
+			unuse(route);
+		}
+
+		if (now >= nextEviction) {
+			nextEviction = now + 1000;
+			evictIdle();
+		}
+	}
+
+	/**
+	 * Releases the connection permit of the socket that was never opened.
+	 */
+	protected void release(Route route) {
+		route.permits.release();
+		unuse(route);
+	}
+
+	/**
+	 * Returns <code>true</code> if socket seems to be open.
+	 */
+	protected boolean isOpen(Socket socket) {
+		return (socket.isClosed() == false) && (socket.isInputShutdown() == false) && (socket.isOutputShutdown() == false);
+	}
+
+	/**
+	 * Closes socket quietly.
+	 */
+	protected void closeSocket(Socket socket) {
+		try {
+			socket.close();
+		} catch (IOException ignore) {
+		}
+	}
+
+	// ---------------------------------------------------------------- evict
+
+	/**
+	 * Closes all expired idle connections. Returns number of closed connections.
+	 */
+	public int evictIdle() {
+		long now = System.currentTimeMillis();
+		List<PooledSocket> expired = new ArrayList<PooledSocket>();
+
+		for (Route route : routes.values()) {
+			synchronized (route) {
+				Iterator<PooledSocket> iterator = route.idle.iterator();
+				while (iterator.hasNext()) {
+					PooledSocket pooledSocket = iterator.next();
+					if (pooledSocket.expires <= now) {
+						iterator.remove();
+						expired.add(pooledSocket);
+					}
+				}
+			}
+			prune(route);
+		}
+
+		for (PooledSocket pooledSocket : expired) {
+			closeSocket(pooledSocket.socket);
+		}
+		return expired.size();
+	}
+
+	/**
+	 * Returns number of routes in the pool.
+	 */
+	public int getRouteCount() {
+		return routes.size();
+	}
+
+	/**
+	 * Returns number of idle connections.
+	 */
+	public int getIdleCount() {
+		int count = 0;
+		for (Route route : routes.values()) {
+			synchronized (route) {
+				count += route.idle.size();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Closes all idle connections. Connections in use
+	 * are closed when released.
+	 */
+	public void close() {
+		closed = true;
+		List<PooledSocket> idle = new ArrayList<PooledSocket>();
+		for (Route route : routes.values()) {
+			synchronized (route) {
+				idle.addAll(route.idle);
+				route.idle.clear();
+			}
+			prune(route);
+		}
+		for (PooledSocket pooledSocket : idle) {
+			closeSocket(pooledSocket.socket);
+		}
+	}
+
+}
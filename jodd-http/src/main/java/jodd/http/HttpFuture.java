@@ -0,0 +1,145 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.http;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pending response of the asynchronously sent request.
+ * Optional {@link HttpCallback callback} is notified when
+ * the response is received or when request fails. Callback
+ * is not notified if future is cancelled.
+ */
+public class HttpFuture implements Future<HttpResponse> {
+
+	protected final HttpCallback callback;
+	protected final Executor callbackExecutor;
+	protected final AtomicBoolean done = new AtomicBoolean();
+	protected final CountDownLatch latch = new CountDownLatch(1);
+
+	protected volatile HttpResponse response;
+	protected volatile Throwable failure;
+	protected volatile boolean cancelled;
+
+	public HttpFuture(HttpCallback callback, Executor callbackExecutor) {
+		this.callback = callback;
+		this.callbackExecutor = callbackExecutor;
+	}
+
+	// ---------------------------------------------------------------- complete
+
+	/**
+	 * Completes the future with the response. Returns <code>false</code>
+	 * if future is already done.
+	 */
+	protected boolean complete(final HttpResponse response) {
+		if (done.compareAndSet(false, true) == false) {
+			return false;
+		}
+		this.response = response;
+		latch.countDown();
+
+		if (callback != null) {
+			notifyCallback(new Runnable() {
+				public void run() {
+					callback.onResponse(response);
+				}
+			});
+		}
+		return true;
+	}
+
+	/**
+	 * Completes the future with the failure. Returns <code>false</code>
+	 * if future is already done.
+	 */
+	protected boolean fail(final Throwable failure) {
+		if (done.compareAndSet(false, true) == false) {
+			return false;
+		}
+		this.failure = failure;
+		latch.countDown();
+
+		if (callback != null) {
+			notifyCallback(new Runnable() {
+				public void run() {
+					callback.onFailure(failure);
+				}
+			});
+		}
+		return true;
+	}
+
+	/**
+	 * Runs callback notification, using callback executor if set.
+	 * When executor rejects the notification, callback is invoked
+	 * in the current thread.
+	 */
+	protected void notifyCallback(Runnable runnable) {
+		if (callbackExecutor != null) {
+			try {
+				callbackExecutor.execute(runnable);
+				return;
+			} catch (RejectedExecutionException ignore) {
+			}
+		}
+		try {
+			runnable.run();
+		} catch (RuntimeException ignore) {
+			// callback failure must not break the client
+		}
+	}
+
+	// ---------------------------------------------------------------- future
+
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		if (done.compareAndSet(false, true) == false) {
+			return false;
+		}
+		cancelled = true;
+		latch.countDown();
+		return true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	public boolean isDone() {
+		return done.get();
+	}
+
+	public HttpResponse get() throws InterruptedException, ExecutionException {
+		latch.await();
+		return report();
+	}
+
+	public HttpResponse get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		if (latch.await(timeout, unit) == false) {
+			throw new TimeoutException();
+		}
+		return report();
+	}
+
+	/**
+	 * Returns response or throws the failure.
+	 */
+	protected HttpResponse report() throws ExecutionException {
+		if (cancelled) {
+			throw new CancellationException();
+		}
+		if (failure != null) {
+			throw new ExecutionException(failure);
+		}
+		return response;
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,365 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Parser of HTTP start line and headers that works directly on bytes.
+ * Line is read into the reusable buffer and strings are created only
+ * for values. Common header names, HTTP versions and methods are
+ * matched case-insensitive against the table of known names and
+ * their interned instances are used, so no string is created for them.
+ * <p>
+ * Parser is not thread safe; use {@link #get()} to obtain the
+ * instance of the current thread.
+ */
+public class HttpHeaderParser {
+
+	protected static final int INITIAL_BUFFER_SIZE = 256;
+	protected static final int MAX_RETAINED_BUFFER_SIZE = 8 * 1024;
+	protected static final int MAX_LINE_LENGTH = 64 * 1024;
+
+	private static final ThreadLocal<HttpHeaderParser> PARSERS = new ThreadLocal<HttpHeaderParser>() {
+		@Override
+		protected HttpHeaderParser initialValue() {
+			return new HttpHeaderParser();
+		}
+	};
+
+	/**
+	 * Returns parser of the current thread.
+	 */
+	public static HttpHeaderParser get() {
+		return PARSERS.get();
+	}
+
+	protected byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+	protected int length;
+
+	// ---------------------------------------------------------------- lines
+
+	/**
+	 * Reads a line into the buffer, without the line ending.
+	 * Returns line length or -1 if stream is at its end.
+	 */
+	public int readLine(InputStream in) throws IOException {
+		int len = 0;
+		boolean eol = false;
+
+		while (true) {
+			int c = in.read();
+			if (c == -1) {
+				break;
+			}
+			if (c == '\n') {
+				eol = true;
+				break;
+			}
+			if (len == buffer.length) {
+				if (len >= MAX_LINE_LENGTH) {
+					throw new HttpException("Header line too long");
+				}
+				byte[] newBuffer = new byte[len << 1];
+				System.arraycopy(buffer, 0, newBuffer, 0, len);
+				buffer = newBuffer;
+			}
+			buffer[len++] = (byte) c;
+		}
+
+		if ((len == 0) && (eol == false)) {
+			length = 0;
+			return -1;
+		}
+		if ((len > 0) && (buffer[len - 1] == '\r')) {
+			len--;
+		}
+		length = len;
+		return len;
+	}
+
+	/**
+	 * Reads a line of ISO-8859-1 characters, without the line ending.
+	 * Returns <code>null</code> if stream is at its end.
+	 */
+	public String readLineString(InputStream in) throws IOException {
+		if (readLine(in) == -1) {
+			return null;
+		}
+		return string(0, length);
+	}
+
+	/**
+	 * Releases the buffer that grew too big.
+	 */
+	protected void trimBuffer() {
+		if (buffer.length > MAX_RETAINED_BUFFER_SIZE) {
+			buffer = new byte[INITIAL_BUFFER_SIZE];
+		}
+	}
+
+	// ---------------------------------------------------------------- start line
+
+	/**
+	 * Reads response status line. Returns <code>false</code>
+	 * if stream is at its end.
+	 */
+	public boolean readStatusLine(InputStream in, HttpResponse httpResponse) throws IOException {
+		if (readLine(in) == -1) {
+			return false;
+		}
+
+		int start = skipWhitespaces(0, length);
+		int end = trimEnd(start, length);
+
+		int ndx = indexOf(' ', start, end);
+		if (ndx == -1) {
+			throw new HttpException("Invalid status line: " + string(start, end));
+		}
+		httpResponse.httpVersion(intern(HTTP_VERSIONS, start, ndx));
+
+		int codeStart = skipWhitespaces(ndx, end);
+		int codeEnd = indexOf(' ', codeStart, end);
+		if (codeEnd == -1) {
+			codeEnd = end;
+		}
+
+		int statusCode = 0;
+		for (int i = codeStart; i < codeEnd; i++) {
+			int digit = buffer[i] - '0';
+			if ((digit < 0) || (digit > 9)) {
+				throw new HttpException("Invalid status line: " + string(start, end));
+			}
+			statusCode = statusCode * 10 + digit;
+		}
+		httpResponse.statusCode(statusCode);
+
+		httpResponse.statusPhrase(string(skipWhitespaces(codeEnd, end), end));
+		return true;
+	}
+
+	/**
+	 * Reads request line. Returns <code>false</code> if stream
+	 * is at its end or if line is blank.
+	 */
+	public boolean readRequestLine(InputStream in, HttpRequest httpRequest) throws IOException {
+		if (readLine(in) == -1) {
+			return false;
+		}
+
+		int start = skipWhitespaces(0, length);
+		int end = trimEnd(start, length);
+		if (start == end) {
+			return false;
+		}
+
+		int ndx1 = indexOf(' ', start, end);
+		int ndx2 = (ndx1 == -1) ? -1 : indexOf(' ', ndx1 + 1, end);
+		if (ndx2 == -1) {
+			throw new HttpException("Invalid request line: " + string(start, end));
+		}
+
+		httpRequest.method(intern(HTTP_METHODS, start, ndx1));
+		httpRequest.path(string(ndx1 + 1, ndx2));
+		httpRequest.httpVersion(intern(HTTP_VERSIONS, ndx2 + 1, end));
+		return true;
+	}
+
+	// ---------------------------------------------------------------- headers
+
+	/**
+	 * Reads headers until the empty line and sets them to the target.
+	 */
+	public void readHeaders(InputStream in, HttpBase<?> httpBase) throws IOException {
+		try {
+			while (true) {
+				if (readLine(in) == -1) {
+					break;
+				}
+
+				int start = skipWhitespaces(0, length);
+				if (start == length) {
+					break;
+				}
+
+				int colon = indexOf(':', start, length);
+				if (colon == -1) {
+					throw new HttpException("Invalid header: " + string(0, length));
+				}
+
+				String name = headerName(buffer, start, trimEnd(start, colon));
+
+				int valueStart = skipWhitespaces(colon + 1, length);
+				String value = string(valueStart, trimEnd(valueStart, length));
+
+				httpBase.putHeader(name, value);
+			}
+		} finally {
+			trimBuffer();
+		}
+	}
+
+	// ---------------------------------------------------------------- bytes
+
+	protected int skipWhitespaces(int from, int to) {
+		while ((from < to) && ((buffer[from] & 0xFF) <= ' ')) {
+			from++;
+		}
+		return from;
+	}
+
+	protected int trimEnd(int from, int to) {
+		while ((to > from) && ((buffer[to - 1] & 0xFF) <= ' ')) {
+			to--;
+		}
+		return to;
+	}
+
+	protected int indexOf(char c, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (buffer[i] == c) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Creates ISO-8859-1 string from the buffer.
+	 */
+	protected String string(int from, int to) {
+		char[] chars = new char[to - from];
+		for (int i = from; i < to; i++) {
+			chars[i - from] = (char) (buffer[i] & 0xFF);
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * Returns one of the given upper-case names that equals to
+	 * the bytes, or creates new string if there is no match.
+	 */
+	protected String intern(String[] names, int from, int to) {
+		int len = to - from;
+		for (String name : names) {
+			if (name.length() != len) {
+				continue;
+			}
+			int i = 0;
+			while ((i < len) && (name.charAt(i) == toUpperCase(buffer[from + i]))) {
+				i++;
+			}
+			if (i == len) {
+				return name;
+			}
+		}
+		return string(from, to);
+	}
+
+	private static final String[] HTTP_VERSIONS = new String[] {"HTTP/1.1", "HTTP/1.0"};
+
+	private static final String[] HTTP_METHODS = new String[] {
+			"GET", "POST", "HEAD", "PUT", "DELETE", "OPTIONS", "PATCH", "TRACE", "CONNECT"};
+
+	private static char toUpperCase(byte b) {
+		if ((b >= 'a') && (b <= 'z')) {
+			return (char) (b - 32);
+		}
+		return (char) (b & 0xFF);
+	}
+
+	private static int toLowerCase(byte b) {
+		if ((b >= 'A') && (b <= 'Z')) {
+			return b + 32;
+		}
+		return b & 0xFF;
+	}
+
+	// ---------------------------------------------------------------- names
+
+	/**
+	 * Known header names, as they are sent.
+	 */
+	private static final String[] KNOWN_HEADER_NAMES = new String[] {
+			"Accept", "Accept-Charset", "Accept-Encoding", "Accept-Language", "Accept-Ranges",
+			"Age", "Allow", "Authorization", "Cache-Control", "Connection", "Content-Disposition",
+			"Content-Encoding", "Content-Language", "Content-Length", "Content-Location",
+			"Content-Range", "Content-Type", "Cookie", "Date", "ETag", "Expect", "Expires", "From",
+			"Host", "If-Match", "If-Modified-Since", "If-None-Match", "If-Range", "If-Unmodified-Since",
+			"Keep-Alive", "Last-Modified", "Location", "Origin", "Pragma", "Proxy-Authenticate",
+			"Proxy-Authorization", "Proxy-Connection", "Range", "Referer", "Retry-After", "Server",
+			"Set-Cookie", "Trailer", "Transfer-Encoding", "Upgrade", "User-Agent", "Vary", "Via",
+			"Warning", "WWW-Authenticate", "X-Forwarded-For", "X-Forwarded-Host", "X-Forwarded-Proto",
+			"X-Powered-By", "X-Requested-With"};
+
+	private static final int TABLE_MASK = 0xFF;
+	private static final String[] NAMES_TABLE = new String[TABLE_MASK + 1];
+	private static final Map<String, String> SEND_NAMES = new HashMap<String, String>();
+
+	static {
+		for (String headerName : KNOWN_HEADER_NAMES) {
+			String name = headerName.toLowerCase().intern();
+
+			int hash = 0;
+			for (int i = 0; i < name.length(); i++) {
+				hash = 31 * hash + name.charAt(i);
+			}
+			int index = hash & TABLE_MASK;
+			while (NAMES_TABLE[index] != null) {
+				index = (index + 1) & TABLE_MASK;
+			}
+			NAMES_TABLE[index] = name;
+
+			SEND_NAMES.put(name, headerName);
+		}
+	}
+
+	/**
+	 * Returns lower-case header name from the bytes. Known header
+	 * names are returned as interned strings, without allocation.
+	 */
+	public static String headerName(byte[] bytes, int from, int to) {
+		int hash = 0;
+		for (int i = from; i < to; i++) {
+			hash = 31 * hash + toLowerCase(bytes[i]);
+		}
+
+		int len = to - from;
+		int index = hash & TABLE_MASK;
+
+		while (true) {
+			String name = NAMES_TABLE[index];
+			if (name == null) {
+				break;
+			}
+			if (name.length() == len) {
+				int i = 0;
+				while ((i < len) && (name.charAt(i) == toLowerCase(bytes[from + i]))) {
+					i++;
+				}
+				if (i == len) {
+					return name;
+				}
+			}
+			index = (index + 1) & TABLE_MASK;
+		}
+
+		char[] chars = new char[len];
+		for (int i = 0; i < len; i++) {
+			chars[i] = (char) toLowerCase(bytes[from + i]);
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * Returns header name as it is sent, for known lower-case header name.
+	 * Returns <code>null</code> if header name is not known.
+	 */
+	public static String knownHeaderName(String name) {
+		return SEND_NAMES.get(name);
+	}
+
+}
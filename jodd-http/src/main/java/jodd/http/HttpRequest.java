@@ -8,11 +8,9 @@ import jodd.util.StringBand;
 import jodd.util.StringPool;
 import jodd.util.StringUtil;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.UnsupportedEncodingException;
 import java.util.Map;
 
 import static jodd.util.StringPool.CRLF;
@@ -422,12 +420,60 @@ public class HttpRequest extends HttpBase<HttpRequest> {
 	// ---------------------------------------------------------------- send
 
 	protected HttpTransport httpTransport;
+	protected boolean streamResponse;
+	protected boolean acceptCompression;
+
+	/**
+	 * Returns <code>true</code> if response body is streamed.
+	 */
+	public boolean streamResponse() {
+		return streamResponse;
+	}
+
+	/**
+	 * Defines if response body should be streamed instead of being read
+	 * into the memory. Streamed body is available from
+	 * {@link HttpResponse#bodyStream()} and connection stays open until
+	 * the stream is consumed or the response is {@link HttpResponse#close() closed}.
+	 */
+	public HttpRequest streamResponse(boolean streamResponse) {
+		this.streamResponse = streamResponse;
+		return this;
+	}
+
+	/**
+	 * Returns <code>true</code> if compressed response is accepted.
+	 */
+	public boolean acceptCompression() {
+		return acceptCompression;
+	}
+
+	/**
+	 * Defines if compressed response is accepted. When set, "Accept-Encoding"
+	 * header is sent, if not already set, and gzip or deflate response body
+	 * is decompressed while it is read, without buffering compressed content.
+	 */
+	public HttpRequest acceptCompression(boolean acceptCompression) {
+		this.acceptCompression = acceptCompression;
+		if (acceptCompression && (header(HEADER_ACCEPT_ENCODING) == null)) {
+			acceptEncoding("gzip, deflate");
+		}
+		return this;
+	}
 
 	/**
 	 * Opens transport i.e. connection. Returns used {@link HttpTransport} implementation.
 	 */
 	public HttpTransport open() {
-		httpTransport = new HttpTransport();
+		return open(new HttpTransport());
+	}
+
+	/**
+	 * Opens request using given transport, e.g. the one from the
+	 * {@link HttpConnectionPool connection pool}. Returns used transport.
+	 */
+	public HttpTransport open(HttpTransport httpTransport) {
+		this.httpTransport = httpTransport;
 
 		try {
 			httpTransport.open(this);
@@ -440,24 +486,45 @@ public class HttpRequest extends HttpBase<HttpRequest> {
 
 	/**
 	 * Opens request if not already open, sends request, reads response and closes the request.
+	 * Streamed response is closed when its body is consumed.
 	 */
 	public HttpResponse send() {
 		if (httpTransport == null) {
 			open();
 		}
 
-		HttpResponse httpResponse;
+		HttpResponse httpResponse = null;
 		try {
 			httpResponse = httpTransport.send();
 		} catch (IOException ioex) {
 			throw new HttpException(ioex);
+		} finally {
+			if (httpResponse == null) {
+				httpTransport.abort();
+			} else if (httpResponse.isStreamed() == false) {
+				httpTransport.close();
+			}
 		}
 
-		httpTransport.close();
-
 		return httpResponse;
 	}
 
+	/**
+	 * Sends request asynchronously using given client.
+	 * Returns future of the response.
+	 */
+	public HttpFuture sendAsync(HttpAsyncClient httpAsyncClient) {
+		return httpAsyncClient.send(this, null);
+	}
+
+	/**
+	 * Sends request asynchronously using given client. Callback
+	 * is notified when response is received or when request fails.
+	 */
+	public HttpFuture sendAsync(HttpAsyncClient httpAsyncClient, HttpCallback callback) {
+		return httpAsyncClient.send(this, callback);
+	}
+
 	// ---------------------------------------------------------------- toString
 
 	/**
@@ -466,6 +533,16 @@ public class HttpRequest extends HttpBase<HttpRequest> {
 	 * resulting string is created.
 	 */
 	public String toString() {
+		return toString(true);
+	}
+
+	/**
+	 * Returns string representation of the HTTP request, optionally
+	 * without the body.
+	 * @see #toString()
+	 */
+	@Override
+	protected String toString(boolean fullMessage) {
 
 		// INITIALIZATION
 
@@ -477,7 +554,7 @@ public class HttpRequest extends HttpBase<HttpRequest> {
 
 		// form
 
-		String formString = formString();
+		String formString = fullMessage ? formString() : null;
 
 		// query string
 
@@ -491,7 +568,7 @@ public class HttpRequest extends HttpBase<HttpRequest> {
 
 		// POST method requires Content-Type to be set
 
-		if (method.equals("POST") && (contentLength() == null)) {
+		if (method.equals("POST") && (contentLength() == null) && (header(HEADER_TRANSFER_ENCODING) == null)) {
 			contentLength(0);
 		}
 
@@ -526,9 +603,13 @@ public class HttpRequest extends HttpBase<HttpRequest> {
 
 		builder.append(CRLF);
 
+		if (fullMessage == false) {
+			return builder.toString();
+		}
+
 		if (form != null) {
 			builder.append(formString);
-		} else if (body != null) {
+		} else if (body() != null) {
 			builder.append(body);
 		}
 
@@ -541,31 +622,25 @@ public class HttpRequest extends HttpBase<HttpRequest> {
 	 * Parses input stream and creates new <code>HttpRequest</code> object.
 	 */
 	public static HttpRequest readFrom(InputStream in) {
-		BufferedReader reader;
-		try {
-			reader = new BufferedReader(new InputStreamReader(in, StringPool.ISO_8859_1));
-		} catch (UnsupportedEncodingException uneex) {
-			return null;
+		if (in.markSupported() == false) {
+			in = new BufferedInputStream(in);
 		}
 
 		HttpRequest httpRequest = new HttpRequest();
+		HttpHeaderParser parser = HttpHeaderParser.get();
 
-		String line;
+		boolean hasRequestLine;
 		try {
-			line = reader.readLine();
+			hasRequestLine = parser.readRequestLine(in, httpRequest);
+			if (hasRequestLine) {
+				parser.readHeaders(in, httpRequest);
+			}
 		} catch (IOException ioex) {
 			throw new HttpException(ioex);
 		}
 
-		if (!StringUtil.isBlank(line)) {
-			String[] s = StringUtil.splitc(line, ' ');
-
-			httpRequest.method(s[0]);
-			httpRequest.path(s[1]);
-			httpRequest.httpVersion(s[2]);
-
-			httpRequest.readHeaders(reader);
-			httpRequest.readBody(reader);
+		if (hasRequestLine) {
+			httpRequest.readBody(in);
 		}
 
 		return httpRequest;
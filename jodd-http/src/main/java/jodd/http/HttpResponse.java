@@ -2,18 +2,19 @@
 
 package jodd.http;
 
+import jodd.io.FastByteArrayOutputStream;
 import jodd.io.StreamUtil;
-import jodd.io.StringInputStream;
-import jodd.io.StringOutputStream;
-import jodd.util.StringPool;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.UnsupportedEncodingException;
+import java.io.PushbackInputStream;
 import java.util.Map;
 import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 import static jodd.util.StringPool.CRLF;
 import static jodd.util.StringPool.SPACE;
@@ -25,6 +26,9 @@ public class HttpResponse extends HttpBase<HttpResponse> {
 
 	protected int statusCode;
 	protected String statusPhrase;
+	protected InputStream bodyStream;		// unread body, when response is streamed
+	protected HttpTransport httpTransport;	// transport of the streamed response
+	protected boolean decompress;			// decompress body while reading
 
 	/**
 	 * Returns response status code.
@@ -59,29 +63,115 @@ public class HttpResponse extends HttpBase<HttpResponse> {
 	// ---------------------------------------------------------------- body
 
 	/**
-	 * Unzips GZip-ed body content, removes the content-encoding header
-	 * and sets the new content-length value.
+	 * Unzips GZip-ed or deflated body content, removes the content-encoding
+	 * header and sets the new content-length value.
+	 * @see HttpRequest#acceptCompression(boolean)
 	 */
 	public HttpResponse unzip() {
+		byte[] bytes = bodyBytes();
+
+		if ((bytes != null) && (contentEncoding() != null)) {
+			try {
+				InputStream in = new ByteArrayInputStream(bytes);
+				InputStream decompressed = decompressBodyStream(in);
+
+				if (decompressed != in) {
+					FastByteArrayOutputStream out = new FastByteArrayOutputStream();
+
+					try {
+						StreamUtil.copy(decompressed, out);
+					} finally {
+						StreamUtil.close(decompressed);
+					}
+
+					body(out.toByteArray(), contentType());
+				}
+			} catch (IOException ioex) {
+				throw new HttpException(ioex);
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Wraps the body stream with the decompressing stream, depending on
+	 * the "Content-Encoding". Supported encodings are gzip and deflate,
+	 * for which content encoding and length headers are removed.
+	 * Returns the same stream if content is not compressed.
+	 * Closing the returned stream releases the decompressor,
+	 * but does not close the wrapped stream.
+	 */
+	protected InputStream decompressBodyStream(InputStream in) throws IOException {
 		String contentEncoding = contentEncoding();
+		if (contentEncoding == null) {
+			return in;
+		}
+		contentEncoding = contentEncoding.trim().toLowerCase();
+
+		InputStream decompressed;
+
+		if (contentEncoding.equals("gzip") || contentEncoding.equals("x-gzip")) {
+			decompressed = new GzipBodyInputStream(in);
+		} else if (contentEncoding.equals("deflate")) {
+			// deflate should be wrapped in zlib format, but some servers send raw data
+			PushbackInputStream pin = new PushbackInputStream(in, 2);
+			int b0 = pin.read();
+			int b1 = pin.read();
+			if (b1 != -1) {
+				pin.unread(b1);
+			}
+			if (b0 != -1) {
+				pin.unread(b0);
+			}
+			boolean zlib = ((b0 & 0x0F) == 8) && (b1 != -1) && (((b0 << 8) | b1) % 31 == 0);
+			decompressed = new InflaterBodyInputStream(pin, zlib == false);
+		} else {
+			return in;
+		}
 
-		if (contentEncoding != null && contentEncoding().equals("gzip")) {
-			if (body != null) {
-				removeHeader(HEADER_CONTENT_ENCODING);
-				try {
-					StringInputStream in = new StringInputStream(body, StringInputStream.Mode.STRIP);
-					GZIPInputStream gzipInputStream = new GZIPInputStream(in);
-					StringOutputStream out = new StringOutputStream();
+		removeHeader(HEADER_CONTENT_ENCODING);
+		removeHeader(HEADER_CONTENT_LENGTH);
+		return decompressed;
+	}
 
-					StreamUtil.copy(gzipInputStream, out);
+	/**
+	 * Reads the body and decompresses it, if {@link #decompress} is set.
+	 */
+	@Override
+	protected void readBody(InputStream in) {
+		InputStream bodyStream = createBodyStream(in);
+
+		if ((bodyStream == null) || (decompress == false) || (contentEncoding() == null)) {
+			readBodyBytes(bodyStream);
+			return;
+		}
+
+		InputStream decompressed;
+		try {
+			decompressed = decompressBodyStream(bodyStream);
+		} catch (IOException ioex) {
+			throw new HttpException(ioex);
+		}
 
-					body(out.toString());
+		try {
+			readBodyBytes(decompressed);
+
+			if (decompressed != bodyStream) {
+				// the rest of the compressed content, e.g. the last chunk
+				try {
+					while (bodyStream.read() != -1) {
+						// drain
+					}
 				} catch (IOException ioex) {
 					throw new HttpException(ioex);
 				}
+				contentLength(bodyBytes.length);
+			}
+		} finally {
+			if (decompressed != bodyStream) {
+				StreamUtil.close(decompressed);
 			}
 		}
-		return this;
 	}
 
 	// ---------------------------------------------------------------- toString
@@ -90,9 +180,18 @@ public class HttpResponse extends HttpBase<HttpResponse> {
 	 * String representation of the HTTP response.
 	 */
 	public String toString() {
+		return toString(true);
+	}
+
+	/**
+	 * String representation of the HTTP response, optionally
+	 * without the body.
+	 */
+	@Override
+	protected String toString(boolean fullMessage) {
 		// form
 
-		String formString = formString();
+		String formString = fullMessage ? formString() : null;
 
 		// response
 
@@ -118,15 +217,227 @@ public class HttpResponse extends HttpBase<HttpResponse> {
 
 		response.append(CRLF);
 
+		if (fullMessage == false) {
+			return response.toString();
+		}
+
 		if (form != null) {
 			response.append(formString);
-		} else if (body != null) {
+		} else if (body() != null) {
 			response.append(body);
 		}
 
 		return response.toString();
 	}
 
+	// ---------------------------------------------------------------- stream
+
+	/**
+	 * Returns <code>true</code> if response body is not yet read,
+	 * i.e. it is available as {@link #bodyStream() stream}.
+	 */
+	public boolean isStreamed() {
+		return bodyStream != null;
+	}
+
+	/**
+	 * Returns input stream of the unread response body, so the body
+	 * can be processed without buffering it in the memory. Stream
+	 * returns only the body content; chunked encoding is decoded.
+	 * When stream is read to its end or closed, the connection is
+	 * released. Returns <code>null</code> if body is already read
+	 * or if there is no body.
+	 * @see HttpRequest#streamResponse(boolean)
+	 */
+	public InputStream bodyStream() {
+		return bodyStream;
+	}
+
+	/**
+	 * Reads the rest of the streamed body into the memory and
+	 * releases the connection. Does nothing if body is already read.
+	 */
+	public HttpResponse readBody() {
+		if (bodyStream == null) {
+			return this;
+		}
+		try {
+			readBodyBytes(bodyStream);
+		} finally {
+			close();
+		}
+		return this;
+	}
+
+	/**
+	 * Closes the streamed response and releases the connection.
+	 * Unread body is discarded.
+	 */
+	public void close() {
+		if (bodyStream != null) {
+			try {
+				bodyStream.close();
+			} catch (IOException ignore) {
+			}
+		}
+		release(false);
+	}
+
+	/**
+	 * Releases the connection of the streamed response. If body is not
+	 * completely read, connection can not be reused and it is aborted.
+	 */
+	protected void release(boolean complete) {
+		bodyStream = null;
+		if (httpTransport != null) {
+			HttpTransport transport = httpTransport;
+			httpTransport = null;
+			if (complete) {
+				transport.close();
+			} else {
+				transport.abort();
+			}
+		}
+	}
+
+	/**
+	 * Streamed body that releases the connection when the body
+	 * is read to the end or closed. Bodies that are not larger than
+	 * {@link #MAX_DRAIN_SIZE} are drained on close, so connection
+	 * may be reused. Body may be decompressed while reading, when
+	 * the rest of the received content is drained on the end.
+	 */
+	protected class ResponseBodyInputStream extends FilterInputStream {
+
+		protected static final int MAX_DRAIN_SIZE = 64 * 1024;
+
+		protected final InputStream received;	// received, i.e. not decompressed, content
+
+		protected ResponseBodyInputStream(InputStream in, InputStream received) {
+			super(in);
+			this.received = received;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = in.read();
+			if (b == -1) {
+				close();
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int count = in.read(b, off, len);
+			if (count == -1) {
+				close();
+			}
+			return count;
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+
+		/**
+		 * Returns <code>true</code> if delimited body is completely read.
+		 */
+		protected boolean isComplete() {
+			if (received instanceof ContentLengthInputStream) {
+				return ((ContentLengthInputStream) received).isComplete();
+			}
+			if (received instanceof ChunkedInputStream) {
+				return ((ChunkedInputStream) received).isComplete();
+			}
+			return false;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (bodyStream != this) {
+				return;
+			}
+			boolean complete = false;
+			try {
+				long remaining = MAX_DRAIN_SIZE;
+				while (remaining > 0) {
+					long skipped = received.skip(remaining);
+					if (skipped <= 0) {
+						complete = (received.read() == -1) && isComplete();
+						break;
+					}
+					remaining -= skipped;
+				}
+			} catch (IOException ignore) {
+			} finally {
+				release(complete);
+				if (in != received) {
+					in.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gzip body stream that on close only ends the inflater,
+	 * releasing its native memory, while the wrapped stream stays open.
+	 */
+	protected static class GzipBodyInputStream extends GZIPInputStream {
+
+		protected boolean ended;
+
+		protected GzipBodyInputStream(InputStream in) throws IOException {
+			super(in);
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (ended) {
+				return -1;
+			}
+			return super.read(b, off, len);
+		}
+
+		@Override
+		public void close() {
+			if (ended == false) {
+				ended = true;
+				inf.end();
+			}
+		}
+	}
+
+	/**
+	 * Deflate body stream that on close only ends the inflater,
+	 * releasing its native memory, while the wrapped stream stays open.
+	 */
+	protected static class InflaterBodyInputStream extends InflaterInputStream {
+
+		protected boolean ended;
+
+		protected InflaterBodyInputStream(InputStream in, boolean nowrap) {
+			super(in, new Inflater(nowrap));
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (ended) {
+				return -1;
+			}
+			return super.read(b, off, len);
+		}
+
+		@Override
+		public void close() {
+			if (ended == false) {
+				ended = true;
+				inf.end();
+			}
+		}
+	}
+
 	// ---------------------------------------------------------------- read from
 
 	/**
@@ -134,41 +445,71 @@ public class HttpResponse extends HttpBase<HttpResponse> {
 	 * Supports both streamed and chunked response.
 	 */
 	public static HttpResponse readFrom(InputStream in) {
-		InputStreamReader inputStreamReader;
-		try {
-			inputStreamReader = new InputStreamReader(in, StringPool.ISO_8859_1);
-		} catch (UnsupportedEncodingException ignore) {
-			return null;
+		if (in.markSupported() == false) {
+			in = new BufferedInputStream(in);
 		}
-		BufferedReader reader = new BufferedReader(inputStreamReader);
 
+		HttpResponse httpResponse = readHeadersFrom(in);
+
+		httpResponse.readBody(in);
+
+		return httpResponse;
+	}
+
+	/**
+	 * Reads status line and headers from the response input stream.
+	 * Body is not read. Input stream should be buffered.
+	 */
+	public static HttpResponse readHeadersFrom(InputStream in) {
 		HttpResponse httpResponse = new HttpResponse();
+		HttpHeaderParser parser = HttpHeaderParser.get();
 
-		// the first line
-		String line;
 		try {
-			line = reader.readLine();
+			if (parser.readStatusLine(in, httpResponse)) {
+				parser.readHeaders(in, httpResponse);
+			}
 		} catch (IOException ioex) {
 			throw new HttpException(ioex);
 		}
 
-		if (line != null) {
-
-			line = line.trim();
-
-			int ndx = line.indexOf(' ');
-			httpResponse.httpVersion(line.substring(0, ndx));
-
-			int ndx2 = line.indexOf(' ', ndx + 1);
-			httpResponse.statusCode(Integer.parseInt(line.substring(ndx, ndx2).trim()));
+		return httpResponse;
+	}
 
-			httpResponse.statusPhrase(line.substring(ndx2).trim());
+	/**
+	 * Attaches the unread body of the response. Body stream releases
+	 * the transport when it is consumed or closed. Returns
+	 * <code>false</code> if there is no body to attach.
+	 */
+	protected boolean attachBody(InputStream in, HttpTransport httpTransport) {
+		InputStream body = createBodyStream(in);
+		if (body == null) {
+			return false;
+		}
+		this.httpTransport = httpTransport;
+
+		InputStream content = body;
+		if (decompress) {
+			try {
+				content = decompressBodyStream(body);
+			} catch (IOException ioex) {
+				release(false);
+				throw new HttpException(ioex);
+			}
 		}
 
-		httpResponse.readHeaders(reader);
-		httpResponse.readBody(reader);
+		this.bodyStream = new ResponseBodyInputStream(content, body);
+		return true;
+	}
 
-		return httpResponse;
+	/**
+	 * Returns <code>true</code> if response has a body, depending on
+	 * the status code and the request method.
+	 */
+	protected boolean hasBody(String requestMethod) {
+		if (requestMethod.equals("HEAD")) {
+			return false;
+		}
+		return (statusCode / 100 != 1) && (statusCode != 204) && (statusCode != 304);
 	}
 
 }
\ No newline at end of file
@@ -5,10 +5,13 @@ package jodd.http;
 import javax.net.SocketFactory;
 import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.channels.SocketChannel;
 
 /**
  * Socket adapter for {@link HttpRequest}.
@@ -23,34 +26,64 @@ public class HttpTransport {
 	 */
 	public Socket open(HttpRequest httpRequest) throws IOException {
 		this.httpRequest = httpRequest;
+		this.socket = createSocket(httpRequest);
 
+		return socket;
+	}
+
+	/**
+	 * Creates new connected socket for the request.
+	 */
+	protected Socket createSocket(HttpRequest httpRequest) throws IOException {
 		if (httpRequest.protocol().equals("https")) {
 			SocketFactory ssocketFactory = SSLSocketFactory.getDefault();
 			SSLSocket sslSocket = (SSLSocket) ssocketFactory.createSocket(httpRequest.host(), 443);
 			sslSocket.startHandshake();
 
-			this.socket = sslSocket;
-		}
-		else {
-			this.socket = new Socket(httpRequest.host(), httpRequest.port());
+			return sslSocket;
 		}
-
-		return socket;
+		// socket with channel, so files may be transferred directly
+		SocketChannel socketChannel = SocketChannel.open(new InetSocketAddress(httpRequest.host(), httpRequest.port()));
+		return socketChannel.socket();
 	}
 
 	/**
 	 * Opens sockets output stream and sends request data to it.
-	 * Returns parsed response.
+	 * Returns parsed response. When {@link HttpRequest#streamResponse() streaming}
+	 * is on, response body is not read and transport stays open until the
+	 * {@link HttpResponse#bodyStream() body stream} is consumed or closed.
 	 */
 	public HttpResponse send() throws IOException {
 
 		OutputStream outputStream = socket.getOutputStream();
 
-		httpRequest.sendTo(outputStream);
+		httpRequest.sendTo(outputStream, socket.getChannel());
+
+		InputStream inputStream = new BufferedInputStream(socket.getInputStream());
+
+		HttpResponse httpResponse = HttpResponse.readHeadersFrom(inputStream);
+		httpResponse.decompress = httpRequest.acceptCompression();
+
+		onResponseHead(httpResponse);
 
-		InputStream inputStream = socket.getInputStream();
+		if (httpResponse.hasBody(httpRequest.method()) == false) {
+			return httpResponse;
+		}
+
+		if (httpRequest.streamResponse()) {
+			httpResponse.attachBody(inputStream, this);
+		} else {
+			httpResponse.readBody(inputStream);
+		}
 
-		return HttpResponse.readFrom(inputStream);
+		return httpResponse;
+	}
+
+	/**
+	 * Invoked when response status line and headers are read,
+	 * before the body.
+	 */
+	protected void onResponseHead(HttpResponse httpResponse) {
 	}
 
 	/**
@@ -63,6 +96,14 @@ public class HttpTransport {
 		}
 	}
 
+	/**
+	 * Closes the transport when the response is not completely read,
+	 * so the connection can not be reused.
+	 */
+	public void abort() {
+		close();
+	}
+
 	/**
 	 * Returns used socket.
 	 */
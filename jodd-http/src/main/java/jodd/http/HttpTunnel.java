@@ -166,9 +166,9 @@ public class HttpTunnel {
 			}
 
 			// fix response
-			if (response.body() != null) {
+			if (response.bodyBytes() != null) {
 				response.removeHeader("Transfer-Encoding");
-				response.contentLength(response.body().length());
+				response.contentLength(response.bodyBytes().length);
 			}
 
 			// do response
@@ -4,6 +4,7 @@ package jodd.http;
 
 import jodd.util.StringBand;
 import jodd.util.StringPool;
+import jodd.util.StringUtil;
 import jodd.util.URLCoder;
 import jodd.util.URLDecoder;
 
@@ -117,6 +118,13 @@ public class HttpUtil {
 	 */
 	public static String prepareHeaderParameterName(String headerName) {
 
+		// known names
+
+		String knownName = HttpHeaderParser.knownHeaderName(headerName);
+		if (knownName != null) {
+			return knownName;
+		}
+
 		// special cases
 
 		if (headerName.equals("etag")) {
@@ -218,4 +226,40 @@ public class HttpUtil {
 		}
 	}
 
+	/**
+	 * Returns <code>true</code> if request method is idempotent, so the
+	 * request may be safely repeated when the connection fails before the
+	 * response. Only methods defined as idempotent by HTTP/1.1 are
+	 * considered, other and unknown methods are not repeated.
+	 */
+	public static boolean isIdempotent(String method) {
+		return method.equals("GET") || method.equals("HEAD") || method.equals("PUT")
+				|| method.equals("DELETE") || method.equals("OPTIONS") || method.equals("TRACE");
+	}
+
+	// ---------------------------------------------------------------- header parameters
+
+	/**
+	 * Extracts parameter from the header value that consist of parameters
+	 * separated by given separator, like "Keep-Alive" header. Returns
+	 * <code>null</code> if parameter not found.
+	 */
+	public static String extractHeaderParameter(String header, String parameter, char separator) {
+		String[] tokens = StringUtil.splitc(header, separator);
+
+		for (String token : tokens) {
+			int eqNdx = token.indexOf('=');
+
+			if (eqNdx == -1) {
+				continue;
+			}
+
+			String paramName = token.substring(0, eqNdx).trim();
+
+			if (paramName.equalsIgnoreCase(parameter)) {
+				return token.substring(eqNdx + 1).trim();
+			}
+		}
+		return null;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,1082 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.http;
+
+import jodd.util.CharUtil;
+import jodd.util.StringPool;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Non-blocking {@link HttpTunnel}. Client and target connections are
+ * multiplexed on a few selector threads, so slow clients do not block
+ * the tunnel and large number of concurrent connections does not require
+ * the same number of threads. It may be used as a local proxy for
+ * load testing.
+ * <p>
+ * Messages are not read into the memory, but relayed through two bounded
+ * direct buffers per client connection, one for each direction. When
+ * buffer is full, tunnel stops reading from its source until the other
+ * side consumes the data, so fast senders are slowed down to the speed
+ * of the slow receivers. Only request head is parsed and rewritten, so it
+ * can be changed in {@link #onRequest(HttpRequest)}; response is relayed
+ * as it is received.
+ * <p>
+ * Connections to the target are kept alive and reused by the following
+ * requests of any client handled by the same selector thread.
+ * <p>
+ * Usage:
+ * <pre>
+ * NioHttpTunnel tunnel = new NioHttpTunnel(8888, "localhost", 8080);
+ * tunnel.start();
+ * </pre>
+ */
+public class NioHttpTunnel extends HttpTunnel {
+
+	protected static final int SELECT_TIMEOUT = 100;
+	protected static final int MAX_POOLED_BUFFERS = 256;
+
+	protected static final int BODY_NONE = 0;
+	protected static final int BODY_LENGTH = 1;
+	protected static final int BODY_CHUNKED = 2;
+	protected static final int BODY_UNTIL_CLOSE = 3;
+
+	protected static final int REQUEST_HEAD = 0;
+	protected static final int REQUEST_BODY = 1;
+	protected static final int REQUEST_DONE = 2;
+
+	/**
+	 * Number of selector threads.
+	 */
+	protected int selectorThreads = 2;
+
+	/**
+	 * Size of the buffer for each direction of the connection.
+	 * Message head has to fit in the buffer.
+	 */
+	protected int bufferSize = 16 * 1024;
+
+	/**
+	 * Number of milliseconds after which inactive client
+	 * connection or idle target connection is closed.
+	 */
+	protected long idleTimeout = 60000;
+
+	/**
+	 * Max number of idle target connections per selector thread.
+	 */
+	protected int maxIdleTargets = 100;
+
+	protected ServerSocketChannel serverChannel;
+	protected TunnelLoop[] loops;
+	protected InetSocketAddress targetAddress;
+
+	public NioHttpTunnel() {
+	}
+
+	public NioHttpTunnel(int listenPort, String targetHost, int targetPort) {
+		this.listenPort = listenPort;
+		this.targetHost = targetHost;
+		this.targetPort = targetPort;
+	}
+
+	// ---------------------------------------------------------------- start/stop
+
+	/**
+	 * Starts the tunnel. Incoming connections are accepted in the
+	 * calling thread and distributed over the selector threads.
+	 * Target address is resolved once, so selector threads never
+	 * wait for the host name lookup. Method ends when the tunnel
+	 * is stopped.
+	 */
+	@Override
+	public void start() throws IOException {
+		targetAddress = new InetSocketAddress(targetHost, targetPort);
+		if (targetAddress.isUnresolved()) {
+			throw new UnknownHostException(targetHost);
+		}
+
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.socket().setReuseAddress(true);
+		serverChannel.socket().bind(new InetSocketAddress(listenPort), socketBacklog);
+
+		loops = new TunnelLoop[selectorThreads];
+		for (int i = 0; i < loops.length; i++) {
+			loops[i] = new TunnelLoop(i);
+		}
+
+		running = true;
+		int next = 0;
+		try {
+			while (running) {
+				SocketChannel channel = serverChannel.accept();
+				channel.socket().setTcpNoDelay(true);
+				loops[next].register(channel);
+				next = (next + 1) % loops.length;
+			}
+		} catch (ClosedChannelException ccex) {
+			if (running) {
+				throw ccex;
+			}
+		} finally {
+			for (TunnelLoop loop : loops) {
+				loop.close();
+			}
+		}
+	}
+
+	/**
+	 * Stops the tunnel and closes all connections.
+	 */
+	@Override
+	public void stop() {
+		running = false;
+		try {
+			serverChannel.close();
+		} catch (IOException ignore) {
+		}
+	}
+
+	/**
+	 * Invoked after the request head is parsed. Nothing is
+	 * changed in the request, except the target host and port.
+	 * Request body is relayed as received, so its length
+	 * must not be changed.
+	 */
+	protected void onRequest(HttpRequest request) {
+	}
+
+	// ---------------------------------------------------------------- loop
+
+	/**
+	 * Selector thread with its connections. Idle target connections
+	 * and buffers are pooled per thread.
+	 */
+	protected class TunnelLoop implements Runnable {
+
+		protected final Selector selector;
+		protected final ConcurrentLinkedQueue<SocketChannel> accepted = new ConcurrentLinkedQueue<SocketChannel>();
+		protected final Set<Session> sessions = new HashSet<Session>();
+		protected final LinkedList<Target> idleTargets = new LinkedList<Target>();
+		protected final LinkedList<ByteBuffer> buffers = new LinkedList<ByteBuffer>();
+		protected final ByteBuffer discardBuffer = ByteBuffer.allocate(256);
+		private volatile boolean closed;
+
+		protected TunnelLoop(int index) throws IOException {
+			selector = Selector.open();
+			Thread thread = new Thread(this, "jodd-http-tunnel-" + index);
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		/**
+		 * Registers accepted client connection.
+		 */
+		protected void register(SocketChannel channel) {
+			accepted.add(channel);
+			selector.wakeup();
+		}
+
+		/**
+		 * Stops the selector thread.
+		 */
+		protected void close() {
+			closed = true;
+			selector.wakeup();
+		}
+
+		public void run() {
+			long nextCheck = 0;
+
+			while (closed == false) {
+				try {
+					selector.select(SELECT_TIMEOUT);
+				} catch (IOException ioex) {
+					break;
+				}
+
+				registerAccepted();
+
+				Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+				while (iterator.hasNext()) {
+					SelectionKey key = iterator.next();
+					iterator.remove();
+					process(key);
+				}
+
+				long now = System.currentTimeMillis();
+				if (now >= nextCheck) {
+					checkTimeouts(now);
+					nextCheck = now + 1000;
+				}
+			}
+
+			shutdown();
+		}
+
+		/**
+		 * Creates sessions for accepted connections.
+		 */
+		protected void registerAccepted() {
+			SocketChannel channel;
+			while ((channel = accepted.poll()) != null) {
+				try {
+					channel.configureBlocking(false);
+					SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+					Session session = new Session(this, channel, key);
+					key.attach(session);
+					sessions.add(session);
+				} catch (IOException ioex) {
+					closeChannel(channel);
+				}
+			}
+		}
+
+		/**
+		 * Dispatches selected key to its session.
+		 */
+		protected void process(SelectionKey key) {
+			Object attachment = key.attachment();
+			Session session;
+
+			if (attachment instanceof Target) {
+				Target target = (Target) attachment;
+				session = target.session;
+				if (session == null) {
+					onIdleTargetEvent(target, key);
+					return;
+				}
+			} else {
+				session = (Session) attachment;
+			}
+
+			try {
+				if (attachment instanceof Target) {
+					if (key.isValid() && key.isConnectable()) {
+						session.onTargetConnect();
+					}
+					if (key.isValid() && key.isWritable()) {
+						session.onTargetWrite();
+					}
+					if (key.isValid() && key.isReadable()) {
+						session.onTargetRead();
+					}
+				} else {
+					if (key.isValid() && key.isWritable()) {
+						session.onClientWrite();
+					}
+					if (key.isValid() && key.isReadable()) {
+						session.onClientRead();
+					}
+				}
+				session.updateInterest();
+			} catch (IOException ioex) {
+				session.close();
+			} catch (RuntimeException rex) {
+				session.close();
+			}
+		}
+
+		// ---------------------------------------------------------------- targets
+
+		/**
+		 * Returns idle target connection or opens a new one.
+		 */
+		protected Target acquireTarget(Session session) throws IOException {
+			Target target = idleTargets.poll();		// most recently used first
+
+			if (target == null) {
+				SocketChannel channel = SocketChannel.open();
+				try {
+					channel.configureBlocking(false);
+					channel.socket().setTcpNoDelay(true);
+					target = new Target(channel);
+					target.connected = channel.connect(targetAddress);
+					target.key = channel.register(selector, target.connected ? 0 : SelectionKey.OP_CONNECT, target);
+				} catch (IOException ioex) {
+					closeChannel(channel);
+					throw ioex;
+				}
+			}
+
+			target.session = session;
+			target.requestCount++;
+			return target;
+		}
+
+		/**
+		 * Returns target connection to the idle pool.
+		 */
+		protected void releaseTarget(Target target) {
+			if (closed || (idleTargets.size() >= maxIdleTargets)) {
+				closeTarget(target);
+				return;
+			}
+			target.session = null;
+			target.idleSince = System.currentTimeMillis();
+			target.key.interestOps(SelectionKey.OP_READ);
+			idleTargets.addFirst(target);
+		}
+
+		/**
+		 * Closes target connection.
+		 */
+		protected void closeTarget(Target target) {
+			target.session = null;
+			if (target.key != null) {
+				target.key.cancel();
+			}
+			closeChannel(target.channel);
+		}
+
+		/**
+		 * Idle target connection is readable only when it is closed by
+		 * the server or when it sends unexpected data.
+		 */
+		protected void onIdleTargetEvent(Target target, SelectionKey key) {
+			if ((key.isValid() == false) || (key.isReadable() == false)) {
+				return;
+			}
+			int count;
+			try {
+				discardBuffer.clear();
+				count = target.channel.read(discardBuffer);
+			} catch (IOException ioex) {
+				count = -1;
+			}
+			if (count != 0) {
+				idleTargets.remove(target);
+				closeTarget(target);
+			}
+		}
+
+		// ---------------------------------------------------------------- buffers
+
+		protected ByteBuffer takeBuffer() {
+			ByteBuffer buffer = buffers.poll();
+			if (buffer == null) {
+				buffer = ByteBuffer.allocateDirect(bufferSize);
+			}
+			return buffer;
+		}
+
+		protected void returnBuffer(ByteBuffer buffer) {
+			if (buffers.size() < MAX_POOLED_BUFFERS) {
+				buffer.clear();
+				buffers.add(buffer);
+			}
+		}
+
+		// ---------------------------------------------------------------- close
+
+		/**
+		 * Closes inactive sessions and expired idle target connections.
+		 */
+		protected void checkTimeouts(long now) {
+			for (Session session : new ArrayList<Session>(sessions)) {
+				if (now - session.lastActivity > idleTimeout) {
+					session.close();
+				}
+			}
+
+			Iterator<Target> iterator = idleTargets.iterator();
+			while (iterator.hasNext()) {
+				Target target = iterator.next();
+				if (now - target.idleSince > idleTimeout) {
+					iterator.remove();
+					closeTarget(target);
+				}
+			}
+		}
+
+		/**
+		 * Closes all connections and the selector.
+		 */
+		protected void shutdown() {
+			for (Session session : new ArrayList<Session>(sessions)) {
+				session.close();
+			}
+			for (Target target : idleTargets) {
+				closeTarget(target);
+			}
+			idleTargets.clear();
+
+			SocketChannel channel;
+			while ((channel = accepted.poll()) != null) {
+				closeChannel(channel);
+			}
+			try {
+				selector.close();
+			} catch (IOException ignore) {
+			}
+		}
+	}
+
+	/**
+	 * Closes channel quietly.
+	 */
+	protected static void closeChannel(SocketChannel channel) {
+		try {
+			channel.close();
+		} catch (IOException ignore) {
+		}
+	}
+
+	// ---------------------------------------------------------------- target
+
+	/**
+	 * Connection to the target.
+	 */
+	protected static class Target {
+
+		protected final SocketChannel channel;
+		protected SelectionKey key;
+		protected Session session;		// null when idle
+		protected boolean connected;
+		protected int requestCount;
+		protected long idleSince;
+
+		protected Target(SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		/**
+		 * Returns <code>true</code> if connection was already used.
+		 */
+		protected boolean isReused() {
+			return requestCount > 1;
+		}
+	}
+
+	// ---------------------------------------------------------------- session
+
+	/**
+	 * Client connection that is relayed to the target. Received bytes are
+	 * kept in the buffers in fill mode, i.e. data is from the buffer
+	 * start to its position; bytes that belong to the current message
+	 * are counted and forwarded from the buffer start.
+	 */
+	protected class Session {
+
+		protected final TunnelLoop loop;
+		protected final SocketChannel client;
+		protected final SelectionKey clientKey;
+		protected final ByteBuffer clientIn;		// received from the client
+		protected final ByteBuffer targetIn;		// received from the target
+		protected Target target;
+		protected long lastActivity;
+		protected boolean closed;
+		protected boolean closeClient;				// close client connection after the response
+		protected boolean clientEof;
+		protected ByteBuffer clientOut;				// tunnel error response
+
+		// request
+
+		protected int requestState;
+		protected String requestMethod;
+		protected byte[] requestHeadBytes;
+		protected ByteBuffer requestHead;			// rewritten head, not yet sent
+		protected final BodyFraming requestBody = new BodyFraming();
+		protected int clientForward;				// clientIn bytes ready for the target
+		protected boolean retried;
+
+		// response
+
+		protected boolean responseHead;
+		protected boolean responseComplete;
+		protected boolean targetReusable;
+		protected boolean targetEof;
+		protected final BodyFraming responseBody = new BodyFraming();
+		protected int targetForward;				// targetIn bytes ready for the client
+
+		protected Session(TunnelLoop loop, SocketChannel client, SelectionKey clientKey) {
+			this.loop = loop;
+			this.client = client;
+			this.clientKey = clientKey;
+			this.clientIn = loop.takeBuffer();
+			this.targetIn = loop.takeBuffer();
+			this.lastActivity = System.currentTimeMillis();
+		}
+
+		// ---------------------------------------------------------------- client
+
+		protected void onClientRead() throws IOException {
+			int count = client.read(clientIn);
+			if (count == -1) {
+				onClientEndOfStream();
+				return;
+			}
+			lastActivity = System.currentTimeMillis();
+			processRequest();
+		}
+
+		protected void onClientEndOfStream() {
+			if ((requestState == REQUEST_DONE) && (target != null)) {
+				// client may only shut down the output, wait for the response
+				clientEof = true;
+				closeClient = true;
+				return;
+			}
+			close();
+		}
+
+		protected void onClientWrite() throws IOException {
+			if (clientOut != null) {
+				client.write(clientOut);
+				if (clientOut.hasRemaining() == false) {
+					close();
+				}
+				return;
+			}
+
+			if (targetForward > 0) {
+				int count = write(client, targetIn, targetForward);
+				targetForward -= count;
+				lastActivity = System.currentTimeMillis();
+
+				if (targetEof == false) {
+					processResponse();
+				}
+			}
+			if ((targetForward == 0) && responseComplete) {
+				finishExchange();
+			}
+		}
+
+		// ---------------------------------------------------------------- request
+
+		/**
+		 * Parses request head and resolves how much of the received
+		 * body may be forwarded.
+		 */
+		protected void processRequest() throws IOException {
+			if (requestState == REQUEST_HEAD) {
+				int headEnd = findHeadEnd(clientIn, 0, clientIn.position());
+				if (headEnd == -1) {
+					if (clientIn.hasRemaining() == false) {
+						throw new IOException("Request head too large");
+					}
+					return;
+				}
+				byte[] head = copy(clientIn, 0, headEnd);
+				consume(clientIn, headEnd);
+				startRequest(head);
+			}
+
+			if (requestState == REQUEST_BODY) {
+				clientForward = requestBody.advance(clientIn, clientForward, clientIn.position());
+				if (requestBody.complete) {
+					requestState = REQUEST_DONE;
+				}
+			}
+		}
+
+		/**
+		 * Parses and rewrites request head and acquires target connection.
+		 */
+		protected void startRequest(byte[] head) throws IOException {
+			HttpRequest request = new HttpRequest();
+			HttpHeaderParser parser = HttpHeaderParser.get();
+			InputStream in = new ByteArrayInputStream(head);
+
+			if (parser.readRequestLine(in, request) == false) {
+				throw new IOException("Invalid request");
+			}
+			parser.readHeaders(in, request);
+
+			requestMethod = request.method();
+			closeClient = isClose(request.header("Connection"), request.httpVersion());
+
+			String transferEncoding = request.header(HttpBase.HEADER_TRANSFER_ENCODING);
+			if ((transferEncoding != null) && transferEncoding.equalsIgnoreCase("chunked")) {
+				requestBody.reset(BODY_CHUNKED, 0);
+			} else if (request.contentLength() != null) {
+				requestBody.reset(BODY_LENGTH, Long.parseLong(request.contentLength().trim()));
+			} else {
+				requestBody.reset(BODY_NONE, 0);
+			}
+
+			// connection to the target is independent from the client connection
+			request.removeHeader("Connection");
+			request.removeHeader("Proxy-Connection");
+			request.removeHeader("Keep-Alive");
+			if (request.httpVersion().equals("HTTP/1.0")) {
+				request.header("Connection", "keep-alive");
+			}
+
+			request.host(targetHost);
+			request.port(targetPort);
+			request.setHostHeader();
+			onRequest(request);
+
+			requestHeadBytes = request.toString(false).getBytes(StringPool.ISO_8859_1);
+			requestHead = ByteBuffer.wrap(requestHeadBytes);
+			requestState = REQUEST_BODY;
+			clientForward = 0;
+			retried = false;
+
+			try {
+				target = loop.acquireTarget(this);
+			} catch (IOException ioex) {
+				sendError("502 Bad Gateway");
+			}
+		}
+
+		// ---------------------------------------------------------------- target
+
+		protected void onTargetConnect() throws IOException {
+			try {
+				target.channel.finishConnect();
+			} catch (IOException ioex) {
+				onTargetFailure();
+				return;
+			}
+			target.connected = true;
+		}
+
+		protected void onTargetWrite() throws IOException {
+			try {
+				if (requestHead != null) {
+					target.channel.write(requestHead);
+					if (requestHead.hasRemaining()) {
+						return;
+					}
+					requestHead = null;
+				}
+				if (clientForward > 0) {
+					clientForward -= write(target.channel, clientIn, clientForward);
+				}
+			} catch (IOException ioex) {
+				onTargetFailure();
+				return;
+			}
+			lastActivity = System.currentTimeMillis();
+
+			if (requestState != REQUEST_DONE) {
+				processRequest();
+			}
+		}
+
+		protected void onTargetRead() throws IOException {
+			int count;
+			try {
+				count = target.channel.read(targetIn);
+			} catch (IOException ioex) {
+				count = -1;
+			}
+
+			if (count == -1) {
+				if (responseHead && (responseBody.mode == BODY_UNTIL_CLOSE)) {
+					targetEof = true;
+					responseComplete = true;
+					if (targetForward == 0) {
+						finishExchange();
+					}
+					return;
+				}
+				onTargetFailure();
+				return;
+			}
+
+			lastActivity = System.currentTimeMillis();
+			processResponse();
+		}
+
+		/**
+		 * Invoked when target connection fails. Idempotent request without
+		 * the body sent over the reused connection is repeated once over the new one.
+		 * Client receives an error response, unless the response
+		 * was already started.
+		 */
+		protected void onTargetFailure() throws IOException {
+			Target failed = target;
+			target = null;
+			loop.closeTarget(failed);
+
+			if (responseHead || (targetIn.position() > 0)) {
+				close();
+				return;
+			}
+
+			if (failed.isReused() && (retried == false) && (requestBody.mode == BODY_NONE) && isIdempotent()) {
+				retried = true;
+				requestHead = ByteBuffer.wrap(requestHeadBytes);
+				try {
+					target = loop.acquireTarget(this);
+					return;
+				} catch (IOException ignore) {
+				}
+			}
+
+			sendError("502 Bad Gateway");
+		}
+
+		/**
+		 * Returns <code>true</code> if request may be safely repeated.
+		 */
+		protected boolean isIdempotent() {
+			return HttpUtil.isIdempotent(requestMethod);
+		}
+
+		// ---------------------------------------------------------------- response
+
+		/**
+		 * Parses response head and resolves how much of the received
+		 * body may be forwarded to the client.
+		 */
+		protected void processResponse() throws IOException {
+			while (responseHead == false) {
+				int headEnd = findHeadEnd(targetIn, targetForward, targetIn.position());
+				if (headEnd == -1) {
+					if (targetIn.hasRemaining() == false) {
+						throw new IOException("Response head too large");
+					}
+					return;
+				}
+
+				HttpResponse response = HttpResponse.readHeadersFrom(
+						new ByteArrayInputStream(copy(targetIn, targetForward, headEnd)));
+				targetForward = headEnd;
+
+				int statusCode = response.statusCode();
+				if (statusCode / 100 == 1) {
+					// interim response, final one follows
+					continue;
+				}
+
+				String transferEncoding = response.header(HttpBase.HEADER_TRANSFER_ENCODING);
+				if (response.hasBody(requestMethod) == false) {
+					responseBody.reset(BODY_NONE, 0);
+				} else if ((transferEncoding != null) && transferEncoding.equalsIgnoreCase("chunked")) {
+					responseBody.reset(BODY_CHUNKED, 0);
+				} else if (response.contentLength() != null) {
+					responseBody.reset(BODY_LENGTH, Long.parseLong(response.contentLength().trim()));
+				} else {
+					responseBody.reset(BODY_UNTIL_CLOSE, 0);
+				}
+
+				targetReusable = (responseBody.mode != BODY_UNTIL_CLOSE)
+						&& (isClose(response.header("Connection"), response.httpVersion()) == false);
+				if (targetReusable == false) {
+					// client gets the response that closes the connection
+					closeClient = true;
+				}
+				responseHead = true;
+			}
+
+			if (responseComplete == false) {
+				targetForward = responseBody.advance(targetIn, targetForward, targetIn.position());
+				if (responseBody.complete) {
+					responseComplete = true;
+				}
+			}
+		}
+
+		/**
+		 * Ends the exchange after the response is sent to the client.
+		 * Target connection is returned to the pool, if possible, and
+		 * the next request is processed.
+		 */
+		protected void finishExchange() throws IOException {
+			boolean requestSent = (requestState == REQUEST_DONE) && (clientForward == 0) && (requestHead == null);
+			if (requestSent == false) {
+				// response came before the whole request was sent
+				targetReusable = false;
+				closeClient = true;
+			}
+
+			if (target != null) {
+				if (targetReusable && (targetIn.position() == 0)) {
+					loop.releaseTarget(target);
+				} else {
+					loop.closeTarget(target);
+				}
+				target = null;
+			}
+
+			if (closeClient) {
+				close();
+				return;
+			}
+
+			requestState = REQUEST_HEAD;
+			responseHead = false;
+			responseComplete = false;
+			targetEof = false;
+			targetForward = 0;
+			targetIn.clear();
+
+			// pipelined request may be already received
+			processRequest();
+		}
+
+		// ---------------------------------------------------------------- interest
+
+		/**
+		 * Updates interest operations, so data is read only when there
+		 * is a space in the buffer and written only when there is
+		 * something to send.
+		 */
+		protected void updateInterest() {
+			if (closed) {
+				return;
+			}
+
+			int ops = 0;
+			if ((clientOut != null) || (targetForward > 0)) {
+				ops |= SelectionKey.OP_WRITE;
+			}
+			if ((clientOut == null) && (clientEof == false) && (requestState != REQUEST_DONE) && clientIn.hasRemaining()) {
+				ops |= SelectionKey.OP_READ;
+			}
+			clientKey.interestOps(ops);
+
+			if ((target != null) && target.connected) {
+				ops = 0;
+				if ((requestHead != null) || (clientForward > 0)) {
+					ops |= SelectionKey.OP_WRITE;
+				}
+				if ((targetEof == false) && (responseComplete == false) && targetIn.hasRemaining()) {
+					ops |= SelectionKey.OP_READ;
+				}
+				target.key.interestOps(ops);
+			}
+		}
+
+		/**
+		 * Sends tunnel error response and closes the client connection.
+		 */
+		protected void sendError(String status) {
+			if (target != null) {
+				loop.closeTarget(target);
+				target = null;
+			}
+			clientOut = ByteBuffer.wrap(CharUtil.toAsciiByteArray(
+					"HTTP/1.1 " + status + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n"));
+		}
+
+		/**
+		 * Closes client connection and the target connection in use.
+		 */
+		protected void close() {
+			if (closed) {
+				return;
+			}
+			closed = true;
+
+			clientKey.cancel();
+			closeChannel(client);
+			if (target != null) {
+				loop.closeTarget(target);
+				target = null;
+			}
+
+			loop.returnBuffer(clientIn);
+			loop.returnBuffer(targetIn);
+			loop.sessions.remove(this);
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if connection has to be closed
+	 * after the message with given headers.
+	 */
+	protected static boolean isClose(String connection, String httpVersion) {
+		if ((connection != null) && connection.equalsIgnoreCase("close")) {
+			return true;
+		}
+		if (httpVersion.equals("HTTP/1.0")) {
+			return (connection == null) || (connection.equalsIgnoreCase("keep-alive") == false);
+		}
+		return false;
+	}
+
+	// ---------------------------------------------------------------- framing
+
+	/**
+	 * Tracks the end of the message body while it is being received.
+	 */
+	protected static class BodyFraming {
+
+		protected static final int CHUNK_SIZE = 0;
+		protected static final int CHUNK_EXTENSION = 1;
+		protected static final int CHUNK_DATA = 2;
+		protected static final int CHUNK_DATA_END = 3;
+		protected static final int TRAILER_LINE_START = 4;
+		protected static final int TRAILER_LINE = 5;
+
+		protected int mode;
+		protected long remaining;
+		protected boolean complete;
+		protected int chunkState;
+		protected int chunkDigits;
+
+		/**
+		 * Starts new body.
+		 */
+		protected void reset(int mode, long length) {
+			this.mode = mode;
+			this.remaining = length;
+			this.complete = (mode == BODY_NONE) || ((mode == BODY_LENGTH) && (length == 0));
+			this.chunkState = CHUNK_SIZE;
+			this.chunkDigits = 0;
+		}
+
+		/**
+		 * Scans received bytes and returns the position up to which
+		 * bytes belong to the body. Bytes after the returned position
+		 * belong to the next message, when body is complete.
+		 */
+		protected int advance(ByteBuffer buffer, int from, int to) throws IOException {
+			if (complete) {
+				return from;
+			}
+			switch (mode) {
+				case BODY_LENGTH:
+					int count = (int) Math.min(remaining, to - from);
+					remaining -= count;
+					complete = (remaining == 0);
+					return from + count;
+				case BODY_CHUNKED:
+					return scanChunks(buffer, from, to);
+				default:
+					return to;
+			}
+		}
+
+		/**
+		 * Scans chunked body, byte by byte, so chunk may
+		 * be split over many reads.
+		 */
+		protected int scanChunks(ByteBuffer buffer, int from, int to) throws IOException {
+			int i = from;
+			while (i < to) {
+				switch (chunkState) {
+					case CHUNK_SIZE:
+						int digit = Character.digit(buffer.get(i), 16);
+						if (digit == -1) {
+							if (chunkDigits == 0) {
+								throw new IOException("Invalid chunk size");
+							}
+							chunkState = CHUNK_EXTENSION;
+							break;
+						}
+						if (++chunkDigits > 7) {
+							throw new IOException("Invalid chunk size");
+						}
+						remaining = (remaining << 4) + digit;
+						i++;
+						break;
+					case CHUNK_EXTENSION:
+						if (buffer.get(i++) == '\n') {
+							chunkDigits = 0;
+							chunkState = (remaining == 0) ? TRAILER_LINE_START : CHUNK_DATA;
+						}
+						break;
+					case CHUNK_DATA:
+						int count = (int) Math.min(remaining, to - i);
+						remaining -= count;
+						i += count;
+						if (remaining == 0) {
+							chunkState = CHUNK_DATA_END;
+						}
+						break;
+					case CHUNK_DATA_END:
+						if (buffer.get(i++) == '\n') {
+							chunkState = CHUNK_SIZE;
+						}
+						break;
+					case TRAILER_LINE_START:
+						byte b = buffer.get(i++);
+						if (b == '\n') {
+							complete = true;
+							return i;
+						}
+						if (b != '\r') {
+							chunkState = TRAILER_LINE;
+						}
+						break;
+					default:
+						if (buffer.get(i++) == '\n') {
+							chunkState = TRAILER_LINE_START;
+						}
+				}
+			}
+			return to;
+		}
+	}
+
+	// ---------------------------------------------------------------- buffers
+
+	/**
+	 * Finds the end of message head, i.e. position after the empty line.
+	 */
+	protected static int findHeadEnd(ByteBuffer buffer, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (buffer.get(i) != '\n') {
+				continue;
+			}
+			int next = i + 1;
+			if ((next < to) && (buffer.get(next) == '\r')) {
+				next++;
+			}
+			if ((next < to) && (buffer.get(next) == '\n')) {
+				return next + 1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Copies buffer bytes from the given range.
+	 */
+	protected static byte[] copy(ByteBuffer buffer, int from, int to) {
+		byte[] bytes = new byte[to - from];
+		for (int i = from; i < to; i++) {
+			bytes[i - from] = buffer.get(i);
+		}
+		return bytes;
+	}
+
+	/**
+	 * Removes given number of bytes from the buffer start.
+	 */
+	protected static void consume(ByteBuffer buffer, int count) {
+		buffer.flip();
+		buffer.position(count);
+		buffer.compact();
+	}
+
+	/**
+	 * Writes bytes from the buffer start to the channel
+	 * and removes them. Returns number of written bytes.
+	 */
+	protected static int write(SocketChannel channel, ByteBuffer buffer, int count) throws IOException {
+		ByteBuffer data = buffer.duplicate();
+		data.flip();
+		data.limit(count);
+
+		int written = channel.write(data);
+		if (written > 0) {
+			consume(buffer, written);
+		}
+		return written;
+	}
+
+}
\ No newline at end of file
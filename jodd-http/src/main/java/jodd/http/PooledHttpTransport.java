@@ -0,0 +1,194 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.http;
+
+import java.io.IOException;
+import java.net.Socket;
+
+/**
+ * {@link HttpTransport} that reuses persistent connections from the
+ * {@link HttpConnectionPool}. After the response is read, connection
+ * is returned to the pool, unless either side requested to close it,
+ * or the response body is not delimited, so the connection can not be
+ * reused. Idempotent requests sent over the reused connection that was
+ * meanwhile closed by the server are repeated once over a new connection.
+ */
+public class PooledHttpTransport extends HttpTransport {
+
+	protected final HttpConnectionPool pool;
+	protected HttpConnectionPool.PooledSocket pooledSocket;
+	protected long keepAlive;
+
+	public PooledHttpTransport(HttpConnectionPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Takes idle socket from the pool or creates new one.
+	 */
+	@Override
+	public Socket open(HttpRequest httpRequest) throws IOException {
+		this.httpRequest = httpRequest;
+		this.keepAlive = 0;
+
+		HttpConnectionPool.Route route = pool.route(httpRequest);
+		pooledSocket = pool.acquire(route);
+
+		if (pooledSocket == null) {
+			try {
+				pooledSocket = new HttpConnectionPool.PooledSocket(route, createSocket(httpRequest));
+			} catch (IOException ioex) {
+				pool.release(route);
+				throw ioex;
+			}
+		}
+
+		this.socket = pooledSocket.socket;
+		return socket;
+	}
+
+	/**
+	 * Sends the request and reads the response. Resolves if
+	 * connection may be kept alive. When request is sent again,
+	 * after the connection has been returned to the pool,
+	 * connection is taken from the pool again.
+	 */
+	@Override
+	public HttpResponse send() throws IOException {
+		if (pooledSocket == null) {
+			open(httpRequest);
+		}
+		pooledSocket.requestCount++;
+
+		HttpResponse httpResponse;
+		try {
+			httpResponse = super.send();
+			if (httpResponse.statusCode() == 0) {
+				throw new IOException("Connection closed by the server");
+			}
+		} catch (IOException ioex) {
+			if ((pooledSocket.isReused() == false) || (isIdempotent() == false)) {
+				throw ioex;
+			}
+
+			// stale connection, repeat on the new one
+			pool.closeSocket(socket);
+			pooledSocket = new HttpConnectionPool.PooledSocket(pooledSocket.route, createSocket(httpRequest));
+			pooledSocket.requestCount++;
+			socket = pooledSocket.socket;
+
+			httpResponse = super.send();
+		}
+
+		return httpResponse;
+	}
+
+	/**
+	 * Resolves if connection may be kept alive, before the body
+	 * is read, as body headers may be changed while reading.
+	 */
+	@Override
+	protected void onResponseHead(HttpResponse httpResponse) {
+		keepAlive = resolveKeepAlive(httpResponse);
+	}
+
+	/**
+	 * Returns socket to the pool.
+	 */
+	@Override
+	public void close() {
+		if (pooledSocket == null) {
+			return;
+		}
+		pool.release(pooledSocket, keepAlive);
+		pooledSocket = null;
+		keepAlive = 0;
+	}
+
+	/**
+	 * Closes the socket and releases it from the pool.
+	 */
+	@Override
+	public void abort() {
+		keepAlive = 0;
+		close();
+	}
+
+	// ---------------------------------------------------------------- keep-alive
+
+	/**
+	 * Returns <code>true</code> if request may be safely repeated.
+	 */
+	protected boolean isIdempotent() {
+		if (httpRequest.bodyInput != null) {
+			// stream can not be sent again
+			return false;
+		}
+		return HttpUtil.isIdempotent(httpRequest.method());
+	}
+
+	/**
+	 * Returns number of milliseconds connection may be kept alive
+	 * after the response, or <code>0</code> if connection has to be closed.
+	 */
+	protected long resolveKeepAlive(HttpResponse httpResponse) {
+		String connection = httpRequest.header("Connection");
+		if ((connection != null) && connection.equalsIgnoreCase("close")) {
+			return 0;
+		}
+
+		connection = httpResponse.header("Connection");
+		if ((connection != null) && connection.equalsIgnoreCase("close")) {
+			return 0;
+		}
+		if (httpResponse.httpVersion().equals("HTTP/1.0")) {
+			if ((connection == null) || (connection.equalsIgnoreCase("keep-alive") == false)) {
+				return 0;
+			}
+		}
+
+		// response body has to be delimited, so the next response can be read
+		if (isBodyDelimited(httpResponse) == false) {
+			return 0;
+		}
+
+		long keepAlive = pool.idleTimeout();
+
+		String keepAliveHeader = httpResponse.header("Keep-Alive");
+		if (keepAliveHeader != null) {
+			String timeout = HttpUtil.extractHeaderParameter(keepAliveHeader, "timeout", ',');
+			if (timeout != null) {
+				try {
+					keepAlive = Math.min(keepAlive, Long.parseLong(timeout) * 1000);
+				} catch (NumberFormatException ignore) {
+				}
+			}
+			String max = HttpUtil.extractHeaderParameter(keepAliveHeader, "max", ',');
+			if (max != null) {
+				try {
+					pooledSocket.remainingRequests = Integer.parseInt(max);
+				} catch (NumberFormatException ignore) {
+				}
+			}
+		}
+		return keepAlive;
+	}
+
+	/**
+	 * Returns <code>true</code> if response body length is known from the response.
+	 */
+	protected boolean isBodyDelimited(HttpResponse httpResponse) {
+		if (httpResponse.hasBody(httpRequest.method()) == false) {
+			return true;
+		}
+		if (httpResponse.contentLength() != null) {
+			return true;
+		}
+		String transferEncoding = httpResponse.header("Transfer-Encoding");
+		if ((transferEncoding != null) && transferEncoding.equalsIgnoreCase("chunked")) {
+			return true;
+		}
+		return false;
+	}
+
+}
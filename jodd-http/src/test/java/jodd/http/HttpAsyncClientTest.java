@@ -0,0 +1,194 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.http;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HttpAsyncClientTest {
+
+	private KeepAliveTestServer server;
+	private HttpAsyncClient client;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new KeepAliveTestServer(8085);
+		client = new HttpAsyncClient();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		client.close();
+		server.stop();
+	}
+
+	@Test
+	public void testSendAsync() throws Exception {
+		client.maxConnectionsPerHost(2);
+
+		List<HttpFuture> futures = new ArrayList<HttpFuture>();
+		for (int i = 0; i < 20; i++) {
+			futures.add(HttpRequest.get("http://localhost:8085/r" + i).sendAsync(client));
+		}
+
+		for (int i = 0; i < 20; i++) {
+			HttpResponse response = futures.get(i).get(5, TimeUnit.SECONDS);
+			assertEquals(200, response.statusCode());
+			assertTrue(response.body().startsWith("GET /r" + i + " HTTP/1.1 #"));
+		}
+
+		assertEquals(20, server.requests.get());
+		assertTrue(server.connections.get() <= 2);
+	}
+
+	@Test
+	public void testPipelining() throws Exception {
+		client.maxConnectionsPerHost(1).maxPipelinedRequests(4);
+
+		List<HttpFuture> futures = new ArrayList<HttpFuture>();
+		for (int i = 0; i < 8; i++) {
+			futures.add(HttpRequest.get("http://localhost:8085/p" + i).sendAsync(client));
+		}
+
+		for (int i = 0; i < 8; i++) {
+			HttpResponse response = futures.get(i).get(5, TimeUnit.SECONDS);
+			assertEquals("GET /p" + i + " HTTP/1.1 #" + (i + 1), response.body());
+		}
+		assertEquals(1, server.connections.get());
+	}
+
+	@Test
+	public void testCallback() throws Exception {
+		final CountDownLatch latch = new CountDownLatch(10);
+		final AtomicInteger responses = new AtomicInteger();
+
+		for (int i = 0; i < 10; i++) {
+			HttpRequest.get("http://localhost:8085/c").sendAsync(client, new HttpCallback() {
+				public void onResponse(HttpResponse response) {
+					if (response.statusCode() == 200) {
+						responses.incrementAndGet();
+					}
+					latch.countDown();
+				}
+
+				public void onFailure(Throwable throwable) {
+					latch.countDown();
+				}
+			});
+		}
+
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertEquals(10, responses.get());
+	}
+
+	@Test
+	public void testRejectedCallback() throws Exception {
+		final CountDownLatch latch = new CountDownLatch(3);
+
+		client.maxConnectionsPerHost(1).callbackExecutor(new Executor() {
+			public void execute(Runnable command) {
+				throw new RejectedExecutionException();
+			}
+		});
+
+		for (int i = 0; i < 3; i++) {
+			HttpFuture future = HttpRequest.get("http://localhost:8085/e" + i).sendAsync(client, new HttpCallback() {
+				public void onResponse(HttpResponse response) {
+					latch.countDown();
+				}
+
+				public void onFailure(Throwable throwable) {
+				}
+			});
+			HttpResponse response = future.get(5, TimeUnit.SECONDS);
+			assertEquals("GET /e" + i + " HTTP/1.1 #" + (i + 1), response.body());
+		}
+
+		// callbacks run in the selector thread, connection is reused
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertEquals(1, server.connections.get());
+	}
+
+	@Test
+	public void testConnectionClose() throws Exception {
+		server.closeConnection = true;
+		client.maxConnectionsPerHost(1).maxPipelinedRequests(3);
+
+		List<HttpFuture> futures = new ArrayList<HttpFuture>();
+		for (int i = 0; i < 3; i++) {
+			futures.add(HttpRequest.get("http://localhost:8085/x" + i).sendAsync(client));
+		}
+		for (int i = 0; i < 3; i++) {
+			HttpResponse response = futures.get(i).get(5, TimeUnit.SECONDS);
+			assertTrue(response.body().startsWith("GET /x" + i + " HTTP/1.1 #"));
+		}
+		assertEquals(3, server.connections.get());
+	}
+
+	@Test
+	public void testConnectionCloseQueuedPost() throws Exception {
+		server.closeConnection = true;
+		client.maxConnectionsPerHost(1);
+
+		HttpFuture first = HttpRequest.post("http://localhost:8085/p1").sendAsync(client);
+		HttpFuture second = HttpRequest.post("http://localhost:8085/p2").sendAsync(client);
+
+		assertTrue(first.get(5, TimeUnit.SECONDS).body().startsWith("POST /p1 HTTP/1.1 #"));
+		assertTrue(second.get(5, TimeUnit.SECONDS).body().startsWith("POST /p2 HTTP/1.1 #"));
+		assertEquals(2, server.connections.get());
+		assertEquals(2, server.requests.get());
+	}
+
+	@Test
+	public void testSendAfterClose() throws Exception {
+		client.close();
+		HttpFuture future = HttpRequest.get("http://localhost:8085/x").sendAsync(client);
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException eex) {
+			assertTrue(eex.getCause() instanceof HttpException);
+		}
+	}
+
+	@Test
+	public void testConnectionRefused() throws Exception {
+		HttpFuture future = HttpRequest.get("http://localhost:8099/none").sendAsync(client);
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException ignore) {
+		}
+	}
+
+	@Test
+	public void testStreamedBodyRejected() throws Exception {
+		HttpFuture future = HttpRequest.post("http://localhost:8085/upload")
+				.body(new ByteArrayInputStream(new byte[10]), 10, "application/octet-stream")
+				.sendAsync(client);
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException eex) {
+			assertTrue(eex.getCause() instanceof HttpException);
+		}
+		assertEquals(0, server.connections.get());
+	}
+
+}
@@ -0,0 +1,145 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.http;
+
+import jodd.io.FileUtil;
+import jodd.util.StringUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HttpConnectionPoolTest {
+
+	private KeepAliveTestServer server;
+	private HttpConnectionPool pool;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new KeepAliveTestServer(8083);
+		pool = new HttpConnectionPool();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		pool.close();
+		server.stop();
+	}
+
+	private HttpResponse get(String path) {
+		HttpRequest request = HttpRequest.get("http://localhost:8083" + path);
+		request.open(pool.createTransport());
+		return request.send();
+	}
+
+	@Test
+	public void testReuse() {
+		for (int i = 1; i <= 5; i++) {
+			HttpResponse response = get("/hello");
+			assertEquals(200, response.statusCode());
+			assertEquals("GET /hello HTTP/1.1 #" + i, response.body());
+		}
+		assertEquals(1, server.connections.get());
+		assertEquals(1, pool.getIdleCount());
+	}
+
+	@Test
+	public void testConnectionClose() {
+		server.closeConnection = true;
+
+		get("/one");
+		get("/two");
+
+		assertEquals(2, server.connections.get());
+		assertEquals(0, pool.getIdleCount());
+		assertEquals(0, pool.getRouteCount());
+	}
+
+	@Test
+	public void testKeepAliveMax() {
+		server.keepAliveHeader = "timeout=5, max=1";
+		get("/one");
+		assertEquals(1, pool.getIdleCount());
+
+		server.keepAliveHeader = "timeout=5, max=0";
+		get("/two");
+		assertEquals(0, pool.getIdleCount());
+
+		get("/three");
+		assertEquals(2, server.connections.get());
+	}
+
+	@Test
+	public void testIdleEviction() throws Exception {
+		pool.idleTimeout(50);
+
+		get("/one");
+		assertEquals(1, pool.getIdleCount());
+
+		Thread.sleep(100);
+		assertEquals(1, pool.getRouteCount());
+		assertEquals(1, pool.evictIdle());
+		assertEquals(0, pool.getIdleCount());
+		assertEquals(0, pool.getRouteCount());
+
+		get("/two");
+		assertEquals(2, server.connections.get());
+	}
+
+	@Test
+	public void testRouteLimit() {
+		pool.maxConnectionsPerRoute(1).acquireTimeout(50);
+
+		HttpRequest request = HttpRequest.get("http://localhost:8083/one");
+		HttpTransport transport = request.open(pool.createTransport());
+
+		try {
+			get("/two");
+			fail();
+		} catch (HttpException ignore) {
+		}
+
+		request.send();
+		assertEquals("GET /two HTTP/1.1 #2".length(), get("/two").body().length());
+		assertTrue(transport.getSocket().isClosed() == false);
+		assertEquals(1, server.connections.get());
+
+		pool.close();
+		assertEquals(0, pool.getRouteCount());
+	}
+
+	@Test
+	public void testSendAgain() {
+		HttpRequest request = HttpRequest.get("http://localhost:8083/hello");
+		request.open(pool.createTransport());
+
+		assertEquals("GET /hello HTTP/1.1 #1", request.send().body());
+		assertEquals("GET /hello HTTP/1.1 #2", request.send().body());
+
+		assertEquals(1, server.connections.get());
+		assertEquals(1, pool.getIdleCount());
+	}
+
+	@Test
+	public void testFileBody() throws IOException {
+		File tempFile = FileUtil.createTempFile();
+		tempFile.deleteOnExit();
+		FileUtil.writeString(tempFile, StringUtil.repeat("0123456789", 10000));
+
+		for (int i = 1; i <= 2; i++) {
+			HttpRequest request = HttpRequest.post("http://localhost:8083/file").body(tempFile, "text/plain");
+			request.open(pool.createTransport());
+			HttpResponse response = request.send();
+			assertEquals("POST /file HTTP/1.1 #" + i, response.body());
+		}
+		assertEquals(1, server.connections.get());
+
+		tempFile.delete();
+	}
+}
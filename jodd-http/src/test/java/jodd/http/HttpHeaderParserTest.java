@@ -0,0 +1,101 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.http;
+
+import jodd.util.StringUtil;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HttpHeaderParserTest {
+
+	private static InputStream stream(String content) throws IOException {
+		return new ByteArrayInputStream(content.getBytes("ISO-8859-1"));
+	}
+
+	@Test
+	public void testHeaderNames() throws IOException {
+		byte[] bytes = "Content-TYPE".getBytes("ISO-8859-1");
+		String name1 = HttpHeaderParser.headerName(bytes, 0, bytes.length);
+		String name2 = HttpHeaderParser.headerName(bytes, 0, bytes.length);
+
+		assertEquals("content-type", name1);
+		assertSame(name1, name2);
+
+		bytes = "X-Custom-Name".getBytes("ISO-8859-1");
+		name1 = HttpHeaderParser.headerName(bytes, 0, bytes.length);
+		name2 = HttpHeaderParser.headerName(bytes, 0, bytes.length);
+
+		assertEquals("x-custom-name", name1);
+		assertNotSame(name1, name2);
+
+		assertEquals("Content-Type", HttpUtil.prepareHeaderParameterName("content-type"));
+		assertEquals("ETag", HttpUtil.prepareHeaderParameterName("etag"));
+		assertEquals("WWW-Authenticate", HttpUtil.prepareHeaderParameterName("www-authenticate"));
+		assertEquals("X-Custom-Name", HttpUtil.prepareHeaderParameterName("x-custom-name"));
+	}
+
+	@Test
+	public void testResponseHead() throws IOException {
+		HttpResponse response = HttpResponse.readHeadersFrom(stream(
+				"HTTP/1.1 404 Not Found\r\n" +
+				"Content-Type:  text/html; charset=UTF-8  \r\n" +
+				"X-Empty:\r\n" +
+				"Server: Jodd\n" +
+				"\r\n"));
+
+		assertSame("HTTP/1.1", response.httpVersion());
+		assertEquals(404, response.statusCode());
+		assertEquals("Not Found", response.statusPhrase());
+		assertEquals("text/html; charset=UTF-8", response.contentType());
+		assertEquals("text/html", response.mediaType());
+		assertEquals("UTF-8", response.charset());
+		assertEquals("", response.header("X-Empty"));
+		assertEquals("Jodd", response.header("server"));
+	}
+
+	@Test
+	public void testRequestHead() throws IOException {
+		HttpRequest request = HttpRequest.readFrom(stream(
+				"GET /hello?one=1 HTTP/1.0\r\n" +
+				"Host: jodd.org\r\n" +
+				"\r\n"));
+
+		assertSame("GET", request.method());
+		assertEquals("/hello", request.path());
+		assertEquals("1", request.query().get("one"));
+		assertEquals("HTTP/1.0", request.httpVersion());
+		assertEquals("jodd.org", request.header("Host"));
+	}
+
+	@Test
+	public void testInvalid() throws IOException {
+		HttpHeaderParser parser = new HttpHeaderParser();
+
+		assertFalse(parser.readRequestLine(stream(""), new HttpRequest()));
+		assertTrue(parser.readStatusLine(stream("HTTP/1.1 200\r\n"), new HttpResponse()));
+
+		try {
+			parser.readHeaders(stream("Invalid header\r\n\r\n"), new HttpResponse());
+			fail();
+		} catch (HttpException ignore) {
+		}
+
+		try {
+			parser.readHeaders(stream("X-Long: " + StringUtil.repeat('x', 100000) + "\r\n\r\n"), new HttpResponse());
+			fail();
+		} catch (HttpException ignore) {
+		}
+		assertEquals(HttpHeaderParser.INITIAL_BUFFER_SIZE, parser.buffer.length);
+	}
+
+}
@@ -7,6 +7,7 @@ import jodd.upload.FileUpload;
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.Map;
@@ -14,6 +15,7 @@ import java.util.Map;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class HttpRequestTest {
 
@@ -228,4 +230,71 @@ public class HttpRequestTest {
 		assertEquals("http://jodd.org:173/index.html?light=true", httpRequest.url());
 	}
 
-}
\ No newline at end of file
+	@Test
+	public void testStreamedFileUpload() throws IOException {
+		HttpRequest request = HttpRequest.post("http://jodd.org/upload").form("one", "funny");
+
+		File tempFile = FileUtil.createTempFile();
+		tempFile.deleteOnExit();
+		FileUtil.writeString(tempFile, "qwerty");
+		request.form("two", tempFile);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		request.sendTo(out);
+		byte[] bytes = out.toByteArray();
+
+		HttpRequest request2 = HttpRequest.readFrom(new ByteArrayInputStream(bytes));
+
+		assertEquals(request.header("Content-Length"), request2.header("Content-Length"));
+		assertEquals(Integer.parseInt(request2.contentLength()), request2.bodyBytes().length);
+		assertEquals("funny", request2.form().get("one"));
+
+		FileUpload fu = (FileUpload) request2.form().get("two");
+		assertEquals("qwerty", new String(fu.getFileContent()));
+
+		tempFile.delete();
+	}
+
+	@Test
+	public void testFileBody() throws IOException {
+		File tempFile = FileUtil.createTempFile();
+		tempFile.deleteOnExit();
+		FileUtil.writeString(tempFile, "file content");
+
+		HttpRequest request = HttpRequest.post("http://jodd.org/upload").body(tempFile, "text/plain");
+		assertEquals("12", request.contentLength());
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		request.sendTo(out);
+
+		HttpRequest request2 = HttpRequest.readFrom(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals("text/plain", request2.contentType());
+		assertEquals("file content", request2.body());
+
+		tempFile.delete();
+	}
+
+	@Test
+	public void testChunkedBody() throws IOException {
+		byte[] content = new byte[20000];
+		for (int i = 0; i < content.length; i++) {
+			content[i] = (byte) ('a' + i % 26);
+		}
+
+		HttpRequest request = HttpRequest.post("http://jodd.org/upload")
+				.body(new ByteArrayInputStream(content), -1, "text/plain");
+
+		assertNull(request.contentLength());
+		assertEquals("chunked", request.header("Transfer-Encoding"));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		request.sendTo(out);
+
+		String raw = out.toString("ISO-8859-1");
+		assertTrue(raw.endsWith("\r\n0\r\n\r\n"));
+
+		HttpRequest request2 = HttpRequest.readFrom(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals(new String(content, "ISO-8859-1"), request2.body());
+	}
+
+}
@@ -0,0 +1,254 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.http;
+
+import jodd.io.StreamUtil;
+import jodd.util.StringUtil;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HttpResponseStreamTest {
+
+	private static InputStream stream(String content) throws IOException {
+		return new ByteArrayInputStream(content.getBytes("ISO-8859-1"));
+	}
+
+	@Test
+	public void testChunked() throws IOException {
+		InputStream in = stream(
+				"HTTP/1.1 200 OK\r\n" +
+				"Transfer-Encoding: chunked\r\n" +
+				"\r\n" +
+				"5;name=value\r\nHello\r\n" +
+				"7\r\n, Jodd!\r\n" +
+				"0\r\n" +
+				"X-Trailer: 1\r\n" +
+				"\r\n" +
+				"NEXT");
+
+		HttpResponse response = HttpResponse.readFrom(in);
+
+		assertEquals(200, response.statusCode());
+		assertEquals("Hello, Jodd!", response.body());
+		assertEquals("NEXT", new String(StreamUtil.readBytes(in), "ISO-8859-1"));
+	}
+
+	@Test
+	public void testContentLengthLeavesNextMessage() throws IOException {
+		InputStream in = stream(
+				"HTTP/1.1 200 OK\r\n" +
+				"Content-Length: 3\r\n" +
+				"\r\n" +
+				"one" +
+				"HTTP/1.1 404 Not Found\r\n" +
+				"Content-Length: 3\r\n" +
+				"\r\n" +
+				"two");
+
+		in = new BufferedInputStream(in);
+
+		HttpResponse response1 = HttpResponse.readFrom(in);
+		HttpResponse response2 = HttpResponse.readFrom(in);
+
+		assertEquals("one", response1.body());
+		assertEquals(404, response2.statusCode());
+		assertEquals("two", response2.body());
+	}
+
+	@Test
+	public void testBinaryBody() throws IOException {
+		byte[] bytes = new byte[256];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) i;
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(("HTTP/1.1 200 OK\r\nContent-Length: " + bytes.length + "\r\n\r\n").getBytes("ISO-8859-1"));
+		out.write(bytes);
+
+		HttpResponse response = HttpResponse.readFrom(new ByteArrayInputStream(out.toByteArray()));
+
+		assertArrayEquals(bytes, response.bodyBytes());
+		assertEquals(256, response.body().length());
+	}
+
+	@Test
+	public void testChunkedInputStream() throws IOException {
+		ChunkedInputStream in = new ChunkedInputStream(stream("3\r\nabc\r\n0\r\n\r\n"));
+
+		assertFalse(in.isComplete());
+		assertEquals("abc", new String(StreamUtil.readBytes(in), "ISO-8859-1"));
+		assertTrue(in.isComplete());
+	}
+
+	@Test
+	public void testStreamedResponse() throws IOException {
+		KeepAliveTestServer server = new KeepAliveTestServer(8084);
+		HttpConnectionPool pool = new HttpConnectionPool();
+		try {
+			for (int i = 1; i <= 3; i++) {
+				HttpRequest request = HttpRequest.get("http://localhost:8084/stream").streamResponse(true);
+				request.open(pool.createTransport());
+				HttpResponse response = request.send();
+
+				assertTrue(response.isStreamed());
+				assertNull(response.body());
+				assertEquals(0, pool.getIdleCount());
+
+				String body = new String(StreamUtil.readBytes(response.bodyStream()), "ISO-8859-1");
+				assertEquals("GET /stream HTTP/1.1 #" + i, body);
+
+				assertFalse(response.isStreamed());
+				assertEquals(1, pool.getIdleCount());
+			}
+
+			// unread body is drained on close
+			HttpRequest request = HttpRequest.get("http://localhost:8084/close").streamResponse(true);
+			request.open(pool.createTransport());
+			HttpResponse response = request.send();
+			response.close();
+			assertEquals(1, pool.getIdleCount());
+
+			// body may be read later
+			request = HttpRequest.get("http://localhost:8084/read").streamResponse(true);
+			request.open(pool.createTransport());
+			response = request.send().readBody();
+			assertEquals("GET /read HTTP/1.1 #5", response.body());
+
+			assertEquals(1, server.connections.get());
+		} finally {
+			pool.close();
+			server.stop();
+		}
+	}
+
+	private static byte[] gzip(String content) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		GZIPOutputStream gzipOut = new GZIPOutputStream(out);
+		gzipOut.write(content.getBytes("ISO-8859-1"));
+		gzipOut.close();
+		return out.toByteArray();
+	}
+
+	private static InputStream chunkedGzipResponse(String content, String next) throws IOException {
+		byte[] compressed = gzip(content);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write("HTTP/1.1 200 OK\r\nContent-Encoding: gzip\r\nTransfer-Encoding: chunked\r\n\r\n".getBytes("ISO-8859-1"));
+		ChunkedOutputStream chunkedOut = new ChunkedOutputStream(out, 16);
+		chunkedOut.write(compressed);
+		chunkedOut.close();
+		out.write(next.getBytes("ISO-8859-1"));
+
+		return new ByteArrayInputStream(out.toByteArray());
+	}
+
+	@Test
+	public void testDecompress() throws IOException {
+		String content = StringUtil.repeat("Jodd! ", 1000);
+		InputStream in = chunkedGzipResponse(content, "NEXT");
+
+		HttpResponse response = HttpResponse.readHeadersFrom(in);
+		response.decompress = true;
+		response.readBody(in);
+
+		assertEquals(content, response.body());
+		assertNull(response.contentEncoding());
+		assertEquals(String.valueOf(content.length()), response.contentLength());
+		assertEquals("NEXT", new String(StreamUtil.readBytes(in), "ISO-8859-1"));
+	}
+
+	@Test
+	public void testDecompressStream() throws IOException {
+		String content = StringUtil.repeat("Jodd! ", 1000);
+		InputStream in = chunkedGzipResponse(content, "NEXT");
+
+		HttpResponse response = HttpResponse.readHeadersFrom(in);
+		response.decompress = true;
+		assertTrue(response.attachBody(in, null));
+
+		assertEquals(content, new String(StreamUtil.readBytes(response.bodyStream()), "ISO-8859-1"));
+		assertFalse(response.isStreamed());
+		assertEquals("NEXT", new String(StreamUtil.readBytes(in), "ISO-8859-1"));
+	}
+
+	@Test
+	public void testUnzipDeflate() throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		DeflaterOutputStream deflaterOut = new DeflaterOutputStream(compressed);
+		deflaterOut.write("deflated content".getBytes("ISO-8859-1"));
+		deflaterOut.close();
+
+		HttpResponse response = new HttpResponse();
+		response.body(compressed.toByteArray(), "text/plain");
+		response.header("Content-Encoding", "deflate");
+
+		response.unzip();
+
+		assertEquals("deflated content", response.body());
+		assertNull(response.contentEncoding());
+	}
+
+	@Test
+	public void testCompressRequest() throws IOException {
+		String content = StringUtil.repeat("compress me ", 100);
+
+		// body of known length
+		HttpRequest request = HttpRequest.post("http://jodd.org/upload").body(content).compressBody(true);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		request.sendTo(out);
+
+		HttpRequest request2 = HttpRequest.readFrom(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals("gzip", request2.contentEncoding());
+		assertTrue(request2.bodyBytes().length < content.length());
+
+		HttpResponse response = new HttpResponse().body(request2.bodyBytes(), "text/plain");
+		response.header("Content-Encoding", "gzip");
+		assertEquals(content, response.unzip().body());
+
+		// request headers are not changed, so request may be sent again
+		assertNull(request.contentEncoding());
+		assertEquals(String.valueOf(content.length()), request.contentLength());
+
+		ByteArrayOutputStream out2 = new ByteArrayOutputStream();
+		request.sendTo(out2);
+		HttpRequest request3 = HttpRequest.readFrom(new ByteArrayInputStream(out2.toByteArray()));
+		assertEquals("gzip", request3.contentEncoding());
+		assertEquals(request2.contentLength(), request3.contentLength());
+		assertArrayEquals(request2.bodyBytes(), request3.bodyBytes());
+
+		// streamed body
+		request = HttpRequest.post("http://jodd.org/upload")
+				.body(new ByteArrayInputStream(content.getBytes("ISO-8859-1")), content.length(), "text/plain")
+				.compressBody(true);
+
+		out = new ByteArrayOutputStream();
+		request.sendTo(out);
+
+		request2 = HttpRequest.readFrom(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals("chunked", request2.header("Transfer-Encoding"));
+		assertNull(request2.contentLength());
+		assertNull(request.header("Transfer-Encoding"));
+		assertEquals(String.valueOf(content.length()), request.contentLength());
+
+		response = new HttpResponse().body(request2.bodyBytes(), "text/plain");
+		response.header("Content-Encoding", "gzip");
+		assertEquals(content, response.unzip().body());
+	}
+
+}
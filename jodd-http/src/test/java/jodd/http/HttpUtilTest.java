@@ -5,6 +5,8 @@ package jodd.http;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class HttpUtilTest {
 
@@ -48,4 +50,14 @@ public class HttpUtilTest {
 		assertEquals(null, HttpUtil.extractContentTypeParameter(contentType, "na"));
 	}
 
-}
\ No newline at end of file
+	@Test
+	public void testIdempotent() {
+		assertTrue(HttpUtil.isIdempotent("GET"));
+		assertTrue(HttpUtil.isIdempotent("PUT"));
+		assertTrue(HttpUtil.isIdempotent("DELETE"));
+		assertFalse(HttpUtil.isIdempotent("POST"));
+		assertFalse(HttpUtil.isIdempotent("PATCH"));
+		assertFalse(HttpUtil.isIdempotent("CONNECT"));
+		assertFalse(HttpUtil.isIdempotent("PROPFIND"));
+	}
+}
@@ -0,0 +1,137 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal HTTP/1.1 server that keeps connections alive and
+ * counts accepted connections and served requests.
+ */
+public class KeepAliveTestServer {
+
+	public final AtomicInteger connections = new AtomicInteger();
+	public final AtomicInteger requests = new AtomicInteger();
+	public volatile String keepAliveHeader;
+	public volatile boolean closeConnection;
+
+	private final ServerSocket serverSocket;
+	private final Thread acceptor;
+
+	public KeepAliveTestServer(int port) throws IOException {
+		serverSocket = new ServerSocket(port);
+
+		acceptor = new Thread() {
+			@Override
+			public void run() {
+				while (true) {
+					final Socket socket;
+					try {
+						socket = serverSocket.accept();
+					} catch (IOException ioex) {
+						return;
+					}
+					connections.incrementAndGet();
+
+					Thread handler = new Thread() {
+						@Override
+						public void run() {
+							try {
+								serve(socket);
+							} catch (IOException ignore) {
+							} finally {
+								try {
+									socket.close();
+								} catch (IOException ignore) {
+								}
+							}
+						}
+					};
+					handler.setDaemon(true);
+					handler.start();
+				}
+			}
+		};
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	protected void serve(Socket socket) throws IOException {
+		InputStream in = socket.getInputStream();
+		OutputStream out = socket.getOutputStream();
+
+		while (true) {
+			String requestLine = readLine(in);
+			if (requestLine == null) {
+				return;
+			}
+			int contentLength = 0;
+			while (true) {
+				String line = readLine(in);
+				if ((line == null) || (line.length() == 0)) {
+					break;
+				}
+				if (line.toLowerCase().startsWith("content-length:")) {
+					contentLength = Integer.parseInt(line.substring(15).trim());
+				}
+			}
+			for (int i = 0; i < contentLength; i++) {
+				in.read();
+			}
+
+			int count = requests.incrementAndGet();
+			String body = requestLine + " #" + count;
+
+			StringBuilder response = new StringBuilder();
+			response.append("HTTP/1.1 200 OK\r\n");
+			response.append("Content-Length: ").append(body.length()).append("\r\n");
+			if (keepAliveHeader != null) {
+				response.append("Keep-Alive: ").append(keepAliveHeader).append("\r\n");
+			}
+			if (closeConnection) {
+				response.append("Connection: close\r\n");
+			}
+			response.append("\r\n");
+			response.append(body);
+
+			out.write(response.toString().getBytes("ISO-8859-1"));
+			out.flush();
+
+			if (closeConnection) {
+				return;
+			}
+		}
+	}
+
+	private String readLine(InputStream in) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		while (true) {
+			int c = in.read();
+			if (c == -1) {
+				return line.size() == 0 ? null : line.toString("ISO-8859-1");
+			}
+			if (c == '\n') {
+				String s = line.toString("ISO-8859-1");
+				if (s.endsWith("\r")) {
+					s = s.substring(0, s.length() - 1);
+				}
+				return s;
+			}
+			line.write(c);
+		}
+	}
+
+	public void stop() throws IOException {
+		serverSocket.close();
+		try {
+			acceptor.join(1000);
+		} catch (InterruptedException ignore) {
+		}
+	}
+}
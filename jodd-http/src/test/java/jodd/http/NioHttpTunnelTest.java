@@ -0,0 +1,147 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.http;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NioHttpTunnelTest {
+
+	private KeepAliveTestServer server;
+	private NioHttpTunnel tunnel;
+	private volatile IOException tunnelFailure;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new KeepAliveTestServer(8086);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		if (tunnel != null) {
+			tunnel.stop();
+		}
+		server.stop();
+		if (tunnelFailure != null) {
+			throw tunnelFailure;
+		}
+	}
+
+	private void startTunnel(int targetPort, int bufferSize) throws InterruptedException {
+		tunnel = new NioHttpTunnel(8087, "localhost", targetPort);
+		tunnel.selectorThreads = 1;
+		tunnel.bufferSize = bufferSize;
+
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				try {
+					tunnel.start();
+				} catch (IOException ioex) {
+					tunnelFailure = ioex;
+				}
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+
+		for (int i = 0; i < 50; i++) {
+			try {
+				new Socket("localhost", 8087).close();
+				return;
+			} catch (IOException ignore) {
+				Thread.sleep(100);
+			}
+		}
+	}
+
+	@Test
+	public void testTargetConnectionReuse() throws Exception {
+		startTunnel(8086, 16 * 1024);
+
+		for (int i = 1; i <= 5; i++) {
+			HttpResponse response = HttpRequest.get("http://localhost:8087/hello").send();
+			assertEquals(200, response.statusCode());
+			assertEquals("GET /hello HTTP/1.1 #" + i, response.body());
+		}
+
+		assertEquals(1, server.connections.get());
+	}
+
+	@Test
+	public void testKeepAliveClient() throws Exception {
+		startTunnel(8086, 16 * 1024);
+
+		HttpConnectionPool pool = new HttpConnectionPool();
+		try {
+			for (int i = 1; i <= 3; i++) {
+				HttpRequest request = HttpRequest.post("http://localhost:8087/post").body("body" + i);
+				request.open(pool.createTransport());
+				HttpResponse response = request.send();
+
+				assertEquals(200, response.statusCode());
+				assertEquals("POST /post HTTP/1.1 #" + i, response.body());
+			}
+		} finally {
+			pool.close();
+		}
+
+		assertEquals(1, server.connections.get());
+		assertEquals(3, server.requests.get());
+	}
+
+	@Test
+	public void testLargeBodyOverSmallBuffers() throws Exception {
+		startTunnel(8086, 1024);
+
+		StringBuilder body = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			body.append((char) ('a' + i % 26));
+		}
+
+		HttpResponse response = HttpRequest.post("http://localhost:8087/large").body(body.toString()).send();
+
+		assertEquals(200, response.statusCode());
+		assertEquals("POST /large HTTP/1.1 #1", response.body());
+	}
+
+	@Test
+	public void testBadGateway() throws Exception {
+		startTunnel(8099, 16 * 1024);
+
+		HttpResponse response = HttpRequest.get("http://localhost:8087/hello").send();
+
+		assertEquals(502, response.statusCode());
+		assertEquals(0, server.requests.get());
+	}
+
+	@Test
+	public void testChunkedFraming() throws IOException {
+		String message = "4;ext=1\r\nWiki\r\n5\r\npedia\r\n0\r\nTrailer: x\r\n\r\nNEXT";
+		ByteBuffer buffer = ByteBuffer.wrap(message.getBytes("ISO-8859-1"));
+
+		NioHttpTunnel.BodyFraming framing = new NioHttpTunnel.BodyFraming();
+		framing.reset(NioHttpTunnel.BODY_CHUNKED, 0);
+
+		int end = message.length() - 4;
+		int position = 0;
+		for (int i = 1; i < end; i += 3) {
+			position = framing.advance(buffer, position, i);
+			assertEquals(i, position);
+			assertFalse(framing.complete);
+		}
+
+		position = framing.advance(buffer, position, message.length());
+		assertTrue(framing.complete);
+		assertEquals(end, position);
+	}
+}
\ No newline at end of file
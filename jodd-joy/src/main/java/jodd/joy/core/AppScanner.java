@@ -3,6 +3,7 @@
 package jodd.joy.core;
 
 import jodd.io.findfile.ClassFinder;
+import jodd.io.findfile.ClassScanIndex;
 import jodd.typeconverter.Convert;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,6 +40,18 @@ public class AppScanner {
 	 */
 	protected boolean ignoreExceptions;
 
+	/**
+	 * Scan index file, shared by all scanners.
+	 */
+	protected String scanIndexFile;
+
+	protected ClassScanIndex scanIndex;
+
+	/**
+	 * Number of threads that examine jars.
+	 */
+	protected int scanThreads = 1;
+
 	public String[] getIncludedEntries() {
 		return includedEntries;
 	}
@@ -63,6 +76,31 @@ public class AppScanner {
 		this.ignoreExceptions = ignoreExceptions;
 	}
 
+	public String getScanIndexFile() {
+		return scanIndexFile;
+	}
+
+	/**
+	 * Sets scan index file, so jars are not examined again
+	 * on next application start, while they are unchanged.
+	 */
+	public void setScanIndexFile(String scanIndexFile) {
+		this.scanIndexFile = scanIndexFile;
+		this.scanIndex = null;
+	}
+
+	public int getScanThreads() {
+		return scanThreads;
+	}
+
+	/**
+	 * Sets number of threads that examine jars. Concurrent scanning
+	 * is disabled by default; it pays off for many large jars.
+	 */
+	public void setScanThreads(int scanThreads) {
+		this.scanThreads = scanThreads;
+	}
+
 	// ---------------------------------------------------------------- props
 
 
@@ -83,6 +121,8 @@ public class AppScanner {
 			log.debug("Scan entries: " + Convert.toString(includedEntries));
 			log.debug("Scan jars: " + Convert.toString(includedJars));
 			log.debug("Scan ignore exception: " + ignoreExceptions);
+			log.debug("Scan index: " + scanIndexFile);
+			log.debug("Scan threads: " + scanThreads);
 		}
 
 		if (includedEntries != null) {
@@ -94,6 +134,15 @@ public class AppScanner {
 		}
 
 		classFinder.setIgnoreException(ignoreExceptions);
+
+		classFinder.setScanThreads(scanThreads);
+
+		if (scanIndexFile != null) {
+			if (scanIndex == null) {
+				scanIndex = new ClassScanIndex(scanIndexFile);
+			}
+			classFinder.setScanIndex(scanIndex);
+		}
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,23 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.joy.json;
+
+import jodd.exception.UncheckedException;
+
+/**
+ * JSON exception.
+ */
+public class JsonException extends UncheckedException {
+
+	public JsonException(Throwable t) {
+		super(t);
+	}
+
+	public JsonException(String message) {
+		super(message);
+	}
+
+	public JsonException(String message, Throwable t) {
+		super(message, t);
+	}
+}
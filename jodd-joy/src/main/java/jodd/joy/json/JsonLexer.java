@@ -0,0 +1,529 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.joy.json;
+
+import jodd.util.StringPool;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * Low-level JSON lexer over a char array. Tokens are read on demand and
+ * nothing is allocated while skipping values. Strings are decoded only when
+ * requested; strings without escapes are created directly from the input.
+ * Numbers are scanned first and decoded later, directly to the requested
+ * type, so no intermediate string is created for common numbers.
+ * <p>
+ * Length of numbers and nesting depth of objects and arrays are limited,
+ * so malicious input can't exhaust the CPU or the stack.
+ * <p>
+ * Lexer is not thread-safe.
+ */
+public class JsonLexer {
+
+	public static final int DEFAULT_MAX_NUMBER_LENGTH = 1000;
+	public static final int DEFAULT_MAX_DEPTH = 512;
+
+	protected final char[] input;
+	protected final int length;
+	protected int ndx;
+
+	protected int numberStart;
+	protected int numberEnd;
+	protected boolean numberDecimal;
+
+	protected int maxNumberLength = DEFAULT_MAX_NUMBER_LENGTH;
+	protected int maxDepth = DEFAULT_MAX_DEPTH;
+	protected int depth;
+
+	public JsonLexer(char[] input) {
+		this(input, input.length);
+	}
+
+	public JsonLexer(char[] input, int length) {
+		this.input = input;
+		this.length = length;
+	}
+
+	public JsonLexer(String input) {
+		this(input.toCharArray());
+	}
+
+	/**
+	 * Specifies maximal number of characters of a number.
+	 */
+	public void setMaxNumberLength(int maxNumberLength) {
+		this.maxNumberLength = maxNumberLength;
+	}
+
+	/**
+	 * Specifies maximal nesting depth of objects and arrays.
+	 */
+	public void setMaxDepth(int maxDepth) {
+		this.maxDepth = maxDepth;
+	}
+
+	/**
+	 * Returns current position in the input.
+	 */
+	public int getPosition() {
+		return ndx;
+	}
+
+	// ---------------------------------------------------------------- tokens
+
+	/**
+	 * Skips whitespaces and returns next character without consuming it.
+	 * Returns <code>0</code> at the end of input.
+	 */
+	public char peek() {
+		while (ndx < length) {
+			char c = input[ndx];
+			if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+				return c;
+			}
+			ndx++;
+		}
+		return 0;
+	}
+
+	/**
+	 * Consumes expected character, after optional whitespaces.
+	 */
+	public void expect(char c) {
+		if (peek() != c) {
+			throw syntaxError("Expected '" + c + '\'');
+		}
+		ndx++;
+	}
+
+	/**
+	 * Consumes the character if it is the next one.
+	 */
+	public boolean consume(char c) {
+		if (peek() == c) {
+			ndx++;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Consumes value separator or the end of the object or array.
+	 * Returns <code>true</code> if more values follow.
+	 */
+	public boolean next(char end) {
+		char c = peek();
+		if (c == ',') {
+			ndx++;
+			return true;
+		}
+		if (c == end) {
+			ndx++;
+			return false;
+		}
+		throw syntaxError("Expected ',' or '" + end + '\'');
+	}
+
+	/**
+	 * Verifies that there is no more content.
+	 */
+	public void end() {
+		if (peek() != 0) {
+			throw syntaxError("Unexpected content");
+		}
+	}
+
+	/**
+	 * Enters nested object or array.
+	 * Throws an exception if maximal nesting depth is exceeded.
+	 */
+	public void enter() {
+		if (++depth > maxDepth) {
+			throw syntaxError("Maximal nesting depth exceeded");
+		}
+	}
+
+	/**
+	 * Leaves nested object or array.
+	 */
+	public void leave() {
+		depth--;
+	}
+
+	/**
+	 * Consumes <code>null</code>, <code>true</code> or <code>false</code>.
+	 */
+	public Boolean readLiteral() {
+		if (match(StringPool.NULL)) {
+			return null;
+		}
+		if (match(StringPool.TRUE)) {
+			return Boolean.TRUE;
+		}
+		if (match(StringPool.FALSE)) {
+			return Boolean.FALSE;
+		}
+		throw syntaxError("Invalid literal");
+	}
+
+	/**
+	 * Consumes the word if it follows.
+	 */
+	protected boolean match(String word) {
+		int len = word.length();
+		if (ndx + len > length) {
+			return false;
+		}
+		for (int i = 0; i < len; i++) {
+			if (input[ndx + i] != word.charAt(i)) {
+				return false;
+			}
+		}
+		ndx += len;
+		return true;
+	}
+
+	// ---------------------------------------------------------------- string
+
+	/**
+	 * Reads and decodes quoted string.
+	 */
+	public String readString() {
+		expect('\"');
+
+		int start = ndx;
+		while (ndx < length) {
+			char c = input[ndx];
+			if (c == '\"') {
+				ndx++;
+				return new String(input, start, ndx - 1 - start);
+			}
+			if (c == '\\') {
+				return readEscapedString(start);
+			}
+			ndx++;
+		}
+		throw syntaxError("Unterminated string");
+	}
+
+	/**
+	 * Decodes remaining part of the string that contains escapes.
+	 */
+	protected String readEscapedString(int start) {
+		StringBuilder sb = new StringBuilder(ndx - start + 16);
+		sb.append(input, start, ndx - start);
+
+		while (ndx < length) {
+			char c = input[ndx++];
+			if (c == '\"') {
+				return sb.toString();
+			}
+			if (c != '\\') {
+				sb.append(c);
+				continue;
+			}
+			if (ndx == length) {
+				break;
+			}
+			c = input[ndx++];
+			switch (c) {
+				case '\"':
+				case '\\':
+				case '/':	sb.append(c); break;
+				case 'b':	sb.append('\b'); break;
+				case 'f':	sb.append('\f'); break;
+				case 'n':	sb.append('\n'); break;
+				case 'r':	sb.append('\r'); break;
+				case 't':	sb.append('\t'); break;
+				case 'u':
+					if (ndx + 4 > length) {
+						throw syntaxError("Invalid unicode escape");
+					}
+					int value = 0;
+					for (int i = 0; i < 4; i++) {
+						int digit = Character.digit(input[ndx++], 16);
+						if (digit == -1) {
+							throw syntaxError("Invalid unicode escape");
+						}
+						value = (value << 4) | digit;
+					}
+					sb.append((char) value);
+					break;
+				default:
+					throw syntaxError("Invalid escape");
+			}
+		}
+		throw syntaxError("Unterminated string");
+	}
+
+	/**
+	 * Skips quoted string without decoding it.
+	 */
+	protected void skipString() {
+		expect('\"');
+		while (ndx < length) {
+			char c = input[ndx++];
+			if (c == '\"') {
+				return;
+			}
+			if (c == '\\') {
+				ndx++;
+			}
+		}
+		throw syntaxError("Unterminated string");
+	}
+
+	// ---------------------------------------------------------------- number
+
+	/**
+	 * Scans a number and validates its syntax. Number is decoded
+	 * later by one of number value methods.
+	 */
+	public void readNumber() {
+		peek();
+		numberStart = ndx;
+		numberDecimal = false;
+
+		if (ndx < length && input[ndx] == '-') {
+			ndx++;
+		}
+
+		// integer part, without leading zeros
+		if (ndx < length && input[ndx] == '0') {
+			ndx++;
+		} else if (skipDigits() == 0) {
+			throw syntaxError("Invalid number");
+		}
+
+		// fraction
+		if (ndx < length && input[ndx] == '.') {
+			ndx++;
+			numberDecimal = true;
+			if (skipDigits() == 0) {
+				throw syntaxError("Invalid number fraction");
+			}
+		}
+
+		// exponent
+		if (ndx < length && (input[ndx] == 'e' || input[ndx] == 'E')) {
+			ndx++;
+			numberDecimal = true;
+			if (ndx < length && (input[ndx] == '+' || input[ndx] == '-')) {
+				ndx++;
+			}
+			if (skipDigits() == 0) {
+				throw syntaxError("Invalid number exponent");
+			}
+		}
+
+		// number must not be followed by another number character
+		if (ndx < length) {
+			char c = input[ndx];
+			if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+				throw syntaxError("Invalid number");
+			}
+		}
+		if (ndx - numberStart > maxNumberLength) {
+			throw syntaxError("Number too long");
+		}
+		numberEnd = ndx;
+	}
+
+	/**
+	 * Skips decimal digits and returns their count.
+	 */
+	protected int skipDigits() {
+		int start = ndx;
+		while (ndx < length) {
+			char c = input[ndx];
+			if (c < '0' || c > '9') {
+				break;
+			}
+			ndx++;
+		}
+		return ndx - start;
+	}
+
+	/**
+	 * Returns <code>true</code> if scanned number has a fraction or exponent.
+	 */
+	public boolean isNumberDecimal() {
+		return numberDecimal;
+	}
+
+	/**
+	 * Returns scanned number as a string.
+	 */
+	public String numberString() {
+		return new String(input, numberStart, numberEnd - numberStart);
+	}
+
+	/**
+	 * Decodes scanned number as long. Decimal numbers and long numbers
+	 * are decoded through the string; fraction is truncated.
+	 * Throws an exception if number is out of the range.
+	 */
+	public long longValue() {
+		int len = numberEnd - numberStart;
+		if (numberDecimal || len > 18) {
+			BigDecimal bigDecimal = bigDecimalValue();
+			// number of integer digits is checked first, so large exponent is never expanded
+			int integerDigits = bigDecimal.precision() - bigDecimal.scale();
+			if (integerDigits <= 0) {
+				return 0;
+			}
+			if (integerDigits > 19) {
+				throw numberError("Number out of long range");
+			}
+			BigInteger bigInteger = bigDecimal.setScale(0, RoundingMode.DOWN).unscaledValue();
+			if (bigInteger.bitLength() > 63) {
+				throw numberError("Number out of long range");
+			}
+			return bigInteger.longValue();
+		}
+		int i = numberStart;
+		boolean negative = input[i] == '-';
+		if (negative) {
+			i++;
+		}
+		long value = 0;
+		while (i < numberEnd) {
+			value = value * 10 + (input[i++] - '0');
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Decodes scanned number as int.
+	 * Throws an exception if number is out of the range.
+	 */
+	public int intValue() {
+		long value = longValue();
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+			throw numberError("Number out of int range");
+		}
+		return (int) value;
+	}
+
+	/**
+	 * Decodes scanned number as double.
+	 */
+	public double doubleValue() {
+		if (numberDecimal == false && numberEnd - numberStart <= 15) {
+			return longValue();
+		}
+		return Double.parseDouble(numberString());
+	}
+
+	/**
+	 * Decodes scanned number as <code>BigDecimal</code>.
+	 */
+	public BigDecimal bigDecimalValue() {
+		try {
+			return new BigDecimal(numberString());
+		} catch (NumberFormatException nfex) {
+			throw numberError("Invalid number");
+		}
+	}
+
+	/**
+	 * Decodes scanned number as <code>BigInteger</code>; fraction is truncated.
+	 * Throws an exception if number has more integer digits than allowed
+	 * number length, so large exponent is never expanded.
+	 */
+	public BigInteger bigIntegerValue() {
+		if (numberDecimal == false) {
+			return new BigInteger(numberString());
+		}
+		BigDecimal bigDecimal = bigDecimalValue();
+		if (bigDecimal.precision() - bigDecimal.scale() > maxNumberLength) {
+			throw numberError("Number too large");
+		}
+		return bigDecimal.toBigInteger();
+	}
+
+	/**
+	 * Decodes scanned number to the smallest fitting type:
+	 * <code>Integer</code>, <code>Long</code>, <code>BigInteger</code>
+	 * or <code>Double</code>.
+	 */
+	public Number numberValue() {
+		if (numberDecimal) {
+			return Double.valueOf(Double.parseDouble(numberString()));
+		}
+		if (numberEnd - numberStart > 18) {
+			BigInteger bigInteger = bigIntegerValue();
+			if (bigInteger.bitLength() < 64) {
+				return Long.valueOf(bigInteger.longValue());
+			}
+			return bigInteger;
+		}
+		long value = longValue();
+		if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+			return Integer.valueOf((int) value);
+		}
+		return Long.valueOf(value);
+	}
+
+	// ---------------------------------------------------------------- skip
+
+	/**
+	 * Skips the whole next value.
+	 */
+	public void skipValue() {
+		char c = peek();
+		switch (c) {
+			case '\"':
+				skipString();
+				break;
+			case '{':
+				ndx++;
+				enter();
+				if (consume('}') == false) {
+					do {
+						skipString();
+						expect(':');
+						skipValue();
+					} while (next('}'));
+				}
+				leave();
+				break;
+			case '[':
+				ndx++;
+				enter();
+				if (consume(']') == false) {
+					do {
+						skipValue();
+					} while (next(']'));
+				}
+				leave();
+				break;
+			case 'n':
+			case 't':
+			case 'f':
+				readLiteral();
+				break;
+			default:
+				readNumber();
+		}
+	}
+
+	// ---------------------------------------------------------------- errors
+
+	/**
+	 * Creates syntax error exception for current position.
+	 */
+	public JsonException syntaxError(String message) {
+		return new JsonException(message + " at position: " + ndx);
+	}
+
+	/**
+	 * Creates exception for the scanned number.
+	 */
+	protected JsonException numberError(String message) {
+		return new JsonException(message + ": " + numberString() + " at position: " + numberStart);
+	}
+
+}
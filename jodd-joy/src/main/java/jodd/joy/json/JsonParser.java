@@ -0,0 +1,427 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.joy.json;
+
+import jodd.introspector.ClassDescriptor;
+import jodd.introspector.ClassIntrospector;
+import jodd.typeconverter.TypeConversionException;
+import jodd.typeconverter.TypeConverterManager;
+import jodd.util.ReflectUtil;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JSON parser that binds values directly to the target types, without
+ * building an intermediate tree. Bean properties are resolved from the
+ * {@link ClassDescriptor} once per class and cached in the parser: setters
+ * are preferred, fields are used otherwise. Generic types of properties
+ * define the element types of collections, arrays and maps. Values are
+ * converted to property types by the <code>TypeConverterManager</code>.
+ * <p>
+ * When the target type is <code>Object</code>, objects are parsed to maps,
+ * arrays to lists and numbers to the smallest fitting type. Unknown
+ * properties are skipped. Length of numbers and nesting depth are
+ * limited, see {@link JsonLexer}. Parser is thread-safe.
+ */
+public class JsonParser {
+
+	protected final ConcurrentHashMap<Class, BeanBinder> beanBinders = new ConcurrentHashMap<Class, BeanBinder>();
+
+	protected int maxNumberLength = JsonLexer.DEFAULT_MAX_NUMBER_LENGTH;
+	protected int maxDepth = JsonLexer.DEFAULT_MAX_DEPTH;
+
+	/**
+	 * Specifies maximal number of characters of a number.
+	 */
+	public void setMaxNumberLength(int maxNumberLength) {
+		this.maxNumberLength = maxNumberLength;
+	}
+
+	/**
+	 * Specifies maximal nesting depth of objects and arrays.
+	 */
+	public void setMaxDepth(int maxDepth) {
+		this.maxDepth = maxDepth;
+	}
+
+	/**
+	 * Creates lexer for JSON content, configured with parser limits.
+	 */
+	public JsonLexer createLexer(char[] json) {
+		JsonLexer lexer = new JsonLexer(json);
+		lexer.setMaxNumberLength(maxNumberLength);
+		lexer.setMaxDepth(maxDepth);
+		return lexer;
+	}
+
+	// ---------------------------------------------------------------- parse
+
+	/**
+	 * Parses JSON string into the target type.
+	 */
+	public <T> T parse(String json, Class<T> type) {
+		return parse(json.toCharArray(), type);
+	}
+
+	/**
+	 * Parses JSON content into the target type.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T parse(char[] json, Class<T> type) {
+		JsonLexer lexer = createLexer(json);
+		Object value = readValue(lexer, type);
+		lexer.end();
+		return (T) value;
+	}
+
+	/**
+	 * Parses JSON string into maps, lists and simple values.
+	 */
+	public Object parse(String json) {
+		return parse(json, Object.class);
+	}
+
+	// ---------------------------------------------------------------- values
+
+	/**
+	 * Reads next value into the target type, which may be a generic type.
+	 */
+	public Object readValue(JsonLexer lexer, Type type) {
+		Class rawType = ReflectUtil.getRawType(type);
+		if (rawType == null) {
+			rawType = Object.class;
+		}
+
+		char c = lexer.peek();
+		switch (c) {
+			case '{':
+				return readObject(lexer, type, rawType);
+			case '[':
+				return readArray(lexer, type, rawType);
+			case '\"':
+				return convert(lexer, lexer.readString(), rawType);
+			case 'n':
+			case 't':
+			case 'f':
+				Boolean literal = lexer.readLiteral();
+				if (literal == null) {
+					return rawType.isPrimitive() ? convert(lexer, null, rawType) : null;
+				}
+				return convert(lexer, literal, rawType);
+			case 0:
+				throw lexer.syntaxError("Unexpected end");
+			default:
+				lexer.readNumber();
+				return readNumber(lexer, rawType);
+		}
+	}
+
+	/**
+	 * Decodes scanned number directly to the target type, when possible.
+	 */
+	protected Object readNumber(JsonLexer lexer, Class rawType) {
+		if (rawType == int.class || rawType == Integer.class) {
+			return Integer.valueOf(lexer.intValue());
+		}
+		if (rawType == long.class || rawType == Long.class) {
+			return Long.valueOf(lexer.longValue());
+		}
+		if (rawType == double.class || rawType == Double.class) {
+			return Double.valueOf(lexer.doubleValue());
+		}
+		if (rawType == BigDecimal.class) {
+			return lexer.bigDecimalValue();
+		}
+		if (rawType == BigInteger.class) {
+			return lexer.bigIntegerValue();
+		}
+		if (rawType == String.class) {
+			return lexer.numberString();
+		}
+		Number number = lexer.numberValue();
+		if (rawType == Object.class || rawType == Number.class) {
+			return number;
+		}
+		return convert(lexer, number, rawType);
+	}
+
+	/**
+	 * Reads JSON object into a map or a bean.
+	 */
+	@SuppressWarnings("unchecked")
+	protected Object readObject(JsonLexer lexer, Type type, Class rawType) {
+		if (rawType == Object.class || Map.class.isAssignableFrom(rawType)) {
+			Map<Object, Object> map = (Map<Object, Object>) newContainer(lexer, rawType);
+			Class keyType = ReflectUtil.getComponentType(type, 0);
+			Type valueType = resolveComponentType(type);
+
+			lexer.expect('{');
+			lexer.enter();
+			if (lexer.consume('}') == false) {
+				do {
+					Object key = lexer.readString();
+					if (keyType != null && keyType != String.class && keyType != Object.class) {
+						key = convert(lexer, key, keyType);
+					}
+					lexer.expect(':');
+					map.put(key, readValue(lexer, valueType));
+				} while (lexer.next('}'));
+			}
+			lexer.leave();
+			return map;
+		}
+
+		BeanBinder beanBinder = lookupBeanBinder(rawType);
+		Object bean = beanBinder.newInstance(lexer);
+
+		readBean(lexer, bean, beanBinder);
+		return bean;
+	}
+
+	/**
+	 * Reads JSON object into the properties of existing bean.
+	 */
+	public void readBean(JsonLexer lexer, Object bean) {
+		readBean(lexer, bean, lookupBeanBinder(bean.getClass()));
+	}
+
+	protected void readBean(JsonLexer lexer, Object bean, BeanBinder beanBinder) {
+		lexer.expect('{');
+		lexer.enter();
+		if (lexer.consume('}') == false) {
+			do {
+				String name = lexer.readString();
+				lexer.expect(':');
+				if (readProperty(lexer, bean, beanBinder, name) == false) {
+					lexer.skipValue();
+				}
+			} while (lexer.next('}'));
+		}
+		lexer.leave();
+	}
+
+	/**
+	 * Reads JSON array into a collection or an array.
+	 */
+	@SuppressWarnings("unchecked")
+	protected Object readArray(JsonLexer lexer, Type type, Class rawType) {
+		Type componentType = resolveComponentType(type);
+		Collection<Object> collection;
+		if (rawType.isArray() || rawType == Object.class) {
+			collection = new ArrayList<Object>();
+		} else if (Collection.class.isAssignableFrom(rawType)) {
+			collection = (Collection<Object>) newContainer(lexer, rawType);
+		} else {
+			return convert(lexer, readArray(lexer, Object.class, Object.class), rawType);
+		}
+
+		lexer.expect('[');
+		lexer.enter();
+		if (lexer.consume(']') == false) {
+			do {
+				collection.add(readValue(lexer, componentType));
+			} while (lexer.next(']'));
+		}
+		lexer.leave();
+
+		if (rawType.isArray() == false) {
+			return collection;
+		}
+		Object array = Array.newInstance(rawType.getComponentType(), collection.size());
+		int i = 0;
+		for (Object element : collection) {
+			if (element != null || rawType.getComponentType().isPrimitive() == false) {
+				Array.set(array, i, element);
+			}
+			i++;
+		}
+		return array;
+	}
+
+	/**
+	 * Resolves component type of generic collections, arrays and maps.
+	 */
+	protected Type resolveComponentType(Type type) {
+		if (type instanceof Class && ((Class) type).isArray()) {
+			return ((Class) type).getComponentType();
+		}
+		Class componentType = ReflectUtil.getComponentType(type);
+		return componentType != null ? componentType : Object.class;
+	}
+
+	/**
+	 * Creates new map or collection for the target type.
+	 */
+	protected Object newContainer(JsonLexer lexer, Class<?> rawType) {
+		if (rawType == Object.class || rawType == Map.class) {
+			return new LinkedHashMap<Object, Object>();
+		}
+		if (rawType.isInterface() || Modifier.isAbstract(rawType.getModifiers())) {
+			if (rawType.isAssignableFrom(ArrayList.class)) {
+				return new ArrayList<Object>();
+			}
+			if (rawType.isAssignableFrom(LinkedHashSet.class)) {
+				return new LinkedHashSet<Object>();
+			}
+			if (rawType.isAssignableFrom(HashMap.class)) {
+				return new LinkedHashMap<Object, Object>();
+			}
+		}
+		return lookupBeanBinder(rawType).newInstance(lexer);
+	}
+
+	/**
+	 * Converts simple value to the target type.
+	 */
+	protected Object convert(JsonLexer lexer, Object value, Class<?> rawType) {
+		if (rawType == Object.class) {
+			return value;
+		}
+		try {
+			return TypeConverterManager.convertType(value, rawType);
+		} catch (TypeConversionException tcex) {
+			throw new JsonException("Unable to convert value to " + rawType.getName() + " at position: " + lexer.getPosition(), tcex);
+		} catch (ClassCastException ccex) {
+			throw new JsonException("Unable to convert value to " + rawType.getName() + " at position: " + lexer.getPosition(), ccex);
+		}
+	}
+
+	// ---------------------------------------------------------------- beans
+
+	/**
+	 * Reads next value directly into the bean property. Returns <code>false</code>,
+	 * without consuming the value, if bean does not have such property.
+	 */
+	public boolean readProperty(JsonLexer lexer, Object bean, String name) {
+		return readProperty(lexer, bean, lookupBeanBinder(bean.getClass()), name);
+	}
+
+	protected boolean readProperty(JsonLexer lexer, Object bean, BeanBinder beanBinder, String name) {
+		PropertyBinder propertyBinder = beanBinder.properties.get(name);
+		if (propertyBinder == null) {
+			return false;
+		}
+		Object value = readValue(lexer, propertyBinder.type);
+		if (value == null && propertyBinder.rawType.isPrimitive()) {
+			return true;
+		}
+		propertyBinder.set(bean, value);
+		return true;
+	}
+
+	/**
+	 * Returns cached {@link BeanBinder} for the type, creating it if needed.
+	 */
+	protected BeanBinder lookupBeanBinder(Class type) {
+		BeanBinder beanBinder = beanBinders.get(type);
+		if (beanBinder == null) {
+			beanBinder = createBeanBinder(type);
+			BeanBinder existing = beanBinders.putIfAbsent(type, beanBinder);
+			if (existing != null) {
+				beanBinder = existing;
+			}
+		}
+		return beanBinder;
+	}
+
+	/**
+	 * Creates {@link BeanBinder} from all setters and non-static, non-final fields.
+	 */
+	protected BeanBinder createBeanBinder(Class type) {
+		ClassDescriptor cd = ClassIntrospector.lookup(type);
+		Map<String, PropertyBinder> properties = new HashMap<String, PropertyBinder>();
+
+		for (Field field : cd.getAllFields(true)) {
+			int modifiers = field.getModifiers();
+			if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers)) {
+				continue;
+			}
+			properties.put(field.getName(), new PropertyBinder(field, null, ReflectUtil.getRawType(field.getGenericType(), type), field.getGenericType()));
+		}
+		for (String name : cd.getAllBeanSetterNames(true)) {
+			Method setter = cd.getBeanSetter(name, true);
+			Type parameterType = setter.getGenericParameterTypes()[0];
+			properties.put(name, new PropertyBinder(null, setter, ReflectUtil.getRawType(parameterType, type), parameterType));
+		}
+
+		return new BeanBinder(cd.getDefaultCtor(true), properties);
+	}
+
+	/**
+	 * Binder of a single bean type.
+	 */
+	protected static class BeanBinder {
+
+		protected final Constructor ctor;
+		protected final Map<String, PropertyBinder> properties;
+
+		protected BeanBinder(Constructor ctor, Map<String, PropertyBinder> properties) {
+			this.ctor = ctor;
+			this.properties = properties;
+		}
+
+		/**
+		 * Creates new bean instance.
+		 */
+		protected Object newInstance(JsonLexer lexer) {
+			if (ctor == null) {
+				throw lexer.syntaxError("No default constructor for bound type");
+			}
+			try {
+				return ctor.newInstance();
+			} catch (Exception ex) {
+				throw new JsonException("Unable to create: " + ctor.getDeclaringClass().getName(), ex);
+			}
+		}
+	}
+
+	/**
+	 * Binder of a single bean property, set by setter or directly to the field.
+	 */
+	protected static class PropertyBinder {
+
+		protected final Field field;
+		protected final Method setter;
+		protected final Class rawType;
+		protected final Type type;
+
+		protected PropertyBinder(Field field, Method setter, Class rawType, Type type) {
+			this.field = field;
+			this.setter = setter;
+			this.rawType = rawType;
+			this.type = type;
+		}
+
+		protected void set(Object bean, Object value) {
+			try {
+				if (setter != null) {
+					setter.invoke(bean, value);
+				} else {
+					field.set(bean, value);
+				}
+			} catch (InvocationTargetException itex) {
+				throw new JsonException("Unable to set property: " + (setter != null ? setter : field), itex.getTargetException());
+			} catch (Exception ex) {
+				throw new JsonException("Unable to set property: " + (setter != null ? setter : field), ex);
+			}
+		}
+	}
+
+}
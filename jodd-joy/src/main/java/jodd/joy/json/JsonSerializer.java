@@ -0,0 +1,324 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.joy.json;
+
+import jodd.datetime.JDateTime;
+import jodd.introspector.ClassDescriptor;
+import jodd.introspector.ClassIntrospector;
+import jodd.util.StringPool;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Streaming JSON serializer. Values are written directly to the output
+ * stream through {@link JsonWriter}. Beans are serialized using their public
+ * getters, as described by the {@link ClassDescriptor}; getters and encoded
+ * property names are resolved once per class and cached in the serializer.
+ * <p>
+ * Dates are serialized as milliseconds, enums by name and circular
+ * references as <code>null</code>. Serializer is thread-safe.
+ */
+public class JsonSerializer {
+
+	protected final ConcurrentHashMap<Class, BeanWriter> beanWriters = new ConcurrentHashMap<Class, BeanWriter>();
+
+	protected boolean excludeNulls;
+
+	/**
+	 * Returns <code>true</code> if <code>null</code> bean properties are not serialized.
+	 */
+	public boolean isExcludeNulls() {
+		return excludeNulls;
+	}
+
+	/**
+	 * Specifies if <code>null</code> bean properties should be skipped.
+	 */
+	public void setExcludeNulls(boolean excludeNulls) {
+		this.excludeNulls = excludeNulls;
+	}
+
+	// ---------------------------------------------------------------- serialize
+
+	/**
+	 * Serializes value to the output stream using given encoding.
+	 * Output stream is flushed, but not closed.
+	 */
+	public void serialize(Object value, OutputStream out, String encoding) throws IOException {
+		JsonWriter jsonWriter = new JsonWriter(out, encoding);
+		try {
+			serialize(jsonWriter, value);
+		} finally {
+			jsonWriter.close();
+		}
+	}
+
+	/**
+	 * Serializes value to JSON string.
+	 */
+	public String serialize(Object value) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			serialize(value, out, StringPool.UTF_8);
+			return out.toString(StringPool.UTF_8);
+		} catch (UnsupportedEncodingException ueex) {
+			throw new JsonException(ueex);
+		} catch (IOException ioex) {
+			throw new JsonException(ioex);
+		}
+	}
+
+	/**
+	 * Serializes value using provided JSON writer.
+	 */
+	public void serialize(JsonWriter jsonWriter, Object value) throws IOException {
+		writeValue(jsonWriter, value, new ArrayList<Object>());
+	}
+
+	// ---------------------------------------------------------------- values
+
+	/**
+	 * Writes any value. Path contains objects currently being serialized
+	 * and is used for detecting circular references.
+	 */
+	protected void writeValue(JsonWriter jsonWriter, Object value, List<Object> path) throws IOException {
+		if (value == null) {
+			jsonWriter.writeNull();
+			return;
+		}
+
+		if (value instanceof CharSequence) {
+			jsonWriter.writeString((CharSequence) value);
+			return;
+		}
+		if (value instanceof Number) {
+			writeNumber(jsonWriter, (Number) value);
+			return;
+		}
+		if (value instanceof Boolean) {
+			jsonWriter.write(((Boolean) value).booleanValue() ? StringPool.TRUE : StringPool.FALSE);
+			return;
+		}
+		if (value instanceof Character || value instanceof Enum) {
+			jsonWriter.writeString(value.toString());
+			return;
+		}
+		if (value instanceof Date) {
+			jsonWriter.write(String.valueOf(((Date) value).getTime()));
+			return;
+		}
+		if (value instanceof JDateTime) {
+			jsonWriter.write(String.valueOf(((JDateTime) value).getTimeInMillis()));
+			return;
+		}
+		if (value instanceof Class) {
+			jsonWriter.writeString(((Class) value).getName());
+			return;
+		}
+
+		// containers
+		for (int i = 0, size = path.size(); i < size; i++) {
+			if (path.get(i) == value) {
+				jsonWriter.writeNull();		// circular reference
+				return;
+			}
+		}
+
+		path.add(value);
+
+		if (value instanceof Map) {
+			writeMap(jsonWriter, (Map<?, ?>) value, path);
+		} else if (value instanceof Iterable) {
+			writeIterator(jsonWriter, ((Iterable) value).iterator(), path);
+		} else if (value instanceof Iterator) {
+			writeIterator(jsonWriter, (Iterator) value, path);
+		} else if (value.getClass().isArray()) {
+			writeArray(jsonWriter, value, path);
+		} else {
+			writeBean(jsonWriter, value, path);
+		}
+
+		path.remove(path.size() - 1);
+	}
+
+	/**
+	 * Writes a number. Non-finite numbers are written as <code>null</code>.
+	 */
+	protected void writeNumber(JsonWriter jsonWriter, Number number) throws IOException {
+		if (number instanceof Double) {
+			double d = number.doubleValue();
+			if (Double.isNaN(d) || Double.isInfinite(d)) {
+				jsonWriter.writeNull();
+				return;
+			}
+		} else if (number instanceof Float) {
+			float f = number.floatValue();
+			if (Float.isNaN(f) || Float.isInfinite(f)) {
+				jsonWriter.writeNull();
+				return;
+			}
+		}
+		jsonWriter.write(number.toString());
+	}
+
+	protected void writeMap(JsonWriter jsonWriter, Map<?, ?> map, List<Object> path) throws IOException {
+		jsonWriter.write('{');
+		boolean first = true;
+		for (Map.Entry<?, ?> entry : map.entrySet()) {
+			Object value = entry.getValue();
+			if (value == null && excludeNulls) {
+				continue;
+			}
+			if (first == false) {
+				jsonWriter.write(',');
+			}
+			first = false;
+			jsonWriter.writeString(String.valueOf(entry.getKey()));
+			jsonWriter.write(':');
+			writeValue(jsonWriter, value, path);
+		}
+		jsonWriter.write('}');
+	}
+
+	protected void writeIterator(JsonWriter jsonWriter, Iterator iterator, List<Object> path) throws IOException {
+		jsonWriter.write('[');
+		boolean first = true;
+		while (iterator.hasNext()) {
+			if (first == false) {
+				jsonWriter.write(',');
+			}
+			first = false;
+			writeValue(jsonWriter, iterator.next(), path);
+		}
+		jsonWriter.write(']');
+	}
+
+	protected void writeArray(JsonWriter jsonWriter, Object array, List<Object> path) throws IOException {
+		jsonWriter.write('[');
+		if (array instanceof Object[]) {
+			Object[] objects = (Object[]) array;
+			for (int i = 0; i < objects.length; i++) {
+				if (i != 0) {
+					jsonWriter.write(',');
+				}
+				writeValue(jsonWriter, objects[i], path);
+			}
+		} else if (array instanceof char[]) {
+			char[] chars = (char[]) array;
+			for (int i = 0; i < chars.length; i++) {
+				if (i != 0) {
+					jsonWriter.write(',');
+				}
+				jsonWriter.writeString(String.valueOf(chars[i]));
+			}
+		} else {
+			int length = Array.getLength(array);
+			for (int i = 0; i < length; i++) {
+				if (i != 0) {
+					jsonWriter.write(',');
+				}
+				writeValue(jsonWriter, Array.get(array, i), path);
+			}
+		}
+		jsonWriter.write(']');
+	}
+
+	protected void writeBean(JsonWriter jsonWriter, Object bean, List<Object> path) throws IOException {
+		BeanWriter beanWriter = lookupBeanWriter(bean.getClass());
+
+		jsonWriter.write('{');
+		boolean first = true;
+		for (int i = 0; i < beanWriter.getters.length; i++) {
+			Object value = beanWriter.get(bean, i);
+			if (value == null && excludeNulls) {
+				continue;
+			}
+			if (first == false) {
+				jsonWriter.write(',');
+			}
+			first = false;
+			jsonWriter.write(beanWriter.names[i]);
+			writeValue(jsonWriter, value, path);
+		}
+		jsonWriter.write('}');
+	}
+
+	// ---------------------------------------------------------------- bean writers
+
+	/**
+	 * Returns cached {@link BeanWriter} for the type, creating it if needed.
+	 */
+	protected BeanWriter lookupBeanWriter(Class type) {
+		BeanWriter beanWriter = beanWriters.get(type);
+		if (beanWriter == null) {
+			beanWriter = createBeanWriter(type);
+			BeanWriter existing = beanWriters.putIfAbsent(type, beanWriter);
+			if (existing != null) {
+				beanWriter = existing;
+			}
+		}
+		return beanWriter;
+	}
+
+	/**
+	 * Creates {@link BeanWriter} from public bean getters of the type,
+	 * sorted by property name.
+	 */
+	protected BeanWriter createBeanWriter(Class type) {
+		ClassDescriptor cd = ClassIntrospector.lookup(type);
+
+		String[] names = cd.getAllBeanGetterNames(false).clone();
+		Arrays.sort(names);
+
+		Method[] getters = new Method[names.length];
+		for (int i = 0; i < names.length; i++) {
+			getters[i] = cd.getBeanGetter(names[i], false);
+		}
+		return new BeanWriter(names, getters);
+	}
+
+	/**
+	 * Bean properties of a single type, with pre-encoded property names.
+	 */
+	protected static class BeanWriter {
+
+		protected final char[][] names;
+		protected final Method[] getters;
+
+		protected BeanWriter(String[] propertyNames, Method[] getters) {
+			this.getters = getters;
+			this.names = new char[propertyNames.length][];
+
+			for (int i = 0; i < propertyNames.length; i++) {
+				this.names[i] = ('\"' + propertyNames[i] + "\":").toCharArray();
+			}
+		}
+
+		/**
+		 * Reads value of the property.
+		 */
+		protected Object get(Object bean, int index) {
+			try {
+				return getters[index].invoke(bean);
+			} catch (InvocationTargetException itex) {
+				throw new JsonException("Unable to read property: " + getters[index], itex.getTargetException());
+			} catch (IllegalAccessException iaex) {
+				throw new JsonException("Unable to read property: " + getters[index], iaex);
+			}
+		}
+	}
+
+}
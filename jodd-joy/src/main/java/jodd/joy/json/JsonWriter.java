@@ -0,0 +1,316 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.joy.json;
+
+import jodd.util.StringPool;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Low-level JSON writer that encodes characters directly to the output
+ * stream. Characters are collected in a char buffer and encoded into a byte
+ * buffer; UTF-8 is encoded inline, other encodings by the JDK encoder,
+ * created once per writer, so e.g. byte order mark is written once. Buffers are
+ * pooled per thread and returned on {@link #close()}, so writing JSON
+ * allocates no intermediate strings.
+ * <p>
+ * Writer is not thread-safe and it does not close the output stream.
+ * Once closed, writer can not be used any more.
+ */
+public class JsonWriter {
+
+	protected static final int CHAR_BUFFER_SIZE = 4096;
+
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	private static final char[] CLOSED = new char[0];		// full buffer, so writing fails on flush
+
+	/**
+	 * Per-thread pooled buffers.
+	 */
+	protected static class Buffers {
+		protected final char[] chars = new char[CHAR_BUFFER_SIZE];
+		protected final byte[] bytes = new byte[CHAR_BUFFER_SIZE * 3];
+	}
+
+	private static final ThreadLocal<Buffers> BUFFERS = new ThreadLocal<Buffers>();
+
+	protected final OutputStream out;
+	protected final String encoding;
+	protected final boolean utf8;
+	protected final CharsetEncoder encoder;		// null for UTF-8
+
+	protected Buffers buffers;
+	protected char[] chars;
+	protected int count;
+
+	public JsonWriter(OutputStream out, String encoding) {
+		this.out = out;
+		this.encoding = encoding;
+		this.utf8 = encoding.equalsIgnoreCase(StringPool.UTF_8) || encoding.equalsIgnoreCase("UTF8");
+		if (utf8) {
+			this.encoder = null;
+		} else {
+			this.encoder = Charset.forName(encoding).newEncoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		}
+
+		Buffers pooled = BUFFERS.get();
+		if (pooled != null) {
+			BUFFERS.set(null);		// borrow, so nested writers don't share it
+		} else {
+			pooled = new Buffers();
+		}
+		this.buffers = pooled;
+		this.chars = pooled.chars;
+	}
+
+	// ---------------------------------------------------------------- write
+
+	/**
+	 * Writes single character.
+	 */
+	public void write(char c) throws IOException {
+		if (count == chars.length) {
+			flushBuffer();
+		}
+		chars[count++] = c;
+	}
+
+	/**
+	 * Writes characters as they are.
+	 */
+	public void write(char[] value) throws IOException {
+		int len = value.length;
+		int offset = 0;
+		while (offset < len) {
+			if (count == chars.length) {
+				flushBuffer();
+			}
+			int chunk = Math.min(len - offset, chars.length - count);
+			System.arraycopy(value, offset, chars, count, chunk);
+			count += chunk;
+			offset += chunk;
+		}
+	}
+
+	/**
+	 * Writes string as it is.
+	 */
+	public void write(CharSequence value) throws IOException {
+		int len = value.length();
+		int offset = 0;
+		while (offset < len) {
+			if (count == chars.length) {
+				flushBuffer();
+			}
+			int chunk = Math.min(len - offset, chars.length - count);
+			if (value instanceof String) {
+				((String) value).getChars(offset, offset + chunk, chars, count);
+				count += chunk;
+				offset += chunk;
+			} else {
+				for (int i = 0; i < chunk; i++) {
+					chars[count++] = value.charAt(offset++);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes <code>null</code>.
+	 */
+	public void writeNull() throws IOException {
+		write(StringPool.NULL);
+	}
+
+	/**
+	 * Writes quoted and escaped JSON string.
+	 */
+	public void writeString(CharSequence value) throws IOException {
+		write('\"');
+
+		int len = value.length();
+		char prev = 0;
+		for (int i = 0; i < len; i++) {
+			char c = value.charAt(i);
+			switch (c) {
+				case '"':	write('\\'); write('"'); break;
+				case '\\':	write('\\'); write('\\'); break;
+				case '\b':	write('\\'); write('b'); break;
+				case '\f':	write('\\'); write('f'); break;
+				case '\n':	write('\\'); write('n'); break;
+				case '\r':	write('\\'); write('r'); break;
+				case '\t':	write('\\'); write('t'); break;
+				case '/':
+					if (prev == '<') {		// prevents closing the script tag
+						write('\\');
+					}
+					write(c);
+					break;
+				default:
+					if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+						writeUnicode(c);
+					} else {
+						write(c);
+					}
+			}
+			prev = c;
+		}
+
+		write('\"');
+	}
+
+	/**
+	 * Writes unicode escape sequence.
+	 */
+	protected void writeUnicode(char c) throws IOException {
+		write('\\');
+		write('u');
+		write(HEX[(c >> 12) & 0xF]);
+		write(HEX[(c >> 8) & 0xF]);
+		write(HEX[(c >> 4) & 0xF]);
+		write(HEX[c & 0xF]);
+	}
+
+	// ---------------------------------------------------------------- flush
+
+	/**
+	 * Encodes buffered characters and writes them to the output stream.
+	 * High surrogate at the end of the buffer is kept until its pair arrives.
+	 */
+	protected void flushBuffer() throws IOException {
+		if (buffers == null) {
+			throw new IllegalStateException("JSON writer is closed");
+		}
+		int len = count;
+		if (len == 0) {
+			return;
+		}
+		if (utf8) {
+			len = encodeUtf8(len);
+		} else {
+			len = encode(CharBuffer.wrap(chars, 0, len), false);
+		}
+
+		if (len < count) {
+			chars[0] = chars[len];
+			count = 1;
+		} else {
+			count = 0;
+		}
+	}
+
+	/**
+	 * Encodes characters as UTF-8 and writes them. Returns number of encoded
+	 * characters, which is less than <code>len</code> only for a trailing
+	 * high surrogate.
+	 */
+	protected int encodeUtf8(int len) throws IOException {
+		byte[] bytes = buffers.bytes;
+		int b = 0;
+		int i = 0;
+		while (i < len) {
+			char c = chars[i];
+			if (c < 0x80) {
+				bytes[b++] = (byte) c;
+			} else if (c < 0x800) {
+				bytes[b++] = (byte) (0xC0 | (c >> 6));
+				bytes[b++] = (byte) (0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c)) {
+				if (i + 1 == len) {
+					break;
+				}
+				char low = chars[i + 1];
+				if (Character.isLowSurrogate(low)) {
+					int cp = Character.toCodePoint(c, low);
+					bytes[b++] = (byte) (0xF0 | (cp >> 18));
+					bytes[b++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+					bytes[b++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+					bytes[b++] = (byte) (0x80 | (cp & 0x3F));
+					i++;
+				} else {
+					bytes[b++] = '?';
+				}
+			} else if (Character.isLowSurrogate(c)) {
+				bytes[b++] = '?';
+			} else {
+				bytes[b++] = (byte) (0xE0 | (c >> 12));
+				bytes[b++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				bytes[b++] = (byte) (0x80 | (c & 0x3F));
+			}
+			i++;
+		}
+		out.write(bytes, 0, b);
+		return i;
+	}
+
+	/**
+	 * Encodes characters with the charset encoder and writes them. Returns
+	 * number of encoded characters; trailing high surrogate is left
+	 * unless it is the end of input.
+	 */
+	protected int encode(CharBuffer input, boolean endOfInput) throws IOException {
+		ByteBuffer output = ByteBuffer.wrap(buffers.bytes);
+		while (true) {
+			CoderResult coderResult = encoder.encode(input, output, endOfInput);
+			out.write(buffers.bytes, 0, output.position());
+			output.clear();
+			if (coderResult.isOverflow() == false) {
+				break;
+			}
+		}
+		if (endOfInput) {
+			while (encoder.flush(output).isOverflow()) {
+				out.write(buffers.bytes, 0, output.position());
+				output.clear();
+			}
+			out.write(buffers.bytes, 0, output.position());
+		}
+		return input.position();
+	}
+
+	/**
+	 * Flushes all buffered characters and the output stream.
+	 */
+	public void flush() throws IOException {
+		flushBuffer();
+		if (count != 0) {		// dangling high surrogate
+			chars[0] = '?';
+			flushBuffer();
+		}
+		out.flush();
+	}
+
+	/**
+	 * Flushes the writer and returns buffers to the pool.
+	 * Output stream is not closed. Further writes and flushes
+	 * throw <code>IllegalStateException</code>.
+	 */
+	public void close() throws IOException {
+		if (buffers == null) {
+			return;
+		}
+		try {
+			flush();
+			if (encoder != null) {
+				encode(CharBuffer.allocate(0), true);
+				out.flush();
+			}
+		} finally {
+			BUFFERS.set(buffers);
+			buffers = null;
+			chars = CLOSED;
+			count = 0;
+		}
+	}
+
+}
@@ -0,0 +1,6 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+/**
+ * Streaming JSON serializer and parser for Java beans.
+ */
+package jodd.joy.json;
\ No newline at end of file
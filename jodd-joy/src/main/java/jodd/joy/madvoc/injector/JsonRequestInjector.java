@@ -0,0 +1,152 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.joy.madvoc.injector;
+
+import jodd.bean.BeanUtil;
+import jodd.io.StreamUtil;
+import jodd.joy.json.JsonLexer;
+import jodd.joy.json.JsonParser;
+import jodd.madvoc.ScopeType;
+import jodd.madvoc.injector.BaseScopeInjector;
+import jodd.madvoc.injector.InjectionPlan;
+import jodd.util.MimeTypes;
+import jodd.util.StringPool;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Injects JSON request body into the action. Top-level names of the JSON
+ * object are matched against request scope {@link jodd.madvoc.meta.In inputs},
+ * just like request parameters. Matched values are parsed directly into new
+ * instances of target property types by the {@link JsonParser}. Objects of
+ * inputs that must not {@link jodd.madvoc.meta.In#create() create} instances
+ * are parsed into the existing property value, when there is one. Values of
+ * nested inputs are parsed to maps and lists and set by <code>BeanUtil</code>.
+ * Unlike with request parameters, values that can not be set are reported.
+ * As with request parameters, names of existing request attributes are ignored.
+ * Other content types are ignored.
+ */
+public class JsonRequestInjector extends BaseScopeInjector {
+
+	protected final JsonParser jsonParser;
+
+	public JsonRequestInjector() {
+		this(new JsonParser());
+	}
+
+	public JsonRequestInjector(JsonParser jsonParser) {
+		super(ScopeType.REQUEST);
+		this.jsonParser = jsonParser;
+	}
+
+	/**
+	 * Returns <code>true</code> if request has JSON content.
+	 */
+	protected boolean isJsonRequest(HttpServletRequest servletRequest) {
+		String contentType = servletRequest.getContentType();
+		if (contentType == null) {
+			return false;
+		}
+		return contentType.toLowerCase().startsWith(MimeTypes.MIME_APPLICATION_JSON);
+	}
+
+	/**
+	 * Reads JSON request body. Body is decoded using request encoding
+	 * or using UTF-8 if not specified.
+	 */
+	protected char[] readBody(HttpServletRequest servletRequest) throws IOException {
+		if (servletRequest.getCharacterEncoding() == null) {
+			servletRequest.setCharacterEncoding(StringPool.UTF_8);
+		}
+		return StreamUtil.readChars(servletRequest.getReader());
+	}
+
+	public void inject(Object target, HttpServletRequest servletRequest) throws IOException {
+		if (isJsonRequest(servletRequest) == false) {
+			return;
+		}
+		InjectionPlan plan = lookupInjectionPlan(target.getClass());
+		if (plan == null) {
+			return;
+		}
+
+		JsonLexer lexer = jsonParser.createLexer(readBody(servletRequest));
+		if (lexer.peek() == 0) {
+			return;
+		}
+
+		lexer.expect('{');
+		if (lexer.consume('}')) {
+			lexer.end();
+			return;
+		}
+		do {
+			String name = lexer.readString();
+			lexer.expect(':');
+			if (servletRequest.getAttribute(name) != null) {
+				lexer.skipValue();
+				continue;
+			}
+			injectValue(target, plan, lexer, name);
+		} while (lexer.next('}'));
+		lexer.end();
+	}
+
+	/**
+	 * Injects single value of the JSON object.
+	 */
+	protected void injectValue(Object target, InjectionPlan plan, JsonLexer lexer, String name) {
+		int[] indexes = plan.match(name);
+		if (indexes == null) {
+			lexer.skipValue();
+			return;
+		}
+
+		if (indexes.length == 1) {
+			String propertyName = plan.resolvePropertyName(indexes[0], name);
+			if (isSimpleName(propertyName)) {
+				if ((plan.getIn(indexes[0]).create == false) && (lexer.peek() == '{')) {
+					Object bean = BeanUtil.getDeclaredPropertySilently(target, propertyName);
+					if ((bean != null) && ((bean instanceof Map) == false)) {
+						jsonParser.readBean(lexer, bean);
+						return;
+					}
+				}
+				if (jsonParser.readProperty(lexer, target, propertyName)) {
+					return;
+				}
+			}
+		}
+
+		Object value = jsonParser.readValue(lexer, Object.class);
+		for (int index : indexes) {
+			injectValue(target, plan, index, name, value);
+		}
+	}
+
+	/**
+	 * Sets parsed value of matched injection point. Throws an exception
+	 * if value can not be set.
+	 */
+	protected void injectValue(Object target, InjectionPlan plan, int index, String name, Object value) {
+		if (plan.inject(target, index, name, value, false)) {
+			return;
+		}
+		String propertyName = plan.resolvePropertyName(index, name);
+		if (plan.getIn(index).create) {
+			BeanUtil.setDeclaredPropertyForced(target, propertyName, value);
+		} else {
+			BeanUtil.setDeclaredProperty(target, propertyName, value);
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if property name is not nested nor indexed.
+	 */
+	protected boolean isSimpleName(String propertyName) {
+		return propertyName.indexOf('.') == -1 && propertyName.indexOf('[') == -1;
+	}
+
+}
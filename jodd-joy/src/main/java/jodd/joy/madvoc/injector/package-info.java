@@ -0,0 +1,6 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+/**
+ * Additional Madvoc injectors.
+ */
+package jodd.joy.madvoc.injector;
\ No newline at end of file
@@ -0,0 +1,29 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.joy.madvoc.interceptor;
+
+import jodd.joy.madvoc.injector.JsonRequestInjector;
+import jodd.madvoc.ActionRequest;
+import jodd.madvoc.interceptor.ActionInterceptor;
+
+/**
+ * Injects JSON request body into the action, using the {@link JsonRequestInjector}.
+ * Should be placed after <code>ServletConfigInterceptor</code>, so JSON values
+ * are injected after request parameters and attributes.
+ */
+public class JsonRequestInterceptor extends ActionInterceptor {
+
+	protected JsonRequestInjector jsonRequestInjector;
+
+	@Override
+	public void init() {
+		jsonRequestInjector = new JsonRequestInjector();
+	}
+
+	@Override
+	public Object intercept(ActionRequest actionRequest) throws Exception {
+		jsonRequestInjector.inject(actionRequest.getAction(), actionRequest.getHttpServletRequest());
+		return actionRequest.invoke();
+	}
+
+}
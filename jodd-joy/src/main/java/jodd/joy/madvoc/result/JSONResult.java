@@ -2,6 +2,7 @@
 
 package jodd.joy.madvoc.result;
 
+import jodd.joy.json.JsonSerializer;
 import jodd.madvoc.ActionRequest;
 import jodd.madvoc.result.ActionResult;
 import jodd.util.MimeTypes;
@@ -10,16 +11,28 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.OutputStream;
 
 /**
- * Generic JSON result.
+ * Generic JSON result. String result values are considered as already
+ * serialized JSON and are written as they are. All other result objects,
+ * including {@link JsonData} values, are streamed to the response
+ * using the {@link JsonSerializer}.
  */
 public class JSONResult extends ActionResult {
 
 	public static final String NAME = "json";
 
+	protected final JsonSerializer jsonSerializer = new JsonSerializer();
+
 	public JSONResult() {
 		super(NAME);
 	}
 
+	/**
+	 * Returns JSON serializer.
+	 */
+	public JsonSerializer getJsonSerializer() {
+		return jsonSerializer;
+	}
+
 	@Override
 	public void render(ActionRequest actionRequest, Object resultObject, String resultValue, String resultPath) throws Exception {
 		HttpServletResponse response = actionRequest.getHttpServletResponse();
@@ -28,11 +41,19 @@ public class JSONResult extends ActionResult {
 		response.setContentType(MimeTypes.MIME_APPLICATION_JSON);
 		response.setCharacterEncoding(encoding);
 
-		byte[] data = resultValue.getBytes(encoding);
-
 		OutputStream os = response.getOutputStream();
-		os.write(data);
-		os.flush();
+
+		if (resultObject instanceof String) {
+			byte[] data = resultValue.getBytes(encoding);
+			os.write(data);
+			os.flush();
+			return;
+		}
+
+		if (resultObject instanceof JsonData) {
+			resultObject = ((JsonData) resultObject).getValue();
+		}
+		jsonSerializer.serialize(resultObject, os, encoding);
 	}
 
 }
@@ -0,0 +1,30 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.joy.madvoc.result;
+
+/**
+ * Holder for objects rendered by {@link JSONResult}. Returning it from
+ * an action selects the JSON result type without any other configuration.
+ */
+public class JsonData {
+
+	private static final String RESULT = JSONResult.NAME + ':';
+
+	protected final Object value;
+
+	public JsonData(Object value) {
+		this.value = value;
+	}
+
+	/**
+	 * Returns object to serialize.
+	 */
+	public Object getValue() {
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		return RESULT;
+	}
+}
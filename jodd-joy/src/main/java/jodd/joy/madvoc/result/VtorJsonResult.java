@@ -2,6 +2,7 @@
 
 package jodd.joy.madvoc.result;
 
+import jodd.joy.json.JsonWriter;
 import jodd.joy.madvoc.action.AppAction;
 import jodd.joy.vtor.VtorUtil;
 import jodd.madvoc.ActionRequest;
@@ -10,12 +11,12 @@ import jodd.madvoc.ScopeType;
 import jodd.madvoc.component.MadvocConfig;
 import jodd.madvoc.meta.In;
 import jodd.madvoc.result.ActionResult;
-import jodd.util.CharUtil;
 import jodd.util.MimeTypes;
 import jodd.vtor.Violation;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.util.List;
 
@@ -26,6 +27,9 @@ public class VtorJsonResult extends ActionResult {
 
 	public static final String NAME = "vtor-json";
 
+	private static final char[] NAME_KEY = "{\"name\":".toCharArray();
+	private static final char[] MSG_KEY = ",\"msg\":".toCharArray();
+
 	/**
 	 * Defines response content type of returned json string.
 	 * By default it is set to application/json.
@@ -60,18 +64,45 @@ public class VtorJsonResult extends ActionResult {
 
 		List<Violation> list = appAction.violations();
 
-		String result = VtorUtil.createViolationsJsonString(request, list);
-
 		if (jsonResponseContentType != null) {
 			response.setContentType(jsonResponseContentType);
 		}
 
-		char[] chars = result.toCharArray();
-		byte[] data = CharUtil.toByteArray(chars, madvocConfig.getEncoding());
-
 		OutputStream os = response.getOutputStream();
-		os.write(data);
-		os.flush();
+
+		JsonWriter jsonWriter = new JsonWriter(os, madvocConfig.getEncoding());
+		try {
+			writeViolations(jsonWriter, request, list);
+		} finally {
+			jsonWriter.close();
+		}
+	}
+
+	/**
+	 * Streams violations as JSON array with elements that contain
+	 * violation <code>name</code> and resolved message <code>msg</code>.
+	 * Nothing is written when there are no violations.
+	 */
+	protected void writeViolations(JsonWriter jsonWriter, HttpServletRequest request, List<Violation> violations) throws IOException {
+		if (violations == null) {
+			return;
+		}
+		jsonWriter.write('[');
+		for (int i = 0, violationsSize = violations.size(); i < violationsSize; i++) {
+			Violation violation = violations.get(i);
+			if (i != 0) {
+				jsonWriter.write(',');
+			}
+			jsonWriter.write(NAME_KEY);
+			jsonWriter.writeString(violation.getName());
+			jsonWriter.write(MSG_KEY);
+
+			// missing message is written as "null" string, for compatibility
+			String msg = VtorUtil.resolveValidationMessage(request, violation);
+			jsonWriter.writeString(String.valueOf(msg));
+			jsonWriter.write('}');
+		}
+		jsonWriter.write(']');
 	}
 
 }
@@ -0,0 +1,225 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.joy.json;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JsonParserTest {
+
+	public static enum Color {
+		RED, GREEN
+	}
+
+	public static class Item {
+		private String name;
+		private int count;
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		public void setCount(int count) {
+			this.count = count;
+		}
+	}
+
+	public static class Order {
+		private long id;
+		private Color color;
+		private BigDecimal price;
+		private List<Item> items;
+		private Map<String, Integer> counts;
+		private int[] codes;
+		private Set<String> tags;
+		private Item main;
+
+		public long getId() {
+			return id;
+		}
+
+		public void setId(long id) {
+			this.id = id;
+		}
+
+		public List<Item> getItems() {
+			return items;
+		}
+
+		public void setItems(List<Item> items) {
+			this.items = items;
+		}
+	}
+
+	@Test
+	public void testGeneric() {
+		JsonParser jsonParser = new JsonParser();
+
+		Map map = (Map) jsonParser.parse("{\"a\": 1, \"b\": [true, null, \"x\\ty\\u0041\"], \"c\": 2.5, \"d\": 12345678901}");
+		assertEquals(Integer.valueOf(1), map.get("a"));
+		assertEquals(Arrays.asList(Boolean.TRUE, null, "x\tyA"), map.get("b"));
+		assertEquals(Double.valueOf(2.5), map.get("c"));
+		assertEquals(Long.valueOf(12345678901L), map.get("d"));
+
+		assertNull(jsonParser.parse("null"));
+		assertEquals(Integer.valueOf(-7), jsonParser.parse(" -7 "));
+	}
+
+	@Test
+	public void testBean() {
+		JsonParser jsonParser = new JsonParser();
+
+		Order order = jsonParser.parse(
+				"{\"id\":123, \"color\":\"GREEN\", \"price\":\"10.50\", \"unknown\":{\"x\":[1,{}]}," +
+				"\"items\":[{\"name\":\"one\",\"count\":1},{\"name\":\"two\",\"count\":null}]," +
+				"\"counts\":{\"a\":1,\"b\":\"2\"}, \"codes\":[1,2,3], \"tags\":[\"x\",\"x\",\"y\"]," +
+				"\"main\":{\"name\":\"main\"}}",
+				Order.class);
+
+		assertEquals(123, order.id);
+		assertEquals(Color.GREEN, order.color);
+		assertEquals(new BigDecimal("10.50"), order.price);
+		assertEquals(2, order.items.size());
+		assertEquals("one", order.items.get(0).name);
+		assertEquals(1, order.items.get(0).count);
+		assertEquals(0, order.items.get(1).count);
+		assertEquals(Integer.valueOf(2), order.counts.get("b"));
+		assertArrayEquals(new int[] {1, 2, 3}, order.codes);
+		assertEquals(2, order.tags.size());
+		assertTrue(order.tags.contains("y"));
+		assertEquals("main", order.main.name);
+	}
+
+	@Test
+	public void testRoundtrip() {
+		Item item = new Item();
+		item.setName("a\"b</c>\u010d");
+		item.setCount(5);
+
+		String json = new JsonSerializer().serialize(new Item[] {item});
+
+		Item[] items = new JsonParser().parse(json, Item[].class);
+		assertEquals(1, items.length);
+		assertEquals(item.getName(), items[0].getName());
+		assertEquals(5, items[0].getCount());
+	}
+
+	@Test
+	public void testErrors() {
+		JsonParser jsonParser = new JsonParser();
+		String[] invalid = {"{", "[1,]", "{\"a\" 1}", "\"abc", "tru", "{} x",
+				"1.2.3", "1.5-3", "01", "1.", "-", "1e", "1e+", ".5", "[1-]"};
+		for (String json : invalid) {
+			try {
+				jsonParser.parse(json);
+				fail(json);
+			} catch (JsonException ignore) {
+			}
+		}
+	}
+
+	@Test
+	public void testNumbers() {
+		JsonParser jsonParser = new JsonParser();
+
+		assertEquals(Double.valueOf(-1.5e3), jsonParser.parse("-1.5E+3"));
+		assertEquals(Integer.valueOf(0), jsonParser.parse("0"));
+		assertEquals(Integer.valueOf(2), jsonParser.parse("2.9", Integer.class));
+		assertEquals(Long.valueOf(3000000000L), jsonParser.parse("3000000000", Long.class));
+		assertEquals(Long.valueOf(-12), jsonParser.parse("-1.29e1", Long.class));
+
+		// huge negative exponent is not expanded
+		long start = System.currentTimeMillis();
+		assertEquals(Long.valueOf(0), jsonParser.parse("1e-1000000000", long.class));
+		assertEquals(Integer.valueOf(0), jsonParser.parse("-5e-1000000000", int.class));
+		assertTrue(System.currentTimeMillis() - start < 1000);
+
+		String[] outOfRange = {"3000000000", "-2147483649", "1e10", "99999999999999999999"};
+		for (String json : outOfRange) {
+			try {
+				jsonParser.parse(json, Integer.class);
+				fail(json);
+			} catch (JsonException ignore) {
+			}
+		}
+		try {
+			jsonParser.parse("1e100000000", Long.class);
+			fail();
+		} catch (JsonException ignore) {
+		}
+		try {
+			jsonParser.parse("1e99999999999", Long.class);
+			fail();
+		} catch (JsonException ignore) {
+		}
+		try {
+			jsonParser.parse("1e99999999999", BigInteger.class);
+			fail();
+		} catch (JsonException ignore) {
+		}
+		try {
+			jsonParser.parse("\"abc\"", Integer.class);
+			fail();
+		} catch (JsonException ignore) {
+		}
+	}
+
+	@Test
+	public void testLimits() {
+		JsonParser jsonParser = new JsonParser();
+
+		StringBuilder digits = new StringBuilder("{\"x\":");
+		for (int i = 0; i < 100000; i++) {
+			digits.append('7');
+		}
+		digits.append('}');
+		try {
+			jsonParser.parse(digits.toString());
+			fail();
+		} catch (JsonException ignore) {
+		}
+
+		StringBuilder nested = new StringBuilder();
+		for (int i = 0; i < 100000; i++) {
+			nested.append('[');
+		}
+		try {
+			jsonParser.parse(nested.toString());
+			fail();
+		} catch (JsonException ignore) {
+		}
+		try {
+			jsonParser.parse("{\"a\":" + nested, Item.class);
+			fail();
+		} catch (JsonException ignore) {
+		}
+
+		jsonParser.setMaxDepth(2);
+		assertEquals(1, ((List) jsonParser.parse("[[1]]")).size());
+		try {
+			jsonParser.parse("[[[1]]]");
+			fail();
+		} catch (JsonException ignore) {
+		}
+	}
+}
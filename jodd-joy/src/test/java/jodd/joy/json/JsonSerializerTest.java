@@ -0,0 +1,203 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.joy.json;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class JsonSerializerTest {
+
+	public static enum Color {
+		RED, GREEN
+	}
+
+	public static class Item {
+		private String name;
+		private int count;
+		private Color color;
+		private Item parent;
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		public void setCount(int count) {
+			this.count = count;
+		}
+
+		public Color getColor() {
+			return color;
+		}
+
+		public void setColor(Color color) {
+			this.color = color;
+		}
+
+		public Item getParent() {
+			return parent;
+		}
+
+		public void setParent(Item parent) {
+			this.parent = parent;
+		}
+	}
+
+	@Test
+	public void testValues() {
+		JsonSerializer jsonSerializer = new JsonSerializer();
+
+		assertEquals("null", jsonSerializer.serialize(null));
+		assertEquals("\"a\\\"b\\\\c\\n\\u0001<\\/p>\"", jsonSerializer.serialize("a\"b\\c\n\u0001</p>"));
+		assertEquals("12", jsonSerializer.serialize(Integer.valueOf(12)));
+		assertEquals("1.5", jsonSerializer.serialize(Double.valueOf(1.5)));
+		assertEquals("null", jsonSerializer.serialize(Double.valueOf(Double.NaN)));
+		assertEquals("true", jsonSerializer.serialize(Boolean.TRUE));
+		assertEquals("\"RED\"", jsonSerializer.serialize(Color.RED));
+		assertEquals("123", jsonSerializer.serialize(new Date(123)));
+		assertEquals("[1,2,3]", jsonSerializer.serialize(new int[] {1, 2, 3}));
+		assertEquals("[\"x\",null]", jsonSerializer.serialize(new String[] {"x", null}));
+
+		Map<String, Object> map = new LinkedHashMap<String, Object>();
+		map.put("one", Integer.valueOf(1));
+		map.put("two", null);
+		List<Object> list = new ArrayList<Object>();
+		list.add(map);
+		assertEquals("[{\"one\":1,\"two\":null}]", jsonSerializer.serialize(list));
+
+		jsonSerializer.setExcludeNulls(true);
+		assertEquals("[{\"one\":1}]", jsonSerializer.serialize(list));
+	}
+
+	@Test
+	public void testBean() {
+		JsonSerializer jsonSerializer = new JsonSerializer();
+
+		Item parent = new Item();
+		parent.setName("parent");
+
+		Item item = new Item();
+		item.setName("item");
+		item.setCount(3);
+		item.setColor(Color.GREEN);
+		item.setParent(parent);
+
+		assertEquals(
+				"{\"color\":\"GREEN\",\"count\":3,\"name\":\"item\",\"parent\":" +
+				"{\"color\":null,\"count\":0,\"name\":\"parent\",\"parent\":null}}",
+				jsonSerializer.serialize(item));
+
+		// circular reference
+		parent.setParent(item);
+		item.setColor(null);
+		jsonSerializer.setExcludeNulls(true);
+		assertEquals(
+				"{\"count\":3,\"name\":\"item\",\"parent\":{\"count\":0,\"name\":\"parent\",\"parent\":null}}",
+				jsonSerializer.serialize(item));
+	}
+
+	@Test
+	public void testEncoding() throws Exception {
+		JsonSerializer jsonSerializer = new JsonSerializer();
+
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 3000; i++) {
+			sb.append("\u010d\ud83d\ude00");
+		}
+		String value = sb.toString();
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		jsonSerializer.serialize(value, out, "UTF-8");
+		assertArrayEquals(('"' + value + '"').getBytes("UTF-8"), out.toByteArray());
+
+		out = new ByteArrayOutputStream();
+		jsonSerializer.serialize(value, out, "UTF-16BE");
+		assertArrayEquals(('"' + value + '"').getBytes("UTF-16BE"), out.toByteArray());
+
+		// byte order mark is written only once
+		out = new ByteArrayOutputStream();
+		jsonSerializer.serialize(value, out, "UTF-16");
+		assertArrayEquals(('"' + value + '"').getBytes("UTF-16"), out.toByteArray());
+	}
+
+	@Test
+	public void testWriteChars() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < JsonWriter.CHAR_BUFFER_SIZE - 1; i++) {
+			sb.append('a');
+		}
+		sb.append('\ud83d');	// high surrogate stays in the buffer after flush
+
+		char[] chars = new char[JsonWriter.CHAR_BUFFER_SIZE];
+		chars[0] = '\ude00';
+		for (int i = 1; i < chars.length; i++) {
+			chars[i] = 'b';
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		JsonWriter jsonWriter = new JsonWriter(out, "UTF-8");
+		jsonWriter.write(sb);
+		jsonWriter.write(chars);
+		jsonWriter.close();
+
+		assertArrayEquals((sb.toString() + new String(chars)).getBytes("UTF-8"), out.toByteArray());
+	}
+
+	@Test
+	public void testWriteAfterClose() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		JsonWriter jsonWriter = new JsonWriter(out, "UTF-8");
+		jsonWriter.write("one");
+		jsonWriter.close();
+		jsonWriter.close();
+
+		// pooled buffer is now used by another writer
+		ByteArrayOutputStream out2 = new ByteArrayOutputStream();
+		JsonWriter jsonWriter2 = new JsonWriter(out2, "UTF-8");
+		jsonWriter2.write("two");
+
+		try {
+			jsonWriter.write('x');
+			fail();
+		} catch (IllegalStateException ignore) {
+		}
+		try {
+			jsonWriter.write("xyz");
+			fail();
+		} catch (IllegalStateException ignore) {
+		}
+		try {
+			jsonWriter.writeString("xyz");
+			fail();
+		} catch (IllegalStateException ignore) {
+		}
+
+		jsonWriter2.close();
+		assertEquals("one", out.toString("UTF-8"));
+		assertEquals("two", out2.toString("UTF-8"));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testFlushAfterClose() throws Exception {
+		JsonWriter jsonWriter = new JsonWriter(new ByteArrayOutputStream(), "UTF-8");
+		jsonWriter.close();
+		jsonWriter.flush();
+	}
+}
@@ -0,0 +1,131 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.joy.madvoc.injector;
+
+import jodd.joy.json.JsonException;
+import jodd.madvoc.meta.In;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class JsonRequestInjectorTest {
+
+	public static class User {
+		public String name;
+		public int age;
+	}
+
+	public static class UserAction {
+		@In
+		User user;
+
+		@In
+		List<Integer> ids;
+
+		@In("meta")
+		Map<String, Object> data;
+
+		String secret;
+
+		@In(create = false)
+		User owner = new User();
+
+		@In(create = false)
+		User admin;
+	}
+
+	private static HttpServletRequest createRequest(String contentType, String body) {
+		return createRequest(contentType, body, null, null);
+	}
+
+	private static HttpServletRequest createRequest(final String contentType, final String body, final String attrName, final Object attrValue) {
+		return (HttpServletRequest) Proxy.newProxyInstance(
+				HttpServletRequest.class.getClassLoader(),
+				new Class[] {HttpServletRequest.class},
+				new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						String name = method.getName();
+						if (name.equals("getContentType")) {
+							return contentType;
+						}
+						if (name.equals("getReader")) {
+							return new BufferedReader(new StringReader(body));
+						}
+						if (name.equals("getAttribute") && args[0].equals(attrName)) {
+							return attrValue;
+						}
+						return null;
+					}
+				});
+	}
+
+	@Test
+	public void testInject() throws Exception {
+		JsonRequestInjector jsonRequestInjector = new JsonRequestInjector();
+
+		UserAction action = new UserAction();
+		jsonRequestInjector.inject(action, createRequest("application/json; charset=UTF-8",
+				"{\"user\":{\"name\":\"Jodd\",\"age\":10}, \"ids\":[1,2], \"meta\":{\"x\":1}, \"secret\":\"s\"}"));
+
+		assertEquals("Jodd", action.user.name);
+		assertEquals(10, action.user.age);
+		assertEquals(2, action.ids.size());
+		assertEquals(Integer.valueOf(2), action.ids.get(1));
+		assertEquals(Integer.valueOf(1), action.data.get("x"));
+		assertNull(action.secret);
+	}
+
+	@Test
+	public void testNoCreate() throws Exception {
+		JsonRequestInjector jsonRequestInjector = new JsonRequestInjector();
+
+		UserAction action = new UserAction();
+		User owner = action.owner;
+		jsonRequestInjector.inject(action, createRequest("application/json",
+				"{\"owner\":{\"name\":\"Jodd\"}, \"admin\":{\"name\":\"Admin\",\"age\":20}}"));
+
+		assertSame(owner, action.owner);
+		assertEquals("Jodd", action.owner.name);
+		assertEquals("Admin", action.admin.name);
+		assertEquals(20, action.admin.age);
+	}
+
+	@Test(expected = JsonException.class)
+	public void testInvalidValue() throws Exception {
+		JsonRequestInjector jsonRequestInjector = new JsonRequestInjector();
+
+		jsonRequestInjector.inject(new UserAction(), createRequest("application/json", "{\"user\":\"Jodd\"}"));
+	}
+
+	@Test
+	public void testAttributeName() throws Exception {
+		JsonRequestInjector jsonRequestInjector = new JsonRequestInjector();
+
+		UserAction action = new UserAction();
+		jsonRequestInjector.inject(action, createRequest("application/json",
+				"{\"ids\":[1,2], \"meta\":{\"x\":1}}", "ids", "attr"));
+
+		assertNull(action.ids);
+		assertEquals(Integer.valueOf(1), action.data.get("x"));
+	}
+
+	@Test
+	public void testNotJson() throws Exception {
+		JsonRequestInjector jsonRequestInjector = new JsonRequestInjector();
+
+		UserAction action = new UserAction();
+		jsonRequestInjector.inject(action, createRequest("application/x-www-form-urlencoded", "{\"ids\":[1]}"));
+		assertNull(action.ids);
+	}
+}
@@ -26,6 +26,8 @@ public class ActionConfig {
 	protected ActionConfigSet actionConfigSet;
 	public boolean initialized;
 	public ActionInterceptor[] interceptors;
+	public ActionInvoker actionInvoker;
+	public InterceptorChain interceptorChain;
 
 	public ActionConfig(
 			Class actionClass,
@@ -124,6 +126,22 @@ public class ActionConfig {
 		return interceptors;
 	}
 
+	/**
+	 * Returns generated action invoker or <code>null</code>
+	 * if action is invoked using reflection.
+	 */
+	public ActionInvoker getActionInvoker() {
+		return actionInvoker;
+	}
+
+	/**
+	 * Returns generated interceptor chain or <code>null</code>
+	 * if interceptors are invoked from the array.
+	 */
+	public InterceptorChain getInterceptorChain() {
+		return interceptorChain;
+	}
+
 //	public Class<?>[] getActionParamTypes() {
 //		return actionParamTypes;
 //	}
@@ -0,0 +1,28 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.madvoc;
+
+/**
+ * Creates action objects and invokes action method of
+ * a single {@link ActionConfig action configuration} directly,
+ * without the reflection. Implementations are generated
+ * during action registration.
+ * @see jodd.madvoc.component.ActionInvokerGenerator
+ */
+public interface ActionInvoker {
+
+	/**
+	 * Creates new action object. Returns <code>null</code> if action class
+	 * has no public default constructor, when action has to be created
+	 * using the reflection.
+	 */
+	Object createAction();
+
+	/**
+	 * Invokes action method on given action object
+	 * and returns the result value. Primitive results are
+	 * boxed and <code>void</code> methods return <code>null</code>.
+	 */
+	Object invoke(Object action, Object[] params) throws Exception;
+
+}
\ No newline at end of file
@@ -3,6 +3,7 @@
 package jodd.madvoc;
 
 import jodd.madvoc.interceptor.ActionInterceptor;
+import jodd.madvoc.result.DeferredResult;
 import jodd.exception.ExceptionUtil;
 
 import javax.servlet.http.HttpServletRequest;
@@ -33,6 +34,11 @@ public class ActionRequest {
 	protected String nextActionPath;
 	protected ActionRequest previousActionRequest;
 
+	protected boolean monitored;
+	protected long actionTime;
+
+	protected DeferredResult deferredResult;
+
 	// ---------------------------------------------------------------- accessors
 
 	/**
@@ -132,6 +138,44 @@ public class ActionRequest {
 	public void setActionParams(Object[] params) {
 		this.params = params;
 	}
+
+	/**
+	 * Returns <code>true</code> if action method invocation is measured.
+	 */
+	public boolean isMonitored() {
+		return monitored;
+	}
+
+	/**
+	 * Specifies if action method invocation should be measured.
+	 */
+	public void setMonitored(boolean monitored) {
+		this.monitored = monitored;
+	}
+
+	/**
+	 * Returns action method invocation time in nanoseconds, if
+	 * request is {@link #isMonitored() monitored}.
+	 */
+	public long getActionTime() {
+		return actionTime;
+	}
+
+	/**
+	 * Returns {@link DeferredResult deferred result} of the asynchronous
+	 * action request that is not yet resumed, or <code>null</code>.
+	 */
+	public DeferredResult getDeferredResult() {
+		return deferredResult;
+	}
+
+	/**
+	 * Sets deferred result of the asynchronous action request.
+	 */
+	public void setDeferredResult(DeferredResult deferredResult) {
+		this.deferredResult = deferredResult;
+	}
+
 	// ---------------------------------------------------------------- ctor
 
 	/**
@@ -161,13 +205,26 @@ public class ActionRequest {
 		}
 		// interceptors
 		if (interceptorIndex < totalInterceptors) {
-			ActionInterceptor interceptor = config.interceptors[interceptorIndex];
-			interceptorIndex++;
+			int index = interceptorIndex++;
+			if (config.interceptorChain != null) {
+				return config.interceptorChain.invoke(this, index);
+			}
+			ActionInterceptor interceptor = config.interceptors[index];
 			return interceptor.invoke(this);
 		}
 
 		// action
-		Object actionInvocationResult = invokeAction();
+		Object actionInvocationResult;
+		if (monitored) {
+			long start = System.nanoTime();
+			try {
+				actionInvocationResult = invokeAction();
+			} finally {
+				actionTime = System.nanoTime() - start;
+			}
+		} else {
+			actionInvocationResult = invokeAction();
+		}
 		executed = true;
 		return actionInvocationResult;
 	}
@@ -177,6 +234,9 @@ public class ActionRequest {
 	 * After method invocation, all interceptors will finish, in opposite order. 
 	 */
 	protected Object invokeAction() throws Exception {
+		if (config.actionInvoker != null) {
+			return config.actionInvoker.invoke(action, params);
+		}
 		try {
 			return config.actionClassMethod.invoke(action, params);
 		} catch(InvocationTargetException itex) {
@@ -0,0 +1,19 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.madvoc;
+
+/**
+ * Invokes interceptors of a single interceptor stack directly, each
+ * through its own call site. Implementations are generated when action
+ * configuration is initialized and shared between actions with the same
+ * interceptors.
+ * @see jodd.madvoc.component.InterceptorChainGenerator
+ */
+public interface InterceptorChain {
+
+	/**
+	 * Invokes interceptor at given position of the stack.
+	 */
+	Object invoke(ActionRequest actionRequest, int index) throws Exception;
+
+}
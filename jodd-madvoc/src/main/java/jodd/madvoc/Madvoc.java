@@ -12,6 +12,7 @@ import jodd.madvoc.component.ActionsManager;
 import jodd.madvoc.component.MadvocConfig;
 import jodd.madvoc.config.MadvocConfigurator;
 import jodd.madvoc.config.AutomagicMadvocConfigurator;
+import jodd.madvoc.monitor.ActionMonitor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -223,6 +224,16 @@ public class Madvoc {
 			throw new MadvocException("No Madvoc controller component found.");
 		}
 		madvocController.init(servletContext);
+
+		if (madvocConfig.isEagerActionsInitialization()) {
+			madvocController.initializeActionConfigs();
+		}
+
+		// monitoring
+		ActionMonitor actionMonitor = webapp.getComponent(ActionMonitor.class);
+		if (actionMonitor != null) {
+			actionMonitor.registerMBean();
+		}
 	}
 
 	/**
@@ -230,6 +241,10 @@ public class Madvoc {
 	 */
 	public void stopWebApplication() {
 		log.info("Madvoc shutting down...");
+		ActionMonitor actionMonitor = webapp.getComponent(ActionMonitor.class);
+		if (actionMonitor != null) {
+			actionMonitor.unregisterMBean();
+		}
 		webapp.destroy(madvocConfig);
 	}
 
@@ -0,0 +1,138 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.madvoc;
+
+import jodd.asm4.MethodVisitor;
+import jodd.asm4.Type;
+
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+
+import static jodd.asm4.Opcodes.*;
+
+/**
+ * Bytecode utilities used by Madvoc generators.
+ */
+public class MadvocAsmUtil {
+
+	/**
+	 * Returns <code>true</code> if class and all its enclosing
+	 * classes are public, so generated classes can access it.
+	 */
+	public static boolean isPublic(Class type) {
+		while (type != null) {
+			if (Modifier.isPublic(type.getModifiers()) == false) {
+				return false;
+			}
+			type = type.getEnclosingClass();
+		}
+		return true;
+	}
+
+	/**
+	 * Pushes int value in an optimal way.
+	 */
+	public static void pushInt(MethodVisitor mv, int value) {
+		if (value <= 5) {
+			mv.visitInsn(ICONST_0 + value);
+		} else if (value <= Byte.MAX_VALUE) {
+			mv.visitIntInsn(BIPUSH, value);
+		} else {
+			mv.visitIntInsn(SIPUSH, value);
+		}
+	}
+
+	/**
+	 * Casts object on the stack to given type, unboxing primitives.
+	 */
+	public static void unbox(MethodVisitor mv, Class<?> type) {
+		if (type.isPrimitive() == false) {
+			if (type != Object.class) {
+				mv.visitTypeInsn(CHECKCAST, Type.getInternalName(type));
+			}
+			return;
+		}
+		String wrapper = Type.getInternalName(wrapperOf(type));
+		mv.visitTypeInsn(CHECKCAST, wrapper);
+		mv.visitMethodInsn(INVOKEVIRTUAL, wrapper, type.getName() + "Value", "()" + Type.getDescriptor(type));
+	}
+
+	/**
+	 * Boxes primitive value on the stack.
+	 */
+	public static void box(MethodVisitor mv, Class<?> type) {
+		if (type.isPrimitive() == false) {
+			return;
+		}
+		Class wrapperType = wrapperOf(type);
+		String wrapper = Type.getInternalName(wrapperType);
+		mv.visitMethodInsn(INVOKESTATIC, wrapper, "valueOf", '(' + Type.getDescriptor(type) + ')' + Type.getDescriptor(wrapperType));
+	}
+
+	/**
+	 * Returns wrapper type of a primitive type.
+	 */
+	public static Class wrapperOf(Class<?> type) {
+		if (type == int.class) {
+			return Integer.class;
+		}
+		if (type == long.class) {
+			return Long.class;
+		}
+		if (type == boolean.class) {
+			return Boolean.class;
+		}
+		if (type == double.class) {
+			return Double.class;
+		}
+		if (type == float.class) {
+			return Float.class;
+		}
+		if (type == char.class) {
+			return Character.class;
+		}
+		if (type == byte.class) {
+			return Byte.class;
+		}
+		return Short.class;
+	}
+
+	/**
+	 * Class loader that defines generated classes. Generated classes
+	 * are defined in a child class loader of the loader of classes they use.
+	 */
+	public static class GeneratedClassLoader extends ClassLoader {
+
+		public GeneratedClassLoader(ClassLoader parent) {
+			super(parent);
+		}
+
+		public Class define(String className, byte[] bytecode) {
+			return defineClass(className, bytecode, 0, bytecode.length);
+		}
+	}
+
+	/**
+	 * {@link GeneratedClassLoader Class loaders} of a generator, one
+	 * for each class loader of the classes generated classes use.
+	 */
+	public static class GeneratedClassLoaders {
+
+		protected final Map<ClassLoader, GeneratedClassLoader> classLoaders = new HashMap<ClassLoader, GeneratedClassLoader>();
+
+		/**
+		 * Returns class loader for generated classes that use
+		 * classes from given class loader.
+		 */
+		public synchronized GeneratedClassLoader get(ClassLoader parent) {
+			GeneratedClassLoader classLoader = classLoaders.get(parent);
+			if (classLoader == null) {
+				classLoader = new GeneratedClassLoader(parent);
+				classLoaders.put(parent, classLoader);
+			}
+			return classLoader;
+		}
+	}
+
+}
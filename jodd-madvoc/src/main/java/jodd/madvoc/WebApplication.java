@@ -2,7 +2,9 @@
 
 package jodd.madvoc;
 
+import jodd.madvoc.component.ActionInvokerGenerator;
 import jodd.madvoc.component.ActionPathMacroManager;
+import jodd.madvoc.component.InterceptorChainGenerator;
 import jodd.madvoc.component.InterceptorsManager;
 import jodd.madvoc.component.MadvocContextInjector;
 import jodd.madvoc.component.ResultsManager;
@@ -15,6 +17,7 @@ import jodd.madvoc.component.ResultMapper;
 import jodd.madvoc.component.ActionPathRewriter;
 import jodd.madvoc.component.ServletContextInjector;
 import jodd.madvoc.config.MadvocConfigurator;
+import jodd.madvoc.monitor.ActionMonitor;
 import jodd.petite.PetiteContainer;
 
 import javax.servlet.ServletContext;
@@ -154,6 +157,7 @@ public class WebApplication {
 		if (log.isDebugEnabled()) {
 			log.debug("Registering Madvoc components");
 		}
+		registerComponent(ActionInvokerGenerator.class);
 		registerComponent(ActionMethodParser.class);
 		registerComponent(ActionPathMapper.class);
 		registerComponent(ActionPathRewriter.class);
@@ -166,6 +170,8 @@ public class WebApplication {
 		registerComponent(ResultMapper.class);
 		registerComponent(ServletContextInjector.class);
 		registerComponent(MadvocContextInjector.class);
+		registerComponent(ActionMonitor.class);
+		registerComponent(InterceptorChainGenerator.class);
 	}
 
 
@@ -0,0 +1,56 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.madvoc.action;
+
+import jodd.madvoc.ScopeType;
+import jodd.madvoc.meta.In;
+import jodd.madvoc.meta.Out;
+import jodd.madvoc.monitor.ActionMonitor;
+import jodd.madvoc.monitor.ActionStats;
+import jodd.madvoc.result.TextResult;
+
+import java.util.List;
+
+/**
+ * Helper action that returns statistics of all monitored actions, collected
+ * by the {@link ActionMonitor}. It can be subclassed or used independently.
+ * Default {@link #view()} renders plain text report.
+ */
+public class ListActionStats {
+
+	@In(scope = ScopeType.CONTEXT)
+	@Out
+	protected ActionMonitor actionMonitor;
+
+	@Out
+	protected List<ActionStats> actionStats;
+
+	protected void collectActionStats() {
+		actionStats = actionMonitor.getAllActionStats();
+	}
+
+	/**
+	 * Creates plain text report of collected statistics.
+	 */
+	protected String createReport() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("monitoring: ").append(actionMonitor.isEnabled() ? "enabled" : "disabled");
+		sb.append("\nrequests:   ").append(actionMonitor.getRequests());
+		sb.append("\nerrors:     ").append(actionMonitor.getErrors());
+		sb.append("\nslow:       ").append(actionMonitor.getSlowRequests());
+		sb.append('\n');
+		for (ActionStats stats : actionStats) {
+			sb.append('\n').append(stats).append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Collects statistics and renders them as plain text.
+	 */
+	public String view() {
+		collectActionStats();
+		return TextResult.NAME + ':' + createReport();
+	}
+
+}
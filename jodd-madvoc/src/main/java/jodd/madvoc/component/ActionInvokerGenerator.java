@@ -0,0 +1,197 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.madvoc.component;
+
+import jodd.asm4.ClassWriter;
+import jodd.asm4.MethodVisitor;
+import jodd.asm4.Type;
+import jodd.madvoc.ActionConfig;
+import jodd.madvoc.ActionInvoker;
+import jodd.madvoc.MadvocException;
+import jodd.madvoc.MadvocAsmUtil.GeneratedClassLoaders;
+import jodd.petite.meta.PetiteInject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+
+import static jodd.asm4.Opcodes.*;
+import static jodd.madvoc.MadvocAsmUtil.*;
+
+/**
+ * Generates {@link ActionInvoker action invokers} during the action
+ * registration, so action objects are created and action methods are
+ * invoked with direct calls instead of the reflection. Invokers are
+ * generated only for public action methods of public classes; for other
+ * actions <code>null</code> is returned and reflection is used.
+ * <p>
+ * Generated classes are defined in a child class loader of the action
+ * class loader.
+ */
+public class ActionInvokerGenerator {
+
+	private static final Logger log = LoggerFactory.getLogger(ActionInvokerGenerator.class);
+
+	protected static final String INVOKER_SUFFIX = "$$MadvocInvoker";
+
+	private static final String INVOKER_NAME = Type.getInternalName(ActionInvoker.class);
+	private static final String CREATE_ACTION_DESC = "()Ljava/lang/Object;";
+	private static final String INVOKE_DESC = "(Ljava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;";
+
+	@PetiteInject
+	protected MadvocConfig madvocConfig;
+
+	protected final Map<Method, ActionInvoker> invokers = new HashMap<Method, ActionInvoker>();
+	protected final GeneratedClassLoaders classLoaders = new GeneratedClassLoaders();
+	protected int invokersCount;
+
+	/**
+	 * Returns action invoker for the action configuration or <code>null</code>
+	 * if invoker can not be generated.
+	 */
+	public synchronized ActionInvoker createActionInvoker(ActionConfig actionConfig) {
+		if (madvocConfig.isGenerateActionInvokers() == false) {
+			return null;
+		}
+
+		Method method = actionConfig.actionClassMethod;
+		ActionInvoker actionInvoker = invokers.get(method);
+		if (actionInvoker != null) {
+			return actionInvoker;
+		}
+
+		Class actionClass = actionConfig.actionClass;
+		if (isAccessible(actionClass, method) == false) {
+			return null;
+		}
+
+		String invokerClassName = actionClass.getName() + INVOKER_SUFFIX + (invokersCount++);
+		byte[] bytecode = generate(invokerClassName, actionClass, method);
+
+		try {
+			Class invokerClass = classLoaders.get(actionClass.getClassLoader()).define(invokerClassName, bytecode);
+			actionInvoker = (ActionInvoker) invokerClass.newInstance();
+		} catch (Exception ex) {
+			throw new MadvocException("Unable to create action invoker: " + actionConfig.getActionString(), ex);
+		} catch (LinkageError lerr) {
+			if (log.isDebugEnabled()) {
+				log.debug("Action invoker not available for: " + actionConfig.getActionString(), lerr);
+			}
+			return null;
+		}
+
+		if (log.isDebugEnabled()) {
+			log.debug("Generated action invoker: " + invokerClassName);
+		}
+		invokers.put(method, actionInvoker);
+		return actionInvoker;
+	}
+
+	/**
+	 * Returns <code>true</code> if action method can be
+	 * invoked from the generated class.
+	 */
+	protected boolean isAccessible(Class actionClass, Method method) {
+		if (actionClass.getClassLoader() == null) {
+			return false;
+		}
+		if (actionClass.isInterface() || Modifier.isAbstract(actionClass.getModifiers())) {
+			return false;
+		}
+		if (isPublic(actionClass) == false) {
+			return false;
+		}
+		int modifiers = method.getModifiers();
+		if ((Modifier.isPublic(modifiers) == false) || Modifier.isStatic(modifiers)) {
+			return false;
+		}
+		return Modifier.isPublic(method.getDeclaringClass().getModifiers());
+	}
+
+	// ---------------------------------------------------------------- generate
+
+	/**
+	 * Generates invoker bytecode.
+	 */
+	protected byte[] generate(String invokerClassName, Class actionClass, Method method) {
+		String invokerName = invokerClassName.replace('.', '/');
+		String actionName = Type.getInternalName(actionClass);
+
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(V1_5, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, invokerName, null, "java/lang/Object", new String[] {INVOKER_NAME});
+
+		// constructor
+
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		// createAction()
+
+		mv = cw.visitMethod(ACC_PUBLIC, "createAction", CREATE_ACTION_DESC, null, null);
+		mv.visitCode();
+		if (hasDefaultConstructor(actionClass)) {
+			mv.visitTypeInsn(NEW, actionName);
+			mv.visitInsn(DUP);
+			mv.visitMethodInsn(INVOKESPECIAL, actionName, "<init>", "()V");
+			mv.visitInsn(ARETURN);
+		} else {
+			// no factory, action is created using the reflection
+			mv.visitInsn(ACONST_NULL);
+			mv.visitInsn(ARETURN);
+		}
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		// invoke(Object, Object[])
+
+		mv = cw.visitMethod(ACC_PUBLIC, "invoke", INVOKE_DESC, null, new String[] {"java/lang/Exception"});
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 1);
+		mv.visitTypeInsn(CHECKCAST, actionName);
+
+		Class<?>[] paramTypes = method.getParameterTypes();
+		for (int i = 0; i < paramTypes.length; i++) {
+			mv.visitVarInsn(ALOAD, 2);
+			pushInt(mv, i);
+			mv.visitInsn(AALOAD);
+			unbox(mv, paramTypes[i]);
+		}
+
+		mv.visitMethodInsn(INVOKEVIRTUAL, actionName, method.getName(), Type.getMethodDescriptor(method));
+
+		Class<?> returnType = method.getReturnType();
+		if (returnType == void.class) {
+			mv.visitInsn(ACONST_NULL);
+		} else {
+			box(mv, returnType);
+		}
+		mv.visitInsn(ARETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	/**
+	 * Returns <code>true</code> if class has public constructor without arguments.
+	 */
+	protected boolean hasDefaultConstructor(Class<?> actionClass) {
+		try {
+			Constructor<?> ctor = actionClass.getConstructor();
+			return Modifier.isPublic(ctor.getModifiers());
+		} catch (NoSuchMethodException ignore) {
+			return false;
+		}
+	}
+
+}
\ No newline at end of file
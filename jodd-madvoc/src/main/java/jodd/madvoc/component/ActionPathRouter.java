@@ -0,0 +1,236 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.madvoc.component;
+
+import jodd.madvoc.ActionConfigSet;
+import jodd.madvoc.macro.PathMacros;
+import jodd.util.StringUtil;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Router of action paths with macros. Action paths are split into
+ * segments on '/' and stored in the segment trie: fixed segments are
+ * looked up in the map of children and only segments with macros
+ * are matched, each with its own {@link PathMacros}. Therefore look-up
+ * time depends on the action path length and not on the number of
+ * registered action paths.
+ * <p>
+ * When more action paths match, the one with the most matched
+ * non-macro characters wins; on equal number of characters,
+ * action path that comes first alphabetically wins.
+ * <p>
+ * Action paths with macros that contain '/' can not be split into
+ * segments, so they are matched one by one, after the trie.
+ */
+public class ActionPathRouter {
+
+	protected final Node root = new Node(null, null);
+	protected final List<ActionConfigSet> unsplit = new ArrayList<ActionConfigSet>();
+
+	/**
+	 * Trie node, i.e. action path segment.
+	 */
+	protected static class Node {
+
+		protected final String segment;
+		protected final PathMacros segmentMacros;		// null for fixed segment
+		protected HashMap<String, Node> children;		// fixed segments
+		protected Node[] macroChildren;					// segments with macros
+		protected ActionConfigSet actionConfigSet;		// set ending in this node, if any
+
+		protected Node(String segment, PathMacros segmentMacros) {
+			this.segment = segment;
+			this.segmentMacros = segmentMacros;
+		}
+	}
+
+	/**
+	 * Best match found so far.
+	 */
+	protected static class Match {
+		protected ActionConfigSet actionConfigSet;
+		protected int matchedChars = -1;
+
+		/**
+		 * Accepts the action config set if it is better than the current one.
+		 */
+		protected void offer(ActionConfigSet set, int chars) {
+			if ((chars > matchedChars) ||
+					((chars == matchedChars) && (set.actionPath.compareTo(actionConfigSet.actionPath) < 0))) {
+				actionConfigSet = set;
+				matchedChars = chars;
+			}
+		}
+	}
+
+	// ---------------------------------------------------------------- add
+
+	/**
+	 * Adds action config set with the path macros. Macros of
+	 * each segment are created using the path macros manager.
+	 */
+	public void add(ActionConfigSet actionConfigSet, ActionPathMacroManager actionPathMacroManager) {
+		String[] segments = splitActionPath(actionConfigSet.actionPath);
+		if (segments == null) {
+			unsplit.add(actionConfigSet);
+			return;
+		}
+
+		Node node = root;
+
+		for (String segment : segments) {
+			PathMacros segmentMacros = actionPathMacroManager.buildActionPathMacros(segment);
+
+			Node child;
+			if (segmentMacros == null) {
+				if (node.children == null) {
+					node.children = new HashMap<String, Node>();
+				}
+				child = node.children.get(segment);
+				if (child == null) {
+					child = new Node(segment, null);
+					node.children.put(segment, child);
+				}
+			} else {
+				child = null;
+				if (node.macroChildren != null) {
+					for (Node macroChild : node.macroChildren) {
+						if (macroChild.segment.equals(segment)) {
+							child = macroChild;
+							break;
+						}
+					}
+				}
+				if (child == null) {
+					child = new Node(segment, segmentMacros);
+					node.macroChildren = append(node.macroChildren, child);
+				}
+			}
+			node = child;
+		}
+
+		node.actionConfigSet = actionConfigSet;
+	}
+
+	/**
+	 * Splits action path on '/' characters that are not inside of
+	 * the macro. Returns <code>null</code> if some macro contains '/'.
+	 */
+	protected String[] splitActionPath(String actionPath) {
+		List<String> segments = new ArrayList<String>();
+
+		int segmentStart = 0;
+		boolean inMacro = false;
+
+		for (int i = 0; i < actionPath.length(); i++) {
+			char c = actionPath.charAt(i);
+
+			if (inMacro) {
+				if (c == '}') {
+					inMacro = false;
+				} else if (c == '/') {
+					return null;
+				}
+				continue;
+			}
+			if ((c == '$') && (i + 1 < actionPath.length()) && (actionPath.charAt(i + 1) == '{')) {
+				inMacro = true;
+				i++;
+			} else if (c == '/') {
+				segments.add(actionPath.substring(segmentStart, i));
+				segmentStart = i + 1;
+			}
+		}
+		segments.add(actionPath.substring(segmentStart));
+
+		return segments.toArray(new String[segments.size()]);
+	}
+
+	private static Node[] append(Node[] nodes, Node node) {
+		if (nodes == null) {
+			return new Node[] {node};
+		}
+		Node[] newNodes = new Node[nodes.length + 1];
+		System.arraycopy(nodes, 0, newNodes, 0, nodes.length);
+		newNodes[nodes.length] = node;
+		return newNodes;
+	}
+
+	// ---------------------------------------------------------------- lookup
+
+	/**
+	 * Returns the best matching action config set for the action path or
+	 * <code>null</code> if action path is not matched.
+	 */
+	public ActionConfigSet lookup(String actionPath) {
+		Match match = new Match();
+
+		lookup(root, actionPath, 0, 0, match);
+
+		if (unsplit.isEmpty() == false) {
+			int actionPathDeep = StringUtil.count(actionPath, '/');
+
+			for (ActionConfigSet set : unsplit) {
+				if (set.deep != actionPathDeep) {
+					continue;
+				}
+				int matchedChars = set.actionPathMacros.match(actionPath);
+				if (matchedChars != -1) {
+					match.offer(set, matchedChars);
+				}
+			}
+		}
+
+		return match.actionConfigSet;
+	}
+
+	/**
+	 * Matches the segment that starts at given index with the
+	 * children of the node.
+	 */
+	protected void lookup(Node node, String actionPath, int segmentStart, int matchedChars, Match match) {
+		int segmentEnd = actionPath.indexOf('/', segmentStart);
+		boolean last = segmentEnd == -1;
+		if (last) {
+			segmentEnd = actionPath.length();
+		} else {
+			matchedChars++;		// the slash
+		}
+
+		String segment = actionPath.substring(segmentStart, segmentEnd);
+
+		if (node.children != null) {
+			Node child = node.children.get(segment);
+			if (child != null) {
+				next(child, actionPath, segmentEnd, last, matchedChars + segment.length(), match);
+			}
+		}
+
+		if (node.macroChildren != null) {
+			for (Node child : node.macroChildren) {
+				int segmentMatchedChars = child.segmentMacros.match(segment);
+				if (segmentMatchedChars != -1) {
+					next(child, actionPath, segmentEnd, last, matchedChars + segmentMatchedChars, match);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Continues with the next segment or offers the action config set
+	 * when the action path is consumed.
+	 */
+	protected void next(Node node, String actionPath, int segmentEnd, boolean last, int matchedChars, Match match) {
+		if (last) {
+			if (node.actionConfigSet != null) {
+				match.offer(node.actionConfigSet, matchedChars);
+			}
+			return;
+		}
+		lookup(node, actionPath, segmentEnd + 1, matchedChars, match);
+	}
+
+}
\ No newline at end of file
@@ -9,7 +9,6 @@ import jodd.madvoc.MadvocException;
 import jodd.madvoc.macro.PathMacros;
 import jodd.petite.meta.PetiteInject;
 import jodd.util.ClassLoaderUtil;
-import jodd.util.StringUtil;
 import jodd.util.collection.SortedArrayList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,17 +33,22 @@ public class ActionsManager {
 	@PetiteInject
 	protected ActionPathMacroManager actionPathMacroManager;
 
+	@PetiteInject
+	protected ActionInvokerGenerator actionInvokerGenerator;
+
 	@PetiteInject
 	protected MadvocConfig madvocConfig;
 
 	protected int actionsCount;
 	protected final HashMap<String, ActionConfigSet> map;		// map of all action paths w/o macros
 	protected final SortedArrayList<ActionConfigSet> list;		// list of all action paths with macros
+	protected final ActionPathRouter router;					// router of action paths with macros
 	protected Map<String, String> pathAliases;					// path aliases
 
 	public ActionsManager() {
 		this.map = new HashMap<String, ActionConfigSet>();
 		this.list = new SortedArrayList<ActionConfigSet>(new ActionConfigSetComparator());
+		this.router = new ActionPathRouter();
 		this.pathAliases = new HashMap<String, String>();
 	}
 
@@ -165,13 +169,14 @@ public class ActionsManager {
 			// new action patch contain macros
 			int ndx = -1;
 			for (int i = 0; i < list.size(); i++) {
-				if (list.get(i).actionPath.equals(actionPath)) {
+				if (list.get(i).actionPath.equals(cfg.actionPath)) {
 					ndx = i;
 					break;
 				}
 			}
 			if (ndx < 0) {
 				list.add(set);
+				router.add(set, actionPathMacroManager);
 			} else {
 				set = list.get(ndx);
 			}
@@ -195,6 +200,8 @@ public class ActionsManager {
 		if (isDuplicate == false) {
 			actionsCount++;
 		}
+
+		cfg.actionInvoker = actionInvokerGenerator.createActionInvoker(cfg);
 		return cfg;
 	}
 
@@ -212,8 +219,8 @@ public class ActionsManager {
 	/**
 	 * Returns action configurations for provided action path.
 	 * First it lookups for exact <code>actionPath</code>.
-	 * If action path is not registered, it is split into chunks
-	 * and match against macros.
+	 * If action path is not registered, it is matched against
+	 * action paths with macros by the {@link ActionPathRouter router}.
 	 * Returns <code>null</code> if action path is not registered.
 	 */
 	public ActionConfig lookup(String actionPath, String method) {
@@ -228,47 +235,14 @@ public class ActionsManager {
 			}
 		}
 
-		// 2nd try: the list
-
-		int actionPathDeep = StringUtil.count(actionPath, '/');
-
-		int len = list.size();
-
-		int lastMatched = -1;
-		int maxMatchedChars = -1;
-
-		for (int i = 0; i < len; i++) {
-			actionConfigSet = list.get(i);
-
-			int deep = actionConfigSet.deep;
-			if (deep < actionPathDeep) {
-				continue;
-			}
-			if (deep > actionPathDeep) {
-				break;
-			}
-
-			// same deep level, try the fully match
-
-			int matchedChars = actionConfigSet.actionPathMacros.match(actionPath);
-
-			if (matchedChars == -1) {
-				continue;
-			}
+		// 2nd try: the router
 
-			if (matchedChars > maxMatchedChars) {
-				maxMatchedChars = matchedChars;
-				lastMatched = i;
-			}
-		}
-
-		if (lastMatched < 0) {
+		actionConfigSet = router.lookup(actionPath);
+		if (actionConfigSet == null) {
 			return null;
 		}
 
-		ActionConfigSet set = list.get(lastMatched);
-
-		return set.lookup(method);
+		return actionConfigSet.lookup(method);
 	}
 
 	// ---------------------------------------------------------------- aliases
@@ -0,0 +1,238 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.madvoc.component;
+
+import jodd.asm4.ClassWriter;
+import jodd.asm4.Label;
+import jodd.asm4.MethodVisitor;
+import jodd.asm4.Type;
+import jodd.madvoc.ActionRequest;
+import jodd.madvoc.InterceptorChain;
+import jodd.madvoc.MadvocException;
+import jodd.madvoc.MadvocAsmUtil.GeneratedClassLoaders;
+import jodd.madvoc.interceptor.ActionInterceptor;
+import jodd.petite.meta.PetiteInject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static jodd.asm4.Opcodes.*;
+import static jodd.madvoc.MadvocAsmUtil.*;
+
+/**
+ * Generates {@link InterceptorChain interceptor chains}. Chain holds
+ * interceptors of the stack in fields of their own types and, from a
+ * <code>tableswitch</code>, checks if interceptor is enabled and calls its
+ * <code>intercept()</code> method directly. Therefore every public interceptor
+ * is called from its own, monomorphic call site that JIT can inline, instead
+ * of the shared call site in {@link ActionInterceptor#invoke(ActionRequest)}.
+ * Disabled interceptor passes control to the next one, by invoking the
+ * action request. Chains are generated once
+ * per distinct interceptor stack. When some interceptor class is not
+ * visible from the others, <code>null</code> is returned and interceptors
+ * are invoked from the array.
+ */
+public class InterceptorChainGenerator {
+
+	private static final Logger log = LoggerFactory.getLogger(InterceptorChainGenerator.class);
+
+	protected static final String CHAIN_SUFFIX = "$$MadvocChain";
+
+	private static final String CHAIN_NAME = Type.getInternalName(InterceptorChain.class);
+	private static final String INTERCEPTOR_NAME = Type.getInternalName(ActionInterceptor.class);
+	private static final String ACTION_REQUEST_NAME = Type.getInternalName(ActionRequest.class);
+	private static final String INTERCEPT_DESC = "(L" + ACTION_REQUEST_NAME + ";)Ljava/lang/Object;";
+	private static final String CTOR_DESC = "([L" + INTERCEPTOR_NAME + ";)V";
+	private static final String INVOKE_DESC = "(L" + ACTION_REQUEST_NAME + ";I)Ljava/lang/Object;";
+
+	@PetiteInject
+	protected MadvocConfig madvocConfig;
+
+	protected final Map<List<ActionInterceptor>, InterceptorChain> chains = new HashMap<List<ActionInterceptor>, InterceptorChain>();
+	protected final GeneratedClassLoaders classLoaders = new GeneratedClassLoaders();
+	protected int chainsCount;
+
+	/**
+	 * Returns interceptor chain for resolved interceptors or <code>null</code>
+	 * if chain can not be generated.
+	 */
+	public synchronized InterceptorChain createInterceptorChain(ActionInterceptor[] interceptors) {
+		if (madvocConfig.isGenerateInterceptorChains() == false) {
+			return null;
+		}
+		if (interceptors == null || interceptors.length == 0) {
+			return null;
+		}
+
+		List<ActionInterceptor> key = Arrays.asList(interceptors.clone());
+		InterceptorChain chain = chains.get(key);
+		if (chain != null) {
+			return chain;
+		}
+
+		ClassLoader parent = resolveClassLoader(interceptors);
+		if (parent == null) {
+			return null;
+		}
+
+		String chainClassName = interceptors[0].getClass().getName() + CHAIN_SUFFIX + (chainsCount++);
+		byte[] bytecode = generate(chainClassName, interceptors);
+
+		try {
+			Class<?> chainClass = classLoaders.get(parent).define(chainClassName, bytecode);
+			chain = (InterceptorChain) chainClass.getConstructor(ActionInterceptor[].class).newInstance(new Object[] {interceptors.clone()});
+		} catch (Exception ex) {
+			throw new MadvocException("Unable to create interceptor chain: " + key, ex);
+		} catch (LinkageError lerr) {
+			if (log.isDebugEnabled()) {
+				log.debug("Interceptor chain not available for: " + key, lerr);
+			}
+			return null;
+		}
+
+		if (log.isDebugEnabled()) {
+			log.debug("Generated interceptor chain: " + chainClassName);
+		}
+		chains.put(key, chain);
+		return chain;
+	}
+
+	/**
+	 * Returns class loader that sees all interceptor classes,
+	 * or <code>null</code> if there is no such class loader.
+	 */
+	protected ClassLoader resolveClassLoader(ActionInterceptor[] interceptors) {
+		for (ActionInterceptor candidate : interceptors) {
+			ClassLoader classLoader = candidate.getClass().getClassLoader();
+			if (classLoader == null) {
+				continue;
+			}
+			if (isVisible(classLoader, InterceptorChain.class) == false) {
+				continue;
+			}
+			boolean visible = true;
+			for (ActionInterceptor interceptor : interceptors) {
+				if (isVisible(classLoader, interceptor.getClass()) == false) {
+					visible = false;
+					break;
+				}
+			}
+			if (visible) {
+				return classLoader;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns <code>true</code> if class loader resolves the same type.
+	 */
+	protected boolean isVisible(ClassLoader classLoader, Class type) {
+		try {
+			return Class.forName(type.getName(), false, classLoader) == type;
+		} catch (ClassNotFoundException ignore) {
+			return false;
+		}
+	}
+
+	// ---------------------------------------------------------------- generate
+
+	/**
+	 * Returns internal name of the type used for the interceptor field.
+	 * Non-public interceptors are referenced by the base type.
+	 */
+	protected String fieldTypeName(ActionInterceptor interceptor) {
+		Class type = interceptor.getClass();
+		if (isPublic(type) == false) {
+			return INTERCEPTOR_NAME;
+		}
+		return Type.getInternalName(type);
+	}
+
+	/**
+	 * Generates chain bytecode.
+	 */
+	protected byte[] generate(String chainClassName, ActionInterceptor[] interceptors) {
+		String chainName = chainClassName.replace('.', '/');
+		int count = interceptors.length;
+
+		String[] typeNames = new String[count];
+		for (int i = 0; i < count; i++) {
+			typeNames[i] = fieldTypeName(interceptors[i]);
+		}
+
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(V1_5, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, chainName, null, "java/lang/Object", new String[] {CHAIN_NAME});
+
+		for (int i = 0; i < count; i++) {
+			cw.visitField(ACC_PRIVATE | ACC_FINAL, "i" + i, 'L' + typeNames[i] + ';', null, null).visitEnd();
+		}
+
+		// constructor
+
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", CTOR_DESC, null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+		for (int i = 0; i < count; i++) {
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitVarInsn(ALOAD, 1);
+			pushInt(mv, i);
+			mv.visitInsn(AALOAD);
+			mv.visitTypeInsn(CHECKCAST, typeNames[i]);
+			mv.visitFieldInsn(PUTFIELD, chainName, "i" + i, 'L' + typeNames[i] + ';');
+		}
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		// invoke(ActionRequest, int)
+
+		mv = cw.visitMethod(ACC_PUBLIC, "invoke", INVOKE_DESC, null, new String[] {"java/lang/Exception"});
+		mv.visitCode();
+
+		Label defaultLabel = new Label();
+		Label disabledLabel = new Label();
+		Label[] labels = new Label[count];
+		for (int i = 0; i < count; i++) {
+			labels[i] = new Label();
+		}
+		mv.visitVarInsn(ILOAD, 2);
+		mv.visitTableSwitchInsn(0, count - 1, defaultLabel, labels);
+
+		for (int i = 0; i < count; i++) {
+			mv.visitLabel(labels[i]);
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitFieldInsn(GETFIELD, chainName, "i" + i, 'L' + typeNames[i] + ';');
+			mv.visitMethodInsn(INVOKEVIRTUAL, typeNames[i], "isEnabled", "()Z");
+			mv.visitJumpInsn(IFEQ, disabledLabel);
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitFieldInsn(GETFIELD, chainName, "i" + i, 'L' + typeNames[i] + ';');
+			mv.visitVarInsn(ALOAD, 1);
+			mv.visitMethodInsn(INVOKEVIRTUAL, typeNames[i], "intercept", INTERCEPT_DESC);
+			mv.visitInsn(ARETURN);
+		}
+
+		// disabled interceptor, continue with the next one
+		mv.visitLabel(disabledLabel);
+		mv.visitVarInsn(ALOAD, 1);
+		mv.visitMethodInsn(INVOKEVIRTUAL, ACTION_REQUEST_NAME, "invoke", "()Ljava/lang/Object;");
+		mv.visitInsn(ARETURN);
+
+		mv.visitLabel(defaultLabel);
+		mv.visitTypeInsn(NEW, "java/lang/IndexOutOfBoundsException");
+		mv.visitInsn(DUP);
+		mv.visitMethodInsn(INVOKESPECIAL, "java/lang/IndexOutOfBoundsException", "<init>", "()V");
+		mv.visitInsn(ATHROW);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+}
@@ -46,6 +46,12 @@ public class MadvocConfig {
 		strictExtensionStripForResultPath = false;
 		attributeMoveId = "_m_move_id";
 		pathMacroClass = WildcardPathMacros.class;
+		generateActionInvokers = true;
+		generateInterceptorChains = true;
+		eagerActionsInitialization = true;
+		resultTargetsCacheEnabled = true;
+		actionMonitoringEnabled = false;
+		slowActionThreshold = 1000;
 	}
 
 	// ---------------------------------------------------------------- action method annotations
@@ -383,6 +389,100 @@ public class MadvocConfig {
 		this.pathMacroClass = pathMacroClass;
 	}
 
+	// ---------------------------------------------------------------- action invokers
+
+	protected boolean generateActionInvokers;
+
+	public boolean isGenerateActionInvokers() {
+		return generateActionInvokers;
+	}
+
+	/**
+	 * Specifies if {@link jodd.madvoc.ActionInvoker action invokers} should
+	 * be generated during the registration, so actions are created and
+	 * invoked without the reflection.
+	 */
+	public void setGenerateActionInvokers(boolean generateActionInvokers) {
+		this.generateActionInvokers = generateActionInvokers;
+	}
+
+	// ---------------------------------------------------------------- interceptor chains
+
+	protected boolean generateInterceptorChains;
+	protected boolean eagerActionsInitialization;
+
+	public boolean isGenerateInterceptorChains() {
+		return generateInterceptorChains;
+	}
+
+	/**
+	 * Specifies if {@link jodd.madvoc.InterceptorChain interceptor chains}
+	 * should be generated for interceptor stacks of actions.
+	 */
+	public void setGenerateInterceptorChains(boolean generateInterceptorChains) {
+		this.generateInterceptorChains = generateInterceptorChains;
+	}
+
+	public boolean isEagerActionsInitialization() {
+		return eagerActionsInitialization;
+	}
+
+	/**
+	 * Specifies if all registered actions should be initialized on Madvoc
+	 * startup, instead on their first request. Interceptors are then
+	 * resolved, initialized and chained before any request is served.
+	 */
+	public void setEagerActionsInitialization(boolean eagerActionsInitialization) {
+		this.eagerActionsInitialization = eagerActionsInitialization;
+	}
+
+	// ---------------------------------------------------------------- result targets
+
+	protected boolean resultTargetsCacheEnabled;
+
+	public boolean isResultTargetsCacheEnabled() {
+		return resultTargetsCacheEnabled;
+	}
+
+	/**
+	 * Specifies if resolved result targets (e.g. JSP pages of the
+	 * {@link jodd.madvoc.result.ServletDispatcherResult dispatcher result})
+	 * are cached by their result paths. Should be disabled during the
+	 * development, when pages are added without the application restart.
+	 */
+	public void setResultTargetsCacheEnabled(boolean resultTargetsCacheEnabled) {
+		this.resultTargetsCacheEnabled = resultTargetsCacheEnabled;
+	}
+
+	// ---------------------------------------------------------------- monitoring
+
+	// monitoring may be changed at runtime, e.g. via JMX
+	protected volatile boolean actionMonitoringEnabled;
+	protected volatile long slowActionThreshold;
+
+	public boolean isActionMonitoringEnabled() {
+		return actionMonitoringEnabled;
+	}
+
+	/**
+	 * Specifies if action requests are measured and reported to
+	 * the {@link jodd.madvoc.monitor.ActionMonitor action monitor}.
+	 */
+	public void setActionMonitoringEnabled(boolean actionMonitoringEnabled) {
+		this.actionMonitoringEnabled = actionMonitoringEnabled;
+	}
+
+	public long getSlowActionThreshold() {
+		return slowActionThreshold;
+	}
+
+	/**
+	 * Specifies time in milliseconds after which monitored action
+	 * request is considered as slow. Zero disables slow actions detection.
+	 */
+	public void setSlowActionThreshold(long slowActionThreshold) {
+		this.slowActionThreshold = slowActionThreshold;
+	}
 
 	// ---------------------------------------------------------------- toString
 
@@ -393,6 +493,7 @@ public class MadvocConfig {
 	public String toString() {
 		return "MadvocConfig{" +
 				"\n\tactionAnnotations=" + (actionAnnotations == null ? null : toString(actionAnnotations)) +
+				",\n\tactionMonitoringEnabled=" + actionMonitoringEnabled +
 				",\n\tactionPathMappingEnabled=" + actionPathMappingEnabled +
 				",\n\tapplyCharacterEncoding=" + applyCharacterEncoding +
 				",\n\tattributeMoveId='" + attributeMoveId + '\'' +
@@ -402,13 +503,18 @@ public class MadvocConfig {
 				",\n\tdefaultInterceptors=" + (defaultInterceptors == null ? null : toString(defaultInterceptors)) +
 				",\n\tdefaultResultType='" + defaultResultType + '\'' +
 				",\n\tdetectDuplicatePathsEnabled=" + detectDuplicatePathsEnabled +
+				",\n\teagerActionsInitialization=" + eagerActionsInitialization +
 				",\n\tencoding='" + encoding + '\'' +
 				",\n\tfileUploadFactory=" + fileUploadFactory +
+				",\n\tgenerateActionInvokers=" + generateActionInvokers +
+				",\n\tgenerateInterceptorChains=" + generateInterceptorChains +
 				",\n\tpathMacroClass=" + pathMacroClass.getName() +
 				",\n\tpreventCaching=" + preventCaching +
 				",\n\trequestScopeInjectorConfig=" + requestScopeInjectorConfig +
+				",\n\tresultTargetsCacheEnabled=" + resultTargetsCacheEnabled +
 				",\n\trootPackages=" + rootPackages +
 				",\n\tmadvocRootPackageClassName='" + madvocRootPackageClassName + '\'' +
+				",\n\tslowActionThreshold=" + slowActionThreshold +
 				",\n\tstrictExtensionStripForResultPath=" + strictExtensionStripForResultPath +
 				",\n\tsupplementAction=" + supplementAction +
 				"\n}";
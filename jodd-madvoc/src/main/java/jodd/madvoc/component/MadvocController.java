@@ -4,14 +4,21 @@ package jodd.madvoc.component;
 
 import jodd.madvoc.ActionConfig;
 import jodd.madvoc.ActionRequest;
+import jodd.madvoc.InterceptorChain;
 import jodd.madvoc.MadvocException;
 import jodd.madvoc.interceptor.ActionInterceptor;
+import jodd.madvoc.monitor.ActionMonitor;
 import jodd.madvoc.result.ActionResult;
+import jodd.madvoc.result.DeferredResult;
 import jodd.petite.meta.PetiteInject;
 import jodd.servlet.ServletUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.ServletContext;
@@ -25,6 +32,11 @@ public class MadvocController {
 
 	private static final Logger log = LoggerFactory.getLogger(MadvocController.class);
 
+	/**
+	 * Request attribute that holds asynchronous action request until it is resumed.
+	 */
+	public static final String ASYNC_ACTION_REQUEST_ATTR = MadvocController.class.getName() + ".async";
+
 	@PetiteInject
 	protected MadvocConfig madvocConfig;
 
@@ -46,13 +58,30 @@ public class MadvocController {
 	@PetiteInject
 	protected ResultMapper resultMapper;
 
+	@PetiteInject
+	protected ActionMonitor actionMonitor;
+
+	@PetiteInject
+	protected ActionsManager actionsManager;
+
+	@PetiteInject
+	protected InterceptorChainGenerator interceptorChainGenerator;
+
 	protected ServletContext applicationContext;
 
+	/**
+	 * Generated action factories are used only when action creation
+	 * is not customized by overriding {@link #createAction(Class)}.
+	 * Resolved on {@link #init(ServletContext) initialization}.
+	 */
+	protected boolean generatedActionFactory;
+
 	/**
 	 * Initializes controller by providing application context.
 	 */
 	public void init(ServletContext servletContext) {
 		this.applicationContext = servletContext;
+		this.generatedActionFactory = isCreateActionOverridden() == false;
 	}
 
 	/**
@@ -70,6 +99,7 @@ public class MadvocController {
 	 * Returns <code>null</code> if action path is consumed and has been invoked by this controller; otherwise
 	 * the action path string is returned (it might be different than original one, provided in arguments).
 	 * On first invoke, initializes the action configuration before further proceeding.
+	 * When invoked on asynchronous dispatch, resumes the deferred action request.
 	 *
 	 * @see jodd.madvoc.component.ActionMethodParser#buildActionPath(String, String, String, String, String)
 	 */
@@ -78,6 +108,22 @@ public class MadvocController {
 
 		boolean characterEncodingSet = false;
 
+		// resume asynchronous action request
+		if (servletRequest.getDispatcherType() == DispatcherType.ASYNC) {
+			actionRequest = (ActionRequest) servletRequest.getAttribute(ASYNC_ACTION_REQUEST_ATTR);
+			if (actionRequest == null) {
+				return actionPath;
+			}
+			servletRequest.removeAttribute(ASYNC_ACTION_REQUEST_ATTR);
+
+			resume(actionRequest);
+			if (actionRequest.getDeferredResult() != null) {
+				return null;
+			}
+			actionPath = actionRequest.getNextActionPath();
+			characterEncodingSet = true;
+		}
+
 		while (actionPath != null) {
 			if (log.isDebugEnabled()) {
 				log.debug("Action path: " + actionPath);
@@ -110,7 +156,7 @@ public class MadvocController {
 			}
 
 			// create action object
-			Object action = createAction(actionConfig.actionClass);
+			Object action = createAction(actionConfig);
 
 			// create action request
 			ActionRequest previousRequest = actionRequest;
@@ -119,6 +165,9 @@ public class MadvocController {
 
 			// invoke and render
 			invokeAndRender(actionRequest);
+			if (actionRequest.getDeferredResult() != null) {
+				return null;
+			}
 
 			actionPath = actionRequest.getNextActionPath();
 		}
@@ -127,13 +176,95 @@ public class MadvocController {
 
 	/**
 	 * Invokes action request (interceptors and action method) and renders result.
+	 * When monitoring is enabled, times are measured and reported to the
+	 * {@link ActionMonitor action monitor}. Rendering of deferred results
+	 * is not measured.
 	 */
 	protected void invokeAndRender(ActionRequest actionRequest) throws Exception {
-		Object resultValueObject = actionRequest.invoke();
-		render(actionRequest, resultValueObject);
+		if (actionMonitor.isEnabled() == false) {
+			Object resultValueObject = actionRequest.invoke();
+			render(actionRequest, resultValueObject);
+			return;
+		}
+
+		actionRequest.setMonitored(true);
+
+		long start = System.nanoTime();
+		long invoked = 0;
+		boolean failed = true;
+		try {
+			Object resultValueObject = actionRequest.invoke();
+			invoked = System.nanoTime();
+			render(actionRequest, resultValueObject);
+			failed = false;
+		} finally {
+			long end = System.nanoTime();
+			if (invoked == 0) {
+				invoked = end;
+			}
+			actionMonitor.actionRequestDone(actionRequest, invoked - start, end - invoked, failed);
+		}
 	}
 
 
+	// ---------------------------------------------------------------- async
+
+	/**
+	 * Starts asynchronous processing of the action request that returned
+	 * the {@link DeferredResult deferred result}. Request is released
+	 * and dispatched back to Madvoc once the deferred result completes.
+	 */
+	protected void startAsync(ActionRequest actionRequest, final DeferredResult deferredResult) {
+		HttpServletRequest servletRequest = actionRequest.getHttpServletRequest();
+
+		if (servletRequest.isAsyncSupported() == false) {
+			throw new MadvocException("Asynchronous processing not supported for action: " + actionRequest.getActionPath());
+		}
+
+		actionRequest.setDeferredResult(deferredResult);
+		servletRequest.setAttribute(ASYNC_ACTION_REQUEST_ATTR, actionRequest);
+
+		final AsyncContext asyncContext = servletRequest.startAsync();
+		if (deferredResult.getTimeout() > 0) {
+			asyncContext.setTimeout(deferredResult.getTimeout());
+		}
+
+		asyncContext.addListener(new AsyncListener() {
+			public void onComplete(AsyncEvent event) {
+			}
+			public void onTimeout(AsyncEvent event) {
+				deferredResult.timeout();
+			}
+			public void onError(AsyncEvent event) {
+				deferredResult.fail(event.getThrowable());
+			}
+			public void onStartAsync(AsyncEvent event) {
+			}
+		});
+
+		deferredResult.onComplete(new Runnable() {
+			public void run() {
+				try {
+					asyncContext.dispatch();
+				} catch (IllegalStateException isex) {
+					log.warn("Unable to resume asynchronous action", isex);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Resumes asynchronous action request, on the request thread, and
+	 * renders the value of its completed deferred result.
+	 */
+	protected void resume(ActionRequest actionRequest) throws Exception {
+		DeferredResult deferredResult = actionRequest.getDeferredResult();
+		actionRequest.setDeferredResult(null);
+
+		Object resultValueObject = deferredResult.resume(actionRequest);
+		render(actionRequest, resultValueObject);
+	}
+
 	// ---------------------------------------------------------------- render
 
 	/**
@@ -150,6 +281,11 @@ public class MadvocController {
 	 * @see ActionResult#render(jodd.madvoc.ActionRequest, Object, String, String)
 	 */
 	public void render(ActionRequest actionRequest, Object resultObject) throws Exception {
+		if (resultObject instanceof DeferredResult) {
+			startAsync(actionRequest, (DeferredResult) resultObject);
+			return;
+		}
+
 		String resultValue = resultObject != null ? resultObject.toString() : null;
 		String resultType = null;
 
@@ -219,7 +355,21 @@ public class MadvocController {
 	}
 
 	/**
-	 * Initializes action configuration on first use. Resolves all interceptors and injects context parameters.
+	 * Initializes all registered action configurations that are not
+	 * already initialized. Invoked on startup, when actions are
+	 * {@link MadvocConfig#setEagerActionsInitialization(boolean) eagerly initialized}.
+	 */
+	public void initializeActionConfigs() {
+		for (ActionConfig actionConfig : actionsManager.getAllActionConfigurations()) {
+			if (actionConfig.initialized == false) {
+				initializeActionConfig(actionConfig);
+			}
+		}
+	}
+
+	/**
+	 * Initializes action configuration on first use. Resolves all interceptors, injects context parameters
+	 * and creates the {@link InterceptorChain interceptor chain}.
 	 */
 	protected void initializeActionConfig(ActionConfig cfg) {
 		Class<? extends ActionInterceptor>[] interceptorClasses = cfg.interceptorClasses;
@@ -234,6 +384,7 @@ public class MadvocController {
 				initializeInterceptor(interceptor);
 			}
 		}
+		cfg.interceptorChain = interceptorChainGenerator.createInterceptorChain(cfg.interceptors);
 		cfg.initialized();
 	}
 
@@ -251,6 +402,42 @@ public class MadvocController {
 
 	/**
 	 * Creates new action object from {@link ActionConfig} using default constructor.
+	 * Generated action factory is used when available, unless {@link #createAction(Class)}
+	 * is overridden.
+	 */
+	protected Object createAction(ActionConfig actionConfig) {
+		if (generatedActionFactory && (actionConfig.actionInvoker != null)) {
+			Object action;
+			try {
+				action = actionConfig.actionInvoker.createAction();
+			} catch (Exception ex) {
+				throw new MadvocException("Unable to create Madvoc action.", ex);
+			}
+			if (action != null) {
+				return action;
+			}
+		}
+		return createAction(actionConfig.actionClass);
+	}
+
+	/**
+	 * Returns <code>true</code> if subclass overrides {@link #createAction(Class)}.
+	 */
+	protected boolean isCreateActionOverridden() {
+		Class<?> type = getClass();
+		while (type != MadvocController.class) {
+			try {
+				type.getDeclaredMethod("createAction", Class.class);
+				return true;
+			} catch (NoSuchMethodException ignore) {
+			}
+			type = type.getSuperclass();
+		}
+		return false;
+	}
+
+	/**
+	 * Creates action object using the reflection.
 	 */
 	protected Object createAction(Class actionClass) {
 		try {
@@ -4,6 +4,7 @@ package jodd.madvoc.component;
 
 import jodd.madvoc.injector.ServletContextScopeInjector;
 import jodd.petite.meta.PetiteInitMethod;
+import jodd.petite.meta.PetiteInject;
 import jodd.madvoc.injector.ApplicationScopeInjector;
 
 import javax.servlet.http.HttpServletRequest;
@@ -21,6 +22,9 @@ import static jodd.petite.meta.InitMethodInvocationStrategy.POST_DEFINE;
  */
 public class ServletContextInjector {
 
+	@PetiteInject
+	protected MadvocController madvocController;
+
 	protected ApplicationScopeInjector applicationScopeInjector;
 	protected ServletContextScopeInjector servletContextScopeInjector;
 
@@ -35,7 +39,7 @@ public class ServletContextInjector {
 	 */
 	public void injectContext(Object target, HttpServletRequest servletRequest, HttpServletResponse servletResponse) {
 		servletContextScopeInjector.inject(target, servletRequest, servletResponse);
-		applicationScopeInjector.inject(target, servletRequest.getSession().getServletContext());
+		applicationScopeInjector.inject(target, getServletContext(servletRequest));
 	}
 
 	/**
@@ -52,7 +56,21 @@ public class ServletContextInjector {
 	 */
 	public void outjectContext(Object target, HttpServletRequest servletRequest, HttpServletResponse servletResponse) {
 		servletContextScopeInjector.outject(target, servletResponse);
-		applicationScopeInjector.outject(target, servletRequest.getSession().getServletContext());
+		applicationScopeInjector.outject(target, getServletContext(servletRequest));
+	}
+
+	/**
+	 * Returns servlet context without creating the HTTP session. Application
+	 * context of the {@link MadvocController controller} is used; when it is
+	 * not available (i.e. Madvoc is started without the servlet context),
+	 * servlet context is reached via the session.
+	 */
+	public ServletContext getServletContext(HttpServletRequest servletRequest) {
+		ServletContext servletContext = madvocController.getApplicationContext();
+		if (servletContext == null) {
+			servletContext = servletRequest.getSession().getServletContext();
+		}
+		return servletContext;
 	}
 
-}
\ No newline at end of file
+}
@@ -32,6 +32,9 @@ import java.lang.reflect.Modifier;
  * <p>
  * Action class is scanned for the {@link MadvocAction}. All public methods with {@link Action}
  * are registered as Madvoc actions.
+ * <p>
+ * Jars may be examined {@link #setScanThreads(int) concurrently}, and may be
+ * indexed by setting the {@link #setScanIndex(jodd.io.findfile.ClassScanIndex) scan index}.
  */
 public class AutomagicMadvocConfigurator extends ClassFinder implements MadvocConfigurator {
 
@@ -86,6 +89,23 @@ public class AutomagicMadvocConfigurator extends ClassFinder implements MadvocCo
 	}
 
 
+	/**
+	 * Matches class names with action and result suffixes.
+	 */
+	@Override
+	protected boolean matchEntry(EntryData entryData) {
+		String entryName = entryData.getName();
+		return entryName.endsWith(actionClassSuffix) || entryName.endsWith(resultClassSuffix);
+	}
+
+	/**
+	 * Includes class suffixes in the scan index key.
+	 */
+	@Override
+	protected String getScanIndexKey() {
+		return super.getScanIndexKey() + ' ' + actionClassSuffix + ' ' + resultClassSuffix;
+	}
+
 	/**
 	 * Parses class name that matches madvoc-related names.
 	 */
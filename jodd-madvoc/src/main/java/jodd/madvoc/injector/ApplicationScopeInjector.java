@@ -17,21 +17,22 @@ public class ApplicationScopeInjector extends BaseScopeInjector {
 	}
 
 	public void inject(Object target, ServletContext context) {
-		ScopeData.In[] injectData = lookupInData(target.getClass());
-		if (injectData == null) {
+		InjectionPlan plan = lookupInjectionPlan(target.getClass());
+		if (plan == null) {
 			return;
 		}
 		Enumeration attributeNames = context.getAttributeNames();
 		while (attributeNames.hasMoreElements()) {
 			String attrName = (String) attributeNames.nextElement();
-			for (ScopeData.In in : injectData) {
-				String name = getMatchedPropertyName(in, attrName);
-				if (name != null) {
-					Object attrValue = context.getAttribute(attrName);
-					setTargetProperty(target, name, attrValue, in.create);
-					if (in.remove) {
-						context.removeAttribute(attrName);
-					}
+			int[] indexes = plan.match(attrName);
+			if (indexes == null) {
+				continue;
+			}
+			Object attrValue = context.getAttribute(attrName);
+			for (int index : indexes) {
+				setTargetProperty(target, plan, index, attrName, attrValue);
+				if (plan.getIn(index).remove) {
+					context.removeAttribute(attrName);
 				}
 			}
 		}
@@ -34,6 +34,17 @@ public abstract class BaseScopeInjector {
 		}
 	}
 
+	/**
+	 * Sets value of matched injection point from the {@link InjectionPlan injection plan}.
+	 * Pre-resolved property is used when available, otherwise value is set by BeanUtil.
+	 */
+	protected void setTargetProperty(Object target, InjectionPlan plan, int index, String attrName, Object attrValue) {
+		if (plan.inject(target, index, attrName, attrValue)) {
+			return;
+		}
+		setTargetProperty(target, plan.resolvePropertyName(index, attrName), attrValue, plan.getIn(index).create);
+	}
+
 	/**
 	 * Reads target property.
 	 */
@@ -88,6 +99,13 @@ public abstract class BaseScopeInjector {
 		return scopeDataResolver.lookupInData(actionClass, scopeType);
 	}
 
+	/**
+	 * Delegates to {@link jodd.madvoc.injector.ScopeDataResolver#lookupInjectionPlan(Class, jodd.madvoc.ScopeType)}
+	 */
+	public InjectionPlan lookupInjectionPlan(Class actionClass) {
+		return scopeDataResolver.lookupInjectionPlan(actionClass, scopeType);
+	}
+
 	/**
 	 * Delegates to {@link jodd.madvoc.injector.ScopeDataResolver#lookupOutData(Class, jodd.madvoc.ScopeType)} 
 	 */
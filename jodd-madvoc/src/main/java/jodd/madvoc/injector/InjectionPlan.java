@@ -0,0 +1,285 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.madvoc.injector;
+
+import jodd.bean.BeanException;
+import jodd.typeconverter.TypeConversionException;
+import jodd.typeconverter.TypeConverter;
+import jodd.typeconverter.TypeConverterManager;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Precompiled injection plan of an action class for one scope, created
+ * by {@link ScopeDataResolver}. Injection points are indexed by their
+ * input names, so matching of an attribute or a parameter name is a
+ * map look-up, instead of the loop over all injection points.
+ * <p>
+ * Simple properties have pre-resolved {@link Property properties}
+ * with their type converters. Nested and indexed input names
+ * (e.g. <code>user.name</code>) are not pre-resolved, as well as
+ * properties that can't be set for some other reason; they are
+ * set by <code>BeanUtil</code>.
+ */
+public class InjectionPlan {
+
+	protected final ScopeData.In[] in;
+	protected final Property[] properties;
+	protected final Map<String, int[]> names;
+	protected final int maxNameLength;
+
+	public InjectionPlan(ScopeData.In[] in, Property[] properties) {
+		this.in = in;
+		this.properties = properties;
+		this.names = new HashMap<String, int[]>(in.length);
+
+		int maxLength = 0;
+		for (int i = 0; i < in.length; i++) {
+			String name = in[i].name;
+			names.put(name, append(names.get(name), i));
+			if (name.length() > maxLength) {
+				maxLength = name.length();
+			}
+		}
+		this.maxNameLength = maxLength;
+	}
+
+	/**
+	 * Returns the number of injection points.
+	 */
+	public int getInCount() {
+		return in.length;
+	}
+
+	/**
+	 * Returns injection point with given index.
+	 */
+	public ScopeData.In getIn(int index) {
+		return in[index];
+	}
+
+	/**
+	 * Returns pre-resolved property of injection point
+	 * or <code>null</code> if property is not resolved.
+	 */
+	public Property getProperty(int index) {
+		return properties[index];
+	}
+
+	// ---------------------------------------------------------------- match
+
+	/**
+	 * Returns indexes of injection points matched by the attribute name
+	 * or <code>null</code> if name is not matched. Attribute name matches
+	 * the input name if they are equal or if attribute name continues
+	 * with '.' or '[' after the input name.
+	 *
+	 * @see BaseScopeInjector#getMatchedPropertyName(ScopeData.In, String)
+	 */
+	public int[] match(String attrName) {
+		int[] indexes = names.get(attrName);
+
+		int len = attrName.length();
+		if (len > maxNameLength) {
+			len = maxNameLength + 1;
+		}
+		for (int i = 1; i < len; i++) {
+			char c = attrName.charAt(i);
+			if ((c == '.') || (c == '[')) {
+				int[] prefixIndexes = names.get(attrName.substring(0, i));
+				if (prefixIndexes != null) {
+					indexes = indexes == null ? prefixIndexes : append(indexes, prefixIndexes);
+				}
+			}
+		}
+		return indexes;
+	}
+
+	/**
+	 * Returns real property name of matched injection point.
+	 */
+	public String resolvePropertyName(int index, String attrName) {
+		ScopeData.In ii = in[index];
+		if (ii.target == null) {
+			return attrName;
+		}
+		return ii.target + attrName.substring(ii.name.length());
+	}
+
+	/**
+	 * Silently sets the value of matched injection point.
+	 * @see #inject(Object, int, String, Object, boolean)
+	 */
+	public boolean inject(Object target, int index, String attrName, Object value) {
+		return inject(target, index, attrName, value, true);
+	}
+
+	/**
+	 * Sets the value of matched injection point using pre-resolved property.
+	 * Returns <code>false</code> if property is not resolved or if attribute
+	 * name is nested, when value has to be set by <code>BeanUtil</code>.
+	 * When not <code>silent</code>, also returns <code>false</code> if value
+	 * can not be set to the property, so <code>BeanUtil</code> reports the failure.
+	 */
+	public boolean inject(Object target, int index, String attrName, Object value, boolean silent) {
+		Property property = properties[index];
+		if (property == null) {
+			return false;
+		}
+		if (attrName.length() != in[index].name.length()) {
+			return false;
+		}
+		return property.inject(target, value, silent);
+	}
+
+	private static int[] append(int[] indexes, int index) {
+		if (indexes == null) {
+			return new int[] {index};
+		}
+		return append(indexes, new int[] {index});
+	}
+
+	private static int[] append(int[] indexes, int[] more) {
+		int[] result = new int[indexes.length + more.length];
+		System.arraycopy(indexes, 0, result, 0, indexes.length);
+		System.arraycopy(more, 0, result, indexes.length, more.length);
+		return result;
+	}
+
+	// ---------------------------------------------------------------- properties
+
+	/**
+	 * Pre-resolved property with its type converter.
+	 */
+	public abstract static class Property {
+
+		protected final Class<?> type;
+		protected final TypeConverter typeConverter;
+
+		protected Property(Class<?> type) {
+			this.type = type;
+			this.typeConverter = TypeConverterManager.lookup(type);
+		}
+
+		/**
+		 * Returns property type.
+		 */
+		public Class<?> getType() {
+			return type;
+		}
+
+		/**
+		 * Converts the value and sets it to the property. When <code>silent</code>,
+		 * like silent <code>BeanUtil</code> methods, ignores values that can not be
+		 * converted, <code>null</code> values of primitive properties and
+		 * exceptions thrown while setting the property, and returns <code>true</code>
+		 * as the value is handled in any case. Otherwise, returns <code>false</code>
+		 * if value can not be converted and throws <code>BeanException</code>
+		 * if property can not be set.
+		 */
+		public boolean inject(Object target, Object value, boolean silent) {
+			try {
+				if (typeConverter != null) {
+					value = typeConverter.convert(value);
+				} else {
+					value = TypeConverterManager.convertType(value, type);
+				}
+			} catch (TypeConversionException ignore) {
+				return silent;
+			} catch (ClassCastException ignore) {
+				return silent;		// type converter manager failure
+			}
+
+			if ((value == null) && type.isPrimitive()) {
+				return silent;
+			}
+
+			try {
+				set(target, value);
+			} catch (InvocationTargetException itex) {
+				if (silent == false) {
+					throw new BeanException("Unable to set " + type.getName() + " property of: " + target.getClass().getName(), itex.getCause());
+				}
+			} catch (Exception ex) {
+				if (silent == false) {
+					throw new BeanException("Unable to set " + type.getName() + " property of: " + target.getClass().getName(), ex);
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Sets converted value to the property.
+		 */
+		protected abstract void set(Object target, Object value) throws Exception;
+	}
+
+	/**
+	 * Property set by the setter method.
+	 */
+	public static class MethodProperty extends Property {
+
+		protected final Method method;
+
+		public MethodProperty(Method method, Class type) {
+			super(type);
+			this.method = method;
+		}
+
+		public Method getMethod() {
+			return method;
+		}
+
+		@Override
+		protected void set(Object target, Object value) throws Exception {
+			method.invoke(target, value);
+		}
+	}
+
+	/**
+	 * Property set directly to the field.
+	 */
+	public static class FieldProperty extends Property {
+
+		protected final Field field;
+
+		public FieldProperty(Field field, Class type) {
+			super(type);
+			this.field = field;
+		}
+
+		public Field getField() {
+			return field;
+		}
+
+		@Override
+		protected void set(Object target, Object value) throws Exception {
+			field.set(target, value);
+		}
+	}
+
+	/**
+	 * Property set by the generated {@link PropertyInjector}.
+	 */
+	public static class GeneratedProperty extends Property {
+
+		protected final PropertyInjector propertyInjector;
+		protected final int index;
+
+		public GeneratedProperty(Class type, PropertyInjector propertyInjector, int index) {
+			super(type);
+			this.propertyInjector = propertyInjector;
+			this.index = index;
+		}
+
+		@Override
+		protected void set(Object target, Object value) {
+			propertyInjector.inject(target, index, value);
+		}
+	}
+
+}
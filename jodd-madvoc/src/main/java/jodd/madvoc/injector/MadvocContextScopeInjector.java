@@ -21,15 +21,18 @@ public class MadvocContextScopeInjector extends BaseScopeInjector {
 	}
 
 	public void inject(Object target) {
-		ScopeData.In[] injectData = lookupInData(target.getClass());
-		if (injectData == null) {
+		InjectionPlan plan = lookupInjectionPlan(target.getClass());
+		if (plan == null) {
 			return;
 		}
-		for (ScopeData.In in : injectData) {
+		for (int i = 0; i < plan.getInCount(); i++) {
+			ScopeData.In in = plan.getIn(i);
 			Object value = madpc.getBean(in.name);
 			if (value != null) {
-				String property = in.target != null ? in.target : in.name;
-				BeanUtil.setDeclaredProperty(target, property, value);
+				if (plan.inject(target, i, in.name, value, false) == false) {
+					String property = in.target != null ? in.target : in.name;
+					BeanUtil.setDeclaredProperty(target, property, value);
+				}
 			}
 		}
 	}
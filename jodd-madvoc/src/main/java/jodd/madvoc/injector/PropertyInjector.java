@@ -0,0 +1,20 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.madvoc.injector;
+
+/**
+ * Generated injector of action properties. Sets the value, already
+ * converted to the property type, directly to the property
+ * with given index, without the reflection. Value is never
+ * <code>null</code> for primitive properties.
+ *
+ * @see PropertyInjectorGenerator
+ */
+public interface PropertyInjector {
+
+	/**
+	 * Sets the value of the property with given index.
+	 */
+	void inject(Object target, int index, Object value);
+
+}
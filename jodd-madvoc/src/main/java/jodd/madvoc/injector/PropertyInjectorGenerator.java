@@ -0,0 +1,191 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.madvoc.injector;
+
+import jodd.asm4.ClassWriter;
+import jodd.asm4.Label;
+import jodd.asm4.MethodVisitor;
+import jodd.asm4.Type;
+import jodd.madvoc.MadvocAsmUtil.GeneratedClassLoaders;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import static jodd.asm4.Opcodes.*;
+import static jodd.madvoc.MadvocAsmUtil.*;
+
+/**
+ * Generates {@link PropertyInjector property injectors} for action classes.
+ * Generated injector sets each property with direct field access or direct
+ * setter call, selected by the property index. Only public non-final fields
+ * and public setters of public classes can be accessed from the generated
+ * class; for other properties reflection is used.
+ */
+public class PropertyInjectorGenerator {
+
+	private static final Logger log = LoggerFactory.getLogger(PropertyInjectorGenerator.class);
+
+	protected static final String INJECTOR_SUFFIX = "$$MadvocInjector";
+
+	private static final String INJECTOR_NAME = Type.getInternalName(PropertyInjector.class);
+	private static final String INJECT_DESC = "(Ljava/lang/Object;ILjava/lang/Object;)V";
+
+	protected final GeneratedClassLoaders classLoaders = new GeneratedClassLoaders();
+	protected int injectorsCount;
+
+	/**
+	 * Replaces accessible reflective properties with properties
+	 * set by the generated injector. Does nothing if none of
+	 * properties is accessible or if generation fails.
+	 */
+	public synchronized void generate(Class actionClass, InjectionPlan.Property[] properties) {
+		if ((actionClass.getClassLoader() == null) || (isPublic(actionClass) == false)) {
+			return;
+		}
+
+		Member[] members = new Member[properties.length];
+		int count = 0;
+		for (int i = 0; i < properties.length; i++) {
+			Member member = resolveMember(properties[i]);
+			if ((member != null) && isAccessible(member)) {
+				members[i] = member;
+				count++;
+			}
+		}
+		if (count == 0) {
+			return;
+		}
+
+		String injectorClassName = actionClass.getName() + INJECTOR_SUFFIX + (injectorsCount++);
+		byte[] bytecode = generate(injectorClassName, actionClass, members);
+
+		PropertyInjector propertyInjector;
+		try {
+			Class injectorClass = classLoaders.get(actionClass.getClassLoader()).define(injectorClassName, bytecode);
+			propertyInjector = (PropertyInjector) injectorClass.newInstance();
+		} catch (Exception ex) {
+			log.warn("Unable to create property injector for: " + actionClass.getName(), ex);
+			return;
+		} catch (LinkageError lerr) {
+			if (log.isDebugEnabled()) {
+				log.debug("Property injector not available for: " + actionClass.getName(), lerr);
+			}
+			return;
+		}
+
+		for (int i = 0; i < members.length; i++) {
+			if (members[i] != null) {
+				properties[i] = new InjectionPlan.GeneratedProperty(properties[i].getType(), propertyInjector, i);
+			}
+		}
+
+		if (log.isDebugEnabled()) {
+			log.debug("Generated property injector: " + injectorClassName);
+		}
+	}
+
+	/**
+	 * Returns field or method of reflective property.
+	 */
+	protected Member resolveMember(InjectionPlan.Property property) {
+		if (property instanceof InjectionPlan.FieldProperty) {
+			return ((InjectionPlan.FieldProperty) property).getField();
+		}
+		if (property instanceof InjectionPlan.MethodProperty) {
+			return ((InjectionPlan.MethodProperty) property).getMethod();
+		}
+		return null;
+	}
+
+	/**
+	 * Returns <code>true</code> if member can be accessed from the generated class.
+	 */
+	protected boolean isAccessible(Member member) {
+		int modifiers = member.getModifiers();
+		if ((Modifier.isPublic(modifiers) == false) || Modifier.isStatic(modifiers)) {
+			return false;
+		}
+		if ((member instanceof Field) && Modifier.isFinal(modifiers)) {
+			return false;
+		}
+		return isPublic(member.getDeclaringClass());
+	}
+
+	// ---------------------------------------------------------------- generate
+
+	/**
+	 * Generates injector bytecode. Property index selects
+	 * the member in the <code>tableswitch</code>.
+	 */
+	protected byte[] generate(String injectorClassName, Class actionClass, Member[] members) {
+		String injectorName = injectorClassName.replace('.', '/');
+		String actionName = Type.getInternalName(actionClass);
+
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(V1_5, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, injectorName, null, "java/lang/Object", new String[] {INJECTOR_NAME});
+
+		// constructor
+
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		// inject(Object, int, Object)
+
+		mv = cw.visitMethod(ACC_PUBLIC, "inject", INJECT_DESC, null, null);
+		mv.visitCode();
+
+		Label end = new Label();
+		Label[] labels = new Label[members.length];
+		for (int i = 0; i < labels.length; i++) {
+			labels[i] = members[i] != null ? new Label() : end;
+		}
+
+		mv.visitVarInsn(ILOAD, 2);
+		mv.visitTableSwitchInsn(0, members.length - 1, end, labels);
+
+		for (int i = 0; i < members.length; i++) {
+			Member member = members[i];
+			if (member == null) {
+				continue;
+			}
+			mv.visitLabel(labels[i]);
+			mv.visitVarInsn(ALOAD, 1);
+			mv.visitTypeInsn(CHECKCAST, actionName);
+			mv.visitVarInsn(ALOAD, 3);
+
+			if (member instanceof Field) {
+				Field field = (Field) member;
+				unbox(mv, field.getType());
+				mv.visitFieldInsn(PUTFIELD, Type.getInternalName(field.getDeclaringClass()), field.getName(), Type.getDescriptor(field.getType()));
+			} else {
+				Method method = (Method) member;
+				unbox(mv, method.getParameterTypes()[0]);
+				mv.visitMethodInsn(INVOKEVIRTUAL, actionName, method.getName(), Type.getMethodDescriptor(method));
+
+				Class returnType = method.getReturnType();
+				if (returnType != void.class) {
+					mv.visitInsn((returnType == long.class) || (returnType == double.class) ? POP2 : POP);
+				}
+			}
+			mv.visitInsn(RETURN);
+		}
+
+		mv.visitLabel(end);
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+}
@@ -177,18 +177,19 @@ public class RequestScopeInjector extends BaseScopeInjector {
 	/**
 	 * Inject request attributes.
 	 */
-	protected void injectAttributes(Object target, ScopeData.In[] injectData, HttpServletRequest servletRequest) {
+	protected void injectAttributes(Object target, InjectionPlan plan, HttpServletRequest servletRequest) {
 		Enumeration attributeNames = servletRequest.getAttributeNames();
 		while (attributeNames.hasMoreElements()) {
 			String attrName = (String) attributeNames.nextElement();
-			for (ScopeData.In in : injectData) {
-				String name = getMatchedPropertyName(in, attrName);
-				if (name != null) {
-					Object attrValue = servletRequest.getAttribute(attrName);
-					setTargetProperty(target, name, attrValue, in.create);
-					if (in.remove) {
-						servletRequest.removeAttribute(attrName);
-					}
+			int[] indexes = plan.match(attrName);
+			if (indexes == null) {
+				continue;
+			}
+			Object attrValue = servletRequest.getAttribute(attrName);
+			for (int index : indexes) {
+				setTargetProperty(target, plan, index, attrName, attrValue);
+				if (plan.getIn(index).remove) {
+					servletRequest.removeAttribute(attrName);
 				}
 			}
 		}
@@ -198,39 +199,40 @@ public class RequestScopeInjector extends BaseScopeInjector {
 	 * Inject request parameters. Parameters with the same name as one of request attributes
 	 * are simply ignored.
 	 */
-	protected void injectParameters(Object target, ScopeData.In[] injectData, HttpServletRequest servletRequest) {
+	protected void injectParameters(Object target, InjectionPlan plan, HttpServletRequest servletRequest) {
 		boolean encode = config.encodeGetParams && servletRequest.getMethod().equals("GET");
 		Enumeration paramNames = servletRequest.getParameterNames();
 		while (paramNames.hasMoreElements()) {
 			String paramName = (String) paramNames.nextElement();
+			int[] indexes = plan.match(paramName);
+			if (indexes == null) {
+				continue;
+			}
 			if (servletRequest.getAttribute(paramName) != null) {
 				continue;
 			}
-			for (ScopeData.In in : injectData) {
-				String name = getMatchedPropertyName(in, paramName);
-				if (name != null) {
-					String[] paramValues = servletRequest.getParameterValues(paramName);
-					paramValues = ServletUtil.prepareParameters(
-							paramValues,
-							config.trimParams,
-							config.treatEmptyParamsAsNull,
-							config.ignoreEmptyRequestParams);
-
-					if (paramValues == null) {
-						continue;
-					}
-					if (encode) {
-						for (int i = 0; i < paramValues.length; i++) {
-							String p = paramValues[i];
-							if (p != null) {
-								paramValues[i] = StringUtil.convertCharset(p, StringPool.ISO_8859_1, encoding);
-							}
-						}
+			String[] paramValues = servletRequest.getParameterValues(paramName);
+			paramValues = ServletUtil.prepareParameters(
+					paramValues,
+					config.trimParams,
+					config.treatEmptyParamsAsNull,
+					config.ignoreEmptyRequestParams);
+
+			if (paramValues == null) {
+				continue;
+			}
+			if (encode) {
+				for (int i = 0; i < paramValues.length; i++) {
+					String p = paramValues[i];
+					if (p != null) {
+						paramValues[i] = StringUtil.convertCharset(p, StringPool.ISO_8859_1, encoding);
 					}
-					Object value = (paramValues.length != 1 ? paramValues : paramValues[0]);
-					setTargetProperty(target, name, value, in.create);
 				}
 			}
+			Object value = (paramValues.length != 1 ? paramValues : paramValues[0]);
+			for (int index : indexes) {
+				setTargetProperty(target, plan, index, paramName, value);
+			}
 		}
 	}
 
@@ -239,7 +241,7 @@ public class RequestScopeInjector extends BaseScopeInjector {
 	/**
 	 * Inject uploaded files from multipart request parameters.
 	 */
-	protected void injectUploadedFiles(Object target, ScopeData.In[] injectData, HttpServletRequest servletRequest) {
+	protected void injectUploadedFiles(Object target, InjectionPlan plan, HttpServletRequest servletRequest) {
 		if ((servletRequest instanceof MultipartRequestWrapper) == false) {
 			return;
 		}
@@ -250,28 +252,29 @@ public class RequestScopeInjector extends BaseScopeInjector {
 		Enumeration paramNames = multipartRequest.getFileParameterNames();
 		while (paramNames.hasMoreElements()) {
 			String paramName = (String) paramNames.nextElement();
+			int[] indexes = plan.match(paramName);
+			if (indexes == null) {
+				continue;
+			}
 			if (servletRequest.getAttribute(paramName) != null) {
 				continue;
 			}
-			for (ScopeData.In in : injectData) {
-				String name = getMatchedPropertyName(in, paramName);
-				if (name != null) {
-					FileUpload[] paramValues = multipartRequest.getFiles(paramName);
-
-					if (config.ignoreInvalidUploadFiles) {
-						for (int i = 0; i < paramValues.length; i++) {
-							FileUpload paramValue = paramValues[i];
-
-							if ((paramValue.isValid() == false) || (paramValue.isUploaded() == false)) {
-								paramValues[i] = null;
-							}
-						}
-					}
+			FileUpload[] paramValues = multipartRequest.getFiles(paramName);
 
-					Object value = (paramValues.length == 1 ? paramValues[0] : paramValues);
-					setTargetProperty(target, name, value, in.create);
+			if (config.ignoreInvalidUploadFiles) {
+				for (int i = 0; i < paramValues.length; i++) {
+					FileUpload paramValue = paramValues[i];
+
+					if ((paramValue.isValid() == false) || (paramValue.isUploaded() == false)) {
+						paramValues[i] = null;
+					}
 				}
 			}
+
+			Object value = (paramValues.length == 1 ? paramValues[0] : paramValues);
+			for (int index : indexes) {
+				setTargetProperty(target, plan, index, paramName, value);
+			}
 		}
 	}
 
@@ -307,16 +310,16 @@ public class RequestScopeInjector extends BaseScopeInjector {
 	}
 
 	public void inject(Object target, HttpServletRequest servletRequest) {
-		ScopeData.In[] injectData = lookupInData(target.getClass());
-		if (injectData == null) {
+		InjectionPlan plan = lookupInjectionPlan(target.getClass());
+		if (plan == null) {
 			return;
 		}
 		if (config.injectAttributes == true) {
-			injectAttributes(target, injectData, servletRequest);
+			injectAttributes(target, plan, servletRequest);
 		}
 		if (config.injectParameters == true) {
-			injectParameters(target, injectData, servletRequest);
-			injectUploadedFiles(target, injectData, servletRequest);
+			injectParameters(target, plan, servletRequest);
+			injectUploadedFiles(target, plan, servletRequest);
 		}
 	}
 
@@ -9,6 +9,7 @@ public class ScopeData {
 
 	public In[] in;
 	public Out[] out;
+	public InjectionPlan plan;		// precompiled injection of 'in' data
 
 	public static class In {
 		public Class type;         // property type
@@ -8,8 +8,11 @@ import jodd.madvoc.meta.In;
 import jodd.madvoc.meta.InOut;
 import jodd.madvoc.meta.Out;
 import jodd.util.ReflectUtil;
+import jodd.JoddBean;
 import jodd.introspector.ClassDescriptor;
 import jodd.introspector.ClassIntrospector;
+import jodd.introspector.FieldDescriptor;
+import jodd.introspector.MethodDescriptor;
 
 import java.util.Map;
 import java.util.HashMap;
@@ -23,12 +26,16 @@ import java.lang.reflect.Field;
  * For each action class and action method it holds an array of ScopeData objects.
  * Each element of that array represents data for one ScopeType.
  * Some elements might be <code>null</code> as well.
+ * <p>
+ * For each scope with IN data, resolver also creates precompiled
+ * {@link InjectionPlan injection plan}.
  */
 public class ScopeDataResolver {
 
 	private static final ScopeData[] EMPTY_SCOPEDATA = new ScopeData[0]; 
 
 	protected Map<Object, ScopeData[]> scopeMap = new HashMap<Object, ScopeData[]>();
+	protected PropertyInjectorGenerator propertyInjectorGenerator = new PropertyInjectorGenerator();
 
 	// ---------------------------------------------------------------- main
 
@@ -64,6 +71,25 @@ public class ScopeDataResolver {
 		return sd.in;
 	}
 
+	/**
+	 * Lookups injection plan of INput data for given action class and scope type.
+	 * Returns <code>null</code> if no data is found.
+	 */
+	public InjectionPlan lookupInjectionPlan(Class actionClass, ScopeType scopeType) {
+		ScopeData[] scopeData = scopeMap.get(actionClass);
+		if (scopeData == null) {
+			scopeData = inspectAllScopeData(actionClass);
+		}
+		if (scopeData.length == 0) {
+			return null;
+		}
+		ScopeData sd = scopeData[scopeType.value()];
+		if (sd == null) {
+			return null;
+		}
+		return sd.plan;
+	}
+
 	/**
 	 * Lookups OUTput data for given object and scope type.
 	 * Returns <code>null</code> if no data is found.
@@ -96,6 +122,9 @@ public class ScopeDataResolver {
 			for (ScopeType st : allScopeTypes) {
 				ScopeData sd = inspectScopeData((Class) key, st);
 				if (sd != null) {
+					if (sd.in != null) {
+						sd.plan = createInjectionPlan((Class) key, sd.in);
+					}
 					count++;
 				}
 				scopeData[st.value()] = sd;
@@ -121,6 +150,45 @@ public class ScopeDataResolver {
 	}
 
 
+	// ---------------------------------------------------------------- plan
+
+	/**
+	 * Creates injection plan for IN data of an action class. Properties
+	 * of IN data with simple names are resolved in the same way as
+	 * <code>BeanUtil</code> does: setter first, then field.
+	 */
+	protected InjectionPlan createInjectionPlan(Class actionClass, ScopeData.In[] in) {
+		ClassDescriptor cd = ClassIntrospector.lookup(actionClass);
+
+		InjectionPlan.Property[] properties = new InjectionPlan.Property[in.length];
+
+		for (int i = 0; i < in.length; i++) {
+			String propertyName = in[i].target != null ? in[i].target : in[i].name;
+			if ((propertyName.indexOf('.') != -1) || (propertyName.indexOf('[') != -1)) {
+				continue;
+			}
+
+			MethodDescriptor md = cd.getBeanSetterMethodDescriptor(propertyName, true);
+			if (md != null) {
+				properties[i] = new InjectionPlan.MethodProperty(md.getMethod(), md.getRawParameterTypes()[0]);
+				continue;
+			}
+
+			String fieldName = propertyName;
+			if (JoddBean.fieldPrefix != null) {
+				fieldName = JoddBean.fieldPrefix + fieldName;
+			}
+			FieldDescriptor fd = cd.getFieldDescriptor(fieldName, true);
+			if (fd != null) {
+				properties[i] = new InjectionPlan.FieldProperty(fd.getField(), fd.getRawType());
+			}
+		}
+
+		propertyInjectorGenerator.generate(actionClass, properties);
+
+		return new InjectionPlan(in, properties);
+	}
+
 	// ---------------------------------------------------------------- method data
 
 	/**
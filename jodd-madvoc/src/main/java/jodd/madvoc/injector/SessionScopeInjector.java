@@ -17,22 +17,23 @@ public class SessionScopeInjector extends BaseScopeInjector {
 	}
 
 	public void inject(Object target, HttpServletRequest servletRequest) {
-		ScopeData.In[] injectData = lookupInData(target.getClass());
-		if (injectData == null) {
+		InjectionPlan plan = lookupInjectionPlan(target.getClass());
+		if (plan == null) {
 			return;
 		}
 		HttpSession session = servletRequest.getSession();
 		Enumeration attributeNames = session.getAttributeNames();
 		while (attributeNames.hasMoreElements()) {
 			String attrName = (String) attributeNames.nextElement();
-			for (ScopeData.In in : injectData) {
-				String name = getMatchedPropertyName(in, attrName);
-				if (name != null) {
-					Object attrValue = session.getAttribute(attrName);
-					setTargetProperty(target, name, attrValue, in.create);
-					if (in.remove) {
-						session.removeAttribute(attrName);
-					}
+			int[] indexes = plan.match(attrName);
+			if (indexes == null) {
+				continue;
+			}
+			Object attrValue = session.getAttribute(attrName);
+			for (int index : indexes) {
+				setTargetProperty(target, plan, index, attrName, attrValue);
+				if (plan.getIn(index).remove) {
+					session.removeAttribute(attrName);
 				}
 			}
 		}
@@ -11,6 +11,7 @@ import jodd.madvoc.injector.RequestScopeInjector;
 import jodd.madvoc.injector.SessionScopeInjector;
 import jodd.madvoc.component.MadvocConfig;
 import jodd.madvoc.meta.In;
+import jodd.madvoc.result.DeferredResult;
 import jodd.servlet.ServletUtil;
 import jodd.servlet.upload.MultipartRequestWrapper;
 
@@ -24,7 +25,7 @@ import javax.servlet.http.HttpServletResponse;
  * <li>uses multi-part request if needed</li>
  * <li>performs the injection (using either default or specified injector)</li>
  * <li>invokes the action</li>
- * <li>performs the outjection.</li>
+ * <li>performs the outjection, after the deferred result completes for asynchronous actions.</li>
  * </ul>
  */
 public class ServletConfigInterceptor extends ActionInterceptor {
@@ -65,7 +66,16 @@ public class ServletConfigInterceptor extends ActionInterceptor {
 		// do it
 		inject(actionRequest);
 		Object result = actionRequest.invoke();
-		outject(actionRequest);
+
+		if (result instanceof DeferredResult) {
+			((DeferredResult) result).onResume(new DeferredResult.ResumeHandler() {
+				public void resume(ActionRequest actionRequest) {
+					outject(actionRequest);
+				}
+			});
+		} else {
+			outject(actionRequest);
+		}
 		return result;
 	}
 
@@ -0,0 +1,208 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.madvoc.monitor;
+
+import jodd.madvoc.ActionConfig;
+import jodd.madvoc.ActionRequest;
+import jodd.madvoc.component.MadvocConfig;
+import jodd.petite.meta.PetiteInject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Action monitor, the Madvoc instrumentation component. When monitoring
+ * is {@link MadvocConfig#setActionMonitoringEnabled(boolean) enabled},
+ * controller measures each action request and reports it to the monitor.
+ * Default monitor collects {@link ActionStats statistics} per action
+ * configuration and logs slow actions. Custom instrumentation is plugged
+ * in by registering a subclass as Madvoc component.
+ * <p>
+ * Monitor is exposed via JMX, so it can be enabled and read at runtime.
+ * When monitoring is disabled, the only overhead is a single flag check
+ * per action request.
+ */
+public class ActionMonitor implements ActionMonitorMBean {
+
+	private static final Logger log = LoggerFactory.getLogger(ActionMonitor.class);
+
+	@PetiteInject
+	protected MadvocConfig madvocConfig;
+
+	protected final ConcurrentHashMap<ActionConfig, ActionStats> stats = new ConcurrentHashMap<ActionConfig, ActionStats>();
+
+	protected ObjectName objectName;
+
+	public boolean isEnabled() {
+		return madvocConfig.isActionMonitoringEnabled();
+	}
+
+	public void setEnabled(boolean enabled) {
+		madvocConfig.setActionMonitoringEnabled(enabled);
+	}
+
+	public long getSlowActionThreshold() {
+		return madvocConfig.getSlowActionThreshold();
+	}
+
+	public void setSlowActionThreshold(long slowActionThreshold) {
+		madvocConfig.setSlowActionThreshold(slowActionThreshold);
+	}
+
+	// ---------------------------------------------------------------- monitor
+
+	/**
+	 * Invoked by the controller after the action request is invoked and its
+	 * result rendered. Times are in nanoseconds. Invocation time covers the
+	 * interceptors and the action method, whose own time is available
+	 * from the {@link ActionRequest#getActionTime() action request}.
+	 */
+	public void actionRequestDone(ActionRequest actionRequest, long invocationTime, long renderTime, boolean failed) {
+		long actionTime = actionRequest.getActionTime();
+		long interceptorsTime = invocationTime - actionTime;
+
+		long threshold = madvocConfig.getSlowActionThreshold();
+		boolean slow = (threshold > 0) && (invocationTime + renderTime >= threshold * 1000000L);
+
+		lookupActionStats(actionRequest.getActionConfig()).record(interceptorsTime, actionTime, renderTime, failed, slow);
+
+		if (slow) {
+			onSlowAction(actionRequest, interceptorsTime, actionTime, renderTime);
+		}
+	}
+
+	/**
+	 * Invoked on slow action request. Logs a warning by default.
+	 */
+	protected void onSlowAction(ActionRequest actionRequest, long interceptorsTime, long actionTime, long renderTime) {
+		if (log.isWarnEnabled()) {
+			log.warn("Slow action '" + actionRequest.getActionPath() + "' " + actionRequest.getActionConfig().getActionString() +
+					": " + ActionStats.toMillis(interceptorsTime + actionTime + renderTime) +
+					"ms (interceptors " + ActionStats.toMillis(interceptorsTime) +
+					"ms, action " + ActionStats.toMillis(actionTime) +
+					"ms, render " + ActionStats.toMillis(renderTime) + "ms)");
+		}
+	}
+
+	// ---------------------------------------------------------------- stats
+
+	/**
+	 * Returns statistics of the action configuration, creating them if needed.
+	 */
+	public ActionStats lookupActionStats(ActionConfig actionConfig) {
+		ActionStats actionStats = stats.get(actionConfig);
+		if (actionStats == null) {
+			actionStats = new ActionStats(actionConfig);
+			ActionStats existing = stats.putIfAbsent(actionConfig, actionStats);
+			if (existing != null) {
+				actionStats = existing;
+			}
+		}
+		return actionStats;
+	}
+
+	/**
+	 * Returns statistics of all monitored actions, sorted by action path.
+	 */
+	public List<ActionStats> getAllActionStats() {
+		List<ActionStats> list = new ArrayList<ActionStats>(stats.values());
+		Collections.sort(list, new Comparator<ActionStats>() {
+			public int compare(ActionStats s1, ActionStats s2) {
+				int result = s1.actionConfig.actionPath.compareTo(s2.actionConfig.actionPath);
+				if (result == 0) {
+					result = String.valueOf(s1.actionConfig.actionMethod).compareTo(String.valueOf(s2.actionConfig.actionMethod));
+				}
+				return result;
+			}
+		});
+		return list;
+	}
+
+	public long getRequests() {
+		long total = 0;
+		for (ActionStats actionStats : stats.values()) {
+			total += actionStats.getRequests();
+		}
+		return total;
+	}
+
+	public long getErrors() {
+		long total = 0;
+		for (ActionStats actionStats : stats.values()) {
+			total += actionStats.getErrors();
+		}
+		return total;
+	}
+
+	public long getSlowRequests() {
+		long total = 0;
+		for (ActionStats actionStats : stats.values()) {
+			total += actionStats.getSlowRequests();
+		}
+		return total;
+	}
+
+	public String[] getActionStats() {
+		List<ActionStats> list = getAllActionStats();
+		String[] result = new String[list.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = list.get(i).toString();
+		}
+		return result;
+	}
+
+	public void reset() {
+		stats.clear();
+	}
+
+	// ---------------------------------------------------------------- jmx
+
+	/**
+	 * Registers monitor in the platform MBean server.
+	 */
+	public synchronized void registerMBean() {
+		if (objectName != null) {
+			return;
+		}
+		try {
+			ObjectName name = new ObjectName("jodd.madvoc:type=ActionMonitor,id=" + Integer.toHexString(System.identityHashCode(this)));
+			MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+			mBeanServer.registerMBean(new StandardMBean(this, ActionMonitorMBean.class), name);
+			objectName = name;
+		} catch (Exception ex) {
+			log.warn("Unable to register action monitor MBean", ex);
+		}
+	}
+
+	/**
+	 * Unregisters monitor from the platform MBean server.
+	 */
+	public synchronized void unregisterMBean() {
+		if (objectName == null) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch (Exception ex) {
+			log.warn("Unable to unregister action monitor MBean", ex);
+		}
+		objectName = null;
+	}
+
+	/**
+	 * Returns JMX object name or <code>null</code> if monitor is not registered.
+	 */
+	public ObjectName getObjectName() {
+		return objectName;
+	}
+
+}
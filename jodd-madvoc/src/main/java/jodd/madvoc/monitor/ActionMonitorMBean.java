@@ -0,0 +1,55 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.madvoc.monitor;
+
+/**
+ * JMX interface of the {@link ActionMonitor}.
+ */
+public interface ActionMonitorMBean {
+
+	/**
+	 * Returns <code>true</code> if actions are monitored.
+	 */
+	boolean isEnabled();
+
+	/**
+	 * Enables or disables monitoring of actions.
+	 */
+	void setEnabled(boolean enabled);
+
+	/**
+	 * Returns slow action threshold in milliseconds.
+	 */
+	long getSlowActionThreshold();
+
+	/**
+	 * Sets slow action threshold in milliseconds.
+	 */
+	void setSlowActionThreshold(long slowActionThreshold);
+
+	/**
+	 * Returns total number of monitored action requests.
+	 */
+	long getRequests();
+
+	/**
+	 * Returns total number of failed action requests.
+	 */
+	long getErrors();
+
+	/**
+	 * Returns total number of slow action requests.
+	 */
+	long getSlowRequests();
+
+	/**
+	 * Returns statistics of all monitored actions, one per element.
+	 */
+	String[] getActionStats();
+
+	/**
+	 * Resets all statistics.
+	 */
+	void reset();
+
+}
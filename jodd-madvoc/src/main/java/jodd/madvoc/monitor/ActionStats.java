@@ -0,0 +1,169 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.madvoc.monitor;
+
+import jodd.madvoc.ActionConfig;
+import jodd.util.LatencyHistogram;
+import jodd.util.StripedCounter;
+
+/**
+ * Statistics of a single action configuration. Time spent in the
+ * request is split between the interceptors, the action method and
+ * the result rendering, each with its own {@link LatencyHistogram}.
+ * Counters are {@link StripedCounter striped}, so concurrent requests
+ * of the same action don't contend on a single counter.
+ * Interceptors time includes everything that happens during the action
+ * request invocation except the action method, e.g. injection.
+ */
+public class ActionStats {
+
+	protected final ActionConfig actionConfig;
+
+	protected final StripedCounter requests = new StripedCounter();
+	protected final StripedCounter errors = new StripedCounter();
+	protected final StripedCounter slowRequests = new StripedCounter();
+
+	protected final LatencyHistogram totalLatency = new LatencyHistogram();
+	protected final LatencyHistogram interceptorsLatency = new LatencyHistogram();
+	protected final LatencyHistogram actionLatency = new LatencyHistogram();
+	protected final LatencyHistogram renderLatency = new LatencyHistogram();
+
+	public ActionStats(ActionConfig actionConfig) {
+		this.actionConfig = actionConfig;
+	}
+
+	/**
+	 * Records single action request. All times are in nanoseconds.
+	 */
+	public void record(long interceptorsTime, long actionTime, long renderTime, boolean failed, boolean slow) {
+		requests.increment();
+		if (failed) {
+			errors.increment();
+		}
+		if (slow) {
+			slowRequests.increment();
+		}
+		totalLatency.record(interceptorsTime + actionTime + renderTime);
+		interceptorsLatency.record(interceptorsTime);
+		actionLatency.record(actionTime);
+		renderLatency.record(renderTime);
+	}
+
+	/**
+	 * Resets all statistics.
+	 */
+	public void reset() {
+		requests.reset();
+		errors.reset();
+		slowRequests.reset();
+		totalLatency.reset();
+		interceptorsLatency.reset();
+		actionLatency.reset();
+		renderLatency.reset();
+	}
+
+	// ---------------------------------------------------------------- accessors
+
+	/**
+	 * Returns action configuration.
+	 */
+	public ActionConfig getActionConfig() {
+		return actionConfig;
+	}
+
+	/**
+	 * Returns number of action requests.
+	 */
+	public long getRequests() {
+		return requests.sum();
+	}
+
+	/**
+	 * Returns number of action requests that failed with an exception.
+	 */
+	public long getErrors() {
+		return errors.sum();
+	}
+
+	/**
+	 * Returns number of slow action requests.
+	 */
+	public long getSlowRequests() {
+		return slowRequests.sum();
+	}
+
+	/**
+	 * Returns total request latency.
+	 */
+	public LatencyHistogram getTotalLatency() {
+		return totalLatency;
+	}
+
+	/**
+	 * Returns latency of the interceptors stack, without the action method.
+	 */
+	public LatencyHistogram getInterceptorsLatency() {
+		return interceptorsLatency;
+	}
+
+	/**
+	 * Returns latency of the action method.
+	 */
+	public LatencyHistogram getActionLatency() {
+		return actionLatency;
+	}
+
+	/**
+	 * Returns latency of the action result rendering.
+	 */
+	public LatencyHistogram getRenderLatency() {
+		return renderLatency;
+	}
+
+	@Override
+	public String toString() {
+		return actionConfig.actionPath + (actionConfig.actionMethod == null ? "" : '#' + actionConfig.actionMethod) +
+				"  requests=" + getRequests() +
+				", errors=" + getErrors() +
+				", slow=" + getSlowRequests() +
+				"\n\ttotal:        " + toString(totalLatency) +
+				"\n\tinterceptors: " + toString(interceptorsLatency) +
+				"\n\taction:       " + toString(actionLatency) +
+				"\n\trender:       " + toString(renderLatency);
+	}
+
+	/**
+	 * Returns latency summary of the histogram.
+	 */
+	protected String toString(LatencyHistogram histogram) {
+		long count = histogram.getCount();
+		long mean = count == 0 ? 0 : histogram.getTotalTime() / count;
+		long max = histogram.getMaxTime();
+
+		return "count=" + count +
+				", mean=" + toMillis(mean) +
+				"ms, p50=" + toMillis(Math.min(histogram.getPercentile(50), max)) +
+				"ms, p99=" + toMillis(Math.min(histogram.getPercentile(99), max)) +
+				"ms, max=" + toMillis(max) + "ms";
+	}
+
+	/**
+	 * Converts nanoseconds to milliseconds, with three decimals.
+	 */
+	public static String toMillis(long nanos) {
+		long micros = nanos / 1000;
+		long millis = micros / 1000;
+		long fraction = micros % 1000;
+
+		StringBuilder sb = new StringBuilder();
+		sb.append(millis).append('.');
+		if (fraction < 100) {
+			sb.append('0');
+		}
+		if (fraction < 10) {
+			sb.append('0');
+		}
+		sb.append(fraction);
+		return sb.toString();
+	}
+}
@@ -0,0 +1,6 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+/**
+ * Action monitoring: per-action request statistics and latency histograms.
+ */
+package jodd.madvoc.monitor;
\ No newline at end of file
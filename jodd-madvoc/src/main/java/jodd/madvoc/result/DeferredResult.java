@@ -0,0 +1,238 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.madvoc.result;
+
+import jodd.madvoc.ActionRequest;
+import jodd.madvoc.MadvocException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Deferred result value of an asynchronous action. Action returns deferred
+ * result instead of the result value and completes it later, from any thread,
+ * with the real result value. Meanwhile, the request thread is released,
+ * using the asynchronous processing of Servlets 3.0.
+ * <p>
+ * When deferred result is completed, request is dispatched back to Madvoc.
+ * Interceptors registered {@link #onResume(ResumeHandler) resume handlers}
+ * and {@link #onFailure(FailureHandler) failure handlers} are invoked in
+ * the order of registration, i.e. from the innermost interceptor outwards,
+ * as the interceptor stack would unwind. Then the result value is rendered
+ * as if it was returned from the action method; so chaining and further
+ * deferring works as usual.
+ * <p>
+ * Madvoc filter must be mapped with <code>async-supported</code> flag and
+ * for the <code>ASYNC</code> dispatcher type.
+ */
+public class DeferredResult {
+
+	/**
+	 * Handler invoked on the request thread when asynchronous action is resumed.
+	 */
+	public static interface ResumeHandler {
+
+		/**
+		 * Resumes the action request, before the result is rendered.
+		 */
+		void resume(ActionRequest actionRequest) throws Exception;
+	}
+
+	/**
+	 * Handler invoked on the request thread when asynchronous action
+	 * is resumed with a failure.
+	 */
+	public static interface FailureHandler {
+
+		/**
+		 * Handles the failure of the action request. Returns the result value
+		 * that replaces the failure, or throws an exception when failure
+		 * is not handled.
+		 */
+		Object failed(ActionRequest actionRequest, Exception exception) throws Exception;
+	}
+
+	protected final long timeout;
+	protected Object timeoutResult;
+
+	protected boolean completed;
+	protected Object result;
+	protected Throwable failure;
+
+	protected Runnable completionHandler;
+	protected List<Object> handlers;
+
+	/**
+	 * Creates deferred result with container default timeout.
+	 */
+	public DeferredResult() {
+		this(0);
+	}
+
+	/**
+	 * Creates deferred result with timeout in milliseconds.
+	 */
+	public DeferredResult(long timeout) {
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Returns timeout in milliseconds, or <code>0</code> for container default.
+	 */
+	public long getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * Specifies result value used on timeout. When not set,
+	 * deferred result fails on timeout.
+	 */
+	public void setTimeoutResult(Object timeoutResult) {
+		this.timeoutResult = timeoutResult;
+	}
+
+	// ---------------------------------------------------------------- complete
+
+	/**
+	 * Completes deferred result with the result value. Returns <code>false</code>
+	 * if deferred result is already completed, e.g. on timeout.
+	 */
+	public boolean complete(Object result) {
+		return done(result, null);
+	}
+
+	/**
+	 * Completes deferred result with the failure. Returns <code>false</code>
+	 * if deferred result is already completed.
+	 */
+	public boolean fail(Throwable failure) {
+		return done(null, failure);
+	}
+
+	/**
+	 * Invoked by the controller on asynchronous request timeout.
+	 */
+	public boolean timeout() {
+		if (timeoutResult != null) {
+			return complete(timeoutResult);
+		}
+		return fail(new MadvocException("Asynchronous action timeout."));
+	}
+
+	/**
+	 * Returns <code>true</code> if deferred result is completed.
+	 */
+	public synchronized boolean isCompleted() {
+		return completed;
+	}
+
+	protected boolean done(Object result, Throwable failure) {
+		Runnable handler;
+		synchronized (this) {
+			if (completed) {
+				return false;
+			}
+			this.result = result;
+			this.failure = failure;
+			this.completed = true;
+			handler = completionHandler;
+		}
+		if (handler != null) {
+			handler.run();
+		}
+		return true;
+	}
+
+	// ---------------------------------------------------------------- handlers
+
+	/**
+	 * Sets completion handler, invoked from the thread that completes deferred
+	 * result. If deferred result is already completed, handler is invoked
+	 * immediately. Used by the controller.
+	 */
+	public void onComplete(Runnable handler) {
+		synchronized (this) {
+			completionHandler = handler;
+			if (completed == false) {
+				return;
+			}
+		}
+		handler.run();
+	}
+
+	/**
+	 * Registers resume handler. Used by interceptors that have to finish
+	 * their work after the asynchronous action completes.
+	 */
+	public void onResume(ResumeHandler handler) {
+		addHandler(handler);
+	}
+
+	/**
+	 * Registers failure handler. Used by interceptors that handle
+	 * exceptions of the asynchronous action.
+	 */
+	public void onFailure(FailureHandler handler) {
+		addHandler(handler);
+	}
+
+	protected synchronized void addHandler(Object handler) {
+		if (handlers == null) {
+			handlers = new ArrayList<Object>();
+		}
+		handlers.add(handler);
+	}
+
+	/**
+	 * Resumes completed deferred result on the request thread and returns
+	 * the result value. Handlers are invoked in the order of registration.
+	 * While there is no failure, only resume handlers are invoked; once the
+	 * action or some handler fails, only failure handlers are invoked, until
+	 * one of them handles the failure. Unhandled failure is re-thrown.
+	 */
+	public Object resume(ActionRequest actionRequest) throws Exception {
+		List<Object> handlers;
+		synchronized (this) {
+			if (completed == false) {
+				throw new MadvocException("Deferred result not completed.");
+			}
+			handlers = this.handlers;
+			this.handlers = null;
+		}
+
+		Object value = result;
+		Exception exception = null;
+		if (failure != null) {
+			if (failure instanceof Exception) {
+				exception = (Exception) failure;
+			} else {
+				exception = new MadvocException(failure);
+			}
+		}
+
+		if (handlers != null) {
+			for (Object handler : handlers) {
+				try {
+					if (exception == null) {
+						if (handler instanceof ResumeHandler) {
+							((ResumeHandler) handler).resume(actionRequest);
+						}
+					} else {
+						if (handler instanceof FailureHandler) {
+							value = ((FailureHandler) handler).failed(actionRequest, exception);
+							exception = null;
+						}
+					}
+				} catch (Exception ex) {
+					exception = ex;
+				}
+			}
+		}
+
+		if (exception != null) {
+			throw exception;
+		}
+		return value;
+	}
+
+}
@@ -2,8 +2,14 @@
 
 package jodd.madvoc.result;
 
+import jodd.cache.Cache;
+import jodd.cache.SegmentedLRUCache;
 import jodd.madvoc.ActionRequest;
 import jodd.madvoc.MadvocUtil;
+import jodd.madvoc.ScopeType;
+import jodd.madvoc.component.MadvocConfig;
+import jodd.madvoc.component.ServletContextInjector;
+import jodd.madvoc.meta.In;
 import jodd.servlet.DispatcherUtil;
 
 import javax.servlet.RequestDispatcher;
@@ -15,6 +21,13 @@ import java.net.URL;
 
 /**
  * Dispatches to a JSP page.
+ * <p>
+ * Located targets are cached by their result paths, so resources are
+ * probed only on the first render of a result path. Only found targets
+ * are cached. Since result paths may depend on the request, cache is
+ * bounded to {@link #TARGETS_CACHE_SIZE} least recently used result
+ * paths. Cache may be disabled in {@link MadvocConfig} or
+ * {@link #clearTargetsCache() cleared}.
  * 
  * @see ServletRedirectResult
  */
@@ -22,11 +35,27 @@ public class ServletDispatcherResult extends ActionResult {
 
 	public static final String NAME = "dispatch";
 	protected static final String EXTENSION = ".jsp";
+	protected static final int TARGETS_CACHE_SIZE = 1000;
 
 	public ServletDispatcherResult() {
 		super(NAME);
 	}
 
+	@In(scope = ScopeType.CONTEXT)
+	protected MadvocConfig madvocConfig;
+
+	@In(scope = ScopeType.CONTEXT)
+	protected ServletContextInjector servletContextInjector;
+
+	protected final Cache<String, String> targetsCache = new SegmentedLRUCache<String, String>(TARGETS_CACHE_SIZE);
+
+	/**
+	 * Clears cache of located targets.
+	 */
+	public void clearTargetsCache() {
+		targetsCache.clear();
+	}
+
 
 	/**
 	 * Dispatches to the JSP location created from result value and JSP extension.
@@ -38,23 +67,10 @@ public class ServletDispatcherResult extends ActionResult {
 		HttpServletRequest request = actionRequest.getHttpServletRequest();
 		HttpServletResponse response = actionRequest.getHttpServletResponse();
 
-		String target;
-		String originalResultPath = resultPath;
-		while (true) {
-			target = resultPath + EXTENSION;
-			try {
-				if (locateTarget(request, target) != null) {
-					break;
-				}
-			} catch (MalformedURLException muex) {
-				// ignore
-			}
-			int dotNdx = MadvocUtil.lastIndexOfDotAfterSlash(resultPath);
-			if (dotNdx == -1) {
-				response.sendError(SC_NOT_FOUND, "Result '" + originalResultPath + EXTENSION + "' or any its variant not found.");
-				return;
-			}
-			resultPath = resultPath.substring(0, dotNdx);
+		String target = resolveTarget(request, resultPath);
+		if (target == null) {
+			response.sendError(SC_NOT_FOUND, "Result '" + resultPath + EXTENSION + "' or any its variant not found.");
+			return;
 		}
 
 		RequestDispatcher dispatcher = request.getRequestDispatcher(target);
@@ -74,10 +90,54 @@ public class ServletDispatcherResult extends ActionResult {
 
 
 	/**
-	 * Locates target.
+	 * Resolves target for the result path, using the targets cache.
+	 * Returns <code>null</code> if target is not found.
+	 */
+	protected String resolveTarget(HttpServletRequest request, String resultPath) throws Exception {
+		boolean cacheEnabled = madvocConfig.isResultTargetsCacheEnabled();
+		if (cacheEnabled) {
+			String target = targetsCache.get(resultPath);
+			if (target != null) {
+				return target;
+			}
+		}
+
+		String target = findTarget(request, resultPath);
+
+		if (cacheEnabled && (target != null)) {
+			targetsCache.put(resultPath, target);
+		}
+		return target;
+	}
+
+	/**
+	 * Finds existing target for the result path or any of its variants,
+	 * created by stripping the path extensions one by one.
+	 * Returns <code>null</code> if target is not found.
+	 */
+	protected String findTarget(HttpServletRequest request, String resultPath) throws Exception {
+		while (true) {
+			String target = resultPath + EXTENSION;
+			try {
+				if (locateTarget(request, target) != null) {
+					return target;
+				}
+			} catch (MalformedURLException muex) {
+				// ignore
+			}
+			int dotNdx = MadvocUtil.lastIndexOfDotAfterSlash(resultPath);
+			if (dotNdx == -1) {
+				return null;
+			}
+			resultPath = resultPath.substring(0, dotNdx);
+		}
+	}
+
+	/**
+	 * Locates target. Servlet context is reached without creating the session.
 	 */
 	protected URL locateTarget(HttpServletRequest request, String target) throws Exception {
-		return request.getSession().getServletContext().getResource(target);
+		return servletContextInjector.getServletContext(request).getResource(target);
 	}
 
 }
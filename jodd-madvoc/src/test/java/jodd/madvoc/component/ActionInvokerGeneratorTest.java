@@ -0,0 +1,122 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.madvoc.component;
+
+import jodd.madvoc.ActionConfig;
+import jodd.madvoc.ActionInvoker;
+import jodd.madvoc.WebApplication;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ActionInvokerGeneratorTest {
+
+	public static class BooAction {
+		public String view() {
+			return "ok";
+		}
+		public int sum(int a, Integer b, String c) {
+			return a + b + c.length();
+		}
+		public void fail() throws IOException {
+			throw new IOException("boo");
+		}
+	}
+
+	static class HiddenAction {
+		public String view() {
+			return "hidden";
+		}
+	}
+
+	public static class ArgAction {
+		public ArgAction(String value) {
+		}
+		public String view() {
+			return "arg";
+		}
+	}
+
+	private ActionsManager actionsManager;
+
+	@Before
+	public void setUp() {
+		WebApplication webapp = new WebApplication(true);
+		webapp.registerMadvocComponents();
+		actionsManager = webapp.getComponent(ActionsManager.class);
+	}
+
+	@Test
+	public void testInvoke() throws Exception {
+		ActionConfig actionConfig = actionsManager.register(BooAction.class, "view", "/boo");
+		ActionInvoker invoker = actionConfig.getActionInvoker();
+		assertNotNull(invoker);
+
+		Object action = invoker.createAction();
+		assertTrue(action instanceof BooAction);
+		assertEquals("ok", invoker.invoke(action, null));
+
+		actionConfig = actionsManager.register(BooAction.class, "sum", "/sum");
+		assertEquals(Integer.valueOf(6), actionConfig.getActionInvoker().invoke(action, new Object[] {Integer.valueOf(1), Integer.valueOf(2), "abc"}));
+	}
+
+	@Test
+	public void testException() throws Exception {
+		ActionConfig actionConfig = actionsManager.register(BooAction.class, "fail", "/fail");
+		ActionInvoker invoker = actionConfig.getActionInvoker();
+
+		try {
+			invoker.invoke(new BooAction(), null);
+			fail();
+		} catch (IOException ioex) {
+			assertEquals("boo", ioex.getMessage());
+		}
+	}
+
+	@Test
+	public void testReuseAndFallback() {
+		ActionConfig actionConfig1 = actionsManager.register(BooAction.class, "view", "/boo1");
+		ActionConfig actionConfig2 = actionsManager.register(BooAction.class, "view", "/boo2");
+		assertSame(actionConfig1.getActionInvoker(), actionConfig2.getActionInvoker());
+
+		ActionConfig actionConfig = actionsManager.register(HiddenAction.class, "view", "/hidden");
+		assertNull(actionConfig.getActionInvoker());
+	}
+
+	@Test
+	public void testNoDefaultConstructor() throws Exception {
+		ActionConfig actionConfig = actionsManager.register(ArgAction.class, "view", "/arg");
+		ActionInvoker invoker = actionConfig.getActionInvoker();
+		assertNotNull(invoker);
+
+		assertNull(invoker.createAction());
+		assertEquals("arg", invoker.invoke(new ArgAction("x"), null));
+	}
+
+	@Test
+	public void testCustomActionCreation() {
+		ActionConfig actionConfig = actionsManager.register(BooAction.class, "view", "/boo");
+		final BooAction booAction = new BooAction();
+
+		MadvocController madvocController = new MadvocController() {
+			@Override
+			protected Object createAction(Class actionClass) {
+				return booAction;
+			}
+		};
+		assertSame(booAction, madvocController.createAction(actionConfig));
+
+		madvocController = new MadvocController();
+		Object action = madvocController.createAction(actionConfig);
+		assertTrue(action instanceof BooAction);
+		assertTrue(action != booAction);
+	}
+}
\ No newline at end of file
@@ -6,6 +6,7 @@ import jodd.madvoc.ActionConfig;
 import jodd.madvoc.WebApplication;
 import jodd.madvoc.macro.RegExpPathMacros;
 import jodd.madvoc.macro.WildcardPathMacros;
+import jodd.madvoc.meta.Action;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -22,6 +23,17 @@ public class ActionsManagerTest {
 		}
 		public void three() {
 		}
+		public void four() {
+		}
+	}
+
+	public static class ItemAction {
+		@Action(method = "GET")
+		public void view() {
+		}
+		@Action(method = "POST")
+		public void save() {
+		}
 	}
 
 	@Test
@@ -151,4 +163,72 @@ public class ActionsManagerTest {
 		actionConfig = actionsManager.lookup("/aab", null);
 		assertNull(actionConfig);
 	}
+
+	@Test
+	public void testActionPathMacrosSameLevel() {
+		WebApplication webapp = new WebApplication(true);
+		webapp.registerMadvocComponents();
+		ActionsManager actionsManager = webapp.getComponent(ActionsManager.class);
+
+		actionsManager.register(FooAction.class, "one", "/user/${id}");
+		actionsManager.register(FooAction.class, "two", "/user/${id}.html");
+		actionsManager.register(FooAction.class, "three", "/${type}/list");
+		actionsManager.register(FooAction.class, "four", "/${type}/${id}");
+
+		ActionConfig actionConfig = actionsManager.lookup("/user/123", null);
+		assertEquals("one", actionConfig.actionClassMethod.getName());	// more fixed chars than 'four'
+
+		actionConfig = actionsManager.lookup("/user/123.html", null);
+		assertEquals("two", actionConfig.actionClassMethod.getName());
+
+		actionConfig = actionsManager.lookup("/user/list", null);
+		assertEquals("three", actionConfig.actionClassMethod.getName());	// same fixed chars as 'one', first alphabetically
+
+		actionConfig = actionsManager.lookup("/item/123", null);
+		assertEquals("four", actionConfig.actionClassMethod.getName());
+
+		actionConfig = actionsManager.lookup("/user/123/edit", null);
+		assertNull(actionConfig);
+	}
+
+	@Test
+	public void testActionPathMacrosMethods() {
+		WebApplication webapp = new WebApplication(true);
+		webapp.registerMadvocComponents();
+		ActionsManager actionsManager = webapp.getComponent(ActionsManager.class);
+
+		actionsManager.register(ItemAction.class, "view", "/item/${id}");
+		actionsManager.register(ItemAction.class, "save", "/item/${id}");
+
+		assertEquals(2, actionsManager.getActionsCount());
+
+		ActionConfig actionConfig = actionsManager.lookup("/item/7", "GET");
+		assertEquals("view", actionConfig.actionClassMethod.getName());
+
+		actionConfig = actionsManager.lookup("/item/7", "POST");
+		assertEquals("save", actionConfig.actionClassMethod.getName());
+
+		assertNull(actionsManager.lookup("/item/7", "PUT"));
+	}
+
+	@Test
+	public void testActionPathMacrosWithSlash() {
+		WebApplication webapp = new WebApplication(true);
+		webapp.registerMadvocComponents();
+		ActionsManager actionsManager = webapp.getComponent(ActionsManager.class);
+
+		MadvocConfig madvocConfig = webapp.getComponent(MadvocConfig.class);
+		madvocConfig.setPathMacroClass(RegExpPathMacros.class);
+
+		actionsManager.register(FooAction.class, "one", "/${path:a/b}x/${name}");
+		actionsManager.register(FooAction.class, "two", "/x/${name}");
+
+		ActionConfig actionConfig = actionsManager.lookup("/a/bx/c", null);
+		assertEquals("one", actionConfig.actionClassMethod.getName());
+
+		actionConfig = actionsManager.lookup("/x/c", null);
+		assertEquals("two", actionConfig.actionClassMethod.getName());
+
+		assertNull(actionsManager.lookup("/a/cx/c", null));
+	}
 }
@@ -0,0 +1,95 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.madvoc.component;
+
+import jodd.madvoc.ActionConfig;
+import jodd.madvoc.ActionRequest;
+import jodd.madvoc.InterceptorChain;
+import jodd.madvoc.interceptor.ActionInterceptor;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class InterceptorChainGeneratorTest {
+
+	static final List<String> calls = new ArrayList<String>();
+	static String caller;
+
+	public static class OneInterceptor extends ActionInterceptor {
+		@Override
+		public Object intercept(ActionRequest actionRequest) throws Exception {
+			calls.add("one");
+			caller = new Throwable().getStackTrace()[1].getClassName();
+			Object result = actionRequest.invoke();
+			calls.add("/one");
+			return result;
+		}
+	}
+
+	static class TwoInterceptor extends ActionInterceptor {
+		@Override
+		public Object intercept(ActionRequest actionRequest) throws Exception {
+			calls.add("two");
+			return "two:" + actionRequest.invoke();
+		}
+	}
+
+	public static class Action {
+		public String execute() {
+			calls.add("action");
+			return "ok";
+		}
+	}
+
+	private InterceptorChainGenerator interceptorChainGenerator;
+
+	@Before
+	public void setUp() {
+		calls.clear();
+		interceptorChainGenerator = new InterceptorChainGenerator();
+		interceptorChainGenerator.madvocConfig = new MadvocConfig();
+	}
+
+	@Test
+	public void testChain() throws Exception {
+		ActionInterceptor one = new OneInterceptor();
+		ActionInterceptor two = new TwoInterceptor();
+		ActionInterceptor[] interceptors = new ActionInterceptor[] {one, two, one};
+
+		InterceptorChain chain = interceptorChainGenerator.createInterceptorChain(interceptors);
+		assertNotNull(chain);
+		assertSame(chain, interceptorChainGenerator.createInterceptorChain(new ActionInterceptor[] {one, two, one}));
+
+		ActionConfig actionConfig = new ActionConfig(
+				Action.class, Action.class.getMethod("execute"), null, "/hello.html", null, null, null);
+		actionConfig.interceptors = interceptors;
+		actionConfig.interceptorChain = chain;
+
+		ActionRequest actionRequest = new ActionRequest("/hello.html", actionConfig, new Action(), null, null);
+		assertEquals("two:ok", actionRequest.invoke());
+
+		assertEquals("[one, two, one, action, /one, /one]", calls.toString());
+		assertEquals(chain.getClass().getName(), caller);		// intercept() is called directly
+
+		two.setEnabled(false);
+		calls.clear();
+		actionRequest = new ActionRequest("/hello.html", actionConfig, new Action(), null, null);
+		assertEquals("ok", actionRequest.invoke());
+		assertEquals("[one, one, action, /one, /one]", calls.toString());
+	}
+
+	@Test
+	public void testDisabled() {
+		interceptorChainGenerator.madvocConfig.setGenerateInterceptorChains(false);
+		assertNull(interceptorChainGenerator.createInterceptorChain(new ActionInterceptor[] {new OneInterceptor()}));
+		interceptorChainGenerator.madvocConfig.setGenerateInterceptorChains(true);
+		assertNull(interceptorChainGenerator.createInterceptorChain(new ActionInterceptor[0]));
+	}
+}
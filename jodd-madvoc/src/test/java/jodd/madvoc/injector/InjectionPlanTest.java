@@ -0,0 +1,207 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.madvoc.injector;
+
+import jodd.bean.BeanException;
+import jodd.madvoc.ScopeType;
+import jodd.madvoc.meta.In;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class InjectionPlanTest {
+
+	public static class User {
+		public String name;
+	}
+
+	public static class PublicAction {
+		@In
+		public String name;
+
+		@In("id")
+		public long userId;
+
+		@In(create = true)
+		public User user;
+
+		int count;
+
+		public int getCount() {
+			return count;
+		}
+
+		@In
+		public void setCount(int count) {
+			this.count = count;
+		}
+	}
+
+	static class Action {
+		@In
+		private Integer value;
+
+		@In(scope = ScopeType.SESSION)
+		private String session;
+	}
+
+	public static class StrictAction {
+		int calls;
+
+		@In
+		public void setAge(int age) {
+			calls++;
+			if (age < 0) {
+				throw new IllegalArgumentException("negative age");
+			}
+		}
+	}
+
+	static class TestInjector extends BaseScopeInjector {
+		TestInjector() {
+			super(ScopeType.REQUEST);
+		}
+	}
+
+	@Test
+	public void testMatch() {
+		InjectionPlan plan = new ScopeDataResolver().lookupInjectionPlan(PublicAction.class, ScopeType.REQUEST);
+		assertNotNull(plan);
+		assertEquals(4, plan.getInCount());
+
+		int[] indexes = plan.match("name");
+		assertEquals(1, indexes.length);
+		assertEquals("name", plan.getIn(indexes[0]).name);
+
+		indexes = plan.match("id");
+		assertEquals(1, indexes.length);
+		assertEquals("userId", plan.resolvePropertyName(indexes[0], "id"));
+
+		indexes = plan.match("user.name");
+		assertEquals(1, indexes.length);
+		assertEquals("user.name", plan.resolvePropertyName(indexes[0], "user.name"));
+
+		assertNotNull(plan.match("user[0]"));
+		assertNull(plan.match("username"));
+		assertNull(plan.match("userId"));
+		assertNull(plan.match("na"));
+	}
+
+	@Test
+	public void testGeneratedProperties() {
+		InjectionPlan plan = new ScopeDataResolver().lookupInjectionPlan(PublicAction.class, ScopeType.REQUEST);
+
+		for (int i = 0; i < plan.getInCount(); i++) {
+			assertTrue(plan.getProperty(i) instanceof InjectionPlan.GeneratedProperty);
+		}
+
+		PublicAction action = new PublicAction();
+		TestInjector injector = new TestInjector();
+
+		injector.setTargetProperty(action, plan, plan.match("name")[0], "name", "jodd");
+		injector.setTargetProperty(action, plan, plan.match("id")[0], "id", "173");
+		injector.setTargetProperty(action, plan, plan.match("count")[0], "count", "7");
+
+		assertEquals("jodd", action.name);
+		assertEquals(173, action.userId);
+		assertEquals(7, action.count);
+
+		// invalid values are ignored
+		injector.setTargetProperty(action, plan, plan.match("count")[0], "count", "seven");
+		assertEquals(7, action.count);
+	}
+
+	@Test
+	public void testSilentFailures() {
+		InjectionPlan plan = new ScopeDataResolver().lookupInjectionPlan(StrictAction.class, ScopeType.REQUEST);
+
+		StrictAction action = new StrictAction();
+		TestInjector injector = new TestInjector();
+
+		// setter exception is ignored, setter is not invoked again
+		injector.setTargetProperty(action, plan, plan.match("age")[0], "age", "-1");
+		assertEquals(1, action.calls);
+
+		// conversion failure is not an error
+		injector.setTargetProperty(action, plan, plan.match("age")[0], "age", "old");
+		assertEquals(1, action.calls);
+
+		// null is not set to primitive
+		injector.setTargetProperty(action, plan, plan.match("age")[0], "age", null);
+		assertEquals(1, action.calls);
+	}
+
+	@Test
+	public void testStrictFailures() {
+		InjectionPlan plan = new ScopeDataResolver().lookupInjectionPlan(StrictAction.class, ScopeType.REQUEST);
+
+		StrictAction action = new StrictAction();
+		int index = plan.match("age")[0];
+
+		try {
+			plan.inject(action, index, "age", "-1", false);
+			fail();
+		} catch (BeanException bex) {
+			assertEquals("negative age", bex.getCause().getMessage());
+		}
+		assertEquals(1, action.calls);
+
+		// value that can't be converted is left to BeanUtil
+		assertFalse(plan.inject(action, index, "age", "old", false));
+		assertTrue(plan.inject(action, index, "age", "7", false));
+		assertEquals(2, action.calls);
+	}
+
+	@Test
+	public void testNullPrimitive() {
+		InjectionPlan plan = new ScopeDataResolver().lookupInjectionPlan(PublicAction.class, ScopeType.REQUEST);
+
+		PublicAction action = new PublicAction();
+		action.userId = 173;
+		action.count = 7;
+
+		assertTrue(plan.inject(action, plan.match("id")[0], "id", null));
+		assertTrue(plan.inject(action, plan.match("count")[0], "count", null));
+		assertEquals(173, action.userId);
+		assertEquals(7, action.count);
+	}
+
+	@Test
+	public void testNestedProperty() {
+		InjectionPlan plan = new ScopeDataResolver().lookupInjectionPlan(PublicAction.class, ScopeType.REQUEST);
+
+		PublicAction action = new PublicAction();
+		int index = plan.match("user.name")[0];
+
+		assertFalse(plan.inject(action, index, "user.name", "joe"));
+
+		new TestInjector().setTargetProperty(action, plan, index, "user.name", "joe");
+		assertNotNull(action.user);
+		assertEquals("joe", action.user.name);
+	}
+
+	@Test
+	public void testReflectiveProperties() {
+		ScopeDataResolver scopeDataResolver = new ScopeDataResolver();
+		InjectionPlan plan = scopeDataResolver.lookupInjectionPlan(Action.class, ScopeType.REQUEST);
+
+		assertEquals(1, plan.getInCount());
+		assertTrue(plan.getProperty(0) instanceof InjectionPlan.FieldProperty);
+
+		Action action = new Action();
+		assertTrue(plan.inject(action, 0, "value", "42"));
+		assertEquals(Integer.valueOf(42), action.value);
+
+		plan = scopeDataResolver.lookupInjectionPlan(Action.class, ScopeType.SESSION);
+		assertEquals(1, plan.getInCount());
+		assertTrue(plan.inject(action, 0, "session", "s"));
+		assertEquals("s", action.session);
+
+		assertNull(scopeDataResolver.lookupInjectionPlan(Action.class, ScopeType.APPLICATION));
+	}
+}
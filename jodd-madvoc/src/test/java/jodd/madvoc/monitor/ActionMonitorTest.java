@@ -0,0 +1,77 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.madvoc.monitor;
+
+import jodd.bean.BeanUtil;
+import jodd.madvoc.ActionConfig;
+import jodd.madvoc.ActionRequest;
+import jodd.madvoc.component.MadvocConfig;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ActionMonitorTest {
+
+	private ActionMonitor actionMonitor;
+	private ActionConfig actionConfig;
+
+	@Before
+	public void setUp() throws Exception {
+		actionMonitor = new ActionMonitor();
+		actionMonitor.madvocConfig = new MadvocConfig();
+
+		actionConfig = new ActionConfig(
+				Object.class, Object.class.getMethod("toString"), null, "/hello.html", null, null, null);
+	}
+
+	@Test
+	public void testToMillis() {
+		assertEquals("2.000", ActionStats.toMillis(2000000));
+		assertEquals("0.003", ActionStats.toMillis(3500));
+		assertEquals("12.345", ActionStats.toMillis(12345678));
+	}
+
+	@Test
+	public void testMonitor() {
+		assertFalse(actionMonitor.isEnabled());
+		actionMonitor.setEnabled(true);
+		assertTrue(actionMonitor.madvocConfig.isActionMonitoringEnabled());
+
+		actionMonitor.setSlowActionThreshold(10);
+
+		ActionRequest actionRequest = new ActionRequest("/hello.html", actionConfig, null, null, null);
+		BeanUtil.setDeclaredProperty(actionRequest, "actionTime", Long.valueOf(1000000));
+
+		actionMonitor.actionRequestDone(actionRequest, 3000000, 1000000, false);
+		actionMonitor.actionRequestDone(actionRequest, 3000000, 8000000, true);
+
+		assertEquals(2, actionMonitor.getRequests());
+		assertEquals(1, actionMonitor.getErrors());
+		assertEquals(1, actionMonitor.getSlowRequests());
+
+		List<ActionStats> list = actionMonitor.getAllActionStats();
+		assertEquals(1, list.size());
+
+		ActionStats stats = list.get(0);
+		assertSame(actionConfig, stats.getActionConfig());
+		assertSame(stats, actionMonitor.lookupActionStats(actionConfig));
+		assertEquals(2000000, stats.getInterceptorsLatency().getMaxTime());
+		assertEquals(1000000, stats.getActionLatency().getMaxTime());
+		assertEquals(8000000, stats.getRenderLatency().getMaxTime());
+		assertEquals(11000000, stats.getTotalLatency().getMaxTime());
+		assertEquals(2, stats.getTotalLatency().getCount());
+		assertTrue(stats.toString().contains("total:        count=2, mean=7.500ms"));
+		assertTrue(stats.toString().contains("max=11.000ms"));
+
+		assertEquals(1, actionMonitor.getActionStats().length);
+
+		actionMonitor.reset();
+		assertEquals(0, actionMonitor.getRequests());
+	}
+}
@@ -0,0 +1,272 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.madvoc.result;
+
+import jodd.madvoc.ActionConfig;
+import jodd.madvoc.ActionRequest;
+import jodd.madvoc.MadvocException;
+import jodd.madvoc.component.MadvocController;
+import jodd.madvoc.interceptor.ActionInterceptor;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DeferredResultTest {
+
+	private final List<String> calls = new ArrayList<String>();
+	private final Map<String, Object> attributes = new HashMap<String, Object>();
+	private final List<AsyncListener> listeners = new ArrayList<AsyncListener>();
+	private DispatcherType dispatcherType;
+
+	private HttpServletRequest request;
+	private ActionRequest actionRequest;
+
+	@Before
+	public void setUp() throws Exception {
+		dispatcherType = DispatcherType.REQUEST;
+
+		final AsyncContext asyncContext = proxy(AsyncContext.class, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				String name = method.getName();
+				calls.add(name);
+				if (name.equals("addListener")) {
+					listeners.add((AsyncListener) args[0]);
+				}
+				return null;
+			}
+		});
+
+		request = proxy(HttpServletRequest.class, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				String name = method.getName();
+				if (name.equals("isAsyncSupported")) {
+					return Boolean.TRUE;
+				}
+				if (name.equals("startAsync")) {
+					calls.add(name);
+					return asyncContext;
+				}
+				if (name.equals("getDispatcherType")) {
+					return dispatcherType;
+				}
+				if (name.equals("setAttribute")) {
+					attributes.put((String) args[0], args[1]);
+				}
+				if (name.equals("getAttribute")) {
+					return attributes.get(args[0]);
+				}
+				if (name.equals("removeAttribute")) {
+					attributes.remove(args[0]);
+				}
+				return null;
+			}
+		});
+
+		ActionConfig actionConfig = new ActionConfig(
+				Object.class, Object.class.getMethod("toString"), null, "/hello.html", null, null, null);
+		actionRequest = new ActionRequest("/hello.html", actionConfig, null, request, null);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class[] {type}, handler);
+	}
+
+	@Test
+	public void testComplete() throws Exception {
+		DeferredResult deferredResult = new DeferredResult();
+		final List<String> order = new ArrayList<String>();
+
+		deferredResult.onResume(new DeferredResult.ResumeHandler() {
+			public void resume(ActionRequest actionRequest) {
+				order.add("first");
+			}
+		});
+		deferredResult.onResume(new DeferredResult.ResumeHandler() {
+			public void resume(ActionRequest actionRequest) {
+				order.add("second");
+			}
+		});
+
+		assertTrue(deferredResult.complete("ok"));
+		assertFalse(deferredResult.complete("again"));
+		assertFalse(deferredResult.timeout());
+		assertTrue(deferredResult.isCompleted());
+
+		deferredResult.onComplete(new Runnable() {
+			public void run() {
+				order.add("completed");
+			}
+		});
+
+		assertEquals("ok", deferredResult.resume(actionRequest));
+		assertEquals("completed", order.get(0));
+		assertEquals("first", order.get(1));
+		assertEquals("second", order.get(2));
+	}
+
+	@Test
+	public void testFailure() throws Exception {
+		DeferredResult deferredResult = new DeferredResult();
+		final List<String> order = new ArrayList<String>();
+
+		deferredResult.onResume(new DeferredResult.ResumeHandler() {
+			public void resume(ActionRequest actionRequest) {
+				order.add("resume");
+			}
+		});
+		deferredResult.onFailure(new DeferredResult.FailureHandler() {
+			public Object failed(ActionRequest actionRequest, Exception exception) throws Exception {
+				order.add("failed:" + exception.getMessage());
+				throw new MadvocException("rethrown");
+			}
+		});
+
+		assertTrue(deferredResult.fail(new IllegalStateException("boom")));
+		try {
+			deferredResult.resume(actionRequest);
+			fail();
+		} catch (MadvocException mex) {
+			assertEquals("rethrown", mex.getMessage());
+		}
+		assertEquals(1, order.size());
+		assertEquals("failed:boom", order.get(0));
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		DeferredResult deferredResult = new DeferredResult(100);
+		deferredResult.setTimeoutResult("timeout");
+		assertTrue(deferredResult.timeout());
+		assertEquals("timeout", deferredResult.resume(actionRequest));
+
+		deferredResult = new DeferredResult();
+		assertTrue(deferredResult.timeout());
+		try {
+			deferredResult.resume(actionRequest);
+			fail();
+		} catch (MadvocException ignore) {
+		}
+	}
+
+	@Test
+	public void testAsyncActionRequest() throws Exception {
+		final List<Object> rendered = new ArrayList<Object>();
+
+		MadvocController madvocController = new MadvocController() {
+			@Override
+			public void render(ActionRequest actionRequest, Object resultObject) throws Exception {
+				if (resultObject instanceof DeferredResult) {
+					super.render(actionRequest, resultObject);
+					return;
+				}
+				rendered.add(resultObject);
+			}
+		};
+
+		DeferredResult deferredResult = new DeferredResult(500);
+		madvocController.render(actionRequest, deferredResult);
+
+		assertSame(deferredResult, actionRequest.getDeferredResult());
+		assertSame(actionRequest, attributes.get(MadvocController.ASYNC_ACTION_REQUEST_ATTR));
+		assertEquals("startAsync", calls.get(0));
+		assertEquals("setTimeout", calls.get(1));
+		assertEquals(1, listeners.size());
+		assertFalse(calls.contains("dispatch"));
+
+		deferredResult.complete("ok");
+		assertTrue(calls.contains("dispatch"));
+
+		dispatcherType = DispatcherType.ASYNC;
+		assertNull(madvocController.invoke("/hello.html", request, null));
+
+		assertEquals(1, rendered.size());
+		assertEquals("ok", rendered.get(0));
+		assertNull(actionRequest.getDeferredResult());
+		assertTrue(attributes.isEmpty());
+
+		// foreign async dispatch is not consumed
+		assertEquals("/hello.html", madvocController.invoke("/hello.html", request, null));
+	}
+
+	@Test
+	public void testInterceptorHandlesDeferredFailure() throws Exception {
+		final List<Object> rendered = new ArrayList<Object>();
+
+		MadvocController madvocController = new MadvocController() {
+			@Override
+			public void render(ActionRequest actionRequest, Object resultObject) throws Exception {
+				if (resultObject instanceof DeferredResult) {
+					super.render(actionRequest, resultObject);
+					return;
+				}
+				rendered.add(resultObject);
+			}
+		};
+
+		ActionConfig actionConfig = new ActionConfig(
+				AsyncAction.class, AsyncAction.class.getMethod("execute"), null, "/async.html", null, null, null);
+		actionConfig.interceptors = new ActionInterceptor[] {new ErrorInterceptor()};
+
+		AsyncAction action = new AsyncAction();
+		actionRequest = new ActionRequest("/async.html", actionConfig, action, request, null);
+
+		madvocController.render(actionRequest, actionRequest.invoke());
+		assertSame(action.deferredResult, actionRequest.getDeferredResult());
+		assertTrue(rendered.isEmpty());
+
+		action.deferredResult.fail(new IllegalStateException("boom"));
+
+		dispatcherType = DispatcherType.ASYNC;
+		assertNull(madvocController.invoke("/async.html", request, null));
+
+		assertEquals(1, rendered.size());
+		assertEquals("error:boom", rendered.get(0));
+	}
+
+	public static class AsyncAction {
+		final DeferredResult deferredResult = new DeferredResult();
+
+		public Object execute() {
+			return deferredResult;
+		}
+	}
+
+	public static class ErrorInterceptor extends ActionInterceptor {
+		@Override
+		public Object intercept(ActionRequest actionRequest) throws Exception {
+			Object result;
+			try {
+				result = actionRequest.invoke();
+			} catch (Exception ex) {
+				return "error:" + ex.getMessage();
+			}
+			if (result instanceof DeferredResult) {
+				((DeferredResult) result).onFailure(new DeferredResult.FailureHandler() {
+					public Object failed(ActionRequest actionRequest, Exception exception) {
+						return "error:" + exception.getMessage();
+					}
+				});
+			}
+			return result;
+		}
+	}
+}
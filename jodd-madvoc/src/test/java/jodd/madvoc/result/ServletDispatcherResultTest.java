@@ -0,0 +1,160 @@
+// Copyright (c) 2003-2013, Jodd Team (jodd.org). All Rights Reserved.
+
+package jodd.madvoc.result;
+
+import jodd.bean.BeanUtil;
+import jodd.madvoc.ActionConfig;
+import jodd.madvoc.ActionRequest;
+import jodd.madvoc.component.MadvocConfig;
+import jodd.madvoc.component.MadvocController;
+import jodd.madvoc.component.ServletContextInjector;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ServletDispatcherResultTest {
+
+	private final Set<String> resources = new HashSet<String>();
+	private final List<String> probed = new ArrayList<String>();
+	private final List<String> calls = new ArrayList<String>();
+
+	private ServletDispatcherResult result;
+	private ActionRequest actionRequest;
+
+	@Before
+	public void setUp() throws Exception {
+		ServletContext servletContext = proxy(ServletContext.class, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if (method.getName().equals("getResource")) {
+					String path = (String) args[0];
+					probed.add(path);
+					return resources.contains(path) ? new URL("file:" + path) : null;
+				}
+				return null;
+			}
+		});
+
+		final RequestDispatcher dispatcher = proxy(RequestDispatcher.class, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				calls.add(method.getName());
+				return null;
+			}
+		});
+
+		HttpServletRequest request = proxy(HttpServletRequest.class, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				String name = method.getName();
+				calls.add(name);
+				if (name.equals("getRequestDispatcher")) {
+					calls.add((String) args[0]);
+					return dispatcher;
+				}
+				return null;
+			}
+		});
+
+		HttpServletResponse response = proxy(HttpServletResponse.class, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				String name = method.getName();
+				calls.add(name);
+				if (name.equals("isCommitted")) {
+					return Boolean.FALSE;
+				}
+				return null;
+			}
+		});
+
+		MadvocController madvocController = new MadvocController();
+		madvocController.init(servletContext);
+
+		ServletContextInjector servletContextInjector = new ServletContextInjector();
+		BeanUtil.setDeclaredProperty(servletContextInjector, "madvocController", madvocController);
+
+		result = new ServletDispatcherResult();
+		result.madvocConfig = new MadvocConfig();
+		result.servletContextInjector = servletContextInjector;
+
+		ActionConfig actionConfig = new ActionConfig(
+				Object.class, Object.class.getMethod("toString"), null, "/hello.html", null, null, null);
+		actionRequest = new ActionRequest("/hello.html", actionConfig, null, request, response);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class[] {type}, handler);
+	}
+
+	@Test
+	public void testTargetCache() throws Exception {
+		resources.add("/hello.jsp");
+
+		result.render(actionRequest, null, "ok", "/hello.ok");
+
+		assertEquals(Arrays.asList("/hello.ok.jsp", "/hello.jsp"), probed);
+		assertTrue(calls.contains("/hello.jsp"));
+		assertTrue(calls.contains("forward"));
+
+		probed.clear();
+		calls.clear();
+
+		result.render(actionRequest, null, "ok", "/hello.ok");
+
+		assertTrue(probed.isEmpty());
+		assertTrue(calls.contains("/hello.jsp"));
+		assertTrue(calls.contains("forward"));
+		assertTrue(calls.contains("getSession") == false);
+
+		result.clearTargetsCache();
+		result.render(actionRequest, null, "ok", "/hello.ok");
+		assertEquals(2, probed.size());
+	}
+
+	@Test
+	public void testTargetCacheBounded() throws Exception {
+		resources.add("/hello.jsp");
+
+		for (int i = 0; i < ServletDispatcherResult.TARGETS_CACHE_SIZE * 2; i++) {
+			result.render(actionRequest, null, "ok", "/hello.ok" + i);
+		}
+
+		assertTrue(result.targetsCache.size() <= ServletDispatcherResult.TARGETS_CACHE_SIZE);
+		assertTrue(result.targetsCache.size() > 0);
+	}
+
+	@Test
+	public void testCacheDisabled() throws Exception {
+		result.madvocConfig.setResultTargetsCacheEnabled(false);
+		resources.add("/hello.jsp");
+
+		result.render(actionRequest, null, "ok", "/hello.ok");
+		result.render(actionRequest, null, "ok", "/hello.ok");
+
+		assertEquals(4, probed.size());
+	}
+
+	@Test
+	public void testNotFound() throws Exception {
+		result.render(actionRequest, null, "ok", "/hello.ok");
+		result.render(actionRequest, null, "ok", "/hello.ok");
+
+		assertEquals(4, probed.size());
+		assertTrue(calls.contains("sendError"));
+		assertTrue(calls.contains("getSession") == false);
+	}
+}
@@ -18,7 +18,8 @@ import java.io.InputStream;
  * <p>
  * Scans all classes on classpath and in jar files, and scans for {@link jodd.petite.meta.PetiteBean}
  * annotation (not by loading the class!). If annotation is founded, class will be loaded and
- * registered as Petite bean.
+ * registered as Petite bean. Jars may be examined {@link #setScanThreads(int) concurrently},
+ * and may be indexed by setting the {@link #setScanIndex(jodd.io.findfile.ClassScanIndex) scan index}.
  */
 public class AutomagicPetiteConfigurator extends ClassFinder implements PetiteConfigurator {
 
@@ -66,17 +67,22 @@ public class AutomagicPetiteConfigurator extends ClassFinder implements PetiteCo
 	}
 
 	/**
-	 * Scans all classes and registers only those annotated with {@link jodd.petite.meta.PetiteBean}.
+	 * Matches only classes that use {@link jodd.petite.meta.PetiteBean}.
 	 * Because of performance purposes, classes are not dynamically loaded; instead, their
-	 * file content is examined. 
+	 * file content is examined.
+	 */
+	@Override
+	protected boolean matchEntry(EntryData entryData) {
+		InputStream inputStream = entryData.openInputStream();
+		return isTypeSignatureInUse(inputStream, petiteBeanAnnotationBytes);
+	}
+
+	/**
+	 * Registers matched classes annotated with {@link jodd.petite.meta.PetiteBean}.
 	 */
 	@Override
 	protected void onEntry(EntryData entryData) {
 		String entryName = entryData.getName();
-		InputStream inputStream = entryData.openInputStream();
-		if (isTypeSignatureInUse(inputStream, petiteBeanAnnotationBytes) == false) {
-			return;
-		}
 		Class<?> beanClass;
 		try {
 			beanClass = loadClass(entryName);